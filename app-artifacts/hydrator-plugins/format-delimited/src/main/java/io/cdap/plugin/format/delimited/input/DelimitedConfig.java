@@ -33,11 +33,16 @@ public class DelimitedConfig extends PathTrackingConfig {
   public static final Map<String, PluginPropertyField> DELIMITED_FIELDS;
   private static final String SKIP_HEADER_DESC = "Whether to skip the first line of each file. " +
                                                    "Default value is false.";
+  private static final String ENABLE_QUOTED_VALUES_DESC = "Whether to treat content between quotes as a value. " +
+                                                            "Two consecutive quotes inside a quoted value are " +
+                                                            "read as one quote. Default value is false.";
 
   static {
     Map<String, PluginPropertyField> fields = new HashMap<>(FIELDS);
     fields.put("skipHeader", new PluginPropertyField("skipHeader", SKIP_HEADER_DESC,
                                                      "boolean", false, true));
+    fields.put("enableQuotedValues", new PluginPropertyField("enableQuotedValues", ENABLE_QUOTED_VALUES_DESC,
+                                                             "boolean", false, true));
     DELIMITED_FIELDS = Collections.unmodifiableMap(fields);
   }
 
@@ -46,7 +51,16 @@ public class DelimitedConfig extends PathTrackingConfig {
   @Description(SKIP_HEADER_DESC)
   protected Boolean skipHeader;
 
+  @Macro
+  @Nullable
+  @Description(ENABLE_QUOTED_VALUES_DESC)
+  protected Boolean enableQuotedValues;
+
   public boolean getSkipHeader() {
     return skipHeader == null ? false : skipHeader;
   }
+
+  public boolean getEnableQuotedValues() {
+    return enableQuotedValues == null ? false : enableQuotedValues;
+  }
 }
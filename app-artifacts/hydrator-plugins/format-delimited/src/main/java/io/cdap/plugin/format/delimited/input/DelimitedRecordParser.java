@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.format.delimited.input;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Parses a line of delimited text into a {@link StructuredRecord.Builder}. The parser works directly on the
+ * UTF-8 bytes of the {@link Text}. It finds the field boundaries and sets each field to the record in one pass.
+ * Integer, long and boolean fields are converted from the bytes without creating an intermediate string.
+ *
+ * Since UTF-8 is self-synchronizing, matching the delimiter bytes never matches the middle of a multi-bytes
+ * character, which makes the byte level scanning equivalent to splitting the decoded string.
+ */
+final class DelimitedRecordParser {
+
+  private static final byte QUOTE = '"';
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+
+  private final Schema schema;
+  private final byte[] delimiter;
+  private final boolean enableQuotedValues;
+  private final String[] fieldNames;
+  private final Schema.Type[] fieldTypes;
+
+  DelimitedRecordParser(Schema schema, String delimiter, boolean enableQuotedValues) {
+    if (delimiter.isEmpty()) {
+      throw new IllegalArgumentException("Delimiter cannot be empty.");
+    }
+    this.schema = schema;
+    this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+    this.enableQuotedValues = enableQuotedValues;
+
+    List<Schema.Field> fields = schema.getFields();
+    this.fieldNames = new String[fields.size()];
+    this.fieldTypes = new Schema.Type[fields.size()];
+    for (int i = 0; i < fieldNames.length; i++) {
+      Schema.Field field = fields.get(i);
+      Schema fieldSchema = field.getSchema();
+      fieldSchema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+      fieldNames[i] = field.getName();
+      fieldTypes[i] = fieldSchema.getType();
+    }
+  }
+
+  /**
+   * Parses the given line into a {@link StructuredRecord.Builder}.
+   *
+   * @param line the line to parse
+   * @return a {@link StructuredRecord.Builder} with the fields set from the line
+   * @throws IOException if the line contains more fields than the schema, or if a quoted value is not closed
+   */
+  StructuredRecord.Builder parse(Text line) throws IOException {
+    byte[] bytes = line.getBytes();
+    int length = line.getLength();
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    int fieldIdx = 0;
+    int start = 0;
+    while (true) {
+      if (fieldIdx >= fieldNames.length) {
+        throw new IOException(getTooManyFieldsMessage(bytes, length));
+      }
+
+      int end;
+      int next;
+      if (enableQuotedValues && start < length && bytes[start] == QUOTE) {
+        end = findClosingQuote(bytes, start + 1, length);
+        if (end < 0) {
+          throw new IOException(String.format("Found an unclosed quoted value in field '%s'.", fieldNames[fieldIdx]));
+        }
+        next = end + 1;
+        if (next < length && !isDelimiter(bytes, next, length)) {
+          throw new IOException(String.format("Found a quoted value in field '%s' that is not followed by " +
+                                                "the delimiter.", fieldNames[fieldIdx]));
+        }
+        setQuotedField(builder, fieldIdx, bytes, start + 1, end);
+      } else {
+        end = findDelimiter(bytes, start, length);
+        next = end;
+        setField(builder, fieldIdx, bytes, start, end);
+      }
+
+      fieldIdx++;
+      if (next >= length) {
+        return builder;
+      }
+      start = next + delimiter.length;
+    }
+  }
+
+  private void setQuotedField(StructuredRecord.Builder builder, int fieldIdx,
+                              byte[] bytes, int start, int end) {
+    if (start == end && fieldTypes[fieldIdx] != Schema.Type.STRING) {
+      builder.set(fieldNames[fieldIdx], null);
+      return;
+    }
+    // Unescape the doubled quotes if there is any
+    String value = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    if (value.indexOf(QUOTE) >= 0) {
+      value = value.replace("\"\"", "\"");
+    }
+    builder.convertAndSet(fieldNames[fieldIdx], value);
+  }
+
+  private void setField(StructuredRecord.Builder builder, int fieldIdx, byte[] bytes, int start, int end) {
+    String fieldName = fieldNames[fieldIdx];
+    if (start == end) {
+      builder.set(fieldName, null);
+      return;
+    }
+
+    switch (fieldTypes[fieldIdx]) {
+      case INT:
+        // Up to 9 digits always fit in an int
+        if (end - start <= 9 && isDigits(bytes, start, end)) {
+          builder.set(fieldName, (int) parseLong(bytes, start, end));
+          return;
+        }
+        break;
+      case LONG:
+        // Up to 18 digits always fit in a long
+        if (end - start <= 18 && isDigits(bytes, start, end)) {
+          builder.set(fieldName, parseLong(bytes, start, end));
+          return;
+        }
+        break;
+      case BOOLEAN:
+        builder.set(fieldName, equalsIgnoreCase(TRUE, bytes, start, end));
+        return;
+      case STRING:
+        builder.set(fieldName, new String(bytes, start, end - start, StandardCharsets.UTF_8));
+        return;
+    }
+
+    // For all other cases, fallback to the string conversion
+    builder.convertAndSet(fieldName, new String(bytes, start, end - start, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the index of the first delimiter starting from the given index, or the length if there is none.
+   */
+  private int findDelimiter(byte[] bytes, int start, int length) {
+    byte first = delimiter[0];
+    for (int i = start; i < length; i++) {
+      if (bytes[i] == first && isDelimiter(bytes, i, length)) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  private boolean isDelimiter(byte[] bytes, int idx, int length) {
+    if (idx + delimiter.length > length) {
+      return false;
+    }
+    for (int i = 0; i < delimiter.length; i++) {
+      if (bytes[idx + i] != delimiter[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the quote that closes a quoted value, or {@code -1} if the value is not closed.
+   * Two consecutive quotes inside a quoted value are an escaped quote.
+   */
+  private int findClosingQuote(byte[] bytes, int start, int length) {
+    int i = start;
+    while (i < length) {
+      if (bytes[i] == QUOTE) {
+        if (i + 1 < length && bytes[i + 1] == QUOTE) {
+          i += 2;
+          continue;
+        }
+        return i;
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns whether the bytes are optionally signed decimal digits.
+   */
+  private static boolean isDigits(byte[] bytes, int start, int end) {
+    int i = start;
+    if (bytes[i] == '-' || bytes[i] == '+') {
+      i++;
+    }
+    if (i == end) {
+      return false;
+    }
+    for (; i < end; i++) {
+      if (bytes[i] < '0' || bytes[i] > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parses the bytes validated by {@link #isDigits(byte[], int, int)} into a long.
+   */
+  private static long parseLong(byte[] bytes, int start, int end) {
+    int i = start;
+    boolean negative = bytes[i] == '-';
+    if (negative || bytes[i] == '+') {
+      i++;
+    }
+    long result = 0;
+    for (; i < end; i++) {
+      result = result * 10 + (bytes[i] - '0');
+    }
+    return negative ? -result : result;
+  }
+
+  private static boolean equalsIgnoreCase(byte[] expected, byte[] bytes, int start, int end) {
+    if (end - start != expected.length) {
+      return false;
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (Character.toLowerCase(bytes[start + i]) != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String getTooManyFieldsMessage(byte[] bytes, int length) {
+    String delimitedString = new String(bytes, 0, length, StandardCharsets.UTF_8);
+    int numDataFields = delimitedString.split(new String(delimiter, StandardCharsets.UTF_8)).length;
+    int numSchemaFields = fieldNames.length;
+    String message = String.format("Found a row with %d fields when the schema only contains %d field%s.",
+                                   numDataFields, numSchemaFields, numSchemaFields == 1 ? "" : "s");
+    // special error handling for the case when the user most likely set the schema to delimited
+    // when they meant to use 'text'.
+    Schema.Field bodyField = schema.getField("body");
+    if (bodyField != null) {
+      Schema bodySchema = bodyField.getSchema();
+      bodySchema = bodySchema.isNullable() ? bodySchema.getNonNullable() : bodySchema;
+      if (bodySchema.getType() == Schema.Type.STRING) {
+        return message + " Did you mean to use the 'text' format?";
+      }
+    }
+    return message + " Check that the schema contains the right number of fields.";
+  }
+}
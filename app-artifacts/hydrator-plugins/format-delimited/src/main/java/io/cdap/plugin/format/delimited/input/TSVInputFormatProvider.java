@@ -74,5 +74,7 @@ public class TSVInputFormatProvider extends PathTrackingInputFormatProvider<Deli
   protected void addFormatProperties(Map<String, String> properties) {
     properties.put(PathTrackingDelimitedInputFormat.DELIMITER, "\t");
     properties.put(PathTrackingDelimitedInputFormat.SKIP_HEADER, String.valueOf(conf.getSkipHeader()));
+    properties.put(PathTrackingDelimitedInputFormat.ENABLE_QUOTED_VALUES,
+                   String.valueOf(conf.getEnableQuotedValues()));
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.format.delimited.input;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link DelimitedRecordParser}.
+ */
+public class DelimitedRecordParserTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))),
+    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testParse() throws IOException {
+    DelimitedRecordParser parser = new DelimitedRecordParser(SCHEMA, ",", false);
+
+    StructuredRecord record = parser.parse(new Text("-12,9876543210987,TRUE,1.5,héllo")).build();
+    Assert.assertEquals(-12, (int) record.<Integer>get("i"));
+    Assert.assertEquals(9876543210987L, (long) record.<Long>get("l"));
+    Assert.assertTrue(record.<Boolean>get("b"));
+    Assert.assertEquals(1.5d, record.<Double>get("d"), 0.0001d);
+    Assert.assertEquals("héllo", record.get("s"));
+
+    // Empty values are null, and missing trailing values are not set
+    record = parser.parse(new Text(",,false")).build();
+    Assert.assertNull(record.get("i"));
+    Assert.assertNull(record.get("l"));
+    Assert.assertFalse(record.<Boolean>get("b"));
+    Assert.assertNull(record.get("s"));
+
+    // Numbers too long for the fast path
+    record = parser.parse(new Text("+2147483647,-9223372036854775808")).build();
+    Assert.assertEquals(Integer.MAX_VALUE, (int) record.<Integer>get("i"));
+    Assert.assertEquals(Long.MIN_VALUE, (long) record.<Long>get("l"));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testInvalidNumber() throws IOException {
+    new DelimitedRecordParser(SCHEMA, ",", false).parse(new Text("12a"));
+  }
+
+  @Test
+  public void testMultiBytesDelimiter() throws IOException {
+    DelimitedRecordParser parser = new DelimitedRecordParser(SCHEMA, "¦|", false);
+    StructuredRecord record = parser.parse(new Text("1¦|2¦|true¦|3.0¦|a|b¦c")).build();
+    Assert.assertEquals(1, (int) record.<Integer>get("i"));
+    Assert.assertEquals(2L, (long) record.<Long>get("l"));
+    Assert.assertEquals("a|b¦c", record.get("s"));
+  }
+
+  @Test
+  public void testQuotedValues() throws IOException {
+    DelimitedRecordParser parser = new DelimitedRecordParser(SCHEMA, "\t", true);
+    StructuredRecord record = parser.parse(new Text("\"1\"\t\"\"\t\t\t\"a \"\"quoted\"\"\tvalue\"")).build();
+    Assert.assertEquals(1, (int) record.<Integer>get("i"));
+    Assert.assertNull(record.get("l"));
+    Assert.assertNull(record.get("b"));
+    Assert.assertNull(record.get("d"));
+    Assert.assertEquals("a \"quoted\"\tvalue", record.get("s"));
+
+    // Quotes are not special if not enabled
+    parser = new DelimitedRecordParser(SCHEMA, "\t", false);
+    record = parser.parse(new Text("\t\t\t\t\"a b\"")).build();
+    Assert.assertEquals("\"a b\"", record.get("s"));
+  }
+
+  @Test
+  public void testInvalidQuotedValues() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(SCHEMA, ",", true);
+    for (String line : new String[] { "\"1", "1,\"2\"3" }) {
+      try {
+        parser.parse(new Text(line));
+        Assert.fail("Expected failure for line " + line);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testTooManyFields() {
+    DelimitedRecordParser parser = new DelimitedRecordParser(SCHEMA, ",", false);
+    try {
+      parser.parse(new Text("1,2,true,4.0,s,extra"));
+      Assert.fail("Expected failure for too many fields");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage(),
+                        e.getMessage().startsWith("Found a row with 6 fields when the schema only contains 5 fields."));
+    }
+  }
+}
@@ -16,7 +16,6 @@
 package io.cdap.plugin.common.script;
 
 import io.cdap.cdap.etl.api.Lookup;
-import io.cdap.cdap.etl.api.LookupTableConfig;
 
 import java.util.Set;
 
@@ -27,12 +26,10 @@ public class ScriptLookup {
 
   private final Lookup<Object> delegate;
   private final JavaTypeConverters js;
-  private final LookupTableConfig config;
 
-  public ScriptLookup(Lookup<Object> delegate, LookupTableConfig config, JavaTypeConverters js) {
-    this.config = config;
+  public ScriptLookup(Lookup<Object> delegate, JavaTypeConverters js) {
     this.js = js;
-    this.delegate = config.isCacheEnabled() ? new CachingLookup<>(delegate, config.getCacheConfig()) : delegate;
+    this.delegate = delegate;
   }
 
   public Object lookup(String key) {
@@ -15,22 +15,27 @@
  */
 package io.cdap.plugin.common.script;
 
-import io.cdap.cdap.api.dataset.DatasetProperties;
 import io.cdap.cdap.etl.api.LookupConfig;
 import io.cdap.cdap.etl.api.LookupProvider;
 import io.cdap.cdap.etl.api.LookupTableConfig;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * {@link LookupProvider} implementation.
+ * {@link LookupProvider} implementation. The {@link ScriptLookup} of each table is created once and reused,
+ * so that a lookup cache configured for the table is shared by all the script invocations.
  */
 public class ScriptLookupProvider {
 
   private final LookupProvider delegate;
   private final LookupConfig config;
+  private final Map<String, ScriptLookup> lookups;
 
   public ScriptLookupProvider(LookupProvider delegate, LookupConfig config) {
     this.delegate = delegate;
     this.config = config;
+    this.lookups = new ConcurrentHashMap<>();
   }
 
   @SuppressWarnings("unchecked")
@@ -44,7 +49,6 @@ public class ScriptLookupProvider {
       throw new RuntimeException(String.format("Dataset %s not declared in configuration", table));
     }
 
-    DatasetProperties arguments = DatasetProperties.builder().addAll(tableConfig.getDatasetProperties()).build();
-    return new ScriptLookup(delegate.provide(table, arguments.getProperties()), tableConfig, converters);
+    return lookups.computeIfAbsent(table, t -> new ScriptLookup(delegate.provide(t, tableConfig), converters));
   }
 }
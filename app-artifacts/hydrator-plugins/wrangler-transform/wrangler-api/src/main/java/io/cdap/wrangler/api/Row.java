@@ -20,23 +20,43 @@ import io.cdap.wrangler.api.annotations.PublicEvolving;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Row defines the schema and data on which the wrangler will operate upon.
+ *
+ * <p>Column lookup by name goes through a lazily built index from column name to position, which is
+ * invalidated whenever the columns are changed. Rows copied from a {@link #template(List) template} row share
+ * its read-only column list and index, until the columns of the copy are modified.</p>
  */
 @PublicEvolving
 public final class Row implements Serializable {
   private static final Logger LOG = LoggerFactory.getLogger(Row.class);
 
+  // Rows with fewer columns than this are searched linearly, as it is cheaper than maintaining an index.
+  private static final int MIN_INDEXED_COLUMNS = 8;
+
   // Name of the columns held by the row.
   private List<String> columns = new ArrayList<>();
 
   // Values held by the row.
   private List<Object> values = new ArrayList<>();
 
+  // Whether the columns list (and the index) is shared with other rows and needs to be copied before modification.
+  // Shared columns and index are never modified in place.
+  private transient boolean columnsShared;
+
+  // Index from normalized column name to the position of the first column with that name. Built on demand,
+  // except for template rows, which build it upfront for all of their copies.
+  private transient Map<String, Integer> columnIndex;
+
   public Row() {
   }
 
@@ -47,7 +67,13 @@ public final class Row implements Serializable {
    */
   public Row(Row row) {
     this.values = new ArrayList<>(row.values);
-    this.columns = new ArrayList<>(row.columns);
+    if (row.columnsShared) {
+      this.columns = row.columns;
+      this.columnIndex = row.columnIndex;
+      this.columnsShared = true;
+    } else {
+      this.columns = new ArrayList<>(row.columns);
+    }
   }
 
   /**
@@ -73,6 +99,25 @@ public final class Row implements Serializable {
     this.values.add(value);
   }
 
+  /**
+   * Creates a row with the given columns and {@code null} values, to be copied with {@link #Row(Row)} for
+   * rows that have the same columns. The column list and the index used by {@link #find(String)} are built
+   * once here and shared by all copies of the returned row.
+   *
+   * @param columns to set in the row.
+   * @return a new template row.
+   */
+  public static Row template(List<String> columns) {
+    Row row = new Row();
+    row.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+    row.values = new ArrayList<>(Collections.nCopies(columns.size(), null));
+    if (columns.size() >= MIN_INDEXED_COLUMNS) {
+      row.columnIndex = Collections.unmodifiableMap(buildIndex(columns));
+    }
+    row.columnsShared = true;
+    return row;
+  }
+
   /**
    * Gets a column name by index.
    *
@@ -90,7 +135,7 @@ public final class Row implements Serializable {
    * @param name of the column to be set at idx.
    */
   public void setColumn(int idx, String name) {
-    columns.set(idx, name);
+    mutableColumns().set(idx, name);
   }
 
   /**
@@ -137,8 +182,16 @@ public final class Row implements Serializable {
    * @param value to be added to row.
    */
   public Row add(String name, Object value) {
-    columns.add(name);
+    // Appending a column can keep an index that is not shared with other rows up to date cheaply
+    Map<String, Integer> index = columnsShared ? null : columnIndex;
+    int idx = columns.size();
+    mutableColumns().add(name);
     values.add(value);
+
+    if (index != null) {
+      index.putIfAbsent(normalize(name), idx);
+      columnIndex = index;
+    }
     return this;
   }
 
@@ -148,7 +201,7 @@ public final class Row implements Serializable {
    * @param idx for which the value and column are removed.
    */
   public Row remove(int idx) {
-    columns.remove(idx);
+    mutableColumns().remove(idx);
     values.remove(idx);
     return this;
   }
@@ -160,14 +213,34 @@ public final class Row implements Serializable {
    * @return null if not present, else the index at which the column is found.
    */
   public int find(String col) {
+    if (columns.size() < MIN_INDEXED_COLUMNS) {
+      int idx = 0;
+      for (String name : columns) {
+        if (col.equalsIgnoreCase(name)) {
+          return idx;
+        }
+        idx++;
+      }
+      return -1;
+    }
+
+    Map<String, Integer> index = columnIndex;
+    if (index == null) {
+      index = buildIndex(columns);
+      columnIndex = index;
+    }
+    Integer idx = index.get(normalize(col));
+    return idx == null ? -1 : idx;
+  }
+
+  private static Map<String, Integer> buildIndex(List<String> columns) {
+    Map<String, Integer> index = new HashMap<>();
     int idx = 0;
     for (String name : columns) {
-      if (col.equalsIgnoreCase(name)) {
-        return idx;
-      }
-      idx++;
+      // Only the first column with the same name is returned from find
+      index.putIfAbsent(normalize(name), idx++);
     }
-    return -1;
+    return index;
   }
 
   /**
@@ -218,9 +291,47 @@ public final class Row implements Serializable {
       setValue(idx, value);
     } else {
       if (index < columns.size() && index < values.size()) {
-        columns.add(index, name);
+        mutableColumns().add(index, name);
         values.add(index, value);
       }
     }
   }
+
+  /**
+   * Returns the list of columns for modification. The list is copied first if it is shared with other rows.
+   * The column index is invalidated, since the caller is going to modify the columns.
+   */
+  private List<String> mutableColumns() {
+    if (columnsShared) {
+      columns = new ArrayList<>(columns);
+      columnsShared = false;
+    }
+    columnIndex = null;
+    return columns;
+  }
+
+  /**
+   * Normalizes a column name such that two names are equal after normalization if and only if they are
+   * equal according to {@link String#equalsIgnoreCase(String)}.
+   */
+  private static String normalize(String name) {
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (Character.toLowerCase(Character.toUpperCase(c)) != c) {
+        // Only allocate a new string if the name is not already normalized
+        char[] chars = name.toCharArray();
+        for (int j = i; j < chars.length; j++) {
+          chars[j] = Character.toLowerCase(Character.toUpperCase(chars[j]));
+        }
+        return new String(chars);
+      }
+    }
+    return name;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    // The columns list can be shared with other rows deserialized from the same stream
+    columnsShared = true;
+  }
 }
@@ -0,0 +1,112 @@
+/*
+ *  Copyright © 2020 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package io.cdap.wrangler.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link Row}.
+ */
+public class RowTest {
+
+  @Test
+  public void testFindWithIndex() {
+    Row row = new Row();
+    for (int i = 0; i < 100; i++) {
+      row.add("Col" + i, i);
+    }
+    // Duplicate column name, find should return the first one
+    row.add("col5", "dup");
+
+    Assert.assertEquals(5, row.find("col5"));
+    Assert.assertEquals(5, row.find("COL5"));
+    Assert.assertEquals(99, row.getValue("cOl99"));
+    Assert.assertEquals(-1, row.find("col100"));
+
+    // Index should be updated with added and removed columns
+    row.add("extra", "e");
+    Assert.assertEquals(101, row.find("EXTRA"));
+    row.remove(0);
+    Assert.assertEquals(4, row.find("col5"));
+    Assert.assertEquals(-1, row.find("col0"));
+    row.setColumn(0, "first");
+    Assert.assertEquals(0, row.find("First"));
+    Assert.assertEquals(-1, row.find("col1"));
+    row.addOrSetAtIndex(0, "inserted", 1);
+    Assert.assertEquals(0, row.find("inserted"));
+    Assert.assertEquals(1, row.find("first"));
+  }
+
+  @Test
+  public void testSharedColumns() {
+    List<String> columns = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      columns.add("c" + i);
+    }
+    Row layout = Row.template(columns);
+    Assert.assertEquals(20, layout.length());
+    Assert.assertEquals(5, layout.find("C5"));
+
+    Row row1 = new Row(layout);
+    Row row2 = new Row(layout);
+    row1.setValue(1, "v1");
+    row2.setValue(1, "v2");
+    Assert.assertEquals("v1", row1.getValue("c1"));
+    Assert.assertEquals("v2", row2.getValue("c1"));
+    Assert.assertNull(layout.getValue("c1"));
+
+    // Modifying columns of one row should not affect the others
+    row1.setColumn(1, "renamed");
+    row2.add("new", "n");
+    layout.remove(0);
+    Assert.assertEquals(1, row1.find("renamed"));
+    Assert.assertEquals(-1, row1.find("c1"));
+    Assert.assertEquals(-1, row1.find("new"));
+    Assert.assertEquals(1, row2.find("c1"));
+    Assert.assertEquals(20, row2.find("new"));
+    Assert.assertEquals(0, layout.find("c1"));
+    Assert.assertEquals(-1, layout.find("renamed"));
+    Assert.assertEquals(20, row1.length());
+    Assert.assertEquals(21, row2.length());
+    Assert.assertEquals(19, layout.length());
+  }
+
+  @Test
+  public void testCopyDoesNotShareMutableColumns() {
+    Row source = new Row();
+    for (int i = 0; i < 20; i++) {
+      source.add("c" + i, i);
+    }
+    Assert.assertEquals(1, source.find("c1"));
+
+    // Copying must leave the source untouched, so that the source can keep updating its columns in place
+    Row copy = new Row(source);
+    source.setColumn(1, "renamed");
+    source.add("new", "n");
+    Assert.assertEquals(1, source.find("renamed"));
+    Assert.assertEquals(20, source.find("new"));
+    Assert.assertEquals(1, copy.find("c1"));
+    Assert.assertEquals(-1, copy.find("renamed"));
+    Assert.assertEquals(-1, copy.find("new"));
+    Assert.assertEquals(20, copy.length());
+    Assert.assertEquals(1, copy.getValue("c1"));
+  }
+}
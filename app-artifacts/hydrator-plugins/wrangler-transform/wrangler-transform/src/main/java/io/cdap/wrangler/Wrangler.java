@@ -66,6 +66,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -112,6 +113,10 @@ public class Wrangler extends Transform<StructuredRecord, StructuredRecord> {
   // Directive registry.
   private DirectiveRegistry registry;
 
+  // Template row holding the columns of the last input schema seen. New rows share the column layout with it.
+  private Schema layoutSchema;
+  private Row layoutRow;
+
   // This is used only for tests, otherwise this is being injected by the ingestion framework.
   public Wrangler(Config config) {
     this.config = config;
@@ -348,15 +353,17 @@ public class Wrangler extends Transform<StructuredRecord, StructuredRecord> {
     List<StructuredRecord> records;
     try {
       // Creates a row as starting point for input to the pipeline.
-      Row row = new Row();
+      Row row;
       if ("*".equalsIgnoreCase(config.field)) {
+        row = new Row(getLayoutRow(input.getSchema()));
+        int idx = 0;
         for (Schema.Field field : input.getSchema().getFields()) {
-          row.add(field.getName(), getValue(input, field.getName()));
+          row.setValue(idx++, getValue(input, field.getName()));
         }
       } else if ("#".equalsIgnoreCase(config.field)) {
-        row.add(input.getSchema().getRecordName(), input);
+        row = new Row(input.getSchema().getRecordName(), input);
       } else {
-        row.add(config.field, getValue(input, config.field));
+        row = new Row(config.field, getValue(input, config.field));
       }
 
       // If pre-condition is set, then evaluate the precondition
@@ -436,6 +443,23 @@ public class Wrangler extends Transform<StructuredRecord, StructuredRecord> {
     }
   }
 
+  /**
+   * Returns a template {@link Row} with all fields of the given schema as columns and {@code null} values.
+   * Rows copied from it share the same column list and column index, hence rows from the same input schema
+   * don't each allocate their own column names or index.
+   */
+  private Row getLayoutRow(Schema schema) {
+    if (layoutRow == null || !schema.equals(layoutSchema)) {
+      List<String> columns = new ArrayList<>();
+      for (Schema.Field field : schema.getFields()) {
+        columns.add(field.getName());
+      }
+      layoutSchema = schema;
+      layoutRow = Row.template(columns);
+    }
+    return layoutRow;
+  }
+
   private Object getValue(StructuredRecord input, String fieldName) {
     Schema fieldSchema = input.getSchema().getField(fieldName).getSchema();
     fieldSchema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
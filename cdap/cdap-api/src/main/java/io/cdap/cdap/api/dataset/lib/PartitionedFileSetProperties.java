@@ -19,7 +19,10 @@ package io.cdap.cdap.api.dataset.lib;
 import io.cdap.cdap.api.annotation.Beta;
 import io.cdap.cdap.api.dataset.table.TableProperties;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -38,6 +41,13 @@ public class PartitionedFileSetProperties extends FileSetProperties {
    */
   public static final String PARTITIONING_FIELD_PREFIX = "partitioning.field.";
 
+  /**
+   * The property name for the list of partitioning field names that have a secondary index. Listing partitions
+   * with a filter that has no condition on the first partitioning field uses the index of a field with a condition.
+   * This property cannot be changed after the dataset is created.
+   */
+  public static final String INDEXED_FIELDS = "partitioning.indexed.fields";
+
   /**
    * Read the partitioning for a PartitionedFileSet from its properties.
    *
@@ -71,6 +81,27 @@ public class PartitionedFileSetProperties extends FileSetProperties {
     return builder.build();
   }
 
+  /**
+   * Read the names of the partitioning fields that have a secondary index from the properties of a
+   * PartitionedFileSet.
+   *
+   * @param properties the dataset properties
+   * @return the indexed field names, or an empty set if no field is indexed
+   */
+  public static Set<String> getIndexedFields(Map<String, String> properties) {
+    String fieldList = properties.get(INDEXED_FIELDS);
+    if (fieldList == null || fieldList.trim().isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<String> fieldNames = new LinkedHashSet<>();
+    for (String fieldName : fieldList.split(",")) {
+      if (!fieldName.trim().isEmpty()) {
+        fieldNames.add(fieldName.trim());
+      }
+    }
+    return fieldNames;
+  }
+
   /**
    * @return a properties builder
    */
@@ -105,6 +136,14 @@ public class PartitionedFileSetProperties extends FileSetProperties {
       return this;
     }
 
+    /**
+     * Sets the partitioning fields that have a secondary index.
+     */
+    public Builder setIndexedFields(String... fieldNames) {
+      add(INDEXED_FIELDS, String.join(",", fieldNames));
+      return this;
+    }
+
     /**
      * Set the table permissions as a map from user name to a permission string.
      */
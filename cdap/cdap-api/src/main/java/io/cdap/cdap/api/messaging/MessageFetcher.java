@@ -20,6 +20,7 @@ import io.cdap.cdap.api.annotation.Beta;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -64,4 +65,29 @@ public interface MessageFetcher {
    */
   CloseableIterator<Message> fetch(String namespace, String topic, int limit,
                                    @Nullable String afterMessageId) throws TopicNotFoundException, IOException;
+
+  /**
+   * Fetches messages from the given topic that were published after a message, identified by the given
+   * message id. If there is no such message, waits for messages to be published up to the given timeout.
+   * The default implementation doesn't wait and is the same as {@link #fetch(String, String, int, String)}.
+   *
+   * @param namespace namespace of the topic
+   * @param topic name of the topic
+   * @param limit maximum number of messages to fetch
+   * @param afterMessageId message id returned from the {@link Message#getId()} method from a prior call to
+   *                       one of the {@code pollMessages} methods. If it is {@code null}, it will fetch from
+   *                       the first available message.
+   * @param timeout maximum time to wait for messages to be published
+   * @param unit unit of the timeout
+   * @return a {@link CloseableIterator} of {@link Message}, which is empty if no message was published
+   *         before the timeout
+   * @throws IllegalArgumentException if the topic name is invalid. A valid id should only contain alphanumeric
+   *                                  characters, {@code _}, or {@code -}.
+   * @throws IOException if there was a failure to communicate with the messaging system
+   * @throws TopicNotFoundException if the give topic doesn't exist
+   */
+  default CloseableIterator<Message> fetch(String namespace, String topic, int limit, @Nullable String afterMessageId,
+                                           long timeout, TimeUnit unit) throws TopicNotFoundException, IOException {
+    return fetch(namespace, topic, limit, afterMessageId);
+  }
 }
@@ -98,11 +98,24 @@ public class RuntimeClientService extends AbstractRetryableScheduledService {
   @Override
   protected long runTask() throws Exception {
     long nextPollDelay = pollTimeMillis;
+    TopicRelayer programStatusRelayer = null;
     for (Map.Entry<String, TopicRelayer> entry : topicRelayers.entrySet()) {
       TopicRelayer topicRelayer = entry.getValue();
+      if (topicRelayer instanceof ProgramStatusTopicRelayer) {
+        programStatusRelayer = topicRelayer;
+        continue;
+      }
       nextPollDelay = Math.min(nextPollDelay, topicRelayer.publishMessages());
     }
 
+    // Instead of sleeping till the next poll of the other topics, wait for program state changes to be published,
+    // so that they are relayed without delay. No more waiting once the program finished, so that the
+    // shutdown logic below can tell whether all the topics have been fetched till the end.
+    if (programStatusRelayer != null) {
+      long waitMillis = programFinishTime > 0 ? 0L : nextPollDelay;
+      nextPollDelay = Math.min(nextPollDelay, programStatusRelayer.publishMessages(waitMillis));
+    }
+
     // If we got the program finished state, determine when to shutdown
     if (programFinishTime > 0) {
       // Gives half the time of the graceful shutdown time to allow empty fetches
@@ -182,18 +195,34 @@ public class RuntimeClientService extends AbstractRetryableScheduledService {
      * @throws IOException if failed to read from TMS or write to RuntimeClient
      */
     long publishMessages() throws TopicNotFoundException, IOException, BadRequestException {
+      return publishMessages(0L);
+    }
+
+    /**
+     * Fetches messages from the {@link MessagingContext} and publish them using {@link RuntimeClient}.
+     * If there is no message, waits for messages to be published up to the given time.
+     *
+     * @param waitMillis maximum time in milliseconds to wait for messages if there is none
+     * @return delay in milliseconds till the next poll, which is the remaining wait time if the fetch returned
+     *         no message before the wait time elapsed
+     * @throws TopicNotFoundException if the TMS topic to fetch from does not exist
+     * @throws IOException if failed to read from TMS or write to RuntimeClient
+     */
+    long publishMessages(long waitMillis) throws TopicNotFoundException, IOException, BadRequestException {
       long currentTimeMillis = System.currentTimeMillis();
 
       // Not too publish more than necessary in one topic.
       // This method might get called more than once even before the next publish time is hit.
-      if (currentTimeMillis < nextPublishTimeMillis) {
+      if (waitMillis <= 0 && currentTimeMillis < nextPublishTimeMillis) {
         return nextPublishTimeMillis - currentTimeMillis;
       }
 
       try (CloseableIterator<Message> iterator = messagingContext.getMessageFetcher().fetch(topicId.getNamespace(),
                                                                                             topicId.getTopic(),
                                                                                             fetchLimit,
-                                                                                            lastMessageId)) {
+                                                                                            lastMessageId,
+                                                                                            waitMillis,
+                                                                                            TimeUnit.MILLISECONDS)) {
         AtomicInteger messageCount = new AtomicInteger();
         if (iterator.hasNext()) {
           String[] messageId = new String[1];
@@ -222,6 +251,11 @@ public class RuntimeClientService extends AbstractRetryableScheduledService {
         if (messageCount.get() >= fetchLimit) {
           return 0L;
         }
+        // If waited for messages, the wait replaces the delay, unless the fetch returned before the wait time
+        // without any message, which happens if waiting is not supported by the messaging service.
+        if (waitMillis > 0) {
+          return messageCount.get() > 0 ? 0L : Math.max(0L, currentTimeMillis + waitMillis - nextPublishTimeMillis);
+        }
         nextPublishTimeMillis += pollTimeMillis;
         return pollTimeMillis;
       }
@@ -49,6 +49,7 @@ import io.cdap.cdap.store.StoreDefinition;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -207,6 +208,7 @@ public class JobQueueTable implements JobQueue {
 
   @Override
   public void markJobsForDeletion(ScheduleId scheduleId, long markedTime) throws IOException {
+    List<Collection<Field<?>>> deleteRows = new ArrayList<>();
     try (CloseableIterator<Job> iterator =
            createJobIterator(jobQueueTable.scan(Range.singleton(getScheduleScanKeys(scheduleId)), Integer.MAX_VALUE))) {
       while (iterator.hasNext()) {
@@ -214,10 +216,11 @@ public class JobQueueTable implements JobQueue {
         // only mark jobs that are not marked yet to avoid chance of conflict with concurrent delete
         if (job.getState() != Job.State.PENDING_LAUNCH && !job.isToBeDeleted()) {
           // jobs that are pending launch will be deleted by the launcher anyway
-          writeJobDelete(job, markedTime);
+          deleteRows.add(getJobDeleteFields(job, markedTime));
         }
       }
     }
+    jobQueueTable.multiUpsert(deleteRows);
   }
 
   @Override
@@ -354,17 +357,19 @@ public class JobQueueTable implements JobQueue {
     Collection<Field<?>> fields = getJobKeys(job.getSchedule().getScheduleId(), job.getGenerationId(),
                                              StoreDefinition.JobQueueStore.RowType.JOB);
     fields.add(Fields.stringField(StoreDefinition.JobQueueStore.JOB, GSON.toJson(job)));
-    jobQueueTable.upsert(fields);
     if (job.isToBeDeleted()) {
-      writeJobDelete(job, job.getDeleteTimeMillis());
+      // write both the job and the delete marker in one call
+      jobQueueTable.multiUpsert(Arrays.asList(fields, getJobDeleteFields(job, job.getDeleteTimeMillis())));
+    } else {
+      jobQueueTable.upsert(fields);
     }
   }
 
-  private void writeJobDelete(Job job, Long deleteTime) throws IOException {
+  private Collection<Field<?>> getJobDeleteFields(Job job, Long deleteTime) {
     Collection<Field<?>> fields = getJobKeys(job.getSchedule().getScheduleId(), job.getGenerationId(),
                                              StoreDefinition.JobQueueStore.RowType.DELETE);
     fields.add(Fields.longField(StoreDefinition.JobQueueStore.DELETE_TIME, deleteTime));
-    jobQueueTable.upsert(fields);
+    return fields;
   }
 
   private void writeJobObsolete(Job job, long obsoleteTime) throws IOException {
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.services;
+
+import io.cdap.cdap.common.utils.ImmutablePair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A batch of messages fetched from TMS, divided into partitions that can be processed independently of each other.
+ * Messages keep the fetch order within a partition. It keeps track of how many messages of each partition have been
+ * processed, so that the message id of the batch can only be advanced up to the point where all the messages
+ * before it, in all partitions, have been processed.
+ *
+ * @param <T> the type of the decoded messages
+ */
+@ThreadSafe
+final class PartitionedMessages<T> {
+
+  private final List<ImmutablePair<String, T>> messages;
+  private final List<List<Integer>> partitions;
+  private final int[] processed;
+
+  /**
+   * Creates an instance by consuming all the given messages.
+   *
+   * @param messages an {@link Iterator} of {@link ImmutablePair}, with the {@link ImmutablePair#first}
+   *                 as the message id, and the {@link ImmutablePair#second} as the decoded message
+   * @param numPartitions number of partitions
+   * @param partitioner a function to compute the partition of a message; the result is taken modulo the
+   *                    number of partitions
+   */
+  PartitionedMessages(Iterator<ImmutablePair<String, T>> messages, int numPartitions,
+                      ToIntFunction<ImmutablePair<String, T>> partitioner) {
+    this.messages = new ArrayList<>();
+    this.partitions = new ArrayList<>(numPartitions);
+    for (int i = 0; i < numPartitions; i++) {
+      partitions.add(new ArrayList<>());
+    }
+    while (messages.hasNext()) {
+      ImmutablePair<String, T> message = messages.next();
+      partitions.get(Math.floorMod(partitioner.applyAsInt(message), numPartitions)).add(this.messages.size());
+      this.messages.add(message);
+    }
+    this.processed = new int[numPartitions];
+  }
+
+  /**
+   * Returns the number of partitions.
+   */
+  int getPartitionCount() {
+    return partitions.size();
+  }
+
+  /**
+   * Returns the messages in the given partition, in the order they were fetched.
+   */
+  List<ImmutablePair<String, T>> getMessages(int partition) {
+    List<ImmutablePair<String, T>> result = new ArrayList<>();
+    for (int index : partitions.get(partition)) {
+      result.add(messages.get(index));
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Marks the first given number of messages in the given partition as processed.
+   */
+  synchronized void setProcessed(int partition, int count) {
+    processed[partition] = Math.max(processed[partition], Math.min(count, partitions.get(partition).size()));
+  }
+
+  /**
+   * Returns the number of messages in the given partition that are not yet processed.
+   */
+  synchronized int getPendingCount(int partition) {
+    return partitions.get(partition).size() - processed[partition];
+  }
+
+  /**
+   * Returns the id of the last message such that it and all messages before it in the batch are processed,
+   * or {@code null} if the first message of the batch is not processed.
+   */
+  @Nullable
+  synchronized String getProcessedMessageId() {
+    // The first message not yet processed is the lowest among the first unprocessed message of each partition
+    int unprocessed = messages.size();
+    for (int i = 0; i < partitions.size(); i++) {
+      List<Integer> partition = partitions.get(i);
+      if (processed[i] < partition.size()) {
+        unprocessed = Math.min(unprocessed, partition.get(processed[i]));
+      }
+    }
+    return unprocessed == 0 ? null : messages.get(unprocessed - 1).getFirst();
+  }
+}
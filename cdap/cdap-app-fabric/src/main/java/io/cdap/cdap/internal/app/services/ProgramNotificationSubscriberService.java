@@ -16,13 +16,17 @@
 
 package io.cdap.cdap.internal.app.services;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.api.schedule.SchedulableProgramType;
 import io.cdap.cdap.api.workflow.ScheduleProgramInfo;
 import io.cdap.cdap.api.workflow.WorkflowActionNode;
@@ -36,6 +40,7 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.common.utils.ProjectInfo;
+import io.cdap.cdap.common.utils.TimeBoundIterator;
 import io.cdap.cdap.internal.app.ApplicationSpecificationAdapter;
 import io.cdap.cdap.internal.app.runtime.BasicArguments;
 import io.cdap.cdap.internal.app.runtime.ProgramOptionConstants;
@@ -47,6 +52,7 @@ import io.cdap.cdap.internal.provision.ProvisionRequest;
 import io.cdap.cdap.internal.provision.ProvisionerNotifier;
 import io.cdap.cdap.internal.provision.ProvisioningService;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.proto.BasicThrowable;
 import io.cdap.cdap.proto.Notification;
 import io.cdap.cdap.proto.ProgramRunClusterStatus;
@@ -63,6 +69,9 @@ import io.cdap.cdap.security.spi.authentication.SecurityRequestContext;
 import io.cdap.cdap.spi.data.StructuredTableContext;
 import io.cdap.cdap.spi.data.TableNotFoundException;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import org.apache.tephra.TxConstants;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,15 +85,31 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
  * Service that receives program status notifications and persists to the store.
  * No transactions should be started in any of the overrided methods since they are already wrapped in a transaction.
+ * <p>
+ * If configured with more than one partition, each batch of notifications is partitioned by application, and
+ * each partition is processed in its own transaction in parallel. Notifications of the same application, which
+ * includes a workflow and the programs running inside it, are always processed in order in the same partition.
+ * Each partition persists the message id it has processed up to, while the message id of the subscriber is only
+ * advanced up to where all partitions have processed. The number of partitions in use is persisted as well, and a
+ * change in the configuration only takes effect after a batch that is fully processed, at which point all the
+ * partitions are at the subscriber message id.
  */
 public class ProgramNotificationSubscriberService extends AbstractNotificationSubscriberService {
 
@@ -93,6 +118,9 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
   private static final Gson GSON = ApplicationSpecificationAdapter.addTypeAdapters(new GsonBuilder()).create();
   private static final Type STRING_STRING_MAP = new TypeToken<Map<String, String>>() { }.getType();
   private static final String CDAP_VERSION = "cdap.version";
+  // Subscriber names for the per partition message id and the number of partitions in use
+  private static final String PARTITION_SUBSCRIBER_PREFIX = "partition.";
+  private static final String PARTITION_COUNT_SUBSCRIBER = "partition.count";
   private static final Map<ProgramRunStatus, String> STATUS_METRICS_NAME = ImmutableMap.of(
     ProgramRunStatus.COMPLETED, Constants.Metrics.Program.PROGRAM_COMPLETED_RUNS,
     ProgramRunStatus.KILLED, Constants.Metrics.Program.PROGRAM_KILLED_RUNS,
@@ -111,7 +139,13 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
   private final ProgramStateWriter programStateWriter;
   private final Queue<Runnable> tasks;
   private final MetricsCollectionService metricsCollectionService;
+  private final int txTimeoutSeconds;
+  private final int numPartitions;
+  private final ConcurrentMap<Integer, MetricsContext> partitionMetricsContexts;
   private Set<ProgramCompletionNotifier> programCompletionNotifiers;
+  private ExecutorService partitionExecutor;
+  // The number of partitions in use, which is 0 until loaded from the store
+  private int activePartitions;
 
   @Inject
   ProgramNotificationSubscriberService(MessagingService messagingService, CConfiguration cConf,
@@ -129,8 +163,12 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     this.programLifecycleService = programLifecycleService;
     this.provisioningService = provisioningService;
     this.programStateWriter = programStateWriter;
-    this.tasks = new LinkedList<>();
+    // Tasks are added from multiple threads when processing partitions in parallel
+    this.tasks = new ConcurrentLinkedQueue<>();
     this.metricsCollectionService = metricsCollectionService;
+    this.txTimeoutSeconds = cConf.getInt(TxConstants.Manager.CFG_TX_TIMEOUT);
+    this.numPartitions = Math.max(1, cConf.getInt(Constants.AppFabric.STATUS_EVENT_NUM_PARTITIONS, 1));
+    this.partitionMetricsContexts = new ConcurrentHashMap<>();
     this.programCompletionNotifiers = Collections.emptySet();
   }
 
@@ -139,6 +177,14 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     this.programCompletionNotifiers = notifiers;
   }
 
+  @Override
+  protected void doShutdown() throws Exception {
+    if (partitionExecutor != null) {
+      partitionExecutor.shutdownNow();
+    }
+    super.doShutdown();
+  }
+
   @Nullable
   @Override
   protected String loadMessageId(StructuredTableContext context) throws IOException, TableNotFoundException {
@@ -169,6 +215,178 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     this.tasks.addAll(tasks);
   }
 
+  @Nullable
+  @Override
+  protected String processMessages(Iterator<ImmutablePair<String, Notification>> messages) throws Exception {
+    if (activePartitions == 0) {
+      activePartitions = TransactionRunners.run(getTransactionRunner(), context -> {
+        String count = getAppMetadataStore(context).retrieveSubscriberState(getTopicId().getTopic(),
+                                                                            PARTITION_COUNT_SUBSCRIBER);
+        // Without the count persisted, messages were processed without partitioning
+        return count == null ? 1 : Integer.parseInt(count);
+      });
+    }
+    if (activePartitions == 1 && numPartitions == 1) {
+      return super.processMessages(messages);
+    }
+
+    // Keep using the partitions in use, since messages after the subscriber message id are partitioned with it
+    PartitionedMessages<Notification> batch = new PartitionedMessages<>(messages, activePartitions,
+                                                                        this::getPartitionKey);
+    ExecutorService executor = getPartitionExecutor();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < batch.getPartitionCount(); i++) {
+      int partition = i;
+      if (batch.getPendingCount(partition) > 0) {
+        futures.add(executor.submit(() -> {
+          processPartition(batch, partition);
+          return null;
+        }));
+      }
+    }
+
+    // Wait for all partitions, so that the message id is advanced for the partitions that succeeded
+    Exception failure = null;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        if (failure == null) {
+          failure = cause;
+        } else {
+          failure.addSuppressed(cause);
+        }
+      }
+    }
+
+    // Messages after this message id that were processed by some of the partitions will be fetched again,
+    // and skipped by those partitions based on the message id they persisted.
+    String messageId = batch.getProcessedMessageId();
+    // Once every message in the batch is processed, no partition is ahead of the message id,
+    // hence the configured number of partitions can be used from the next batch.
+    boolean changePartitions = failure == null && activePartitions != numPartitions
+      && getPendingCount(batch) == 0;
+    if (messageId != null) {
+      TransactionRunners.run(getTransactionRunner(), context -> {
+        storeMessageId(context, messageId);
+        if (changePartitions) {
+          getAppMetadataStore(context).persistSubscriberState(getTopicId().getTopic(), PARTITION_COUNT_SUBSCRIBER,
+                                                              String.valueOf(numPartitions));
+        }
+      }, Exception.class);
+      if (changePartitions) {
+        LOG.info("Changed the number of partitions for processing program status events from {} to {}",
+                 activePartitions, numPartitions);
+        activePartitions = numPartitions;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return messageId;
+  }
+
+  /**
+   * Processes the messages of one partition of a batch in a transaction.
+   *
+   * @param batch the batch of messages
+   * @param partition the partition to process
+   * @throws Exception if failed to process the messages
+   */
+  private void processPartition(PartitionedMessages<Notification> batch, int partition) throws Exception {
+    List<ImmutablePair<String, Notification>> messages = batch.getMessages(partition);
+    String subscriber = PARTITION_SUBSCRIBER_PREFIX + partition;
+    // 90% of the tx timeout is .9 * 1000 * txTimeoutSeconds = 900 * txTimeoutSeconds
+    long timeBoundMillis = 900L * txTimeoutSeconds;
+
+    int processed = TransactionRunners.run(getTransactionRunner(), context -> {
+      AppMetadataStore appMetadataStore = getAppMetadataStore(context);
+
+      // Skip the messages that this partition has processed already in a previous batch
+      String lastMessageId = appMetadataStore.retrieveSubscriberState(getTopicId().getTopic(), subscriber);
+      int skipped = 0;
+      while (lastMessageId != null && skipped < messages.size()
+        && messages.get(skipped).getFirst().compareTo(lastMessageId) <= 0) {
+        skipped++;
+      }
+
+      int[] consumed = new int[1];
+      processMessages(context, Iterators.transform(
+        new TimeBoundIterator<>(messages.subList(skipped, messages.size()).iterator(), timeBoundMillis), message -> {
+          consumed[0]++;
+          return message;
+        }));
+
+      if (consumed[0] > 0) {
+        appMetadataStore.persistSubscriberState(getTopicId().getTopic(), subscriber,
+                                                messages.get(skipped + consumed[0] - 1).getFirst());
+      }
+      return skipped + consumed[0];
+    }, Exception.class);
+
+    batch.setProcessed(partition, processed);
+
+    MetricsContext metricsContext = partitionMetricsContexts.computeIfAbsent(
+      partition, p -> metricsCollectionService.getContext(ImmutableMap.<String, String>builder()
+        .put(Constants.Metrics.Tag.COMPONENT, Constants.Service.MASTER_SERVICES)
+        .put(Constants.Metrics.Tag.INSTANCE_ID, "0")
+        .put(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace())
+        .put(Constants.Metrics.Tag.TOPIC, getTopicId().getTopic())
+        .put(Constants.Metrics.Tag.CONSUMER, getServiceName())
+        .put(Constants.Metrics.Tag.PARTITION, String.valueOf(p))
+        .build()));
+    metricsContext.gauge("partition.process.pending", batch.getPendingCount(partition));
+    if (processed > 0) {
+      long publishTime = new MessageId(Bytes.fromHexString(messages.get(processed - 1).getFirst()))
+        .getPublishTimestamp();
+      metricsContext.gauge("partition.process.delay.ms", System.currentTimeMillis() - publishTime);
+    }
+  }
+
+  /**
+   * Returns the number of messages in the given batch that are not yet processed.
+   */
+  private int getPendingCount(PartitionedMessages<Notification> batch) {
+    int count = 0;
+    for (int i = 0; i < batch.getPartitionCount(); i++) {
+      count += batch.getPendingCount(i);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the {@link ExecutorService} for processing partitions, creating it if needed.
+   * It is only called from the subscriber thread.
+   */
+  private ExecutorService getPartitionExecutor() {
+    if (partitionExecutor == null) {
+      partitionExecutor = Executors.newFixedThreadPool(Math.max(activePartitions, numPartitions),
+                                                       Threads.createDaemonThreadFactory("program-status-%d"));
+    }
+    return partitionExecutor;
+  }
+
+  /**
+   * Returns the key for partitioning the given message. Messages are partitioned by application, since the
+   * processing of a workflow notification also updates the programs running inside the workflow.
+   */
+  @VisibleForTesting
+  int getPartitionKey(ImmutablePair<String, Notification> message) {
+    String programRun = message.getSecond().getProperties().get(ProgramOptionConstants.PROGRAM_RUN_ID);
+    if (programRun == null) {
+      return 0;
+    }
+    try {
+      ApplicationId appId = GSON.fromJson(programRun, ProgramRunId.class).getParent().getParent();
+      // Only use strings for the hash, so that the same message always goes to the same partition across restarts
+      return Objects.hash(appId.getNamespace(), appId.getApplication(), appId.getVersion());
+    } catch (RuntimeException e) {
+      // The message will be ignored when processed
+      return 0;
+    }
+  }
+
   @Override
   protected void postProcess() {
     Runnable task = tasks.poll();
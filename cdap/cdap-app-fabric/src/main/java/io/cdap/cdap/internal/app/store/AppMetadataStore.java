@@ -80,7 +80,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Predicate;
@@ -1042,14 +1041,26 @@ public class AppMetadataStore {
    * @param limit count at most that many runs, stop if there are more.
    */
   public int countActiveRuns(@Nullable Integer limit) throws IOException {
-    AtomicInteger count = new AtomicInteger(0);
-    try (CloseableIterator<RunRecordDetail> iterator = queryProgramRuns(
-      Range.singleton(getRunRecordNamespacePrefix(TYPE_RUN_RECORD_ACTIVE, null)),
-      key -> !NamespaceId.SYSTEM.getNamespace().equals(key.getString(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD)),
-      null, limit != null ? limit : Integer.MAX_VALUE)) {
-      iterator.forEachRemaining(m -> count.getAndIncrement());
-    }
-    return count.get();
+    StructuredTable table = getRunRecordsTable();
+    Range range = Range.singleton(getRunRecordNamespacePrefix(TYPE_RUN_RECORD_ACTIVE, null));
+    if (limit == null) {
+      // Count all active runs, excluding the ones in the system namespace
+      long count = table.count(range)
+        - table.count(Range.singleton(getRunRecordNamespacePrefix(TYPE_RUN_RECORD_ACTIVE, NamespaceId.SYSTEM)));
+      return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    // With a limit, scan the row keys and stop as soon as the limit is reached
+    int count = 0;
+    try (CloseableIterator<StructuredRow> iterator = table.scan(range, Integer.MAX_VALUE)) {
+      while (count < limit && iterator.hasNext()) {
+        String namespace = iterator.next().getString(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
+        if (!NamespaceId.SYSTEM.getNamespace().equals(namespace)) {
+          count++;
+        }
+      }
+    }
+    return count;
   }
 
   /**
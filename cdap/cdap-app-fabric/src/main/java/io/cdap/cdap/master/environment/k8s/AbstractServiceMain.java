@@ -33,6 +33,7 @@ import io.cdap.cdap.common.conf.SConfiguration;
 import io.cdap.cdap.common.guice.ConfigModule;
 import io.cdap.cdap.common.guice.IOModule;
 import io.cdap.cdap.common.guice.SupplierProviderBridge;
+import io.cdap.cdap.common.internal.remote.NettyRemoteTransport;
 import io.cdap.cdap.common.logging.LoggingContext;
 import io.cdap.cdap.common.logging.LoggingContextAccessor;
 import io.cdap.cdap.common.logging.common.UncaughtExceptionHandler;
@@ -175,7 +176,9 @@ public abstract class AbstractServiceMain<T extends EnvironmentOptions> extends
     Optional.ofNullable(getLoggingContext(options)).ifPresent(LoggingContextAccessor::setLoggingContext);
 
     // Add Services
-    services.add(injector.getInstance(MetricsCollectionService.class));
+    MetricsCollectionService metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
+    services.add(metricsCollectionService);
+    NettyRemoteTransport.setMetricsCollectionService(metricsCollectionService);
     addServices(injector, services, closeableResources, masterEnv, masterEnvContext, options);
     initializeDataSourceConnection(cConf);
 
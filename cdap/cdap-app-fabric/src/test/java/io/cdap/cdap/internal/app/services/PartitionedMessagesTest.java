@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.services;
+
+import io.cdap.cdap.common.utils.ImmutablePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for {@link PartitionedMessages}.
+ */
+public class PartitionedMessagesTest {
+
+  @Test
+  public void testPartitionOrder() {
+    PartitionedMessages<String> batch = createBatch("a", "b", "a", "c", "b", "a");
+
+    Assert.assertEquals(3, batch.getPartitionCount());
+    Assert.assertEquals(Arrays.asList("0", "2", "5"), getIds(batch.getMessages(0)));
+    Assert.assertEquals(Arrays.asList("1", "4"), getIds(batch.getMessages(1)));
+    Assert.assertEquals(Arrays.asList("3"), getIds(batch.getMessages(2)));
+  }
+
+  @Test
+  public void testProcessedMessageId() {
+    PartitionedMessages<String> batch = createBatch("a", "b", "a", "c", "b", "a");
+    Assert.assertNull(batch.getProcessedMessageId());
+
+    // Processing other partitions doesn't advance beyond the first unprocessed message of the first partition
+    batch.setProcessed(1, 2);
+    batch.setProcessed(2, 1);
+    Assert.assertNull(batch.getProcessedMessageId());
+    Assert.assertEquals(0, batch.getPendingCount(1));
+    Assert.assertEquals(3, batch.getPendingCount(0));
+
+    batch.setProcessed(0, 1);
+    Assert.assertEquals("1", batch.getProcessedMessageId());
+    batch.setProcessed(0, 2);
+    Assert.assertEquals("4", batch.getProcessedMessageId());
+    batch.setProcessed(0, 3);
+    Assert.assertEquals("5", batch.getProcessedMessageId());
+
+    // Processed count never goes backward
+    batch.setProcessed(0, 1);
+    Assert.assertEquals("5", batch.getProcessedMessageId());
+  }
+
+  @Test
+  public void testEmptyPartitions() {
+    PartitionedMessages<String> batch = createBatch("a", "a");
+    Assert.assertTrue(batch.getMessages(1).isEmpty());
+    Assert.assertEquals(0, batch.getPendingCount(2));
+
+    batch.setProcessed(0, 2);
+    Assert.assertEquals("1", batch.getProcessedMessageId());
+  }
+
+  /**
+   * Creates a batch with three partitions, with message ids being the index of the message, and
+   * each message partitioned by its value.
+   */
+  private PartitionedMessages<String> createBatch(String... values) {
+    List<ImmutablePair<String, String>> messages = new ArrayList<>();
+    for (int i = 0; i < values.length; i++) {
+      messages.add(new ImmutablePair<>(String.valueOf(i), values[i]));
+    }
+    return new PartitionedMessages<>(messages.iterator(), 3, message -> message.getSecond().charAt(0) - 'a');
+  }
+
+  private List<String> getIds(List<ImmutablePair<String, String>> messages) {
+    return messages.stream().map(ImmutablePair::getFirst).collect(Collectors.toList());
+  }
+}
@@ -18,14 +18,17 @@ package io.cdap.cdap.internal.app.services;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
 import com.google.inject.Injector;
 import io.cdap.cdap.api.app.ApplicationSpecification;
 import io.cdap.cdap.api.artifact.ArtifactId;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.metrics.MetricDataQuery;
 import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.workflow.NodeStatus;
 import io.cdap.cdap.app.program.ProgramDescriptor;
 import io.cdap.cdap.app.runtime.ProgramOptions;
@@ -34,6 +37,7 @@ import io.cdap.cdap.common.app.RunIds;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.id.Id;
+import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.internal.AppFabricTestHelper;
 import io.cdap.cdap.internal.app.DefaultApplicationSpecification;
@@ -45,6 +49,11 @@ import io.cdap.cdap.internal.app.runtime.workflow.WorkflowStateWriter;
 import io.cdap.cdap.internal.app.store.AppMetadataStore;
 import io.cdap.cdap.internal.app.store.RunRecordDetail;
 import io.cdap.cdap.internal.profile.ProfileService;
+import io.cdap.cdap.internal.provision.ProvisionerNotifier;
+import io.cdap.cdap.internal.provision.ProvisioningService;
+import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.proto.Notification;
 import io.cdap.cdap.proto.ProgramRunStatus;
 import io.cdap.cdap.proto.ProgramType;
 import io.cdap.cdap.proto.WorkflowNodeStateDetail;
@@ -54,6 +63,7 @@ import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.proto.id.ProgramRunId;
 import io.cdap.cdap.proto.profile.Profile;
 import io.cdap.cdap.reporting.ProgramHeartbeatTable;
+import io.cdap.cdap.spi.data.StructuredTableContext;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
 import org.apache.twill.api.RunId;
@@ -68,8 +78,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -79,6 +93,8 @@ import java.util.concurrent.TimeoutException;
  */
 public class ProgramNotificationSubscriberServiceTest {
   private static final String SYSTEM_METRIC_PREFIX = "system.";
+  private static final Gson GSON = new Gson();
+  private static final long MESSAGE_PUBLISH_TIME = System.currentTimeMillis();
 
   private static Injector injector;
   private static CConfiguration cConf;
@@ -368,6 +384,80 @@ public class ProgramNotificationSubscriberServiceTest {
     heartbeatDatasetStatusCheck(stopTime, ProgramRunStatus.COMPLETED);
   }
 
+  @Test
+  public void testPartitionedProcessing() throws Exception {
+    CConfiguration partitionedConf = CConfiguration.copy(cConf);
+    // Use a different topic name so that the subscriber state doesn't interfere with the running service
+    partitionedConf.set(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC, "testPartitionedProcessing");
+    partitionedConf.setInt(Constants.AppFabric.STATUS_EVENT_NUM_PARTITIONS, 3);
+    RecordingSubscriberService service = new RecordingSubscriberService(partitionedConf);
+
+    // Find two applications that are processed in different partitions
+    ProgramId programA = NamespaceId.DEFAULT.app("app0").service("s");
+    ProgramId programB = null;
+    for (int i = 1; programB == null; i++) {
+      ProgramId programId = NamespaceId.DEFAULT.app("app" + i).service("s");
+      if (Math.floorMod(service.getPartitionKey(createMessage(0, programId)), 3)
+        != Math.floorMod(service.getPartitionKey(createMessage(0, programA)), 3)) {
+        programB = programId;
+      }
+    }
+
+    try {
+      // Without the number of partitions persisted, the first batch is processed as a single partition
+      // and the configured partitions are used after it
+      Assert.assertEquals(createMessageId(2), service.processMessages(Arrays.asList(
+        createMessage(1, programA), createMessage(2, programB)).iterator()));
+      Assert.assertEquals(Arrays.asList(createMessageId(1), createMessageId(2)), service.processed);
+      Assert.assertEquals("3", getSubscriberState("partition.count"));
+
+      // Fail the processing of the first message of B. The messages of A are still processed,
+      // but the subscriber message id only advances up to the first message of B.
+      service.processed.clear();
+      service.failures.add(createMessageId(4));
+      try {
+        service.processMessages(Arrays.asList(createMessage(3, programA), createMessage(4, programB),
+                                              createMessage(5, programA), createMessage(6, programB)).iterator());
+        Assert.fail("Expected failure in processing messages");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      Assert.assertEquals(Arrays.asList(createMessageId(3), createMessageId(5)), service.processed);
+      Assert.assertEquals(createMessageId(3), getSubscriberState(""));
+    } finally {
+      service.doShutdown();
+    }
+
+    // Replay the messages after the subscriber message id with the number of partitions changed.
+    // The partitions in use are kept until the batch is fully processed, so that the processed message of A
+    // is skipped.
+    partitionedConf.setInt(Constants.AppFabric.STATUS_EVENT_NUM_PARTITIONS, 2);
+    service = new RecordingSubscriberService(partitionedConf);
+    try {
+      Assert.assertEquals(createMessageId(7), service.processMessages(Arrays.asList(
+        createMessage(4, programB), createMessage(5, programA), createMessage(6, programB),
+        createMessage(7, programA)).iterator()));
+      Assert.assertEquals(ImmutableSet.of(createMessageId(4), createMessageId(6), createMessageId(7)),
+                          new HashSet<>(service.processed));
+      Assert.assertEquals(3, service.processed.size());
+      Assert.assertEquals(createMessageId(7), getSubscriberState(""));
+      Assert.assertEquals("2", getSubscriberState("partition.count"));
+    } finally {
+      service.doShutdown();
+    }
+
+    // The metrics of each partition are stored and queried separately
+    MetricStore metricStore = injector.getInstance(MetricStore.class);
+    Map<String, String> tags = ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.MASTER_SERVICES,
+      Constants.Metrics.Tag.TOPIC, "testPartitionedProcessing");
+    MetricDataQuery query = new MetricDataQuery(0, 0, Integer.MAX_VALUE, "system.partition.process.pending",
+                                                AggregationFunction.LATEST, tags,
+                                                Collections.singletonList(Constants.Metrics.Tag.PARTITION));
+    Tasks.waitFor(true, () -> metricStore.query(query).size() > 1, 30, TimeUnit.SECONDS);
+  }
+
   private void checkProgramStatus(ArtifactId artifactId, ProgramRunId runId, ProgramRunStatus expectedStatus)
     throws InterruptedException, ExecutionException, TimeoutException {
     Tasks.waitFor(expectedStatus, () -> TransactionRunners.run(transactionRunner, context -> {
@@ -419,4 +509,60 @@ public class ProgramNotificationSubscriberServiceTest {
     }
     return timeValues.get(0).getValue();
   }
+
+  private String getSubscriberState(String subscriber) {
+    return TransactionRunners.run(transactionRunner, context -> {
+      return AppMetadataStore.create(context).retrieveSubscriberState("testPartitionedProcessing", subscriber);
+    });
+  }
+
+  /**
+   * Creates a message with the id generated by {@link #createMessageId(int)} for a notification of the given program.
+   */
+  private ImmutablePair<String, Notification> createMessage(int sequenceId, ProgramId programId) {
+    ProgramRunId programRunId = programId.run(RunIds.generate());
+    return new ImmutablePair<>(createMessageId(sequenceId), new Notification(
+      Notification.Type.PROGRAM_STATUS,
+      Collections.singletonMap(ProgramOptionConstants.PROGRAM_RUN_ID, GSON.toJson(programRunId))));
+  }
+
+  /**
+   * Creates a message id in hex, which is ordered by the given sequence id.
+   */
+  private String createMessageId(int sequenceId) {
+    byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+    MessageId.putRawId(MESSAGE_PUBLISH_TIME, (short) sequenceId, 0L, (short) 0, rawId, 0);
+    return Bytes.toHexString(rawId);
+  }
+
+  /**
+   * A {@link ProgramNotificationSubscriberService} that records the ids of the messages processed, instead of
+   * processing them, and fails on the given message ids once.
+   */
+  private static final class RecordingSubscriberService extends ProgramNotificationSubscriberService {
+
+    private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failures = ConcurrentHashMap.newKeySet();
+
+    RecordingSubscriberService(CConfiguration cConf) {
+      super(injector.getInstance(MessagingService.class), cConf,
+            injector.getInstance(MetricsCollectionService.class), injector.getInstance(ProvisionerNotifier.class),
+            injector.getInstance(ProgramLifecycleService.class), injector.getInstance(ProvisioningService.class),
+            programStateWriter, transactionRunner);
+    }
+
+    @Override
+    protected void processMessages(StructuredTableContext structuredTableContext,
+                                   Iterator<ImmutablePair<String, Notification>> messages) {
+      List<String> ids = new ArrayList<>();
+      while (messages.hasNext()) {
+        String id = messages.next().getFirst();
+        if (failures.remove(id)) {
+          throw new IllegalStateException("Failed to process message " + id);
+        }
+        ids.add(id);
+      }
+      processed.addAll(ids);
+    }
+  }
 }
@@ -29,4 +29,18 @@ public interface LookupProvider {
    * @return a {@link Lookup} instance
    */
   <T> Lookup<T> provide(String table, Map<String, String> arguments);
+
+  /**
+   * Provides a {@link Lookup} for the given table, using the dataset properties and cache settings from the
+   * given {@link LookupTableConfig}. Implementations may ignore the cache settings, in which case
+   * this is the same as calling {@link #provide(String, Map)} with the dataset properties.
+   *
+   * @param table the name of the {@link Lookup} table
+   * @param config the configuration of the {@link Lookup} table
+   * @param <T> the type of value returned by the {@link Lookup}
+   * @return a {@link Lookup} instance
+   */
+  default <T> Lookup<T> provide(String table, LookupTableConfig config) {
+    return provide(table, config.getDatasetProperties());
+  }
 }
@@ -48,7 +48,6 @@ import io.cdap.cdap.etl.common.BasicArguments;
 import io.cdap.cdap.etl.common.Constants;
 import io.cdap.cdap.etl.common.DefaultAutoJoinerContext;
 import io.cdap.cdap.etl.common.DefaultMacroEvaluator;
-import io.cdap.cdap.etl.common.DefaultStageMetrics;
 import io.cdap.cdap.etl.common.NoErrorEmitter;
 import io.cdap.cdap.etl.common.NoopStageStatisticsCollector;
 import io.cdap.cdap.etl.common.PipelineRuntime;
@@ -150,7 +149,7 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
   protected <IN, OUT> TrackedTransform<IN, OUT> getTransformation(StageSpec stageSpec) throws Exception {
     String stageName = stageSpec.getName();
     String pluginType = stageSpec.getPluginType();
-    StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    StageMetrics stageMetrics = createStageMetrics(stageName);
     TaskAttemptContext taskAttemptContext = (TaskAttemptContext) taskContext.getHadoopContext();
     StageStatisticsCollector collector = collectStageStatistics ?
       new MapReduceStageStatisticsCollector(stageName, taskAttemptContext) : new NoopStageStatisticsCollector();
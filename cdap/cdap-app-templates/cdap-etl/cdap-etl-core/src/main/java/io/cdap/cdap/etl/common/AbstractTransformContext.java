@@ -18,12 +18,17 @@ package io.cdap.cdap.etl.common;
 
 import io.cdap.cdap.etl.api.Lookup;
 import io.cdap.cdap.etl.api.LookupProvider;
+import io.cdap.cdap.etl.api.LookupTableConfig;
 import io.cdap.cdap.etl.api.TransformContext;
 import io.cdap.cdap.etl.api.lineage.field.FieldOperation;
 import io.cdap.cdap.etl.proto.v2.spec.StageSpec;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Base implementation of {@link TransformContext} for common functionality.
@@ -33,10 +38,13 @@ import java.util.Map;
 public abstract class AbstractTransformContext extends AbstractStageContext implements TransformContext {
 
   private final LookupProvider lookup;
+  // Caching lookups by table and config, so that the cache lives as long as the context instead of each provide call
+  private final ConcurrentMap<CachingLookupKey, Lookup<?>> cachingLookups;
 
   protected AbstractTransformContext(PipelineRuntime pipelineRuntime, StageSpec stageSpec, LookupProvider lookup) {
     super(pipelineRuntime, stageSpec);
     this.lookup = lookup;
+    this.cachingLookups = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -44,8 +52,57 @@ public abstract class AbstractTransformContext extends AbstractStageContext impl
     return lookup.provide(table, arguments);
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Lookup<T> provide(String table, LookupTableConfig config) {
+    if (!CachingLookup.isCacheEnabled(config)) {
+      return provide(table, config.getDatasetProperties());
+    }
+    return (Lookup<T>) cachingLookups.computeIfAbsent(
+      new CachingLookupKey(table, config),
+      k -> new CachingLookup<>(provide(table, config.getDatasetProperties()), config.getCacheConfig(), getMetrics()));
+  }
+
   @Override
   public void record(List<FieldOperation> fieldOperations) {
     throw new UnsupportedOperationException("Lineage recording is not supported.");
   }
+
+  /**
+   * Key of a caching lookup, which is the table name together with the runtime dataset properties and
+   * the cache settings that the lookup is created with.
+   */
+  private static final class CachingLookupKey {
+    private final String table;
+    private final Map<String, String> datasetProperties;
+    private final long expirySeconds;
+    private final int maxSize;
+
+    CachingLookupKey(String table, LookupTableConfig config) {
+      this.table = table;
+      this.datasetProperties = new HashMap<>(config.getDatasetProperties());
+      this.expirySeconds = config.getCacheConfig().getExpirySeconds();
+      this.maxSize = config.getCacheConfig().getMaxSize();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CachingLookupKey other = (CachingLookupKey) o;
+      return expirySeconds == other.expirySeconds
+        && maxSize == other.maxSize
+        && table.equals(other.table)
+        && datasetProperties.equals(other.datasetProperties);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(table, datasetProperties, expirySeconds, maxSize);
+    }
+  }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.common;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+
+import java.util.Arrays;
+
+/**
+ * A {@link StageMetrics} that accumulates stage counts locally and only emits them to the delegating
+ * {@link StageMetrics} when the number of pending count calls reaches a threshold, when a time interval has passed
+ * since the last flush, or when {@link #flush()} is called. This avoids going through the metrics system for every
+ * single record. Gauges and pipeline metrics are emitted to the delegate immediately.
+ *
+ * This class is not thread safe. It is meant to be used by a single task, which must call {@link #flush()}
+ * when it completes.
+ */
+public class BufferedStageMetrics implements StageMetrics {
+
+  private static final int DEFAULT_MAX_PENDING = 10000;
+  private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000L;
+
+  private final StageMetrics delegate;
+  private final int maxPending;
+  private final long flushIntervalMillis;
+
+  // Only a few different metric names are counted by a stage, hence using arrays instead of a map
+  private String[] names;
+  private long[] counts;
+  private int size;
+  private int pending;
+  private long lastFlushMillis;
+
+  public BufferedStageMetrics(StageMetrics delegate) {
+    this(delegate, DEFAULT_MAX_PENDING, DEFAULT_FLUSH_INTERVAL_MILLIS);
+  }
+
+  public BufferedStageMetrics(StageMetrics delegate, int maxPending, long flushIntervalMillis) {
+    this.delegate = delegate;
+    this.maxPending = maxPending;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.names = new String[4];
+    this.counts = new long[4];
+    this.lastFlushMillis = System.currentTimeMillis();
+  }
+
+  @Override
+  public void count(String metricName, int delta) {
+    counts[indexOf(metricName)] += delta;
+    if (++pending >= maxPending || System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis) {
+      flush();
+    }
+  }
+
+  @Override
+  public void gauge(String metricName, long value) {
+    delegate.gauge(metricName, value);
+  }
+
+  @Override
+  public void pipelineCount(String metricName, int delta) {
+    delegate.pipelineCount(metricName, delta);
+  }
+
+  @Override
+  public void pipelineGauge(String metricName, long value) {
+    delegate.pipelineGauge(metricName, value);
+  }
+
+  /**
+   * Emits all the pending counts to the delegating {@link StageMetrics}.
+   */
+  public void flush() {
+    for (int i = 0; i < size; i++) {
+      long count = counts[i];
+      counts[i] = 0L;
+      while (count != 0L) {
+        int delta = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, count));
+        delegate.count(names[i], delta);
+        count -= delta;
+      }
+    }
+    pending = 0;
+    lastFlushMillis = System.currentTimeMillis();
+  }
+
+  private int indexOf(String metricName) {
+    for (int i = 0; i < size; i++) {
+      // Metric names are usually constants, hence the reference check first
+      if (names[i] == metricName || names[i].equals(metricName)) {
+        return i;
+      }
+    }
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      counts = Arrays.copyOf(counts, size * 2);
+    }
+    names[size] = metricName;
+    return size++;
+  }
+}
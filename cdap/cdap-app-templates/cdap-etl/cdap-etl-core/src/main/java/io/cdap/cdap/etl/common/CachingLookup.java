@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.cdap.etl.api.CacheConfig;
+import io.cdap.cdap.etl.api.Lookup;
+import io.cdap.cdap.etl.api.LookupTableConfig;
+import io.cdap.cdap.etl.api.StageMetrics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Lookup} that caches the results of another {@link Lookup} in a bounded cache with expiry after write,
+ * as configured by a {@link CacheConfig}. Absent values are cached as well. A batch lookup only fetches the keys
+ * that are not in the cache, with a single batch lookup on the delegate. Cache hits, misses and evictions are
+ * emitted as stage metrics.
+ *
+ * @param <T> the type of object that will be returned for a lookup
+ */
+public class CachingLookup<T> implements Lookup<T> {
+
+  private final Lookup<T> delegate;
+  private final StageMetrics metrics;
+  private final Cache<String, Optional<T>> cache;
+
+  /**
+   * Returns {@code true} if the given config enables caching with a positive maximum size.
+   */
+  public static boolean isCacheEnabled(LookupTableConfig config) {
+    CacheConfig cacheConfig = config.getCacheConfig();
+    return config.isCacheEnabled() && cacheConfig != null && cacheConfig.getMaxSize() > 0;
+  }
+
+  public CachingLookup(Lookup<T> delegate, CacheConfig cacheConfig, StageMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(cacheConfig.getMaxSize());
+    if (cacheConfig.getExpirySeconds() > 0) {
+      builder.expireAfterWrite(cacheConfig.getExpirySeconds(), TimeUnit.SECONDS);
+    }
+    this.cache = builder
+      .removalListener(notification -> {
+        if (notification.wasEvicted()) {
+          metrics.count(Constants.Metrics.LOOKUP_CACHE_EVICTIONS, 1);
+        }
+      })
+      .build();
+  }
+
+  @Override
+  public T lookup(String key) {
+    Optional<T> value = cache.getIfPresent(key);
+    if (value != null) {
+      metrics.count(Constants.Metrics.LOOKUP_CACHE_HITS, 1);
+      return value.orElse(null);
+    }
+
+    metrics.count(Constants.Metrics.LOOKUP_CACHE_MISSES, 1);
+    T result = delegate.lookup(key);
+    cache.put(key, Optional.ofNullable(result));
+    return result;
+  }
+
+  @Override
+  public Map<String, T> lookup(String... keys) {
+    return lookup(new HashSet<>(Arrays.asList(keys)));
+  }
+
+  @Override
+  public Map<String, T> lookup(Set<String> keys) {
+    Map<String, T> result = new HashMap<>();
+    Set<String> misses = new HashSet<>();
+    for (String key : keys) {
+      Optional<T> value = cache.getIfPresent(key);
+      if (value == null) {
+        misses.add(key);
+      } else {
+        result.put(key, value.orElse(null));
+      }
+    }
+
+    if (!result.isEmpty()) {
+      metrics.count(Constants.Metrics.LOOKUP_CACHE_HITS, result.size());
+    }
+    if (misses.isEmpty()) {
+      return result;
+    }
+
+    metrics.count(Constants.Metrics.LOOKUP_CACHE_MISSES, misses.size());
+    Map<String, T> fetched = delegate.lookup(misses);
+    for (String key : misses) {
+      T value = fetched.get(key);
+      cache.put(key, Optional.ofNullable(value));
+      result.put(key, value);
+    }
+    return result;
+  }
+}
@@ -33,6 +33,8 @@ public final class Constants {
   public static final String SPARK_PIPELINE_AUTOCACHE_ENABLE_FLAG = "spark.cdap.pipeline.autocache.enable";
   public static final String SPARK_PIPELINE_CACHING_STORAGE_LEVEL = "spark.cdap.pipeline.caching.storage.level";
   public static final String CONSOLIDATE_STAGES = "spark.cdap.pipeline.consolidate.stages";
+  // Prefix for registering schemas with the Kryo StructuredRecord serializer of the CDAP Spark runtime
+  public static final String SPARK_KRYO_SCHEMA_REGISTRY_PREFIX = "spark.cdap.kryo.schema.registry.schema.";
   public static final String DEFAULT_CACHING_STORAGE_LEVEL = "DISK_ONLY";
 
   private Constants() {
@@ -66,6 +68,9 @@ public final class Constants {
     public static final String RECORDS_ALERT = "records.alert";
     public static final String AGG_GROUPS = "aggregator.groups";
     public static final String JOIN_KEYS = "joiner.keys";
+    public static final String LOOKUP_CACHE_HITS = "lookup.cache.hits";
+    public static final String LOOKUP_CACHE_MISSES = "lookup.cache.misses";
+    public static final String LOOKUP_CACHE_EVICTIONS = "lookup.cache.evictions";
   }
 
   /**
@@ -21,6 +21,7 @@ import io.cdap.cdap.etl.api.InvalidEntry;
 import io.cdap.cdap.etl.api.MultiOutputEmitter;
 import io.cdap.cdap.etl.api.StageMetrics;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -33,6 +34,7 @@ public class TrackedMultiOutputEmitter<E> implements MultiOutputEmitter<E> {
   private final StageMetrics stageMetrics;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private final Map<String, String> portMetricNames;
 
   public TrackedMultiOutputEmitter(MultiOutputEmitter<E> delegate, StageMetrics stageMetrics, DataTracer dataTracer,
                                    StageStatisticsCollector collector) {
@@ -40,11 +42,12 @@ public class TrackedMultiOutputEmitter<E> implements MultiOutputEmitter<E> {
     this.stageMetrics = stageMetrics;
     this.dataTracer = dataTracer;
     this.collector = collector;
+    this.portMetricNames = new HashMap<>();
   }
 
   @Override
   public void emit(String port, Object value) {
-    String metricName = Constants.Metrics.RECORDS_OUT + "." + port;
+    String metricName = portMetricNames.computeIfAbsent(port, p -> Constants.Metrics.RECORDS_OUT + "." + p);
     stageMetrics.count(metricName, 1);
     collector.incrementOutputRecordCount();
     if (dataTracer.isEnabled()) {
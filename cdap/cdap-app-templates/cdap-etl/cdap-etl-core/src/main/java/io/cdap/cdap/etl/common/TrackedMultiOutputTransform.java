@@ -36,6 +36,8 @@ public class TrackedMultiOutputTransform<IN, ERROR> implements MultiOutputTransf
   private final StageMetrics metrics;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private MultiOutputEmitter<ERROR> lastEmitter;
+  private TrackedMultiOutputEmitter<ERROR> trackedEmitter;
 
   public TrackedMultiOutputTransform(MultiOutputTransformation<IN, ERROR> transform, StageMetrics metrics,
                                      DataTracer dataTracer) {
@@ -54,13 +56,24 @@ public class TrackedMultiOutputTransform<IN, ERROR> implements MultiOutputTransf
   public void transform(IN input, MultiOutputEmitter<ERROR> emitter) throws Exception {
     metrics.count(Constants.Metrics.RECORDS_IN, 1);
     collector.incrementInputRecordCount();
-    transform.transform(input, new TrackedMultiOutputEmitter<>(emitter, metrics, dataTracer, collector));
+    // The same emitter is usually passed in for every record, hence reuse the wrapping emitter
+    if (emitter != lastEmitter) {
+      trackedEmitter = new TrackedMultiOutputEmitter<>(emitter, metrics, dataTracer, collector);
+      lastEmitter = emitter;
+    }
+    transform.transform(input, trackedEmitter);
   }
 
   @Override
   public void destroy() {
-    if (transform instanceof Destroyable) {
-      ((Destroyable) transform).destroy();
+    try {
+      if (transform instanceof Destroyable) {
+        ((Destroyable) transform).destroy();
+      }
+    } finally {
+      if (metrics instanceof BufferedStageMetrics) {
+        ((BufferedStageMetrics) metrics).flush();
+      }
     }
   }
 }
@@ -38,6 +38,9 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
   private final String metricOutName;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private final boolean countInputRecords;
+  private Emitter<OUT> lastEmitter;
+  private TrackedEmitter<OUT> trackedEmitter;
 
   public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics, DataTracer dataTracer) {
     this(transform, metrics, dataTracer, new NoopStageStatisticsCollector());
@@ -61,24 +64,39 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
     this.metricOutName = metricOutName;
     this.dataTracer = dataTracer;
     this.collector = collector;
+    this.countInputRecords = Constants.Metrics.RECORDS_IN.equals(metricInName);
   }
 
   @Override
   public void transform(IN input, Emitter<OUT> emitter) throws Exception {
     if (metricInName != null) {
       metrics.count(metricInName, 1);
-      if (metricInName.equals(Constants.Metrics.RECORDS_IN)) {
+      if (countInputRecords) {
         collector.incrementInputRecordCount();
       }
     }
-    transform.transform(input, metricOutName == null ? emitter :
-      new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer, collector));
+    if (metricOutName == null) {
+      transform.transform(input, emitter);
+      return;
+    }
+    // The same emitter is usually passed in for every record, hence reuse the wrapping emitter
+    if (emitter != lastEmitter) {
+      trackedEmitter = new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer, collector);
+      lastEmitter = emitter;
+    }
+    transform.transform(input, trackedEmitter);
   }
 
   @Override
   public void destroy() {
-    if (transform instanceof Destroyable) {
-      ((Destroyable) transform).destroy();
+    try {
+      if (transform instanceof Destroyable) {
+        ((Destroyable) transform).destroy();
+      }
+    } finally {
+      if (metrics instanceof BufferedStageMetrics) {
+        ((BufferedStageMetrics) metrics).flush();
+      }
     }
   }
 }
@@ -29,6 +29,7 @@ import io.cdap.cdap.etl.api.TransformContext;
 import io.cdap.cdap.etl.api.Transformation;
 import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.batch.PipelinePluginInstantiator;
+import io.cdap.cdap.etl.common.BufferedStageMetrics;
 import io.cdap.cdap.etl.common.Constants;
 import io.cdap.cdap.etl.common.DefaultStageMetrics;
 import io.cdap.cdap.etl.common.NoopStageStatisticsCollector;
@@ -77,6 +78,14 @@ public abstract class TransformExecutorFactory<T> {
 
   protected abstract PipeStage getSinkPipeStage(StageSpec stageSpec) throws Exception;
 
+  /**
+   * Creates the {@link StageMetrics} used for counting the records going through the given stage.
+   * By default, the counts are buffered and flushed when the {@link PipeTransformExecutor} is destroyed.
+   */
+  protected StageMetrics createStageMetrics(String stageName) {
+    return new BufferedStageMetrics(new DefaultStageMetrics(metrics, stageName));
+  }
+
   private <IN, ERROR> TrackedMultiOutputTransform<IN, ERROR> getMultiOutputTransform(StageSpec stageSpec)
     throws Exception {
     String stageName = stageSpec.getName();
@@ -85,7 +94,7 @@ public abstract class TransformExecutorFactory<T> {
     TransformContext transformContext = createRuntimeContext(stageSpec);
     splitterTransform.initialize(transformContext);
 
-    StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    StageMetrics stageMetrics = createStageMetrics(stageName);
     StageStatisticsCollector collector = collectStageStatistics ?
       getStatisticsCollector(stageName) : NoopStageStatisticsCollector.INSTANCE;
     return new TrackedMultiOutputTransform<>(splitterTransform, stageMetrics, getDataTracer(stageName), collector);
@@ -96,7 +105,7 @@ public abstract class TransformExecutorFactory<T> {
 
     String stageName = stageSpec.getName();
     String pluginType = stageSpec.getPluginType();
-    StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    StageMetrics stageMetrics = createStageMetrics(stageName);
     StageStatisticsCollector collector = collectStageStatistics ?
       getStatisticsCollector(stageName) : NoopStageStatisticsCollector.INSTANCE;
 
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.common;
+
+import io.cdap.cdap.app.preview.DataTracerFactory;
+import io.cdap.cdap.etl.api.Emitter;
+import io.cdap.cdap.etl.api.InvalidEntry;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.Transform;
+import io.cdap.cdap.internal.app.preview.NoopDataTracerFactory;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Unit tests for {@link BufferedStageMetrics}.
+ */
+public class BufferedStageMetricsTest {
+
+  private final DataTracerFactory dataTracerFactory = new NoopDataTracerFactory();
+
+  @Test
+  public void testFlush() {
+    MockMetrics mockMetrics = new MockMetrics();
+    BufferedStageMetrics metrics = new BufferedStageMetrics(new DefaultStageMetrics(mockMetrics, "stage"),
+                                                            5, TimeUnit.HOURS.toMillis(1));
+    for (int i = 0; i < 4; i++) {
+      metrics.count(Constants.Metrics.RECORDS_IN, 1);
+    }
+    metrics.count(Constants.Metrics.RECORDS_OUT, 2);
+    metrics.gauge("gauge", 10L);
+
+    // The fifth count call triggers the flush, while gauges are not buffered
+    Assert.assertEquals(4, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_IN));
+    Assert.assertEquals(2, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_OUT));
+    Assert.assertEquals(10L, mockMetrics.getGauge("stage.gauge"));
+
+    metrics.count(Constants.Metrics.RECORDS_IN, 1);
+    metrics.count(Constants.Metrics.RECORDS_ERROR, 3);
+    Assert.assertEquals(4, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_IN));
+    Assert.assertEquals(0, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_ERROR));
+
+    metrics.flush();
+    Assert.assertEquals(5, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_IN));
+    Assert.assertEquals(2, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_OUT));
+    Assert.assertEquals(3, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_ERROR));
+  }
+
+  @Test
+  public void testFlushInterval() {
+    MockMetrics mockMetrics = new MockMetrics();
+    BufferedStageMetrics metrics = new BufferedStageMetrics(new DefaultStageMetrics(mockMetrics, "stage"),
+                                                            Integer.MAX_VALUE, 0L);
+    metrics.count(Constants.Metrics.RECORDS_IN, 1);
+    Assert.assertEquals(1, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_IN));
+    metrics.count(Constants.Metrics.RECORDS_IN, 1);
+    Assert.assertEquals(2, mockMetrics.getCount("stage." + Constants.Metrics.RECORDS_IN));
+  }
+
+  @Test
+  public void testFlushOnDestroy() throws Exception {
+    MockMetrics mockMetrics = new MockMetrics();
+    Chain chain = new Chain(1, stage -> new BufferedStageMetrics(new DefaultStageMetrics(mockMetrics, stage),
+                                                                 100, TimeUnit.HOURS.toMillis(1)),
+                            new CountingEmitter<>());
+    for (int i = 0; i < 10; i++) {
+      chain.transform(i);
+    }
+    Assert.assertEquals(0, mockMetrics.getCount("stage0." + Constants.Metrics.RECORDS_IN));
+
+    chain.destroy();
+    Assert.assertEquals(10, mockMetrics.getCount("stage0." + Constants.Metrics.RECORDS_IN));
+    Assert.assertEquals(10, mockMetrics.getCount("stage0." + Constants.Metrics.RECORDS_OUT));
+  }
+
+  @Ignore
+  @Test
+  public void testSpeed() throws Exception {
+    int stages = 10;
+    int records = 10000000;
+
+    for (boolean buffered : new boolean[] { false, true, false, true }) {
+      MockMetrics mockMetrics = new MockMetrics();
+      CountingEmitter<Integer> sink = new CountingEmitter<>();
+      Function<String, StageMetrics> metricsFactory = stage -> buffered
+        ? new BufferedStageMetrics(new DefaultStageMetrics(mockMetrics, stage))
+        : new DefaultStageMetrics(mockMetrics, stage);
+      Chain chain = new Chain(stages, metricsFactory, sink);
+
+      long startTime = System.nanoTime();
+      for (int i = 0; i < records; i++) {
+        chain.transform(i);
+      }
+      chain.destroy();
+      long elapsed = System.nanoTime() - startTime;
+
+      Assert.assertEquals(records, sink.getCount());
+      System.out.printf("Buffered: %s, %d records through %d stages, time: %d ms%n",
+                        buffered, records, stages, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+  }
+
+  /**
+   * A chain of {@link TrackedTransform} of identity transforms, with the last one emitting to a sink.
+   */
+  private final class Chain {
+    private final List<TrackedTransform<Integer, Integer>> transforms;
+    private final Emitter<Integer> firstEmitter;
+
+    Chain(int stages, Function<String, StageMetrics> metricsFactory, Emitter<Integer> sink) {
+      this.transforms = new ArrayList<>();
+      for (int i = 0; i < stages; i++) {
+        String stage = "stage" + i;
+        transforms.add(new TrackedTransform<>(new IdentityTransform(), metricsFactory.apply(stage),
+                                              dataTracerFactory.getDataTracer(null, stage)));
+      }
+
+      Emitter<Integer> emitter = sink;
+      for (int i = stages - 1; i > 0; i--) {
+        emitter = new ChainEmitter(transforms.get(i), emitter);
+      }
+      this.firstEmitter = emitter;
+    }
+
+    void transform(int input) throws Exception {
+      transforms.get(0).transform(input, firstEmitter);
+    }
+
+    void destroy() {
+      transforms.forEach(TrackedTransform::destroy);
+    }
+  }
+
+  /**
+   * A {@link Transform} that emits the input as is.
+   */
+  private static final class IdentityTransform extends Transform<Integer, Integer> {
+    @Override
+    public void transform(Integer input, Emitter<Integer> emitter) {
+      emitter.emit(input);
+    }
+  }
+
+  /**
+   * An {@link Emitter} that passes emitted records to the next transform.
+   */
+  private static final class ChainEmitter implements Emitter<Integer> {
+    private final TrackedTransform<Integer, Integer> next;
+    private final Emitter<Integer> nextEmitter;
+
+    private ChainEmitter(TrackedTransform<Integer, Integer> next, Emitter<Integer> nextEmitter) {
+      this.next = next;
+      this.nextEmitter = nextEmitter;
+    }
+
+    @Override
+    public void emit(Integer value) {
+      try {
+        next.transform(value, nextEmitter);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      nextEmitter.emitAlert(payload);
+    }
+
+    @Override
+    public void emitError(InvalidEntry<Integer> invalidEntry) {
+      nextEmitter.emitError(invalidEntry);
+    }
+  }
+
+  /**
+   * An {@link Emitter} that only counts the records emitted.
+   */
+  private static final class CountingEmitter<T> implements Emitter<T> {
+    private long count;
+
+    long getCount() {
+      return count;
+    }
+
+    @Override
+    public void emit(T value) {
+      count++;
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      // no-op
+    }
+
+    @Override
+    public void emitError(InvalidEntry<T> invalidEntry) {
+      // no-op
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.common;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.etl.api.CacheConfig;
+import io.cdap.cdap.etl.api.Lookup;
+import io.cdap.cdap.etl.api.LookupTableConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link CachingLookup}.
+ */
+public class CachingLookupTest {
+
+  @Test
+  public void testSingleLookup() {
+    MockMetrics metrics = new MockMetrics();
+    RecordingLookup delegate = new RecordingLookup(ImmutableMap.of("k1", "v1", "k2", "v2"));
+    Lookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(0, 10),
+                                                new DefaultStageMetrics(metrics, "stage"));
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertNull(lookup.lookup("k3"));
+    Assert.assertNull(lookup.lookup("k3"));
+
+    // Each key, including the absent one, should only be fetched once
+    Assert.assertEquals(Arrays.asList(ImmutableSet.of("k1"), ImmutableSet.of("k3")), delegate.getRequests());
+    Assert.assertEquals(2, metrics.getCount("stage." + Constants.Metrics.LOOKUP_CACHE_HITS));
+    Assert.assertEquals(2, metrics.getCount("stage." + Constants.Metrics.LOOKUP_CACHE_MISSES));
+  }
+
+  @Test
+  public void testBatchLookup() {
+    MockMetrics metrics = new MockMetrics();
+    RecordingLookup delegate = new RecordingLookup(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"));
+    Lookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(0, 10),
+                                                new DefaultStageMetrics(metrics, "stage"));
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Map<String, String> result = lookup.lookup(ImmutableSet.of("k1", "k2", "k3", "k4"));
+    Map<String, String> expected = new HashMap<>(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"));
+    expected.put("k4", null);
+    Assert.assertEquals(expected, result);
+
+    // Misses should be fetched with one batch lookup
+    Assert.assertEquals(Arrays.asList(ImmutableSet.of("k1"), ImmutableSet.of("k2", "k3", "k4")),
+                        delegate.getRequests());
+
+    // All keys are cached now
+    Assert.assertEquals(expected, lookup.lookup("k1", "k2", "k3", "k4"));
+    Assert.assertEquals(2, delegate.getRequests().size());
+    Assert.assertEquals(5, metrics.getCount("stage." + Constants.Metrics.LOOKUP_CACHE_HITS));
+    Assert.assertEquals(4, metrics.getCount("stage." + Constants.Metrics.LOOKUP_CACHE_MISSES));
+  }
+
+  @Test
+  public void testEviction() {
+    MockMetrics metrics = new MockMetrics();
+    RecordingLookup delegate = new RecordingLookup(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"));
+    Lookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(0, 1),
+                                                new DefaultStageMetrics(metrics, "stage"));
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals("v2", lookup.lookup("k2"));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals(3, delegate.getRequests().size());
+    Assert.assertEquals(2, metrics.getCount("stage." + Constants.Metrics.LOOKUP_CACHE_EVICTIONS));
+  }
+
+  @Test
+  public void testCacheEnabled() {
+    Assert.assertFalse(CachingLookup.isCacheEnabled(new LookupTableConfig(LookupTableConfig.TableType.DATASET)));
+    Assert.assertFalse(CachingLookup.isCacheEnabled(
+      new LookupTableConfig(LookupTableConfig.TableType.DATASET, new CacheConfig(), ImmutableMap.of(), true)));
+    Assert.assertTrue(CachingLookup.isCacheEnabled(
+      new LookupTableConfig(LookupTableConfig.TableType.DATASET, new CacheConfig(60, 100), ImmutableMap.of(), true)));
+  }
+
+  /**
+   * A {@link Lookup} backed by a {@link Map} that records the keys of each lookup call.
+   */
+  private static final class RecordingLookup implements Lookup<String> {
+
+    private final Map<String, String> data;
+    private final List<Set<String>> requests = new ArrayList<>();
+
+    RecordingLookup(Map<String, String> data) {
+      this.data = data;
+    }
+
+    List<Set<String>> getRequests() {
+      return requests;
+    }
+
+    @Override
+    public String lookup(String key) {
+      requests.add(ImmutableSet.of(key));
+      return data.get(key);
+    }
+
+    @Override
+    public Map<String, String> lookup(String... keys) {
+      return lookup(new HashSet<>(Arrays.asList(keys)));
+    }
+
+    @Override
+    public Map<String, String> lookup(Set<String> keys) {
+      requests.add(ImmutableSet.copyOf(keys));
+      Map<String, String> result = new HashMap<>();
+      for (String key : keys) {
+        result.put(key, data.get(key));
+      }
+      return result;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import com.google.common.base.Function;
 import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.api.macro.MacroEvaluator;
 import io.cdap.cdap.api.preview.DataTracer;
+import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.api.Transformation;
 import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.batch.PipelinePluginInstantiator;
@@ -34,6 +35,7 @@ import io.cdap.cdap.etl.exec.TransformExecutorFactory;
 import io.cdap.cdap.etl.exec.UnwrapPipeStage;
 import io.cdap.cdap.etl.proto.v2.spec.StageSpec;
 import io.cdap.cdap.etl.spark.batch.SparkBatchRuntimeContext;
+import io.cdap.cdap.etl.spark.function.TaskStageMetrics;
 import scala.Tuple2;
 
 import java.util.Map;
@@ -72,6 +74,12 @@ public class SparkTransformExecutorFactory<T> extends TransformExecutorFactory<T
     return collectors.getOrDefault(stageName, NoopStageStatisticsCollector.INSTANCE);
   }
 
+  @Override
+  protected StageMetrics createStageMetrics(String stageName) {
+    // executors are not destroyed when the Spark task completes, hence flush on task completion instead
+    return TaskStageMetrics.create(metrics, stageName);
+  }
+
   @Override
   protected BatchRuntimeContext createRuntimeContext(StageSpec stageSpec) {
     return new SparkBatchRuntimeContext(pipelineRuntime, stageSpec);
@@ -37,14 +37,17 @@ import io.cdap.cdap.etl.common.PipelineRuntime;
 import io.cdap.cdap.etl.common.SetMultimapCodec;
 import io.cdap.cdap.etl.common.submit.CompositeFinisher;
 import io.cdap.cdap.etl.common.submit.Finisher;
+import io.cdap.cdap.etl.proto.v2.spec.StageSpec;
 import io.cdap.cdap.internal.io.SchemaTypeAdapter;
 import org.apache.spark.SparkConf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Configures and sets up runs of {@link BatchSparkPipelineDriver}.
@@ -111,6 +114,12 @@ public class ETLSpark extends AbstractSpark {
       sparkConf.set(pipelineProperty.getKey(), pipelineProperty.getValue());
     }
 
+    // Register the stage schemas, so that in the Kryo schema registry mode, records of those schemas
+    // are serialized with only the schema hash
+    for (Schema schema : getStageSchemas(phaseSpec)) {
+      sparkConf.set(Constants.SPARK_KRYO_SCHEMA_REGISTRY_PREFIX + schema.getSchemaHash(), schema.toString());
+    }
+
     PipelineRuntime pipelineRuntime = new PipelineRuntime(context);
     MacroEvaluator evaluator = new DefaultMacroEvaluator(pipelineRuntime.getArguments(),
                                                          context.getLogicalStartTime(), context,
@@ -120,6 +129,23 @@ public class ETLSpark extends AbstractSpark {
     finisher = new CompositeFinisher(finishers);
   }
 
+  /**
+   * Returns all the known input, output and error schemas of the stages in the given phase.
+   */
+  private Set<Schema> getStageSchemas(BatchPhaseSpec phaseSpec) {
+    Set<Schema> schemas = new HashSet<>();
+    for (StageSpec stageSpec : phaseSpec.getPhase()) {
+      schemas.addAll(stageSpec.getInputSchemas().values());
+      schemas.add(stageSpec.getOutputSchema());
+      schemas.add(stageSpec.getErrorSchema());
+      for (StageSpec.Port port : stageSpec.getOutputPorts().values()) {
+        schemas.add(port.getSchema());
+      }
+    }
+    schemas.remove(null);
+    return schemas;
+  }
+
   @Override
   @TransactionPolicy(TransactionControl.EXPLICIT)
   public void destroy() {
@@ -19,7 +19,6 @@ package io.cdap.cdap.etl.spark.function;
 import io.cdap.cdap.api.metrics.Metrics;
 import io.cdap.cdap.api.preview.DataTracer;
 import io.cdap.cdap.etl.api.StageMetrics;
-import io.cdap.cdap.etl.common.DefaultStageMetrics;
 import org.apache.spark.api.java.function.Function;
 
 import javax.annotation.Nullable;
@@ -47,7 +46,7 @@ public class CountingFunction<T> implements Function<T, T> {
   @Override
   public T call(T in) throws Exception {
     if (stageMetrics == null) {
-      stageMetrics = new DefaultStageMetrics(metrics, stageName);
+      stageMetrics = TaskStageMetrics.create(metrics, stageName);
     }
     // we only want to trace the data for records.out
     if (dataTracer != null && dataTracer.isEnabled()) {
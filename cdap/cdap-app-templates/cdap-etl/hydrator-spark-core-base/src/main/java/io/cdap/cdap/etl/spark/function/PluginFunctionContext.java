@@ -38,7 +38,6 @@ import io.cdap.cdap.etl.common.BasicArguments;
 import io.cdap.cdap.etl.common.Constants;
 import io.cdap.cdap.etl.common.DefaultAutoJoinerContext;
 import io.cdap.cdap.etl.common.DefaultMacroEvaluator;
-import io.cdap.cdap.etl.common.DefaultStageMetrics;
 import io.cdap.cdap.etl.common.PipelineRuntime;
 import io.cdap.cdap.etl.common.StageStatisticsCollector;
 import io.cdap.cdap.etl.common.plugin.JoinerBridge;
@@ -120,7 +119,7 @@ public class PluginFunctionContext implements Serializable {
   }
 
   public StageMetrics createStageMetrics() {
-    return new DefaultStageMetrics(metrics, stageSpec.getName());
+    return TaskStageMetrics.create(metrics, stageSpec.getName());
   }
 
   public StageStatisticsCollector getStageStatisticsCollector() {
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.spark.function;
+
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.common.BufferedStageMetrics;
+import io.cdap.cdap.etl.common.DefaultStageMetrics;
+import org.apache.spark.TaskContext;
+import org.apache.spark.util.TaskCompletionListener;
+
+/**
+ * Creates {@link StageMetrics} for functions executed in Spark tasks.
+ */
+public final class TaskStageMetrics {
+
+  /**
+   * Creates a {@link StageMetrics} for the given stage. When called from a Spark task, counts are buffered
+   * in the task and flushed periodically and when the task completes, which is after the whole partition is processed.
+   *
+   * @param metrics the {@link Metrics} to emit to
+   * @param stageName the name of the stage
+   * @return a {@link StageMetrics}
+   */
+  public static StageMetrics create(Metrics metrics, String stageName) {
+    StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    TaskContext taskContext = TaskContext.get();
+    if (taskContext == null) {
+      return stageMetrics;
+    }
+
+    BufferedStageMetrics bufferedMetrics = new BufferedStageMetrics(stageMetrics);
+    taskContext.addTaskCompletionListener(new TaskCompletionListener() {
+      @Override
+      public void onTaskCompletion(TaskContext context) {
+        bufferedMetrics.flush();
+      }
+    });
+    return bufferedMetrics;
+  }
+
+  private TaskStageMetrics() {
+    // no-op
+  }
+}
@@ -53,6 +53,10 @@ public final class Constants {
   public static final String COLLECT_APP_CONTAINER_LOG_LEVEL = "master.collect.app.containers.log.level";
   public static final String HTTP_CLIENT_CONNECTION_TIMEOUT_MS = "http.client.connection.timeout.ms";
   public static final String HTTP_CLIENT_READ_TIMEOUT_MS = "http.client.read.timeout.ms";
+  public static final String HTTP_CLIENT_TRANSPORT = "http.client.transport";
+  public static final String HTTP_CLIENT_POOL_MAX_CONNECTIONS = "http.client.pool.max.connections.per.endpoint";
+  public static final String HTTP_CLIENT_POOL_IDLE_TIMEOUT_SECS = "http.client.pool.idle.timeout.secs";
+  public static final String HTTP_CLIENT_POOL_ACQUIRE_TIMEOUT_MS = "http.client.pool.acquire.timeout.ms";
   /** Uniquely identifies a CDAP instance */
   public static final String INSTANCE_NAME = "instance.name";
   // Environment variable name for spark home
@@ -195,6 +199,7 @@ public final class Constants {
     public static final String APP_SCHEDULER_QUEUE = "apps.scheduler.queue";
     public static final String STATUS_EVENT_FETCH_SIZE = "app.program.status.event.fetch.size";
     public static final String STATUS_EVENT_POLL_DELAY_MILLIS = "app.program.status.event.poll.delay.millis";
+    public static final String STATUS_EVENT_NUM_PARTITIONS = "app.program.status.event.num.partitions";
     public static final String MAPREDUCE_JOB_CLIENT_CONNECT_MAX_RETRIES = "mapreduce.jobclient.connect.max.retries";
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String MAPREDUCE_STATUS_REPORT_INTERVAL_SECONDS = "mapreduce.status.report.interval.seconds";
@@ -469,6 +474,7 @@ public final class Constants {
     public static final String DATA_STORAGE_SQL_PASSWORD = "data.storage.sql.jdbc.password";
     public static final String DATA_STORAGE_SQL_PROPERTY_PREFIX = "data.storage.sql.jdbc.property.";
     public static final String DATA_STORAGE_SQL_CONNECTION_SIZE = "data.storage.sql.jdbc.connection.pool.size";
+    public static final String DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE = "data.storage.sql.jdbc.statement.cache.size";
 
     // used for Guice named bindings
     public static final String TABLE_TYPE = "table.type";
@@ -617,6 +623,13 @@ public final class Constants {
     public static final long PROCESS_INTERVAL_MILLIS = 60000;
     public static final String RETENTION_SECONDS_SUFFIX = ".seconds";
 
+    public static final String CUBE_ROLLUP_ENABLED = "metrics.cube.rollup.enabled";
+    public static final String CUBE_ROLLUP_MAX_DELAY_MS = "metrics.cube.rollup.max.delay.ms";
+    public static final String CUBE_ROLLUP_MAX_BUFFER_SIZE = "metrics.cube.rollup.max.buffer.size";
+
+    public static final String QUERY_CACHE_MAX_DATA_POINTS = "metrics.query.cache.max.data.points";
+    public static final String QUERY_CACHE_SETTLE_SECONDS = "metrics.query.cache.settle.seconds";
+
     public static final String TOPIC_PREFIX = "metrics.topic.prefix";
 
     public static final String ADMIN_TOPIC = "metrics.admin.topic";
@@ -648,6 +661,10 @@ public final class Constants {
     public static final Map<String, String> STORAGE_METRICS_TAGS = ImmutableMap.of(
       Tag.COMPONENT, "system.storage",
       Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace());
+    // metrics context for the pooled remote client transport
+    public static final Map<String, String> REMOTE_CLIENT_METRICS_TAGS = ImmutableMap.of(
+      Tag.COMPONENT, "remote.client",
+      Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace());
 
     public static final String PROGRAM_METRICS_ENABLED = "app.program.metrics.enabled";
     public static final String STRUCTURED_TABLE_TIME_METRICS_ENABLED = "structured.table.time.metrics.enabled";
@@ -706,6 +723,7 @@ public final class Constants {
       // For TMS
       public static final String TABLE = "tbl";
       public static final String TOPIC = "tpc";
+      public static final String PARTITION = "ptn";
 
       // For profile
       public static final String PROFILE = "pro";
@@ -738,6 +756,10 @@ public final class Constants {
         public static final String OP_COUNT = "dataset.store.ops";
         public static final String WRITE_COUNT = "dataset.store.writes";
         public static final String WRITE_BYTES = "dataset.store.bytes";
+        public static final String READ_CACHE_HITS = "dataset.store.read.cache.hits";
+        public static final String READ_CACHE_MISSES = "dataset.store.read.cache.misses";
+        public static final String BUFFER_BYTES = "dataset.store.buffer.bytes";
+        public static final String BUFFER_SPILLS = "dataset.store.buffer.spills";
       }
 
       /**
@@ -782,6 +804,18 @@ public final class Constants {
       public static final String ERROR_CONNECTIONS = "structured.table.connection.error";
     }
 
+    /**
+     * Remote client metrics
+     */
+    public static final class RemoteClient {
+      public static final String OPEN_CONNECTIONS = "remote.client.connection.open";
+      public static final String ACTIVE_CONNECTIONS = "remote.client.connection.active";
+      public static final String REQUEST_COUNT = "remote.client.request.count";
+      public static final String REQUEST_LATENCY_MS = "remote.client.request.latency.ms";
+      // Prefix of the request count of each latency histogram bucket, followed by the bucket upper bound
+      public static final String REQUEST_LATENCY_BUCKET_PREFIX = "remote.client.request.latency.bucket.";
+    }
+
     /**
      * Metadata storage metrics
      */
@@ -1340,8 +1374,11 @@ public final class Constants {
 
     public static final String LOCAL_DATA_DIR = "messaging.local.data.dir";
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
+    public static final String LOCAL_DATA_DURABILITY = "messaging.local.data.durability";
+    public static final String LOCAL_DATA_ASYNC_SYNC_INTERVAL_MS = "messaging.local.data.async.sync.interval.ms";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_TYPE = "messaging.cache.type";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1361,6 +1398,8 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_MAX_FETCH_WAIT_MILLIS = "messaging.http.server.max.fetch.wait.millis";
+    public static final String HTTP_SERVER_FETCH_WAIT_THREADS = "messaging.http.server.fetch.wait.threads";
     public static final String HTTP_COMPRESS_PAYLOAD = "messaging.http.compress.payload";
 
     // Distributed mode related configurations
@@ -21,6 +21,7 @@ import io.cdap.cdap.common.conf.CConfigurationUtil;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.conf.SConfiguration;
 import io.cdap.cdap.common.http.DefaultHttpRequestConfig;
+import io.cdap.cdap.common.internal.remote.NettyRemoteTransport;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.slf4j.Logger;
@@ -80,6 +81,8 @@ public final class ConfigModule extends AbstractModule {
       LOG.warn("Configuration for {} not found. Falling back to default value of {}",
                Constants.HTTP_CLIENT_READ_TIMEOUT_MS, DefaultHttpRequestConfig.DEFAULT_TIMEOUT);
     }
+
+    NettyRemoteTransport.setConfiguration(cConf);
   }
 
   @Override
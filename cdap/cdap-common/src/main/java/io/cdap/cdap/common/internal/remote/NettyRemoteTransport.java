@@ -0,0 +1,552 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.common.internal.remote;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpRequestConfig;
+import io.cdap.common.http.HttpRequests;
+import io.cdap.common.http.HttpResponse;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPoolMap;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import org.apache.twill.common.Threads;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.Nullable;
+
+/**
+ * A HTTP transport for {@link RemoteClient} that sends requests through a shared Netty client, with a pool of
+ * keep-alive connections per endpoint. Each pooled connection carries one request at a time, and concurrent requests
+ * to the same endpoint are spread over up to {@link Constants#HTTP_CLIENT_POOL_MAX_CONNECTIONS} connections.
+ * Requests that cannot get a connection wait in a queue until one is released, for up to
+ * {@link Constants#HTTP_CLIENT_POOL_ACQUIRE_TIMEOUT_MS}.
+ *
+ * Requests are executed with {@link HttpRequests#execute(HttpRequest, HttpRequestConfig)}, using a
+ * {@link HttpURLConnection} that sends the request over a pooled connection, so that the {@link HttpResponse}
+ * is created the same way as for the default transport.
+ *
+ * Only plain HTTP is supported. HTTPS requests are always executed with {@code HttpURLConnection}.
+ */
+public final class NettyRemoteTransport implements Closeable {
+
+  public static final String TRANSPORT_NETTY = "netty";
+
+  /**
+   * Upper bounds in milliseconds of the latency histogram buckets. The last bucket holds all larger latencies.
+   */
+  public static final long[] LATENCY_BUCKETS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+  private static final AttributeKey<CompletableFuture<Response>> RESPONSE_KEY =
+    AttributeKey.valueOf("remote.client.response");
+
+  private static volatile NettyRemoteTransport instance;
+  private static volatile CConfiguration cConf;
+  private static volatile boolean enabled;
+  private static volatile MetricsContext metricsContext = new NoopMetricsContext();
+
+  private final EventLoopGroup eventLoopGroup;
+  private final ChannelPoolMap<InetSocketAddress, FixedChannelPool> pools;
+  private final URLStreamHandler urlStreamHandler;
+  private final ConcurrentMap<String, AtomicLongArray> latencies;
+  private final ConcurrentMap<String, MetricsContext> serviceMetricsContexts;
+  private final AtomicInteger openConnections;
+  private final AtomicInteger activeConnections;
+  private final int acquireTimeoutMillis;
+
+  /**
+   * Returns the shared instance, which is created on first use with the configuration set by
+   * {@link #setConfiguration(CConfiguration)}, or with the default configuration if none was set.
+   */
+  public static NettyRemoteTransport getInstance() {
+    NettyRemoteTransport transport = instance;
+    if (transport != null) {
+      return transport;
+    }
+    synchronized (NettyRemoteTransport.class) {
+      if (instance == null) {
+        CConfiguration conf = cConf == null ? CConfiguration.create() : cConf;
+        instance = new NettyRemoteTransport(conf.getInt(Constants.HTTP_CLIENT_POOL_MAX_CONNECTIONS),
+                                            conf.getInt(Constants.HTTP_CLIENT_POOL_IDLE_TIMEOUT_SECS),
+                                            conf.getInt(Constants.HTTP_CLIENT_CONNECTION_TIMEOUT_MS),
+                                            conf.getInt(Constants.HTTP_CLIENT_POOL_ACQUIRE_TIMEOUT_MS));
+      }
+      return instance;
+    }
+  }
+
+  /**
+   * Sets the configuration of the transport in the current process. It determines whether the transport is enabled,
+   * and the settings of the shared instance if it is not created yet.
+   */
+  public static void setConfiguration(CConfiguration cConf) {
+    NettyRemoteTransport.cConf = cConf;
+    enabled = TRANSPORT_NETTY.equalsIgnoreCase(cConf.get(Constants.HTTP_CLIENT_TRANSPORT));
+  }
+
+  /**
+   * Sets the {@link MetricsCollectionService} for emitting the connection pool and request latency metrics of
+   * the transport in the current process.
+   */
+  public static void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    metricsContext = metricsCollectionService.getContext(Constants.Metrics.REMOTE_CLIENT_METRICS_TAGS);
+  }
+
+  /**
+   * Returns {@code true} if the Netty transport is enabled by the configuration and can be used for the given
+   * request.
+   */
+  static boolean isEnabled(HttpRequest request) {
+    return enabled && "http".equalsIgnoreCase(request.getURL().getProtocol());
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxConnectionsPerEndpoint maximum number of pooled connections to each endpoint
+   * @param idleTimeoutSecs number of seconds before an idle pooled connection is closed
+   * @param connectTimeoutMillis timeout in milliseconds for opening a connection
+   * @param acquireTimeoutMillis timeout in milliseconds for waiting for a pooled connection, or {@code 0} to wait
+   *                             without a timeout
+   */
+  NettyRemoteTransport(int maxConnectionsPerEndpoint, int idleTimeoutSecs,
+                       int connectTimeoutMillis, int acquireTimeoutMillis) {
+    this.acquireTimeoutMillis = acquireTimeoutMillis;
+    this.eventLoopGroup = new NioEventLoopGroup(0, Threads.createDaemonThreadFactory("remote-client-netty-%d"));
+    this.latencies = new ConcurrentHashMap<>();
+    this.serviceMetricsContexts = new ConcurrentHashMap<>();
+    this.openConnections = new AtomicInteger();
+    this.activeConnections = new AtomicInteger();
+    this.urlStreamHandler = new URLStreamHandler() {
+      @Override
+      protected URLConnection openConnection(URL url) {
+        return new PooledURLConnection(url);
+      }
+    };
+
+    Bootstrap bootstrap = new Bootstrap()
+      .group(eventLoopGroup)
+      .channel(NioSocketChannel.class)
+      .option(ChannelOption.SO_KEEPALIVE, true)
+      .option(ChannelOption.TCP_NODELAY, true)
+      .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis);
+
+    AbstractChannelPoolHandler poolHandler = new AbstractChannelPoolHandler() {
+      @Override
+      public void channelCreated(Channel channel) {
+        // A newly created channel is acquired without calling channelAcquired
+        openConnections.incrementAndGet();
+        activeConnections.incrementAndGet();
+        channel.closeFuture().addListener(future -> openConnections.decrementAndGet());
+        channel.pipeline()
+          .addLast("codec", new HttpClientCodec())
+          .addLast("aggregator", new HttpObjectAggregator(Integer.MAX_VALUE))
+          .addLast("idle", new IdleStateHandler(0, 0, idleTimeoutSecs))
+          .addLast("response", new ResponseHandler());
+      }
+
+      @Override
+      public void channelAcquired(Channel channel) {
+        activeConnections.incrementAndGet();
+      }
+
+      @Override
+      public void channelReleased(Channel channel) {
+        activeConnections.decrementAndGet();
+      }
+    };
+
+    this.pools = new AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool>() {
+      @Override
+      protected FixedChannelPool newPool(InetSocketAddress address) {
+        // Pending acquires are queued without a timeout. The caller bounds the wait in acquire().
+        return new FixedChannelPool(bootstrap.clone().remoteAddress(address), poolHandler,
+                                    ChannelHealthChecker.ACTIVE, null, -1,
+                                    maxConnectionsPerEndpoint, Integer.MAX_VALUE);
+      }
+    };
+  }
+
+  /**
+   * Executes the given request on a pooled connection.
+   *
+   * @param serviceName name of the service being called, for the latency histogram
+   * @param request the request to execute
+   * @param requestConfig the {@link HttpRequestConfig} for the read timeout
+   * @return the response
+   * @throws IOException if failed to execute the request
+   */
+  HttpResponse execute(String serviceName, HttpRequest request, HttpRequestConfig requestConfig) throws IOException {
+    long startTime = System.nanoTime();
+    URL url = request.getURL();
+    URL pooledURL = new URL(url.getProtocol(), url.getHost(), url.getPort(), url.getFile(), urlStreamHandler);
+    HttpResponse response = HttpRequests.execute(new HttpRequest(request.getMethod(), pooledURL, request.getHeaders(),
+                                                                 request.getBody(), request.getBodyLength()),
+                                                 requestConfig);
+    recordLatency(serviceName, System.nanoTime() - startTime);
+    return response;
+  }
+
+  /**
+   * Returns the number of connections currently opened by this transport.
+   */
+  public int getOpenConnections() {
+    return openConnections.get();
+  }
+
+  /**
+   * Returns the number of connections currently used by requests.
+   */
+  public int getActiveConnections() {
+    return activeConnections.get();
+  }
+
+  /**
+   * Returns the latency histograms of the requests to each service. Each histogram has the number of requests that
+   * completed within each of the {@link #LATENCY_BUCKETS_MS}, plus one more bucket for the slower requests.
+   */
+  public Map<String, long[]> getLatencyHistograms() {
+    Map<String, long[]> result = new TreeMap<>();
+    for (Map.Entry<String, AtomicLongArray> entry : latencies.entrySet()) {
+      AtomicLongArray counts = entry.getValue();
+      long[] histogram = new long[counts.length()];
+      for (int i = 0; i < histogram.length; i++) {
+        histogram[i] = counts.get(i);
+      }
+      result.put(entry.getKey(), histogram);
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  @Override
+  public void close() {
+    eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+  }
+
+  private void recordLatency(String serviceName, long nanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    int bucket = 0;
+    while (bucket < LATENCY_BUCKETS_MS.length && millis > LATENCY_BUCKETS_MS[bucket]) {
+      bucket++;
+    }
+    latencies.computeIfAbsent(serviceName, k -> new AtomicLongArray(LATENCY_BUCKETS_MS.length + 1))
+      .incrementAndGet(bucket);
+
+    MetricsContext context = serviceMetricsContexts.computeIfAbsent(
+      serviceName, k -> metricsContext.childContext(ImmutableMap.of(Constants.Metrics.Tag.SERVICE, serviceName)));
+    context.increment(Constants.Metrics.RemoteClient.REQUEST_COUNT, 1L);
+    context.increment(Constants.Metrics.RemoteClient.REQUEST_LATENCY_MS, millis);
+    context.increment(Constants.Metrics.RemoteClient.REQUEST_LATENCY_BUCKET_PREFIX
+                        + (bucket < LATENCY_BUCKETS_MS.length ? LATENCY_BUCKETS_MS[bucket] : "inf"), 1L);
+  }
+
+  private void emitConnectionMetrics() {
+    MetricsContext context = metricsContext;
+    context.gauge(Constants.Metrics.RemoteClient.OPEN_CONNECTIONS, openConnections.get());
+    context.gauge(Constants.Metrics.RemoteClient.ACTIVE_CONNECTIONS, activeConnections.get());
+  }
+
+  /**
+   * Sends a request over a pooled connection and waits for the response, for up to the given read timeout.
+   * A read timeout of {@code 0} waits without a timeout, the same as {@link URLConnection#setReadTimeout(int)}.
+   */
+  private Response send(URL url, FullHttpRequest request, int readTimeoutMillis) throws IOException {
+    FixedChannelPool pool = pools.get(new InetSocketAddress(url.getHost(),
+                                                            url.getPort() < 0 ? url.getDefaultPort() : url.getPort()));
+    Channel channel;
+    try {
+      channel = acquire(pool, url);
+    } catch (IOException e) {
+      request.release();
+      throw e;
+    }
+    emitConnectionMetrics();
+
+    CompletableFuture<Response> responseFuture = new CompletableFuture<>();
+    try {
+      channel.attr(RESPONSE_KEY).set(responseFuture);
+      channel.writeAndFlush(request).addListener(future -> {
+        if (!future.isSuccess()) {
+          responseFuture.completeExceptionally(future.cause());
+        }
+      });
+      return readTimeoutMillis > 0 ? responseFuture.get(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                                   : responseFuture.get();
+    } catch (TimeoutException e) {
+      channel.close();
+      throw new SocketTimeoutException("Read timed out after " + readTimeoutMillis + " ms for " + url);
+    } catch (ExecutionException e) {
+      channel.close();
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    } catch (InterruptedException e) {
+      channel.close();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for response from " + url);
+    } finally {
+      channel.attr(RESPONSE_KEY).set(null);
+      pool.release(channel);
+    }
+  }
+
+  /**
+   * Acquires a connection from the given pool, waiting for up to the acquire timeout if all connections are in use.
+   */
+  private Channel acquire(FixedChannelPool pool, URL url) throws IOException {
+    Future<Channel> future = pool.acquire();
+    try {
+      if (acquireTimeoutMillis <= 0) {
+        future.await();
+      } else if (!future.await(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        releaseOnAcquire(pool, future);
+        throw new SocketTimeoutException("Timed out after " + acquireTimeoutMillis
+                                           + " ms waiting for a connection to " + url.getHost() + ":" + url.getPort());
+      }
+    } catch (InterruptedException e) {
+      releaseOnAcquire(pool, future);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while acquiring connection");
+    }
+    if (!future.isSuccess()) {
+      Throwable cause = future.cause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+    return future.getNow();
+  }
+
+  /**
+   * Releases the connection back to the pool when it is acquired after the caller stopped waiting for it.
+   */
+  private void releaseOnAcquire(FixedChannelPool pool, Future<Channel> future) {
+    future.addListener(f -> {
+      if (f.isSuccess()) {
+        pool.release(future.getNow());
+      }
+    });
+  }
+
+  /**
+   * A response read from a pooled connection.
+   */
+  private static final class Response {
+    private final int code;
+    private final String message;
+    private final byte[] body;
+    private final Map<String, List<String>> headers;
+
+    private Response(FullHttpResponse response) {
+      this.code = response.status().code();
+      this.message = response.status().reasonPhrase();
+      this.body = ByteBufUtil.getBytes(response.content());
+      Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for (Map.Entry<String, String> header : response.headers()) {
+        headers.computeIfAbsent(header.getKey(), k -> new ArrayList<>()).add(header.getValue());
+      }
+      this.headers = Collections.unmodifiableMap(headers);
+    }
+  }
+
+  /**
+   * A {@link HttpURLConnection} that buffers the request, and sends it over a pooled connection when the response
+   * is first requested.
+   */
+  private final class PooledURLConnection extends HttpURLConnection {
+
+    private final ByteArrayOutputStream requestBody;
+    private Response response;
+
+    PooledURLConnection(URL url) {
+      super(url);
+      this.requestBody = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public void connect() {
+      // The pooled connection is only acquired when the request is sent
+    }
+
+    @Override
+    public void disconnect() {
+      // The pooled connection is released as soon as the response is received
+    }
+
+    @Override
+    public boolean usingProxy() {
+      return false;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return requestBody;
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+      return getResponse().code;
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+      return getResponse().message;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return new ByteArrayInputStream(getResponse().body);
+    }
+
+    @Nullable
+    @Override
+    public InputStream getErrorStream() {
+      return response == null || response.code < HTTP_BAD_REQUEST ? null : new ByteArrayInputStream(response.body);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+      return response == null ? Collections.emptyMap() : response.headers;
+    }
+
+    @Nullable
+    @Override
+    public String getHeaderField(String name) {
+      List<String> values = getHeaderFields().get(name);
+      return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    private Response getResponse() throws IOException {
+      if (response != null) {
+        return response;
+      }
+
+      URL url = getURL();
+      String uri = url.getFile().isEmpty() ? "/" : url.getFile();
+      FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.valueOf(getRequestMethod()),
+                                                           uri, Unpooled.wrappedBuffer(requestBody.toByteArray()));
+      for (Map.Entry<String, List<String>> header : getRequestProperties().entrySet()) {
+        request.headers().add(header.getKey(), header.getValue());
+      }
+      request.headers().set(HttpHeaderNames.HOST, url.getPort() < 0 ? url.getHost()
+                                                                    : url.getHost() + ":" + url.getPort());
+      request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+      HttpUtil.setContentLength(request, request.content().readableBytes());
+
+      response = send(url, request, getReadTimeout());
+      return response;
+    }
+  }
+
+  /**
+   * Handler to complete the response future of the current request of a pooled connection.
+   */
+  private static final class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+      CompletableFuture<Response> future = ctx.channel().attr(RESPONSE_KEY).getAndSet(null);
+      if (!HttpUtil.isKeepAlive(response)) {
+        ctx.close();
+      }
+      if (future != null) {
+        future.complete(new Response(response));
+      }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+      // Close idle connections, unless there is a request waiting for a response
+      if (evt instanceof IdleStateEvent && ctx.channel().attr(RESPONSE_KEY).get() == null) {
+        ctx.close();
+        return;
+      }
+      super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      CompletableFuture<Response> future = ctx.channel().attr(RESPONSE_KEY).getAndSet(null);
+      if (future != null) {
+        future.completeExceptionally(new IOException("Connection closed before receiving response"));
+      }
+      super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      CompletableFuture<Response> future = ctx.channel().attr(RESPONSE_KEY).getAndSet(null);
+      if (future != null) {
+        future.completeExceptionally(cause);
+      }
+      ctx.close();
+    }
+  }
+}
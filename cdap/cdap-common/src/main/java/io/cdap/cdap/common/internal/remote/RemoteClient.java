@@ -21,6 +21,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.net.HttpHeaders;
 import io.cdap.cdap.common.ServiceUnavailableException;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.discovery.EndpointStrategy;
 import io.cdap.cdap.common.discovery.RandomEndpointStrategy;
 import io.cdap.cdap.common.discovery.URIScheme;
@@ -88,7 +89,8 @@ public class RemoteClient {
 
   /**
    * Perform the request, returning the response. If there was a ConnectException while making the request,
-   * a ServiceUnavailableException is thrown.
+   * a ServiceUnavailableException is thrown. The request is sent through the {@link NettyRemoteTransport} if it is
+   * enabled by the {@link Constants#HTTP_CLIENT_TRANSPORT} configuration.
    *
    * @param request the request to perform
    * @return the response
@@ -116,7 +118,9 @@ public class RemoteClient {
     }
 
     try {
-      HttpResponse response = HttpRequests.execute(httpRequest, httpRequestConfig);
+      HttpResponse response = NettyRemoteTransport.isEnabled(httpRequest)
+        ? NettyRemoteTransport.getInstance().execute(discoverableServiceName, httpRequest, httpRequestConfig)
+        : HttpRequests.execute(httpRequest, httpRequestConfig);
       switch (response.getResponseCode()) {
         case HttpURLConnection.HTTP_UNAVAILABLE:
           throw new ServiceUnavailableException(discoverableServiceName, response.getResponseBodyAsString());
@@ -26,6 +26,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.Injector;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.internal.remote.NettyRemoteTransport;
 import io.cdap.cdap.common.logging.common.UncaughtExceptionHandler;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.security.UserGroupInformation;
@@ -104,7 +105,9 @@ public abstract class AbstractMasterTwillRunnable extends AbstractTwillRunnable
       services.add(injector.getInstance(ZKClientService.class));
       services.add(injector.getInstance(KafkaClientService.class));
       services.add(injector.getInstance(BrokerService.class));
-      services.add(injector.getInstance(MetricsCollectionService.class));
+      MetricsCollectionService metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
+      services.add(metricsCollectionService);
+      NettyRemoteTransport.setMetricsCollectionService(metricsCollectionService);
 
       addServices(services);
       Preconditions.checkArgument(!services.isEmpty(), "Should have at least one service");
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.io;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.DatumReader;
+import io.cdap.cdap.common.lang.InstantiatorFactory;
+import io.cdap.cdap.internal.asm.ByteCodeClassLoader;
+import io.cdap.cdap.internal.asm.ClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import javax.inject.Inject;
+
+/**
+ * A {@link DatumReaderFactory} that creates {@link DatumReader} with bytecode generated by
+ * {@link DatumReaderGenerator}. The generated reader is used when the data was written with the same schema as
+ * the reader schema. Otherwise, the {@link ReflectionDatumReader} is used to resolve the source schema to the
+ * reader schema. The {@link ReflectionDatumReader} is also used for types that the generated reader doesn't support.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ASMDatumReaderFactory.class);
+
+  private final LoadingCache<CacheKey, Optional<Class<DatumReader<?>>>> datumReaderClasses;
+  private final FieldAccessorFactory fieldAccessorFactory;
+  private final InstantiatorFactory instantiatorFactory;
+
+  @Inject
+  public ASMDatumReaderFactory(FieldAccessorFactory fieldAccessorFactory) {
+    this.fieldAccessorFactory = fieldAccessorFactory;
+    this.instantiatorFactory = new InstantiatorFactory(true);
+    this.datumReaderClasses = CacheBuilder.newBuilder().build(new ASMCacheLoader());
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode given data type with the given {@link Schema}.
+   * The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    DatumReader<T> reflectionReader = new ReflectionDatumReader<>(schema, type);
+    Optional<Class<DatumReader<?>>> readerClass = datumReaderClasses.getUnchecked(new CacheKey(schema, type));
+    if (!readerClass.isPresent()) {
+      return reflectionReader;
+    }
+
+    DatumReader<T> generatedReader;
+    try {
+      generatedReader = (DatumReader<T>) readerClass.get()
+        .getConstructor(Schema.class, FieldAccessorFactory.class, InstantiatorFactory.class)
+        .newInstance(schema, fieldAccessorFactory, instantiatorFactory);
+    } catch (Exception | LinkageError e) {
+      LOG.debug("Failed to instantiate generated DatumReader for type {} with schema {}", type, schema, e);
+      return reflectionReader;
+    }
+
+    return (decoder, sourceSchema) -> schema.equals(sourceSchema)
+      ? generatedReader.read(decoder, sourceSchema)
+      : reflectionReader.read(decoder, sourceSchema);
+  }
+
+  /**
+   * A private {@link CacheLoader} for generating different {@link DatumReader} {@link Class}.
+   */
+  private static final class ASMCacheLoader extends CacheLoader<CacheKey, Optional<Class<DatumReader<?>>>> {
+
+    private final Map<TypeToken<?>, ByteCodeClassLoader> classloaders = Maps.newIdentityHashMap();
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Optional<Class<DatumReader<?>>> load(CacheKey key) throws Exception {
+      ClassDefinition classDef;
+      try {
+        classDef = new DatumReaderGenerator().generate(key.getType(), key.getSchema());
+      } catch (Exception e) {
+        // Fallback to reflection based reader if the type is not supported by the generator
+        LOG.trace("Failed to generate DatumReader for type {} with schema {}", key.getType(), key.getSchema(), e);
+        return Optional.empty();
+      }
+
+      ByteCodeClassLoader classloader = classloaders.get(key.getType());
+      if (classloader == null) {
+        // The ClassLoader of the generated DatumReader has CDAP system ClassLoader as parent.
+        // The ClassDefinition contains list of classes that should not be loaded by the generated class ClassLoader
+        classloader = new ByteCodeClassLoader(ASMDatumReaderFactory.class.getClassLoader());
+        classloaders.put(key.getType(), classloader);
+      }
+
+      return Optional.of((Class<DatumReader<?>>) classloader.addClass(classDef).loadClass(classDef.getClassName()));
+    }
+  }
+
+  private static final class CacheKey {
+    private final Schema schema;
+    private final TypeToken<?> type;
+
+    private CacheKey(Schema schema, TypeToken<?> type) {
+      this.schema = schema;
+      this.type = type;
+    }
+
+    public Schema getSchema() {
+      return schema;
+    }
+
+    public TypeToken<?> getType() {
+      return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return schema.equals(cacheKey.schema) && type.equals(cacheKey.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(schema, type);
+    }
+  }
+}
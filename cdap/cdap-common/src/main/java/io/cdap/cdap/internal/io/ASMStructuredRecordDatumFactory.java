@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.io;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.common.io.DatumReader;
+import io.cdap.cdap.common.io.DatumWriter;
+import io.cdap.cdap.format.io.StructuredRecordDatumReader;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.internal.asm.ByteCodeClassLoader;
+import io.cdap.cdap.internal.asm.ClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * A factory for {@link DatumWriter} and {@link DatumReader} of {@link StructuredRecord} that are specialized for
+ * a given record {@link Schema}, with bytecode generated by {@link StructuredRecordDatumWriterGenerator} and
+ * {@link StructuredRecordDatumReaderGenerator}. The generated instances are cached by {@link SchemaHash}.
+ * If the bytecode cannot be generated for a schema, the interpreting {@link StructuredRecordDatumWriter} and
+ * {@link StructuredRecordDatumReader} are used instead. Both produce and consume the same bytes, hence they can
+ * be used interchangeably.
+ *
+ * This class is thread safe.
+ */
+public final class ASMStructuredRecordDatumFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ASMStructuredRecordDatumFactory.class);
+
+  private final StructuredRecordDatumWriter interpretedWriter;
+  private final StructuredRecordDatumReader interpretedReader;
+  private final Cache<SchemaHash, StructuredRecordDatumWriter> writers;
+  private final Cache<SchemaHash, StructuredRecordDatumReader> readers;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxSchemas maximum number of schemas to keep generated writers and readers for
+   */
+  public ASMStructuredRecordDatumFactory(int maxSchemas) {
+    this.interpretedWriter = new StructuredRecordDatumWriter();
+    this.interpretedReader = new StructuredRecordDatumReader();
+    this.writers = CacheBuilder.newBuilder().maximumSize(maxSchemas).build();
+    this.readers = CacheBuilder.newBuilder().maximumSize(maxSchemas).build();
+  }
+
+  /**
+   * Returns a {@link DatumWriter} for encoding {@link StructuredRecord} of the given schema.
+   * The instance returned is thread safe and reusable.
+   *
+   * @param schema the record schema
+   * @return a {@link DatumWriter} that only encodes {@link StructuredRecord} with the given schema
+   */
+  public DatumWriter<StructuredRecord> getWriter(Schema schema) {
+    try {
+      return writers.get(schema.getSchemaHash(), () -> {
+        StructuredRecordDatumWriterGenerator generator = new StructuredRecordDatumWriterGenerator();
+        StructuredRecordDatumWriter writer = newInstance(() -> generator.generate(schema), generator::getSchemas);
+        return writer == null ? interpretedWriter : writer;
+      });
+    } catch (ExecutionException e) {
+      // Shouldn't happen as the loader doesn't throw
+      return interpretedWriter;
+    }
+  }
+
+  /**
+   * Returns a {@link DatumReader} for decoding {@link StructuredRecord} that is written with the given schema.
+   * The instance returned is thread safe and reusable.
+   *
+   * @param schema the record schema
+   * @return a {@link DatumReader} that only decodes data written with the given schema
+   */
+  public DatumReader<StructuredRecord> getReader(Schema schema) {
+    try {
+      return readers.get(schema.getSchemaHash(), () -> {
+        StructuredRecordDatumReaderGenerator generator = new StructuredRecordDatumReaderGenerator();
+        StructuredRecordDatumReader reader = newInstance(() -> generator.generate(schema), generator::getSchemas);
+        return reader == null ? interpretedReader : reader;
+      });
+    } catch (ExecutionException e) {
+      // Shouldn't happen as the loader doesn't throw
+      return interpretedReader;
+    }
+  }
+
+  /**
+   * Generates and loads a class and creates a new instance of it.
+   *
+   * @param generator for generating the class
+   * @param schemas provides the schemas to pass to the constructor of the generated class after generation
+   * @return the new instance, or {@code null} if failed to generate, load or instantiate the class
+   */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  private <T> T newInstance(Supplier<ClassDefinition> generator, Supplier<List<Schema>> schemas) {
+    try {
+      ClassDefinition classDef = generator.get();
+      // Each generated class has its own ClassLoader so that it can be garbage collected after cache eviction
+      ClassLoader classloader = new ByteCodeClassLoader(ASMStructuredRecordDatumFactory.class.getClassLoader())
+        .addClass(classDef);
+      Class<?> cls = classloader.loadClass(classDef.getClassName());
+      return (T) cls.getConstructor(Schema[].class).newInstance((Object) schemas.get().toArray(new Schema[0]));
+    } catch (Exception | LinkageError e) {
+      // Fallback to the interpreter
+      LOG.debug("Failed to generate class for StructuredRecord encoding", e);
+      return null;
+    }
+  }
+}
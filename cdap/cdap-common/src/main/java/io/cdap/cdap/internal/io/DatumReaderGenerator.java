@@ -0,0 +1,980 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.io;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeParameter;
+import com.google.common.reflect.TypeToken;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.common.io.DatumReader;
+import io.cdap.cdap.common.io.Decoder;
+import io.cdap.cdap.common.lang.Instantiator;
+import io.cdap.cdap.common.lang.InstantiatorFactory;
+import io.cdap.cdap.internal.asm.ClassDefinition;
+import io.cdap.cdap.internal.asm.Methods;
+import io.cdap.cdap.internal.asm.Signatures;
+import io.cdap.cdap.internal.lang.Fields;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+import org.objectweb.asm.commons.TableSwitchGenerator;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link DatumReader} bytecodes using ASM. The generated class decodes data that is written
+ * with the same schema as the one used for generation. The class generated will have a skeleton looks like
+ * the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName implements DatumReader<InputType> {
+ *    private static final String SCHEMA_HASH = "schema_hash_as_hex_string";
+ *    private final Schema schema;
+ *
+ *    public generatedClassName(Schema schema, FieldAccessorFactory accessorFactory,
+ *                              InstantiatorFactory instantiatorFactory) {
+ *      if (!SCHEMA_HASH.equals(schema.getSchemaHash().toString())) {
+ *        throw new IllegalArgumentException("Schema not match.");
+ *      }
+ *      this.schema = schema;
+ *      // Initialize the field accessors, instantiators and classes used by the generated read methods
+ *    }
+ *
+ *    @Override
+ *    public Object read(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      return generatedReadMethod(decoder);
+ *    }
+ *
+ *    private Object generatedReadMethod(Decoder decoder) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the type.
+ *    }
+ *
+ *    // Could have more generatedReadMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * The source schema passed to the {@code read} method is not used by the generated class. Resolution between
+ * different source and target schemas is done by {@link ASMDatumReaderFactory}.
+ */
+@NotThreadSafe
+final class DatumReaderGenerator {
+
+  private static final Type DECODER_TYPE = Type.getType(Decoder.class);
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+  private final Map<String, Method> readMethods = Maps.newHashMap();
+  private final Multimap<TypeToken<?>, String> fieldAccessorRequests = HashMultimap.create();
+  private final Map<String, Class<?>> instantiatorRequests = Maps.newHashMap();
+  private final Map<String, Class<?>> classRequests = Maps.newHashMap();
+  private ClassWriter classWriter;
+  private Type classType;
+  private List<Class<?>> preservedClasses;
+
+  /**
+   * Generates a {@link DatumReader} class for decoding data of the given input type with the given schema.
+   *
+   * @param inputType Type information of the input data type.
+   * @param schema Schema of the input data type.
+   * @return A {@link ClassDefinition} that contains generated class information.
+   * @throws IllegalArgumentException if the given type cannot be decoded with the given schema by generated code
+   */
+  ClassDefinition generate(TypeToken<?> inputType, Schema schema) {
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    preservedClasses = Lists.newArrayList();
+
+    TypeToken<?> interfaceType = getInterfaceType(inputType);
+
+    // Generate the class
+    String className = getClassName(interfaceType, schema);
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, Signatures.getClassSignature(interfaceType),
+                      Type.getInternalName(Object.class),
+                      new String[]{Type.getInternalName(interfaceType.getRawType())});
+
+    // Static schema hash field, for verification
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC + Opcodes.ACC_FINAL, "SCHEMA_HASH",
+                           Type.getDescriptor(String.class), null, schema.getSchemaHash().toString()).visitEnd();
+
+    // Schema field
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, "schema",
+                           Type.getDescriptor(Schema.class), null, null).visitEnd();
+
+    // Read method
+    generateRead(inputType, schema);
+
+    // Constructor
+    generateConstructor();
+
+    return new ClassDefinition(classWriter.toByteArray(), className, preservedClasses);
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature
+   * {@code (Schema, FieldAccessorFactory, InstantiatorFactory)}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>",
+                                   Schema.class, FieldAccessorFactory.class, InstantiatorFactory.class);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super(); // Calling Object constructor
+    mg.loadThis();
+    mg.invokeConstructor(OBJECT_TYPE, getMethod(void.class, "<init>"));
+
+    // if (!SCHEMA_HASH.equals(schema.getSchemaHash().toString())) { throw IllegalArgumentException }
+    mg.getStatic(classType, "SCHEMA_HASH", Type.getType(String.class));
+    mg.loadArg(0);
+    mg.invokeVirtual(Type.getType(Schema.class), getMethod(SchemaHash.class, "getSchemaHash"));
+    mg.invokeVirtual(Type.getType(SchemaHash.class), getMethod(String.class, "toString"));
+    mg.invokeVirtual(Type.getType(String.class), getMethod(boolean.class, "equals", Object.class));
+    Label hashEquals = mg.newLabel();
+    mg.ifZCmp(GeneratorAdapter.NE, hashEquals);
+    mg.throwException(Type.getType(IllegalArgumentException.class), "Schema not match.");
+    mg.mark(hashEquals);
+
+    // this.schema = schema;
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.putField(classType, "schema", Type.getType(Schema.class));
+
+    // For each record field that needs an accessor, get the accessor and store it in field.
+    for (Map.Entry<TypeToken<?>, String> entry : fieldAccessorRequests.entries()) {
+      String fieldAccessorName = getFieldAccessorName(entry.getKey(), entry.getValue());
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL,
+                             fieldAccessorName,
+                             Type.getDescriptor(FieldAccessor.class), null, null);
+      // this.fieldAccessorName
+      //  = accessorFactory.getFieldAccessor(TypeToken.of(Class.forName("className")), "fieldName");
+      mg.loadThis();
+      mg.loadArg(1);
+      loadClass(mg, entry.getKey().getRawType());
+      mg.invokeStatic(Type.getType(TypeToken.class), getMethod(TypeToken.class, "of", Class.class));
+      mg.push(entry.getValue());
+      mg.invokeInterface(Type.getType(FieldAccessorFactory.class),
+                         getMethod(FieldAccessor.class, "getFieldAccessor", TypeToken.class, String.class));
+      mg.putField(classType, fieldAccessorName, Type.getType(FieldAccessor.class));
+    }
+
+    // For each type that needs to be created, get the instantiator and store it in field.
+    for (Map.Entry<String, Class<?>> entry : instantiatorRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Instantiator.class), null, null);
+      // this.instantiatorName = instantiatorFactory.get(TypeToken.of(Class.forName("className")));
+      mg.loadThis();
+      mg.loadArg(2);
+      loadClass(mg, entry.getValue());
+      mg.invokeStatic(Type.getType(TypeToken.class), getMethod(TypeToken.class, "of", Class.class));
+      mg.invokeVirtual(Type.getType(InstantiatorFactory.class),
+                       getMethod(Instantiator.class, "get", TypeToken.class));
+      mg.putField(classType, entry.getKey(), Type.getType(Instantiator.class));
+    }
+
+    // For each class used by the read methods, load it and store it in field.
+    for (Map.Entry<String, Class<?>> entry : classRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Class.class), null, null);
+      // this.className = Class.forName("className");
+      mg.loadThis();
+      loadClass(mg, entry.getValue());
+      mg.putField(classType, entry.getKey(), Type.getType(Class.class));
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link DatumReader#read(Decoder, Schema)} method.
+   *
+   * @param inputType Type information of the data type for input
+   * @param schema Schema to use for input
+   */
+  private void generateRead(TypeToken<?> inputType, Schema schema) {
+    Method readMethod = getMethod(Object.class, "read", Decoder.class, Schema.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, readMethod, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+
+    // Delegate to the actual read method(decoder)
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getReadMethod(inputType, schema));
+    if (inputType.getRawType().isPrimitive()) {
+      mg.valueOf(Type.getType(inputType.getRawType()));
+    }
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the read method for the given type and schema. The same method will be returned if the same
+   * type and schema has been passed to the method before. The read method returns the primitive value for
+   * primitive type, and {@link Object} for all other types.
+   *
+   * @param inputType Type information of the data type for input
+   * @param schema Schema to use for input
+   * @return A method for decoding the given input type and schema.
+   */
+  private Method getReadMethod(TypeToken<?> inputType, Schema schema) {
+    String key = String.format("%s%s", normalizeTypeName(inputType), schema.getSchemaHash());
+
+    Method method = readMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    // Generate the read method (decoder)
+    method = new Method(String.format("read%s", key), getCallType(inputType), new Type[] { DECODER_TYPE });
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    readMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[]{Type.getType(IOException.class)}, classWriter);
+    generateReadBody(mg, schema, inputType);
+    mg.returnValue();
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the read method body, which leaves the decoded value on the stack.
+   *
+   * @param mg Method generator for generating method code body
+   * @param schema Schema of the data to be decoded
+   * @param inputType Type information of the data type for input
+   */
+  private void generateReadBody(GeneratorAdapter mg, Schema schema, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+
+    switch (schema.getType()) {
+      case NULL:
+        Preconditions.checkArgument(!rawType.isPrimitive(), "Cannot decode null to %s.", inputType);
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(Object.class, "readNull"));
+        break;
+      case BOOLEAN:
+        readSimple(mg, inputType, boolean.class, "readBool");
+        break;
+      case INT:
+        readInt(mg, inputType);
+        break;
+      case LONG:
+        readSimple(mg, inputType, long.class, "readLong");
+        break;
+      case FLOAT:
+        readSimple(mg, inputType, float.class, "readFloat");
+        break;
+      case DOUBLE:
+        readSimple(mg, inputType, double.class, "readDouble");
+        break;
+      case STRING:
+        readString(mg, inputType);
+        break;
+      case BYTES:
+        readBytes(mg, inputType);
+        break;
+      case ENUM:
+        readEnum(mg, inputType, schema);
+        break;
+      case ARRAY:
+        if (Collection.class.isAssignableFrom(rawType)) {
+          Preconditions.checkArgument(inputType.getType() instanceof ParameterizedType,
+                                      "Only support parameterized collection type.");
+          TypeToken<?> componentType = TypeToken.of(((ParameterizedType) inputType.getType())
+                                                      .getActualTypeArguments()[0]);
+          readCollection(mg, inputType, componentType, schema.getComponentSchema());
+        } else {
+          Preconditions.checkArgument(inputType.isArray(), "Only array or collection type is supported for array.");
+          readArray(mg, inputType, schema.getComponentSchema());
+        }
+        break;
+      case MAP:
+        Preconditions.checkArgument(Map.class.isAssignableFrom(rawType),
+                                    "Only %s type is supported.", Map.class.getName());
+        Preconditions.checkArgument(inputType.getType() instanceof ParameterizedType,
+                                    "Only support parameterized map type.");
+        java.lang.reflect.Type[] mapArgs = ((ParameterizedType) inputType.getType()).getActualTypeArguments();
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        readMap(mg, inputType, TypeToken.of(mapArgs[0]), TypeToken.of(mapArgs[1]),
+                mapSchema.getKey(), mapSchema.getValue());
+        break;
+      case RECORD:
+        readRecord(mg, inputType, schema);
+        break;
+      case UNION:
+        readUnion(mg, inputType, schema);
+        break;
+    }
+  }
+
+  /**
+   * Generates code for decoding a simple schema type by calling the corresponding read method in Decoder.
+   *
+   * @param mg Method body generator
+   * @param inputType Type information of the data type for input
+   * @param primitiveType The primitive type returned by the decode method
+   * @param decodeMethod Name of the decode method to invoke on the decoder
+   */
+  private void readSimple(GeneratorAdapter mg, TypeToken<?> inputType, Class<?> primitiveType, String decodeMethod) {
+    Class<?> rawType = inputType.getRawType();
+    Preconditions.checkArgument(Primitives.unwrap(rawType).equals(primitiveType),
+                                "Cannot decode %s to %s.", primitiveType, inputType);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(primitiveType, decodeMethod));
+    if (!rawType.isPrimitive()) {
+      mg.valueOf(Type.getType(primitiveType));
+    }
+  }
+
+  /**
+   * Generates code for decoding an int value. Since INT type represents (byte, char, short and int),
+   * the decoded value is casted to the type of the input.
+   */
+  private void readInt(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    Class<?> primitiveType = Primitives.unwrap(rawType);
+    Preconditions.checkArgument(primitiveType.equals(int.class) || primitiveType.equals(byte.class)
+                                  || primitiveType.equals(char.class) || primitiveType.equals(short.class),
+                                "Cannot decode int to %s.", inputType);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    if (!primitiveType.equals(int.class)) {
+      mg.cast(Type.INT_TYPE, Type.getType(primitiveType));
+    }
+    if (!rawType.isPrimitive()) {
+      mg.valueOf(Type.getType(primitiveType));
+    }
+  }
+
+  /**
+   * Generates code for decoding a string value. Besides {@link String}, {@link URI} and {@link URL} are supported.
+   */
+  private void readString(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(String.class, "readString"));
+
+    if (URI.class.equals(rawType)) {
+      // URI.create(str);
+      mg.invokeStatic(Type.getType(URI.class), getMethod(URI.class, "create", String.class));
+    } else if (URL.class.equals(rawType)) {
+      // new URL(str);
+      int str = mg.newLocal(Type.getType(String.class));
+      mg.storeLocal(str);
+      mg.newInstance(Type.getType(URL.class));
+      mg.dup();
+      mg.loadLocal(str);
+      mg.invokeConstructor(Type.getType(URL.class), getMethod(void.class, "<init>", String.class));
+    } else {
+      Preconditions.checkArgument(rawType.isAssignableFrom(String.class), "Cannot decode string to %s.", inputType);
+    }
+  }
+
+  /**
+   * Generates code for decoding a bytes value. Besides {@link ByteBuffer}, byte[] and {@link UUID} are supported.
+   */
+  private void readBytes(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    Type byteBufferType = Type.getType(ByteBuffer.class);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(ByteBuffer.class, "readBytes"));
+
+    if (byte[].class.equals(rawType)) {
+      // Bytes.toBytes(buffer);
+      mg.invokeStatic(Type.getType(Bytes.class), getMethod(byte[].class, "toBytes", ByteBuffer.class));
+    } else if (UUID.class.equals(rawType)) {
+      // if (buffer.remaining() != Longs.BYTES * 2) { throw IOException }
+      // new UUID(buffer.getLong(), buffer.getLong());
+      int buffer = mg.newLocal(byteBufferType);
+      mg.storeLocal(buffer);
+
+      Label validSize = mg.newLabel();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(int.class, "remaining"));
+      mg.push(Longs.BYTES * 2);
+      mg.ifICmp(GeneratorAdapter.EQ, validSize);
+      mg.throwException(Type.getType(IOException.class), "Invalid number of bytes for UUID.");
+      mg.mark(validSize);
+
+      Type uuidType = Type.getType(UUID.class);
+      mg.newInstance(uuidType);
+      mg.dup();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.invokeConstructor(uuidType, getMethod(void.class, "<init>", long.class, long.class));
+    } else {
+      Preconditions.checkArgument(rawType.isAssignableFrom(ByteBuffer.class),
+                                  "Cannot decode bytes to %s.", inputType);
+    }
+  }
+
+  /**
+   * Generates code for decoding an enum value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * String name;
+   * switch (decoder.readInt()) {
+   *   case 0:
+   *     name = "VALUE0";
+   *     break;
+   *   ...
+   *   default:
+   *     throw new IOException("Invalid enum index.");
+   * }
+   * return Enum.valueOf(enumClass, name);
+   * }
+   * </pre>
+   */
+  private void readEnum(GeneratorAdapter mg, TypeToken<?> inputType, Schema schema) {
+    Class<?> rawType = inputType.getRawType();
+    Preconditions.checkArgument(rawType.isEnum(), "Cannot decode enum to %s.", inputType);
+
+    List<String> enumValues = Lists.newArrayList(schema.getEnumValues());
+    for (String enumValue : enumValues) {
+      Preconditions.checkArgument(containsEnumValue(rawType, enumValue),
+                                  "Enum value '%s' missing in %s.", enumValue, inputType);
+    }
+
+    mg.loadThis();
+    mg.getField(classType, getClassFieldName(rawType), Type.getType(Class.class));
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.tableSwitch(IntStream.range(0, enumValues.size()).toArray(), new TableSwitchGenerator() {
+      @Override
+      public void generateCase(int key, Label end) {
+        mg.push(enumValues.get(key));
+        mg.goTo(end);
+      }
+
+      @Override
+      public void generateDefault() {
+        mg.throwException(Type.getType(IOException.class), "Invalid enum index.");
+      }
+    });
+    mg.invokeStatic(Type.getType(Enum.class), getMethod(Enum.class, "valueOf", Class.class, String.class));
+  }
+
+  /**
+   * Generates code for decoding array into a Collection. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Collection<T> collection = (Collection<T>) instantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     collection.add(readElement(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return collection;
+   * }
+   * </pre>
+   */
+  private void readCollection(GeneratorAdapter mg, TypeToken<?> inputType,
+                              TypeToken<?> componentType, Schema componentSchema) {
+    Type collectionType = Type.getType(Collection.class);
+
+    createInstance(mg, inputType.getRawType());
+    mg.checkCast(collectionType);
+    int collection = mg.newLocal(collectionType);
+    mg.storeLocal(collection);
+
+    Method readElement = getReadMethod(componentType, componentSchema);
+    generateBlockLoop(mg, () -> {
+      mg.loadLocal(collection);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, readElement);
+      mg.invokeInterface(collectionType, getMethod(boolean.class, "add", Object.class));
+      mg.pop();
+    });
+
+    mg.loadLocal(collection);
+  }
+
+  /**
+   * Generates code for decoding array into a java array. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * int size = 0;
+   * T[] array = new T[len];
+   * while (len != 0) {
+   *   int end = size + len;
+   *   if (end > array.length) {
+   *     T[] newArray = new T[end];
+   *     System.arraycopy(array, 0, newArray, 0, size);
+   *     array = newArray;
+   *   }
+   *   for (; size < end; size++) {
+   *     array[size] = readElement(decoder);
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return array;
+   * }
+   * </pre>
+   */
+  private void readArray(GeneratorAdapter mg, TypeToken<?> inputType, Schema componentSchema) {
+    TypeToken<?> componentType = inputType.getComponentType();
+    Class<?> componentRawType = componentType.getRawType();
+    boolean primitive = componentRawType.isPrimitive();
+    Type arrayType = primitive ? Type.getType(inputType.getRawType()) : Type.getType(Object[].class);
+    Type elementType = primitive ? Type.getType(componentRawType) : OBJECT_TYPE;
+    Method readElement = getReadMethod(componentType, componentSchema);
+
+    int len = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+
+    int size = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(size);
+
+    int array = mg.newLocal(arrayType);
+    newArray(mg, componentRawType, len);
+    mg.storeLocal(array);
+
+    // while (len != 0)
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    int end = mg.newLocal(Type.INT_TYPE);
+    mg.loadLocal(size);
+    mg.loadLocal(len);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.storeLocal(end);
+
+    // Grow the array if needed
+    Label noGrow = mg.newLabel();
+    mg.loadLocal(end);
+    mg.loadLocal(array);
+    mg.arrayLength();
+    mg.ifICmp(GeneratorAdapter.LE, noGrow);
+    int grownArray = mg.newLocal(arrayType);
+    newArray(mg, componentRawType, end);
+    mg.storeLocal(grownArray);
+    mg.loadLocal(array);
+    mg.push(0);
+    mg.loadLocal(grownArray);
+    mg.push(0);
+    mg.loadLocal(size);
+    mg.invokeStatic(Type.getType(System.class),
+                    getMethod(void.class, "arraycopy", Object.class, int.class, Object.class, int.class, int.class));
+    mg.loadLocal(grownArray);
+    mg.storeLocal(array);
+    mg.mark(noGrow);
+
+    // for (; size < end; size++)
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(size);
+    mg.loadLocal(end);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, readElement);
+    mg.arrayStore(elementType);
+
+    mg.iinc(size, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+
+    mg.loadLocal(array);
+  }
+
+  /**
+   * Generates code for decoding map value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Map<K, V> map = (Map<K, V>) instantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     map.put(readKey(decoder), readValue(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return map;
+   * }
+   * </pre>
+   */
+  private void readMap(GeneratorAdapter mg, TypeToken<?> inputType, TypeToken<?> keyType, TypeToken<?> valueType,
+                       Schema keySchema, Schema valueSchema) {
+    Type mapType = Type.getType(Map.class);
+
+    createInstance(mg, inputType.getRawType());
+    mg.checkCast(mapType);
+    int map = mg.newLocal(mapType);
+    mg.storeLocal(map);
+
+    Method readKey = getReadMethod(keyType, keySchema);
+    Method readValue = getReadMethod(valueType, valueSchema);
+    generateBlockLoop(mg, () -> {
+      mg.loadLocal(map);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, readKey);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, readValue);
+      mg.invokeInterface(mapType, getMethod(Object.class, "put", Object.class, Object.class));
+      mg.pop();
+    });
+
+    mg.loadLocal(map);
+  }
+
+  /**
+   * Generates code for decoding a record into a java class. Fields are set through {@link FieldAccessor}.
+   * The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Object record = instantiator.create();
+   * fieldAccessor1.set(record, readField1(decoder));
+   * fieldAccessor2.setInt(record, readField2(decoder));
+   * ...
+   * return record;
+   * }
+   * </pre>
+   */
+  private void readRecord(GeneratorAdapter mg, TypeToken<?> inputType, Schema schema) {
+    Class<?> rawType = inputType.getRawType();
+    Preconditions.checkArgument(!rawType.isInterface() && !rawType.isArray() && !rawType.isPrimitive(),
+                                "Cannot decode record to %s.", inputType);
+
+    createInstance(mg, rawType);
+    int record = mg.newLocal(OBJECT_TYPE);
+    mg.storeLocal(record);
+
+    for (Schema.Field field : schema.getFields()) {
+      TypeToken<?> fieldType;
+      try {
+        fieldType = inputType.resolveType(Fields.findField(inputType.getType(), field.getName()).getGenericType());
+      } catch (NoSuchFieldException e) {
+        throw new IllegalArgumentException(e.getMessage(), e);
+      }
+      fieldAccessorRequests.put(inputType, field.getName());
+
+      // this.fieldAccessorName.setXXX(record, readField(decoder));
+      mg.loadThis();
+      mg.getField(classType, getFieldAccessorName(inputType, field.getName()), Type.getType(FieldAccessor.class));
+      mg.loadLocal(record);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, getReadMethod(fieldType, field.getSchema()));
+      mg.invokeInterface(Type.getType(FieldAccessor.class), getAccessorMethod(fieldType));
+    }
+
+    mg.loadLocal(record);
+  }
+
+  /**
+   * Generates code for decoding union value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * switch (decoder.readInt()) {
+   *   case 0:
+   *     return readUnion0(decoder);
+   *   ...
+   *   default:
+   *     throw new IOException("Invalid union index.");
+   * }
+   * }
+   * </pre>
+   */
+  private void readUnion(GeneratorAdapter mg, TypeToken<?> inputType, Schema schema) {
+    Preconditions.checkArgument(!inputType.getRawType().isPrimitive(), "Cannot decode union to %s.", inputType);
+
+    List<Method> methods = Lists.newArrayList();
+    for (Schema unionSchema : schema.getUnionSchemas()) {
+      methods.add(getReadMethod(inputType, unionSchema));
+    }
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.tableSwitch(IntStream.range(0, methods.size()).toArray(), new TableSwitchGenerator() {
+      @Override
+      public void generateCase(int key, Label end) {
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.invokeVirtual(classType, methods.get(key));
+        mg.goTo(end);
+      }
+
+      @Override
+      public void generateDefault() {
+        mg.throwException(Type.getType(IOException.class), "Invalid union index.");
+      }
+    });
+  }
+
+  /**
+   * Generates a loop for decoding the blocks of an array or map. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     // body
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * }
+   * </pre>
+   */
+  private void generateBlockLoop(GeneratorAdapter mg, Runnable body) {
+    int len = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    body.run();
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+  }
+
+  /**
+   * Generates code to create an instance of the given type with the {@link Instantiator} and leaves it on the stack.
+   */
+  private void createInstance(GeneratorAdapter mg, Class<?> rawType) {
+    String instantiatorName = String.format("instantiator$%s", normalizeTypeName(TypeToken.of(rawType)));
+    instantiatorRequests.put(instantiatorName, rawType);
+    preserveClass(rawType);
+
+    mg.loadThis();
+    mg.getField(classType, instantiatorName, Type.getType(Instantiator.class));
+    mg.invokeInterface(Type.getType(Instantiator.class), getMethod(Object.class, "create"));
+  }
+
+  /**
+   * Generates code to create a new array of the given component type, with length from the given local variable.
+   */
+  private void newArray(GeneratorAdapter mg, Class<?> componentRawType, int lengthLocal) {
+    if (componentRawType.isPrimitive()) {
+      mg.loadLocal(lengthLocal);
+      mg.newArray(Type.getType(componentRawType));
+      return;
+    }
+
+    // (Object[]) Array.newInstance(componentClass, length), as the component class may not be accessible
+    mg.loadThis();
+    mg.getField(classType, getClassFieldName(componentRawType), Type.getType(Class.class));
+    mg.loadLocal(lengthLocal);
+    mg.invokeStatic(Type.getType(Array.class), getMethod(Object.class, "newInstance", Class.class, int.class));
+    mg.checkCast(Type.getType(Object[].class));
+  }
+
+  /**
+   * Returns the name of the class field for storing the given {@link Class}.
+   */
+  private String getClassFieldName(Class<?> cls) {
+    String name = String.format("class$%s", normalizeTypeName(TypeToken.of(cls)));
+    classRequests.put(name, cls);
+    preserveClass(cls);
+    return name;
+  }
+
+  /**
+   * Preserves class loading of the given class, or the element class if the given class is an array,
+   * since the class might be defined by the user.
+   */
+  private void preserveClass(Class<?> cls) {
+    while (cls.isArray()) {
+      cls = cls.getComponentType();
+    }
+    if (!cls.isPrimitive() && !preservedClasses.contains(cls)) {
+      preservedClasses.add(cls);
+    }
+  }
+
+  /**
+   * Generates code to load the given class with {@link Class#forName(String)}, which uses the ClassLoader of the
+   * generated class, such that classes that are not accessible by the generated class can be used.
+   */
+  private void loadClass(GeneratorAdapter mg, Class<?> cls) {
+    mg.push(cls.getName());
+    mg.invokeStatic(Type.getType(Class.class), getMethod(Class.class, "forName", String.class));
+  }
+
+  private boolean containsEnumValue(Class<?> enumClass, String value) {
+    for (Object constant : enumClass.getEnumConstants()) {
+      if (((Enum<?>) constant).name().equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private <T> TypeToken<DatumReader<T>> getInterfaceType(TypeToken<T> type) {
+    return new TypeToken<DatumReader<T>>() {
+    }.where(new TypeParameter<T>() {
+    }, type);
+  }
+
+  private String getClassName(TypeToken<?> interfaceType, Schema schema) {
+    return String.format("%s/%s%s%s",
+                         interfaceType.getRawType().getPackage().getName().replace('.', '/'),
+                         normalizeTypeName(TypeToken.of(((ParameterizedType) interfaceType.getType())
+                                                          .getActualTypeArguments()[0])),
+                         interfaceType.getRawType().getSimpleName(), schema.getSchemaHash());
+  }
+
+  private String normalizeTypeName(TypeToken<?> type) {
+    String typeName = type.toString();
+    int dimension = 0;
+    while (type.isArray()) {
+      type = type.getComponentType();
+      typeName = type.toString();
+      dimension++;
+    }
+
+    typeName = typeName.replace(".", "")
+                        .replace("<", "Of")
+                        .replace(">", "")
+                        .replace(",", "To")
+                        .replace(" ", "")
+                        .replace("$", "");
+    if (dimension > 0) {
+      typeName = "Array" + dimension + typeName;
+    }
+    return typeName;
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+
+  /**
+   * Returns the type returned by the read method of the given type. Primitive types are returned as is, and all
+   * other types are returned as {@link Object}. This is needed to work with private classes that the
+   * generated DatumReader doesn't have access to.
+   */
+  private Type getCallType(TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    return rawType.isPrimitive() ? Type.getType(rawType) : OBJECT_TYPE;
+  }
+
+  /**
+   * Returns the method for setting a field value through {@link FieldAccessor} based on the data type.
+   *
+   * @param type Data type.
+   * @return A {@link Method} for calling {@link FieldAccessor}.
+   */
+  private Method getAccessorMethod(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    if (rawType.isPrimitive()) {
+      return getMethod(void.class,
+                       String.format("set%c%s",
+                                     Character.toUpperCase(rawType.getName().charAt(0)),
+                                     rawType.getName().substring(1)),
+                       Object.class, rawType);
+    } else {
+      return getMethod(void.class, "set", Object.class, Object.class);
+    }
+  }
+
+  /**
+   * Generates the name of the class field for storing {@link FieldAccessor} for the given record field.
+   *
+   * @param recordType Type of the record.
+   * @param fieldName name of the field.
+   * @return name of the class field.
+   */
+  private String getFieldAccessorName(TypeToken<?> recordType, String fieldName) {
+    return String.format("%s$%s", normalizeTypeName(recordType), fieldName);
+  }
+}
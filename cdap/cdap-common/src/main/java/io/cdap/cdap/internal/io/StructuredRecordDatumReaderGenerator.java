@@ -0,0 +1,526 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.io;
+
+import com.google.common.base.Preconditions;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.common.io.Decoder;
+import io.cdap.cdap.format.io.StructuredRecordDatumReader;
+import io.cdap.cdap.internal.asm.ClassDefinition;
+import io.cdap.cdap.internal.asm.Methods;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+import org.objectweb.asm.commons.TableSwitchGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating a {@link StructuredRecordDatumReader} that is specialized for one record {@link Schema}
+ * using ASM. The generated class decodes data written with that schema into the same {@link StructuredRecord}
+ * as {@link StructuredRecordDatumReader}, without interpreting the schema for every record.
+ * The class generated will have a skeleton looks like the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName extends StructuredRecordDatumReader {
+ *    private static final String SCHEMA_HASH = "schema_hash_as_hex_string";
+ *    private final Schema[] schemas;
+ *
+ *    public generatedClassName(Schema[] schemas) {
+ *      if (!SCHEMA_HASH.equals(schemas[0].getSchemaHash().toString())) {
+ *        throw new IllegalArgumentException("Schema not match.");
+ *      }
+ *      this.schemas = schemas;
+ *    }
+ *
+ *    @Override
+ *    public StructuredRecord read(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      return (StructuredRecord) generatedDecodeMethod(decoder);
+ *    }
+ *
+ *    private Object generatedDecodeMethod(Decoder decoder) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the schema.
+ *    }
+ *
+ *    // Could have more generatedDecodeMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * The {@code schemas} array contains the schemas returned by {@link #getSchemas()}, with the record schema at
+ * index {@code 0}. The source schema passed to the {@code read} method is not used by the generated class,
+ * hence the caller has to make sure it is the same as the schema used for generation.
+ */
+@NotThreadSafe
+final class StructuredRecordDatumReaderGenerator {
+
+  private static final Type DECODER_TYPE = Type.getType(Decoder.class);
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+  private static final Type SCHEMA_TYPE = Type.getType(Schema.class);
+  private static final Type BUILDER_TYPE = Type.getType(StructuredRecord.Builder.class);
+
+  private final Map<Schema, Method> decodeMethods = new HashMap<>();
+  private final Map<Schema, Integer> schemaIndices = new HashMap<>();
+  private final List<Schema> schemas = new ArrayList<>();
+  private ClassWriter classWriter;
+  private Type classType;
+
+  /**
+   * Generates a {@link StructuredRecordDatumReader} class for decoding {@link StructuredRecord} of the given schema.
+   *
+   * @param schema the record schema
+   * @return A {@link ClassDefinition} that contains generated class information.
+   */
+  ClassDefinition generate(Schema schema) {
+    Preconditions.checkArgument(schema.getType() == Schema.Type.RECORD, "Expected schema of type RECORD. Got: %s",
+                                schema.getType());
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    String className = Type.getInternalName(StructuredRecordDatumReader.class) + schema.getSchemaHash();
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL, className, null,
+                      Type.getInternalName(StructuredRecordDatumReader.class), null);
+
+    // Static schema hash field, for verification
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC + Opcodes.ACC_FINAL, "SCHEMA_HASH",
+                           Type.getDescriptor(String.class), null, schema.getSchemaHash().toString()).visitEnd();
+
+    // Schemas field
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, "schemas",
+                           Type.getDescriptor(Schema[].class), null, null).visitEnd();
+
+    // The record schema is always at index 0
+    getSchemaIndex(schema);
+
+    generateRead(schema);
+    generateConstructor();
+
+    return new ClassDefinition(classWriter.toByteArray(), className);
+  }
+
+  /**
+   * Returns the list of schemas that need to be passed to the constructor of the generated class,
+   * as an array in the same order.
+   */
+  List<Schema> getSchemas() {
+    return Collections.unmodifiableList(schemas);
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature {@code (Schema[])}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", Schema[].class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super();
+    mg.loadThis();
+    mg.invokeConstructor(Type.getType(StructuredRecordDatumReader.class), getMethod(void.class, "<init>"));
+
+    // if (!SCHEMA_HASH.equals(schemas[0].getSchemaHash().toString())) { throw IllegalArgumentException }
+    mg.getStatic(classType, "SCHEMA_HASH", Type.getType(String.class));
+    mg.loadArg(0);
+    mg.push(0);
+    mg.arrayLoad(SCHEMA_TYPE);
+    mg.invokeVirtual(SCHEMA_TYPE, getMethod(SchemaHash.class, "getSchemaHash"));
+    mg.invokeVirtual(Type.getType(SchemaHash.class), getMethod(String.class, "toString"));
+    mg.invokeVirtual(Type.getType(String.class), getMethod(boolean.class, "equals", Object.class));
+    Label hashEquals = mg.newLabel();
+    mg.ifZCmp(GeneratorAdapter.NE, hashEquals);
+    mg.throwException(Type.getType(IllegalArgumentException.class), "Schema not match.");
+    mg.mark(hashEquals);
+
+    // this.schemas = schemas;
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.putField(classType, "schemas", Type.getType(Schema[].class));
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link StructuredRecordDatumReader#read(Decoder, Schema)} method.
+   */
+  private void generateRead(Schema schema) {
+    Method readMethod = getMethod(StructuredRecord.class, "read", Decoder.class, Schema.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, readMethod, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+
+    // Delegate to the actual decode method(decoder)
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getDecodeMethod(schema));
+    mg.checkCast(Type.getType(StructuredRecord.class));
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the decode method for the given schema. The same method will be returned if the same schema
+   * has been passed to the method before.
+   */
+  private Method getDecodeMethod(Schema schema) {
+    Method method = decodeMethods.get(schema);
+    if (method != null) {
+      return method;
+    }
+
+    method = new Method("decode" + schema.getSchemaHash(), OBJECT_TYPE, new Type[] { DECODER_TYPE });
+
+    // Put the method into map first before generating the body in order to support recursive schema.
+    decodeMethods.put(schema, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+    generateDecodeBody(mg, schema);
+    mg.returnValue();
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the decode method body, which leaves the decoded value on the stack.
+   */
+  private void generateDecodeBody(GeneratorAdapter mg, Schema schema) {
+    switch (schema.getType()) {
+      case NULL:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(Object.class, "readNull"));
+        mg.pop();
+        mg.visitInsn(Opcodes.ACONST_NULL);
+        break;
+      case BOOLEAN:
+        decodeSimple(mg, boolean.class, "readBool");
+        break;
+      case INT:
+        decodeSimple(mg, int.class, "readInt");
+        break;
+      case LONG:
+        decodeSimple(mg, long.class, "readLong");
+        break;
+      case FLOAT:
+        decodeSimple(mg, float.class, "readFloat");
+        break;
+      case DOUBLE:
+        decodeSimple(mg, double.class, "readDouble");
+        break;
+      case BYTES:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(ByteBuffer.class, "readBytes"));
+        break;
+      case STRING:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(String.class, "readString"));
+        break;
+      case ENUM:
+        // schemas[enumSchemaIdx].getEnumValue(decoder.readInt());
+        loadSchema(mg, schema);
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+        mg.invokeVirtual(SCHEMA_TYPE, getMethod(String.class, "getEnumValue", int.class));
+        break;
+      case ARRAY:
+        decodeArray(mg, schema);
+        break;
+      case MAP:
+        decodeMap(mg, schema);
+        break;
+      case RECORD:
+        decodeRecord(mg, schema);
+        break;
+      case UNION:
+        decodeUnion(mg, schema);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported schema: " + schema);
+    }
+  }
+
+  /**
+   * Generates code for decoding a simple value and boxing it, e.g. {@code Integer.valueOf(decoder.readInt())}.
+   */
+  private void decodeSimple(GeneratorAdapter mg, Class<?> primitiveType, String decodeMethod) {
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(primitiveType, decodeMethod));
+    mg.valueOf(Type.getType(primitiveType));
+  }
+
+  /**
+   * Generates code for decoding array value into a {@link ArrayList}. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * List list = new ArrayList(len);
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     list.add(decodeElement(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return list;
+   * }
+   * </pre>
+   */
+  private void decodeArray(GeneratorAdapter mg, Schema schema) {
+    Method elementMethod = getDecodeMethod(schema.getComponentSchema());
+    Type listType = Type.getType(ArrayList.class);
+
+    int len = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+
+    int list = mg.newLocal(listType);
+    mg.newInstance(listType);
+    mg.dup();
+    mg.loadLocal(len);
+    mg.invokeConstructor(listType, getMethod(void.class, "<init>", int.class));
+    mg.storeLocal(list);
+
+    generateBlockLoop(mg, len, () -> {
+      mg.loadLocal(list);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, elementMethod);
+      mg.invokeVirtual(listType, getMethod(boolean.class, "add", Object.class));
+      mg.pop();
+    });
+
+    mg.loadLocal(list);
+  }
+
+  /**
+   * Generates code for decoding map value into a {@link LinkedHashMap}. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * Map map = new LinkedHashMap(len);
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     map.put(decodeKey(decoder), decodeValue(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return map;
+   * }
+   * </pre>
+   */
+  private void decodeMap(GeneratorAdapter mg, Schema schema) {
+    Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+    Method keyMethod = getDecodeMethod(mapSchema.getKey());
+    Method valueMethod = getDecodeMethod(mapSchema.getValue());
+    Type mapType = Type.getType(LinkedHashMap.class);
+
+    int len = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+
+    int map = mg.newLocal(mapType);
+    mg.newInstance(mapType);
+    mg.dup();
+    mg.loadLocal(len);
+    mg.invokeConstructor(mapType, getMethod(void.class, "<init>", int.class));
+    mg.storeLocal(map);
+
+    generateBlockLoop(mg, len, () -> {
+      mg.loadLocal(map);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, keyMethod);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, valueMethod);
+      mg.invokeVirtual(mapType, getMethod(Object.class, "put", Object.class, Object.class));
+      mg.pop();
+    });
+
+    mg.loadLocal(map);
+  }
+
+  /**
+   * Generates code for decoding record value. Fields are set by position to the record builder.
+   * The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * StructuredRecord.Builder builder = StructuredRecord.builder(schemas[recordSchemaIdx]);
+   * builder.set(0, decodeField0(decoder));
+   * builder.set(1, decodeField1(decoder));
+   * ...
+   * return builder.build();
+   * }
+   * </pre>
+   */
+  private void decodeRecord(GeneratorAdapter mg, Schema schema) {
+    List<Schema.Field> fields = schema.getFields();
+    List<Method> fieldMethods = new ArrayList<>(fields.size());
+    for (Schema.Field field : fields) {
+      fieldMethods.add(getDecodeMethod(field.getSchema()));
+    }
+
+    loadSchema(mg, schema);
+    mg.invokeStatic(Type.getType(StructuredRecord.class),
+                    getMethod(StructuredRecord.Builder.class, "builder", Schema.class));
+    for (int i = 0; i < fieldMethods.size(); i++) {
+      mg.push(i);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, fieldMethods.get(i));
+      mg.invokeVirtual(BUILDER_TYPE, getMethod(StructuredRecord.Builder.class, "set", int.class, Object.class));
+    }
+    mg.invokeVirtual(BUILDER_TYPE, getMethod(StructuredRecord.class, "build"));
+  }
+
+  /**
+   * Generates code for decoding union value. An invalid union index is handled the same way as
+   * {@link StructuredRecordDatumReader}. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int idx = decoder.readInt();
+   * switch (idx) {
+   *   case 0:
+   *     return decodeBranch0(decoder);
+   *   ...
+   *   default:
+   *     return decode(decoder, schemas[unionSchemaIdx].getUnionSchema(idx));
+   * }
+   * }
+   * </pre>
+   */
+  private void decodeUnion(GeneratorAdapter mg, Schema schema) {
+    List<Method> methods = new ArrayList<>();
+    for (Schema unionSchema : schema.getUnionSchemas()) {
+      methods.add(getDecodeMethod(unionSchema));
+    }
+
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(idx);
+
+    mg.loadLocal(idx);
+    mg.tableSwitch(IntStream.range(0, methods.size()).toArray(), new TableSwitchGenerator() {
+      @Override
+      public void generateCase(int key, Label end) {
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.invokeVirtual(classType, methods.get(key));
+        mg.goTo(end);
+      }
+
+      @Override
+      public void generateDefault() {
+        mg.loadThis();
+        mg.loadArg(0);
+        loadSchema(mg, schema);
+        mg.loadLocal(idx);
+        mg.invokeVirtual(SCHEMA_TYPE, getMethod(Schema.class, "getUnionSchema", int.class));
+        mg.invokeVirtual(classType, getMethod(Object.class, "decode", Decoder.class, Schema.class));
+      }
+    });
+  }
+
+  /**
+   * Generates a loop for decoding the blocks of an array or map, with the first block length already read
+   * into the given local. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     // body
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * }
+   * </pre>
+   */
+  private void generateBlockLoop(GeneratorAdapter mg, int len, Runnable body) {
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    body.run();
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+  }
+
+  /**
+   * Generates code for loading the given {@link Schema} from the {@code schemas} field.
+   */
+  private void loadSchema(GeneratorAdapter mg, Schema schema) {
+    mg.loadThis();
+    mg.getField(classType, "schemas", Type.getType(Schema[].class));
+    mg.push(getSchemaIndex(schema));
+    mg.arrayLoad(SCHEMA_TYPE);
+  }
+
+  private int getSchemaIndex(Schema schema) {
+    return schemaIndices.computeIfAbsent(schema, s -> {
+      schemas.add(s);
+      return schemas.size() - 1;
+    });
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+}
@@ -0,0 +1,710 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.io;
+
+import com.google.common.base.Preconditions;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.common.io.Encoder;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.internal.asm.ClassDefinition;
+import io.cdap.cdap.internal.asm.Methods;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating a {@link StructuredRecordDatumWriter} that is specialized for one record {@link Schema}
+ * using ASM. The generated class encodes exactly the same bytes as {@link StructuredRecordDatumWriter}, without
+ * interpreting the schema for every record. The class generated will have a skeleton looks like the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName extends StructuredRecordDatumWriter {
+ *    private static final String SCHEMA_HASH = "schema_hash_as_hex_string";
+ *    private final Schema[] schemas;
+ *
+ *    public generatedClassName(Schema[] schemas) {
+ *      if (!SCHEMA_HASH.equals(schemas[0].getSchemaHash().toString())) {
+ *        throw new IllegalArgumentException("Schema not match.");
+ *      }
+ *      this.schemas = schemas;
+ *    }
+ *
+ *    @Override
+ *    public void encode(StructuredRecord data, Encoder encoder) throws IOException {
+ *      generatedEncodeMethod(encoder, data);
+ *    }
+ *
+ *    private void generatedEncodeMethod(Encoder encoder, Object value) throws IOException {
+ *      // Do actual encoding by calling methods on encoder based on the schema.
+ *    }
+ *
+ *    // Could have more generatedEncodeMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * The {@code schemas} array contains the schemas returned by {@link #getSchemas()}, with the record schema at
+ * index {@code 0}. Values that the generated code doesn't handle are encoded by calling the
+ * {@link StructuredRecordDatumWriter#encode(Encoder, Schema, Object)} method with the corresponding schema.
+ */
+@NotThreadSafe
+final class StructuredRecordDatumWriterGenerator {
+
+  private static final Type ENCODER_TYPE = Type.getType(Encoder.class);
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+  private static final Type SCHEMA_TYPE = Type.getType(Schema.class);
+  private static final Type RECORD_TYPE = Type.getType(StructuredRecord.class);
+  private static final Type COLLECTION_TYPE = Type.getType(Collection.class);
+  private static final Type MAP_TYPE = Type.getType(Map.class);
+  private static final Type ITERATOR_TYPE = Type.getType(Iterator.class);
+
+  private final Map<Schema, Method> encodeMethods = new HashMap<>();
+  private final Map<Schema, Integer> schemaIndices = new HashMap<>();
+  private final List<Schema> schemas = new ArrayList<>();
+  private ClassWriter classWriter;
+  private Type classType;
+
+  /**
+   * Generates a {@link StructuredRecordDatumWriter} class for encoding {@link StructuredRecord} of the given schema.
+   *
+   * @param schema the record schema
+   * @return A {@link ClassDefinition} that contains generated class information.
+   */
+  ClassDefinition generate(Schema schema) {
+    Preconditions.checkArgument(schema.getType() == Schema.Type.RECORD, "Expected schema of type RECORD. Got: %s",
+                                schema.getType());
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    String className = Type.getInternalName(StructuredRecordDatumWriter.class) + schema.getSchemaHash();
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL, className, null,
+                      Type.getInternalName(StructuredRecordDatumWriter.class), null);
+
+    // Static schema hash field, for verification
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC + Opcodes.ACC_FINAL, "SCHEMA_HASH",
+                           Type.getDescriptor(String.class), null, schema.getSchemaHash().toString()).visitEnd();
+
+    // Schemas field
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, "schemas",
+                           Type.getDescriptor(Schema[].class), null, null).visitEnd();
+
+    // The record schema is always at index 0
+    getSchemaIndex(schema);
+
+    generateEncode(schema);
+    generateConstructor();
+
+    return new ClassDefinition(classWriter.toByteArray(), className);
+  }
+
+  /**
+   * Returns the list of schemas that need to be passed to the constructor of the generated class,
+   * as an array in the same order.
+   */
+  List<Schema> getSchemas() {
+    return Collections.unmodifiableList(schemas);
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature {@code (Schema[])}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", Schema[].class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super();
+    mg.loadThis();
+    mg.invokeConstructor(Type.getType(StructuredRecordDatumWriter.class), getMethod(void.class, "<init>"));
+
+    // if (!SCHEMA_HASH.equals(schemas[0].getSchemaHash().toString())) { throw IllegalArgumentException }
+    mg.getStatic(classType, "SCHEMA_HASH", Type.getType(String.class));
+    mg.loadArg(0);
+    mg.push(0);
+    mg.arrayLoad(SCHEMA_TYPE);
+    mg.invokeVirtual(SCHEMA_TYPE, getMethod(SchemaHash.class, "getSchemaHash"));
+    mg.invokeVirtual(Type.getType(SchemaHash.class), getMethod(String.class, "toString"));
+    mg.invokeVirtual(Type.getType(String.class), getMethod(boolean.class, "equals", Object.class));
+    Label hashEquals = mg.newLabel();
+    mg.ifZCmp(GeneratorAdapter.NE, hashEquals);
+    mg.throwException(Type.getType(IllegalArgumentException.class), "Schema not match.");
+    mg.mark(hashEquals);
+
+    // this.schemas = schemas;
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.putField(classType, "schemas", Type.getType(Schema[].class));
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link StructuredRecordDatumWriter#encode(StructuredRecord, Encoder)} method.
+   */
+  private void generateEncode(Schema schema) {
+    Method encodeMethod = getMethod(void.class, "encode", StructuredRecord.class, Encoder.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, encodeMethod, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+
+    // Delegate to the actual encode method(encoder, data)
+    mg.loadThis();
+    mg.loadArg(1);
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getEncodeMethod(schema));
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the encode method for the given schema. The same method will be returned if the same schema
+   * has been passed to the method before.
+   */
+  private Method getEncodeMethod(Schema schema) {
+    Method method = encodeMethods.get(schema);
+    if (method != null) {
+      return method;
+    }
+
+    method = new Method("encode" + schema.getSchemaHash(), Type.VOID_TYPE, new Type[] { ENCODER_TYPE, OBJECT_TYPE });
+
+    // Put the method into map first before generating the body in order to support recursive schema.
+    encodeMethods.put(schema, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+    generateEncodeBody(mg, schema);
+    mg.returnValue();
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the encode method body, with the encoder as the first argument and the value as the second argument.
+   */
+  private void generateEncodeBody(GeneratorAdapter mg, Schema schema) {
+    switch (schema.getType()) {
+      case NULL:
+        mg.loadArg(0);
+        mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeNull"));
+        mg.pop();
+        break;
+      case BOOLEAN:
+        encodeSimple(mg, Boolean.class, boolean.class, "writeBool");
+        break;
+      case INT:
+        encodeSimple(mg, Integer.class, int.class, "writeInt");
+        break;
+      case LONG:
+        encodeSimple(mg, Long.class, long.class, "writeLong");
+        break;
+      case FLOAT:
+        encodeSimple(mg, Float.class, float.class, "writeFloat");
+        break;
+      case DOUBLE:
+        encodeSimple(mg, Double.class, double.class, "writeDouble");
+        break;
+      case STRING:
+        mg.loadArg(0);
+        mg.loadArg(1);
+        mg.checkCast(Type.getType(String.class));
+        mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeString", String.class));
+        mg.pop();
+        break;
+      case ARRAY:
+        encodeArray(mg, schema);
+        break;
+      case MAP:
+        encodeMap(mg, schema);
+        break;
+      case RECORD:
+        encodeRecord(mg, schema);
+        break;
+      case UNION:
+        encodeUnion(mg, schema);
+        break;
+      default:
+        // Bytes and enum are not on the common path, hence just use the interpreter.
+        encodeWithInterpreter(mg, schema);
+    }
+  }
+
+  /**
+   * Generates code for encoding a boxed simple value, which has the same casting behavior as
+   * {@link StructuredRecordDatumWriter}, e.g. {@code encoder.writeInt((Integer) value)}.
+   */
+  private void encodeSimple(GeneratorAdapter mg, Class<?> boxedType, Class<?> primitiveType, String encodeMethod) {
+    mg.loadArg(0);
+    mg.loadArg(1);
+    mg.checkCast(Type.getType(boxedType));
+    mg.invokeVirtual(Type.getType(boxedType), getMethod(primitiveType, primitiveType.getName() + "Value"));
+    mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, encodeMethod, primitiveType));
+    mg.pop();
+  }
+
+  /**
+   * Generates code for encoding array value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * if (!(value instanceof Collection)) {
+   *   encode(encoder, schemas[arraySchemaIdx], value);
+   *   return;
+   * }
+   * Collection collection = (Collection) value;
+   * encoder.writeInt(collection.size());
+   * Iterator iterator = collection.iterator();
+   * while (iterator.hasNext()) {
+   *   encodeElement(encoder, iterator.next());
+   * }
+   * encoder.writeInt(0);
+   * }
+   * </pre>
+   */
+  private void encodeArray(GeneratorAdapter mg, Schema schema) {
+    Method elementMethod = getEncodeMethod(schema.getComponentSchema());
+
+    Label notCollection = mg.newLabel();
+    mg.loadArg(1);
+    mg.instanceOf(COLLECTION_TYPE);
+    mg.ifZCmp(GeneratorAdapter.EQ, notCollection);
+
+    int collection = mg.newLocal(COLLECTION_TYPE);
+    mg.loadArg(1);
+    mg.checkCast(COLLECTION_TYPE);
+    mg.storeLocal(collection);
+
+    mg.loadArg(0);
+    mg.loadLocal(collection);
+    mg.invokeInterface(COLLECTION_TYPE, getMethod(int.class, "size"));
+    mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeInt", int.class));
+    mg.pop();
+
+    mg.loadLocal(collection);
+    mg.invokeInterface(COLLECTION_TYPE, getMethod(Iterator.class, "iterator"));
+    generateIteratorLoop(mg, mg.newLocal(ITERATOR_TYPE), () -> {
+      int element = mg.newLocal(OBJECT_TYPE);
+      mg.storeLocal(element);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.loadLocal(element);
+      mg.invokeVirtual(classType, elementMethod);
+    });
+
+    mg.loadArg(0);
+    mg.push(0);
+    mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeInt", int.class));
+    mg.pop();
+
+    Label end = mg.newLabel();
+    mg.goTo(end);
+
+    // Arrays are encoded through the interpreter, which also raises the error for unsupported types.
+    mg.mark(notCollection);
+    encodeWithInterpreter(mg, schema);
+    mg.mark(end);
+  }
+
+  /**
+   * Generates code for encoding map value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * if (!(value instanceof Map)) {
+   *   encode(encoder, schemas[mapSchemaIdx], value);
+   *   return;
+   * }
+   * Map map = (Map) value;
+   * encoder.writeInt(map.size());
+   * Iterator iterator = map.entrySet().iterator();
+   * while (iterator.hasNext()) {
+   *   Map.Entry entry = (Map.Entry) iterator.next();
+   *   encodeKey(encoder, entry.getKey());
+   *   encodeValue(encoder, entry.getValue());
+   * }
+   * encoder.writeInt(0);
+   * }
+   * </pre>
+   */
+  private void encodeMap(GeneratorAdapter mg, Schema schema) {
+    Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+    Method keyMethod = getEncodeMethod(mapSchema.getKey());
+    Method valueMethod = getEncodeMethod(mapSchema.getValue());
+    Type entryType = Type.getType(Map.Entry.class);
+
+    Label notMap = mg.newLabel();
+    mg.loadArg(1);
+    mg.instanceOf(MAP_TYPE);
+    mg.ifZCmp(GeneratorAdapter.EQ, notMap);
+
+    int map = mg.newLocal(MAP_TYPE);
+    mg.loadArg(1);
+    mg.checkCast(MAP_TYPE);
+    mg.storeLocal(map);
+
+    mg.loadArg(0);
+    mg.loadLocal(map);
+    mg.invokeInterface(MAP_TYPE, getMethod(int.class, "size"));
+    mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeInt", int.class));
+    mg.pop();
+
+    mg.loadLocal(map);
+    mg.invokeInterface(MAP_TYPE, getMethod(Set.class, "entrySet"));
+    mg.invokeInterface(Type.getType(Set.class), getMethod(Iterator.class, "iterator"));
+    generateIteratorLoop(mg, mg.newLocal(ITERATOR_TYPE), () -> {
+      int entry = mg.newLocal(entryType);
+      mg.checkCast(entryType);
+      mg.storeLocal(entry);
+
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.loadLocal(entry);
+      mg.invokeInterface(entryType, getMethod(Object.class, "getKey"));
+      mg.invokeVirtual(classType, keyMethod);
+
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.loadLocal(entry);
+      mg.invokeInterface(entryType, getMethod(Object.class, "getValue"));
+      mg.invokeVirtual(classType, valueMethod);
+    });
+
+    mg.loadArg(0);
+    mg.push(0);
+    mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeInt", int.class));
+    mg.pop();
+
+    Label end = mg.newLabel();
+    mg.goTo(end);
+
+    // Let the interpreter raise the error
+    mg.mark(notMap);
+    encodeWithInterpreter(mg, schema);
+    mg.mark(end);
+  }
+
+  /**
+   * Generates code for encoding record value. Field values are read by position if the record has the same
+   * schema as the one being encoded, and by name otherwise. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * if (!(value instanceof StructuredRecord)) {
+   *   encode(encoder, schemas[recordSchemaIdx], value);
+   *   return;
+   * }
+   * StructuredRecord record = (StructuredRecord) value;
+   * boolean sameSchema = schemas[recordSchemaIdx].equals(record.getSchema());
+   *
+   * Object fieldValue = sameSchema ? record.get(0) : record.get("field0");
+   * try {
+   *   encodeField0(encoder, fieldValue);
+   * } catch (ClassCastException e) {
+   *   throw new IllegalArgumentException(String.format(...));
+   * }
+   * // Repeat for each field
+   * }
+   * </pre>
+   */
+  private void encodeRecord(GeneratorAdapter mg, Schema schema) {
+    List<Schema.Field> fields = schema.getFields();
+    List<Method> fieldMethods = new ArrayList<>(fields.size());
+    for (Schema.Field field : fields) {
+      fieldMethods.add(getEncodeMethod(field.getSchema()));
+    }
+
+    Label notRecord = mg.newLabel();
+    mg.loadArg(1);
+    mg.instanceOf(RECORD_TYPE);
+    mg.ifZCmp(GeneratorAdapter.EQ, notRecord);
+
+    int record = mg.newLocal(RECORD_TYPE);
+    mg.loadArg(1);
+    mg.checkCast(RECORD_TYPE);
+    mg.storeLocal(record);
+
+    int sameSchema = mg.newLocal(Type.BOOLEAN_TYPE);
+    loadSchema(mg, schema);
+    mg.loadLocal(record);
+    mg.invokeVirtual(RECORD_TYPE, getMethod(Schema.class, "getSchema"));
+    mg.invokeVirtual(SCHEMA_TYPE, getMethod(boolean.class, "equals", Object.class));
+    mg.storeLocal(sameSchema);
+
+    int fieldValue = mg.newLocal(OBJECT_TYPE);
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+
+      Label byName = mg.newLabel();
+      Label valueLoaded = mg.newLabel();
+      mg.loadLocal(sameSchema);
+      mg.ifZCmp(GeneratorAdapter.EQ, byName);
+      mg.loadLocal(record);
+      mg.push(i);
+      mg.invokeVirtual(RECORD_TYPE, getMethod(Object.class, "get", int.class));
+      mg.goTo(valueLoaded);
+      mg.mark(byName);
+      mg.loadLocal(record);
+      mg.push(field.getName());
+      mg.invokeVirtual(RECORD_TYPE, getMethod(Object.class, "get", String.class));
+      mg.mark(valueLoaded);
+      mg.storeLocal(fieldValue);
+
+      Label tryStart = mg.mark();
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.loadLocal(fieldValue);
+      mg.invokeVirtual(classType, fieldMethods.get(i));
+      Label tryEnd = mg.mark();
+
+      Label next = mg.newLabel();
+      mg.goTo(next);
+      mg.catchException(tryStart, tryEnd, Type.getType(ClassCastException.class));
+      mg.pop();
+      throwFieldTypeMismatch(mg, field, fieldValue);
+      mg.mark(next);
+    }
+
+    Label end = mg.newLabel();
+    mg.goTo(end);
+
+    // Let the interpreter raise the error
+    mg.mark(notRecord);
+    encodeWithInterpreter(mg, schema);
+    mg.mark(end);
+  }
+
+  /**
+   * Generates code for throwing the same {@link IllegalArgumentException} as {@link StructuredRecordDatumWriter}
+   * when a field value doesn't match the field schema.
+   */
+  private void throwFieldTypeMismatch(GeneratorAdapter mg, Schema.Field field, int fieldValue) {
+    Type exceptionType = Type.getType(IllegalArgumentException.class);
+    mg.newInstance(exceptionType);
+    mg.dup();
+
+    mg.push("A value for field '%s' is of type '%s', which does not match schema '%s'. ");
+    mg.push(3);
+    mg.newArray(OBJECT_TYPE);
+
+    mg.dup();
+    mg.push(0);
+    mg.push(field.getName());
+    mg.arrayStore(OBJECT_TYPE);
+
+    mg.dup();
+    mg.push(1);
+    mg.loadLocal(fieldValue);
+    mg.invokeVirtual(OBJECT_TYPE, getMethod(Class.class, "getClass"));
+    mg.invokeVirtual(Type.getType(Class.class), getMethod(String.class, "getName"));
+    mg.arrayStore(OBJECT_TYPE);
+
+    mg.dup();
+    mg.push(2);
+    loadSchema(mg, field.getSchema());
+    mg.arrayStore(OBJECT_TYPE);
+
+    mg.invokeStatic(Type.getType(String.class), getMethod(String.class, "format", String.class, Object[].class));
+    mg.invokeConstructor(exceptionType, getMethod(void.class, "<init>", String.class));
+    mg.throwException();
+  }
+
+  /**
+   * Generates code for encoding union value. The union branch is selected by the type of the value, in the same
+   * way as {@link StructuredRecordDatumWriter}. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * if (value == null) {             // For a null branch at index 0
+   *   encoder.writeInt(0);
+   *   encodeBranch0(encoder, value);
+   *   return;
+   * }
+   * if (value instanceof String) {   // For a string branch at index 1
+   *   encoder.writeInt(1);
+   *   encodeBranch1(encoder, value);
+   *   return;
+   * }
+   * ...
+   * encode(encoder, schemas[unionSchemaIdx], value);
+   * }
+   * </pre>
+   *
+   * Values that don't match any branch by the checks above, such as {@link Short} for int or Java arrays,
+   * are encoded through the interpreter.
+   */
+  private void encodeUnion(GeneratorAdapter mg, Schema schema) {
+    Label end = mg.newLabel();
+    List<Schema> unionSchemas = schema.getUnionSchemas();
+
+    for (int i = 0; i < unionSchemas.size(); i++) {
+      Schema branchSchema = unionSchemas.get(i);
+      Label nextBranch = mg.newLabel();
+
+      switch (branchSchema.getType()) {
+        case NULL:
+          mg.loadArg(1);
+          mg.ifNonNull(nextBranch);
+          break;
+        case BOOLEAN:
+          branchIfNotInstance(mg, Boolean.class, nextBranch);
+          break;
+        case INT:
+          branchIfNotInstance(mg, Integer.class, nextBranch);
+          break;
+        case LONG:
+          branchIfNotInstance(mg, Long.class, nextBranch);
+          break;
+        case FLOAT:
+          branchIfNotInstance(mg, Float.class, nextBranch);
+          break;
+        case DOUBLE:
+          branchIfNotInstance(mg, Double.class, nextBranch);
+          break;
+        case STRING:
+          branchIfNotInstance(mg, String.class, nextBranch);
+          break;
+        case BYTES:
+          Label isBytes = mg.newLabel();
+          mg.loadArg(1);
+          mg.instanceOf(Type.getType(byte[].class));
+          mg.ifZCmp(GeneratorAdapter.NE, isBytes);
+          branchIfNotInstance(mg, ByteBuffer.class, nextBranch);
+          mg.mark(isBytes);
+          break;
+        case ARRAY:
+          branchIfNotInstance(mg, Collection.class, nextBranch);
+          break;
+        case MAP:
+          // A value that is both Map and Collection is an array for the interpreter
+          branchIfNotInstance(mg, Map.class, nextBranch);
+          mg.loadArg(1);
+          mg.instanceOf(COLLECTION_TYPE);
+          mg.ifZCmp(GeneratorAdapter.NE, nextBranch);
+          break;
+        case RECORD:
+          branchIfNotInstance(mg, StructuredRecord.class, nextBranch);
+          break;
+        default:
+          // The interpreter never selects other branches by the value type
+          continue;
+      }
+
+      mg.loadArg(0);
+      mg.push(i);
+      mg.invokeInterface(ENCODER_TYPE, getMethod(Encoder.class, "writeInt", int.class));
+      mg.pop();
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.loadArg(1);
+      mg.invokeVirtual(classType, getEncodeMethod(branchSchema));
+      mg.goTo(end);
+      mg.mark(nextBranch);
+    }
+
+    encodeWithInterpreter(mg, schema);
+    mg.mark(end);
+  }
+
+  private void branchIfNotInstance(GeneratorAdapter mg, Class<?> cls, Label label) {
+    mg.loadArg(1);
+    mg.instanceOf(Type.getType(cls));
+    mg.ifZCmp(GeneratorAdapter.EQ, label);
+  }
+
+  /**
+   * Generates a loop over the {@link Iterator} on the top of the stack. The body is called with the
+   * next element on the top of the stack. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * while (iterator.hasNext()) {
+   *   // body with iterator.next() on the stack
+   * }
+   * }
+   * </pre>
+   */
+  private void generateIteratorLoop(GeneratorAdapter mg, int iterator, Runnable body) {
+    mg.storeLocal(iterator);
+    Label beginLoop = mg.mark();
+    Label endLoop = mg.newLabel();
+    mg.loadLocal(iterator);
+    mg.invokeInterface(ITERATOR_TYPE, getMethod(boolean.class, "hasNext"));
+    mg.ifZCmp(GeneratorAdapter.EQ, endLoop);
+
+    mg.loadLocal(iterator);
+    mg.invokeInterface(ITERATOR_TYPE, getMethod(Object.class, "next"));
+    body.run();
+
+    mg.goTo(beginLoop);
+    mg.mark(endLoop);
+  }
+
+  /**
+   * Generates code for encoding the value with {@link StructuredRecordDatumWriter#encode(Encoder, Schema, Object)}.
+   */
+  private void encodeWithInterpreter(GeneratorAdapter mg, Schema schema) {
+    mg.loadThis();
+    mg.loadArg(0);
+    loadSchema(mg, schema);
+    mg.loadArg(1);
+    mg.invokeVirtual(classType, getMethod(void.class, "encode", Encoder.class, Schema.class, Object.class));
+  }
+
+  /**
+   * Generates code for loading the given {@link Schema} from the {@code schemas} field.
+   */
+  private void loadSchema(GeneratorAdapter mg, Schema schema) {
+    mg.loadThis();
+    mg.getField(classType, "schemas", Type.getType(Schema[].class));
+    mg.push(getSchemaIndex(schema));
+    mg.arrayLoad(SCHEMA_TYPE);
+  }
+
+  private int getSchemaIndex(Schema schema) {
+    return schemaIndices.computeIfAbsent(schema, s -> {
+      schemas.add(s);
+      return schemas.size() - 1;
+    });
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.common.internal.remote;
+
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpRequestConfig;
+import io.cdap.common.http.HttpResponse;
+import io.cdap.http.AbstractHttpHandler;
+import io.cdap.http.HttpResponder;
+import io.cdap.http.NettyHttpService;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * Unit tests for {@link NettyRemoteTransport}.
+ */
+public class NettyRemoteTransportTest {
+
+  private static final HttpRequestConfig REQUEST_CONFIG = new HttpRequestConfig(1000, 1000);
+
+  private static NettyHttpService httpService;
+  private static URL baseURL;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    httpService = NettyHttpService.builder("test").setHttpHandlers(new TestHandler()).build();
+    httpService.start();
+    InetSocketAddress addr = httpService.getBindAddress();
+    baseURL = new URL(String.format("http://%s:%d/", addr.getHostName(), addr.getPort()));
+  }
+
+  @AfterClass
+  public static void finish() throws Exception {
+    httpService.stop();
+  }
+
+  @Test
+  public void testKeepAlive() throws Exception {
+    try (NettyRemoteTransport transport = new NettyRemoteTransport(4, 60, 1000, 1000)) {
+      for (int i = 0; i < 10; i++) {
+        HttpResponse response = transport.execute("test", HttpRequest.get(new URL(baseURL, "ping")).build(),
+                                                  REQUEST_CONFIG);
+        Assert.assertEquals(200, response.getResponseCode());
+        Assert.assertEquals("OK", response.getResponseBodyAsString());
+      }
+      HttpResponse response = transport.execute("test", HttpRequest.post(new URL(baseURL, "echo"))
+        .withBody("hello").build(), REQUEST_CONFIG);
+      Assert.assertEquals("hello", response.getResponseBodyAsString());
+
+      // All requests are sent on the same connection
+      Assert.assertEquals(1, transport.getOpenConnections());
+      Assert.assertEquals(11L, LongStream.of(transport.getLatencyHistograms().get("test")).sum());
+    }
+  }
+
+  @Test
+  public void testPoolLimit() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    // Requests wait for a free connection longer than the connect timeout
+    try (NettyRemoteTransport transport = new NettyRemoteTransport(2, 60, 100, 0)) {
+      List<Future<HttpResponse>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> transport.execute("test", HttpRequest.get(new URL(baseURL, "sleep/100"))
+          .build(), REQUEST_CONFIG)));
+      }
+      for (Future<HttpResponse> future : futures) {
+        Assert.assertEquals(200, future.get(10, TimeUnit.SECONDS).getResponseCode());
+      }
+      Assert.assertTrue(transport.getOpenConnections() <= 2);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReadTimeout() throws Exception {
+    try (NettyRemoteTransport transport = new NettyRemoteTransport(1, 60, 1000, 1000)) {
+      try {
+        transport.execute("test", HttpRequest.get(new URL(baseURL, "sleep/2000")).build(),
+                          new HttpRequestConfig(1000, 100));
+        Assert.fail("Expected read timeout");
+      } catch (SocketTimeoutException e) {
+        // expected
+      }
+
+      // The connection of the timed out request is closed and a new one is used
+      HttpResponse response = transport.execute("test", HttpRequest.get(new URL(baseURL, "ping")).build(),
+                                                REQUEST_CONFIG);
+      Assert.assertEquals("OK", response.getResponseBodyAsString());
+    }
+  }
+
+  @Test
+  public void testAcquireTimeout() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (NettyRemoteTransport transport = new NettyRemoteTransport(1, 60, 1000, 100)) {
+      // A request without read timeout holds the only connection
+      Future<HttpResponse> future = executor.submit(() -> transport.execute(
+        "test", HttpRequest.get(new URL(baseURL, "sleep/1000")).build(), new HttpRequestConfig(1000, 0)));
+      Tasks.waitFor(1, transport::getActiveConnections, 5, TimeUnit.SECONDS);
+      try {
+        transport.execute("test", HttpRequest.get(new URL(baseURL, "ping")).build(), REQUEST_CONFIG);
+        Assert.fail("Expected timeout waiting for a connection");
+      } catch (SocketTimeoutException e) {
+        // expected
+      }
+      Assert.assertEquals(200, future.get(10, TimeUnit.SECONDS).getResponseCode());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Handler for testing only.
+   */
+  public static final class TestHandler extends AbstractHttpHandler {
+
+    @GET
+    @Path("/ping")
+    public void ping(io.netty.handler.codec.http.HttpRequest request, HttpResponder responder) {
+      responder.sendString(HttpResponseStatus.OK, "OK");
+    }
+
+    @POST
+    @Path("/echo")
+    public void echo(FullHttpRequest request, HttpResponder responder) {
+      responder.sendString(HttpResponseStatus.OK,
+                           new String(ByteBufUtil.getBytes(request.content()), StandardCharsets.UTF_8));
+    }
+
+    @GET
+    @Path("/sleep/{millis}")
+    public void sleep(io.netty.handler.codec.http.HttpRequest request, HttpResponder responder,
+                      @PathParam("millis") long millis) throws InterruptedException {
+      TimeUnit.MILLISECONDS.sleep(millis);
+      responder.sendString(HttpResponseStatus.OK, "OK");
+    }
+  }
+}
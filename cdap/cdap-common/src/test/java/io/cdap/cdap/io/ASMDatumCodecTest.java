@@ -25,7 +25,9 @@ import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.data.schema.UnsupportedTypeException;
 import io.cdap.cdap.common.io.BinaryDecoder;
 import io.cdap.cdap.common.io.BinaryEncoder;
+import io.cdap.cdap.common.io.DatumReader;
 import io.cdap.cdap.common.io.DatumWriter;
+import io.cdap.cdap.internal.io.ASMDatumReaderFactory;
 import io.cdap.cdap.internal.io.ASMDatumWriterFactory;
 import io.cdap.cdap.internal.io.ASMFieldAccessorFactory;
 import io.cdap.cdap.internal.io.ReflectionDatumReader;
@@ -35,6 +37,7 @@ import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
@@ -52,6 +55,8 @@ public class ASMDatumCodecTest {
 
   private static final ASMDatumWriterFactory DATUM_WRITER_FACTORY
     = new ASMDatumWriterFactory(new ASMFieldAccessorFactory());
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY
+    = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
 
   /**
    *
@@ -69,6 +74,23 @@ public class ASMDatumCodecTest {
     return DATUM_WRITER_FACTORY.create(type, schema);
   }
 
+  private <T> DatumReader<T> getReader(TypeToken<T> type) throws UnsupportedTypeException {
+    return DATUM_READER_FACTORY.create(type, getSchema(type));
+  }
+
+  /**
+   * Encodes the given value with the generated writer and decodes it with the generated reader.
+   */
+  private <T> T writeAndRead(TypeToken<T> type, T value) throws UnsupportedTypeException, IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    getWriter(type).encode(value, new BinaryEncoder(os));
+
+    // The reader must be generated, instead of falling back to reflection
+    DatumReader<T> reader = getReader(type);
+    Assert.assertFalse(reader instanceof ReflectionDatumReader);
+    return reader.read(new BinaryDecoder(new ByteArrayInputStream(os.toByteArray())), getSchema(type));
+  }
+
   @Test
   public void testShort() throws UnsupportedTypeException, IOException {
     TypeToken<Short> type = new TypeToken<Short>() { };
@@ -384,6 +406,94 @@ public class ASMDatumCodecTest {
     Assert.assertEquals(root, value);
   }
 
+  @Test
+  public void testGeneratedReader() throws IOException, UnsupportedTypeException {
+    Assert.assertEquals(Short.valueOf((short) 3000), writeAndRead(new TypeToken<Short>() { }, (short) 3000));
+    Assert.assertEquals(Integer.valueOf(12234234), writeAndRead(new TypeToken<Integer>() { }, 12234234));
+    Assert.assertEquals("Testing message", writeAndRead(new TypeToken<String>() { }, "Testing message"));
+    UUID uuid = UUID.randomUUID();
+    Assert.assertEquals(uuid, writeAndRead(new TypeToken<UUID>() { }, uuid));
+    Assert.assertEquals(TestEnum.VALUE3, writeAndRead(new TypeToken<TestEnum>() { }, TestEnum.VALUE3));
+
+    Assert.assertArrayEquals(new int[] { 1, 2, 3, 4, 5 },
+                             writeAndRead(new TypeToken<int[]>() { }, new int[] { 1, 2, 3, 4, 5 }));
+    Assert.assertArrayEquals(new String[] { "a", "b", "c" },
+                             writeAndRead(new TypeToken<String[]>() { }, new String[] { "a", "b", "c" }));
+    Assert.assertEquals(ImmutableList.of(1L, 2L, 3L),
+                        writeAndRead(new TypeToken<List<Long>>() { }, ImmutableList.of(1L, 2L, 3L)));
+    Map<String, List<String>> map = ImmutableMap.of("k1", ImmutableList.of("v1"), "k2", ImmutableList.of("v2", "v3"));
+    Assert.assertEquals(map, writeAndRead(new TypeToken<Map<String, List<String>>>() { }, map));
+    List<URI> uris = ImmutableList.of(URI.create("http://www.abc.com"));
+    Assert.assertEquals(uris, writeAndRead(new TypeToken<List<URI>>() { }, uris));
+
+    Record record = new Record(10, "testing", ImmutableList.of("a", "b", "c"), TestEnum.VALUE2);
+    Assert.assertEquals(record, writeAndRead(new TypeToken<Record>() { }, record));
+    Assert.assertEquals(ImmutableList.of(record),
+                        writeAndRead(new TypeToken<List<Record>>() { }, ImmutableList.of(record)));
+    // The writer rejects the same instance appearing more than once, hence use different instances
+    Record[][] records = new Record[][] {
+      { record },
+      { new Record(20, "a", ImmutableList.of(), TestEnum.VALUE1),
+        new Record(30, "b", ImmutableList.of("c"), TestEnum.VALUE2) }
+    };
+    Assert.assertArrayEquals(records, writeAndRead(new TypeToken<Record[][]>() { }, records));
+
+    Node root = new Node((short) 1, new Node((short) 2, null, new Node((short) 3, null, null)),
+                         new Node((short) 4, new Node((short) 5, null, null), null));
+    Assert.assertEquals(root, writeAndRead(new TypeToken<Node>() { }, root));
+  }
+
+  /**
+   * A record with a subset of fields of {@link Record}.
+   */
+  private static final class PartialRecord {
+    private int i;
+    private String s;
+  }
+
+  @Test
+  public void testGeneratedReaderSchemaEvolution() throws IOException, UnsupportedTypeException {
+    TypeToken<Record> type = new TypeToken<Record>() { };
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    getWriter(type).encode(new Record(10, "testing", ImmutableList.of("a", "b", "c"), TestEnum.VALUE2),
+                           new BinaryEncoder(os));
+
+    // Reading with a different schema resolves the source schema to the target schema
+    TypeToken<PartialRecord> partialType = new TypeToken<PartialRecord>() { };
+    PartialRecord value = getReader(partialType).read(new BinaryDecoder(new ByteArrayInputStream(os.toByteArray())),
+                                                      getSchema(type));
+    Assert.assertEquals(10, value.i);
+    Assert.assertEquals("testing", value.s);
+  }
+
+  @Ignore
+  @Test
+  public void testReadSpeed() throws UnsupportedTypeException, IOException {
+    TypeToken<Node> type = new TypeToken<Node>() { };
+    Schema schema = getSchema(type);
+    Node writeValue = new Node((short) 1, new Node((short) 2, null, new Node((short) 3, null, null)),
+                               new Node((short) 4, new Node((short) 5, null, null), null));
+    ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+    getWriter(type).encode(writeValue, new BinaryEncoder(os));
+    byte[] bytes = os.toByteArray();
+
+    DatumReader<Node> generatedReader = getReader(type);
+    DatumReader<Node> reflectionReader = new ReflectionDatumReader<>(schema, type);
+
+    // Run each reader twice, with the first run as warm up
+    for (int run = 0; run < 2; run++) {
+      for (DatumReader<Node> reader : ImmutableList.of(generatedReader, reflectionReader)) {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+          reader.read(new BinaryDecoder(new ByteArrayInputStream(bytes)), schema);
+        }
+        long endTime = System.nanoTime();
+        System.out.println(reader.getClass().getSimpleName() + " time spent: "
+                             + TimeUnit.MILLISECONDS.convert(endTime - startTime, TimeUnit.NANOSECONDS));
+      }
+    }
+  }
+
   @Ignore
   @Test
   public void testSpeed() throws UnsupportedTypeException, IOException {
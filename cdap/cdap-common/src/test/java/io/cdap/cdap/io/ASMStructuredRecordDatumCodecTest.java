@@ -0,0 +1,284 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.io;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.BinaryDecoder;
+import io.cdap.cdap.common.io.BinaryEncoder;
+import io.cdap.cdap.common.io.DatumReader;
+import io.cdap.cdap.common.io.DatumWriter;
+import io.cdap.cdap.format.io.StructuredRecordDatumReader;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.internal.io.ASMStructuredRecordDatumFactory;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link ASMStructuredRecordDatumFactory}. The generated writers and readers are verified
+ * against the interpreting {@link StructuredRecordDatumWriter} and {@link StructuredRecordDatumReader}.
+ */
+public class ASMStructuredRecordDatumCodecTest {
+
+  private static final ASMStructuredRecordDatumFactory DATUM_FACTORY = new ASMStructuredRecordDatumFactory(100);
+  private static final StructuredRecordDatumWriter INTERPRETED_WRITER = new StructuredRecordDatumWriter();
+  private static final StructuredRecordDatumReader INTERPRETED_READER = new StructuredRecordDatumReader();
+
+  private static final Schema NARROW_SCHEMA = Schema.recordOf(
+    "narrow",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  private static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+
+  private static final Schema NESTED_SCHEMA = Schema.recordOf(
+    "nested",
+    Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("e", Schema.enumWith("A", "B", "C")),
+    Schema.Field.of("inner", Schema.nullableOf(INNER_SCHEMA)),
+    Schema.Field.of("inners", Schema.arrayOf(INNER_SCHEMA)),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.arrayOf(Schema.of(Schema.Type.LONG)))),
+    Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.INT),
+                                            Schema.of(Schema.Type.STRING), INNER_SCHEMA)),
+    Schema.Field.of("n", Schema.of(Schema.Type.NULL)));
+
+  private static final Schema WIDE_SCHEMA = createWideSchema(100);
+
+  @Test
+  public void testNarrow() throws IOException {
+    testCodec(StructuredRecord.builder(NARROW_SCHEMA).set("id", 1L).set("name", "name").build());
+    testCodec(StructuredRecord.builder(NARROW_SCHEMA).set("id", 2L).build());
+  }
+
+  @Test
+  public void testWide() throws IOException {
+    testCodec(createWideRecord(WIDE_SCHEMA));
+  }
+
+  @Test
+  public void testNested() throws IOException {
+    testCodec(createNestedRecord());
+
+    // Use different values for the nullable and union fields, and Java arrays instead of collections
+    StructuredRecord record = StructuredRecord.builder(NESTED_SCHEMA)
+      .set("b", false)
+      .set("f", 1.5f)
+      .set("bytes", ByteBuffer.wrap(new byte[] { 1, 2, 3 }))
+      .set("e", "C")
+      .set("inners", new StructuredRecord[] { StructuredRecord.builder(INNER_SCHEMA)
+        .set("i", 2).set("tags", new String[] { "y" }).build() })
+      .set("map", ImmutableMap.of("k", new Long[] { 1L, 2L }))
+      .set("union", StructuredRecord.builder(INNER_SCHEMA).set("i", 3).set("tags", new String[] { "x" }).build())
+      .set("n", null)
+      .build();
+    testCodec(record);
+  }
+
+  @Test
+  public void testNestedRecordWithDifferentSchema() throws IOException {
+    // The nested record has the fields in different order than the schema of the outer record
+    Schema innerSchema = Schema.recordOf(
+      "inner",
+      Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("i", Schema.of(Schema.Type.INT)));
+    Schema schema = Schema.recordOf("outer", Schema.Field.of("inner", INNER_SCHEMA));
+
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("inner", StructuredRecord.builder(innerSchema).set("tags", ImmutableList.of("a")).set("i", 1).build())
+      .build();
+    testCodec(record);
+  }
+
+  @Test
+  public void testRecursiveSchema() throws IOException {
+    Schema schema = Schema.recordOf(
+      "node",
+      Schema.Field.of("value", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("next", Schema.nullableOf(Schema.recordOf("node"))));
+
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("value", 1)
+      .set("next", StructuredRecord.builder(schema).set("value", 2).build())
+      .build();
+    testCodec(record);
+  }
+
+  @Test
+  public void testFieldTypeMismatch() throws IOException {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("i", Schema.of(Schema.Type.INT)));
+    StructuredRecord record = StructuredRecord.builder(schema).set("i", "not an int").build();
+
+    String expected = null;
+    try {
+      INTERPRETED_WRITER.encode(record, new BinaryEncoder(new ByteArrayOutputStream()));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      expected = e.getMessage();
+    }
+
+    DatumWriter<StructuredRecord> writer = DATUM_FACTORY.getWriter(schema);
+    Assert.assertNotSame(INTERPRETED_WRITER.getClass(), writer.getClass());
+    try {
+      writer.encode(record, new BinaryEncoder(new ByteArrayOutputStream()));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(expected, e.getMessage());
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testSpeed() throws IOException {
+    for (StructuredRecord record : Arrays.asList(
+      StructuredRecord.builder(NARROW_SCHEMA).set("id", 1L).set("name", "name").build(),
+      createWideRecord(WIDE_SCHEMA),
+      createNestedRecord())) {
+
+      Schema schema = record.getSchema();
+      DatumWriter<StructuredRecord> writer = DATUM_FACTORY.getWriter(schema);
+      DatumReader<StructuredRecord> reader = DATUM_FACTORY.getReader(schema);
+      byte[] bytes = encode(INTERPRETED_WRITER, record);
+
+      // Run each twice, with the first run as warm up
+      for (int run = 0; run < 2; run++) {
+        long interpretedWrite = timeWrite(INTERPRETED_WRITER, record);
+        long generatedWrite = timeWrite(writer, record);
+        long interpretedRead = timeRead(INTERPRETED_READER, schema, bytes);
+        long generatedRead = timeRead(reader, schema, bytes);
+
+        System.out.printf("%s: write interpreted %d ms, generated %d ms; read interpreted %d ms, generated %d ms%n",
+                          schema.getRecordName(), interpretedWrite, generatedWrite, interpretedRead, generatedRead);
+      }
+    }
+  }
+
+  /**
+   * Verifies the generated writer produces the same bytes as the interpreter, and the generated reader
+   * decodes the same record as the interpreter.
+   */
+  private void testCodec(StructuredRecord record) throws IOException {
+    Schema schema = record.getSchema();
+    DatumWriter<StructuredRecord> writer = DATUM_FACTORY.getWriter(schema);
+    DatumReader<StructuredRecord> reader = DATUM_FACTORY.getReader(schema);
+
+    // Make sure the generated classes are used
+    Assert.assertNotSame(INTERPRETED_WRITER.getClass(), writer.getClass());
+    Assert.assertNotSame(INTERPRETED_READER.getClass(), reader.getClass());
+    Assert.assertSame(writer, DATUM_FACTORY.getWriter(schema));
+    Assert.assertSame(reader, DATUM_FACTORY.getReader(schema));
+
+    byte[] expected = encode(INTERPRETED_WRITER, record);
+    Assert.assertArrayEquals(expected, encode(writer, record));
+
+    StructuredRecord expectedRecord = decode(INTERPRETED_READER, schema, expected);
+    StructuredRecord decoded = decode(reader, schema, expected);
+    Assert.assertEquals(schema, decoded.getSchema());
+
+    // Compare by re-encoding, as byte buffer positions and Java arrays are not comparable with equals
+    Assert.assertArrayEquals(expected, encode(INTERPRETED_WRITER, decoded));
+    Assert.assertArrayEquals(encode(INTERPRETED_WRITER, expectedRecord), encode(INTERPRETED_WRITER, decoded));
+  }
+
+  private byte[] encode(DatumWriter<StructuredRecord> writer, StructuredRecord record) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writer.encode(record, new BinaryEncoder(os));
+    return os.toByteArray();
+  }
+
+  private StructuredRecord decode(DatumReader<StructuredRecord> reader,
+                                  Schema schema, byte[] bytes) throws IOException {
+    return reader.read(new BinaryDecoder(new ByteArrayInputStream(bytes)), schema);
+  }
+
+  private long timeWrite(DatumWriter<StructuredRecord> writer, StructuredRecord record) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = new BinaryEncoder(os);
+    long startTime = System.nanoTime();
+    for (int i = 0; i < 100000; i++) {
+      os.reset();
+      writer.encode(record, encoder);
+    }
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+  }
+
+  private long timeRead(DatumReader<StructuredRecord> reader, Schema schema, byte[] bytes) throws IOException {
+    long startTime = System.nanoTime();
+    for (int i = 0; i < 100000; i++) {
+      decode(reader, schema, bytes);
+    }
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+  }
+
+  private static Schema createWideSchema(int fields) {
+    List<Schema.Field> schemaFields = new ArrayList<>();
+    for (int i = 0; i < fields; i++) {
+      Schema.Type type = i % 3 == 0 ? Schema.Type.INT : (i % 3 == 1 ? Schema.Type.STRING : Schema.Type.DOUBLE);
+      schemaFields.add(Schema.Field.of("f" + i, Schema.nullableOf(Schema.of(type))));
+    }
+    return Schema.recordOf("wide", schemaFields);
+  }
+
+  private static StructuredRecord createWideRecord(Schema schema) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < schema.getFields().size(); i++) {
+      // Leave some fields as null
+      if (i % 7 == 0) {
+        continue;
+      }
+      builder.set("f" + i, i % 3 == 0 ? (Object) i : (i % 3 == 1 ? (Object) ("value" + i) : (Object) (i * 1.5d)));
+    }
+    return builder.build();
+  }
+
+  private static StructuredRecord createNestedRecord() {
+    StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA)
+      .set("i", 1)
+      .set("tags", ImmutableList.of("a", "b"))
+      .build();
+
+    return StructuredRecord.builder(NESTED_SCHEMA)
+      .set("b", true)
+      .set("f", 0.5f)
+      .set("d", 2.5d)
+      .set("bytes", new byte[] { 1, 2, 3 })
+      .set("e", "B")
+      .set("inner", inner)
+      .set("inners", ImmutableList.of(inner, inner))
+      .set("map", ImmutableMap.of("k1", ImmutableList.of(1L, 2L), "k2", ImmutableList.of(3L)))
+      .set("union", "string")
+      .set("n", null)
+      .build();
+  }
+}
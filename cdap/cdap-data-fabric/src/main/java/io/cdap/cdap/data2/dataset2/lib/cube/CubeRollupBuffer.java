@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.Fact;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An in-memory buffer that pre-aggregates {@link Fact}s for a set of resolutions, so that each resolution
+ * table only needs to be written once per time bucket, dimension values and measure.
+ *
+ * Counters in the same time bucket are summed, and gauges keep the last value added, which is the same result as
+ * writing the facts to the {@link io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable} one by one.
+ *
+ * This class is not thread safe.
+ */
+final class CubeRollupBuffer {
+
+  private final int[] resolutions;
+  private final long maxDelayMillis;
+  private final int maxSize;
+  private final Map<Integer, Map<BucketKey, Map<String, Measurement>>> buckets;
+  // The smallest bucket timestamp buffered for each resolution
+  private final Map<Integer, Long> minBucketTimestamps;
+
+  private long maxTimestamp;
+  private long firstAddTime;
+  private int size;
+  private long addedFacts;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param resolutions the resolutions to aggregate facts for
+   * @param maxDelayMillis the maximum time that facts should stay in the buffer
+   * @param maxSize the maximum number of aggregated measurements to keep in the buffer
+   */
+  CubeRollupBuffer(int[] resolutions, long maxDelayMillis, int maxSize) {
+    this.resolutions = resolutions;
+    this.maxDelayMillis = maxDelayMillis;
+    this.maxSize = maxSize;
+    this.buckets = new HashMap<>();
+    this.minBucketTimestamps = new HashMap<>();
+    reset();
+  }
+
+  /**
+   * Adds the given facts to the buffer for all resolutions.
+   */
+  void add(Collection<Fact> facts, long currentTimeMillis) {
+    for (int resolution : resolutions) {
+      add(resolution, facts, currentTimeMillis);
+    }
+    addedFacts += (long) facts.size() * resolutions.length;
+  }
+
+  /**
+   * Adds the given facts to the buffer of one resolution. This is used to add back facts that failed to be written.
+   */
+  void add(int resolution, Collection<Fact> facts, long currentTimeMillis) {
+    if (facts.isEmpty()) {
+      return;
+    }
+    if (firstAddTime < 0) {
+      firstAddTime = currentTimeMillis;
+    }
+
+    Map<BucketKey, Map<String, Measurement>> resolutionBuckets = buckets.computeIfAbsent(resolution,
+                                                                                         k -> new LinkedHashMap<>());
+    for (Fact fact : facts) {
+      long bucketTs = fact.getTimestamp() / resolution * resolution;
+      maxTimestamp = Math.max(maxTimestamp, fact.getTimestamp());
+      minBucketTimestamps.merge(resolution, bucketTs, Math::min);
+
+      Map<String, Measurement> measurements =
+        resolutionBuckets.computeIfAbsent(new BucketKey(bucketTs, fact.getDimensionValues()),
+                                          k -> new LinkedHashMap<>());
+      for (Measurement measurement : fact.getMeasurements()) {
+        Measurement existing = measurements.get(measurement.getName());
+        if (existing == null) {
+          size++;
+          measurements.put(measurement.getName(), measurement);
+        } else if (measurement.getType() == MeasureType.GAUGE) {
+          measurements.put(measurement.getName(), measurement);
+        } else {
+          // Incrementing a gauge or a counter gives the sum, with the existing value keeping its own type.
+          measurements.put(measurement.getName(), new Measurement(measurement.getName(), existing.getType(),
+                                                                  existing.getValue() + measurement.getValue()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the buffer should be flushed. It is the case when a time bucket is closed, which is when
+   * a fact with timestamp after the end of the bucket was added, or when the buffer reaches its size or delay limits.
+   */
+  boolean shouldFlush(long currentTimeMillis) {
+    if (isEmpty()) {
+      return false;
+    }
+    if (size >= maxSize || currentTimeMillis - firstAddTime >= maxDelayMillis) {
+      return true;
+    }
+    for (Map.Entry<Integer, Long> entry : minBucketTimestamps.entrySet()) {
+      if (entry.getValue() + entry.getKey() <= maxTimestamp) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if there is no fact in the buffer.
+   */
+  boolean isEmpty() {
+    return firstAddTime < 0;
+  }
+
+  /**
+   * Returns the number of facts added through {@link #add(Collection, long)} since the last drain, counted once
+   * per resolution.
+   */
+  long getAddedFacts() {
+    return addedFacts;
+  }
+
+  /**
+   * Removes all the aggregated facts from this buffer.
+   *
+   * @return a map from resolution to the aggregated facts of that resolution
+   */
+  Map<Integer, List<Fact>> drain() {
+    Map<Integer, List<Fact>> result = new HashMap<>();
+    for (Map.Entry<Integer, Map<BucketKey, Map<String, Measurement>>> entry : buckets.entrySet()) {
+      List<Fact> facts = new ArrayList<>(entry.getValue().size());
+      for (Map.Entry<BucketKey, Map<String, Measurement>> bucket : entry.getValue().entrySet()) {
+        facts.add(new Fact(bucket.getKey().timestamp, bucket.getKey().dimensionValues,
+                           new ArrayList<>(bucket.getValue().values())));
+      }
+      result.put(entry.getKey(), facts);
+    }
+    reset();
+    return result;
+  }
+
+  private void reset() {
+    buckets.clear();
+    minBucketTimestamps.clear();
+    maxTimestamp = 0L;
+    firstAddTime = -1L;
+    size = 0;
+    addedFacts = 0L;
+  }
+
+  /**
+   * Key for the aggregated facts of a time bucket in a resolution.
+   */
+  private static final class BucketKey {
+    private final long timestamp;
+    private final List<DimensionValue> dimensionValues;
+    private final int hashCode;
+
+    BucketKey(long timestamp, List<DimensionValue> dimensionValues) {
+      this.timestamp = timestamp;
+      this.dimensionValues = dimensionValues;
+      this.hashCode = Objects.hash(timestamp, dimensionValues);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      BucketKey other = (BucketKey) o;
+      return timestamp == other.timestamp && dimensionValues.equals(other.dimensionValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -50,6 +50,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -83,6 +84,10 @@ public class DefaultCube implements Cube, MeteredDataset {
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
   private final ExecutorService executorService;
+  private final int finestResolution;
+  // Buffer for the resolutions other than the finest one when rollup is enabled
+  @Nullable
+  private final CubeRollupBuffer rollupBuffer;
 
   @Nullable
   private MetricsCollector metrics;
@@ -90,6 +95,26 @@ public class DefaultCube implements Cube, MeteredDataset {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, false, 0L, 0);
+  }
+
+  /**
+   * Creates a cube that only writes the finest resolution on every {@link #add(Collection)}. Facts for the other
+   * resolutions are aggregated in memory, and are written when a time bucket closes, when they have been buffered
+   * for {@code rollupMaxDelayMillis}, when there are {@code rollupMaxSize} aggregated measurements buffered,
+   * or when {@link #flushRollup()} is called.
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap,
+                     long rollupMaxDelayMillis, int rollupMaxSize) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, true, rollupMaxDelayMillis, rollupMaxSize);
+  }
+
+  private DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                      Map<String, ? extends Aggregation> aggregations,
+                      Map<String, AggregationAlias> aggregationAliasMap,
+                      boolean rollup, long rollupMaxDelayMillis, int rollupMaxSize) {
     this.aggregations = aggregations;
     this.resolutionToFactTable = Maps.newHashMap();
     for (int resolution : resolutions) {
@@ -99,6 +124,11 @@ public class DefaultCube implements Cube, MeteredDataset {
     this.executorService = new ThreadPoolExecutor(0, resolutions.length, 30, TimeUnit.SECONDS,
                                                   new LinkedBlockingQueue<>(),
                                                   Threads.createDaemonThreadFactory("metrics-table-%d"));
+    this.finestResolution = Arrays.stream(resolutions).min().orElse(0);
+    int[] rollupResolutions = Arrays.stream(resolutions).filter(r -> r != finestResolution).toArray();
+    this.rollupBuffer = rollup && rollupResolutions.length > 0
+      ? new CubeRollupBuffer(rollupResolutions, rollupMaxDelayMillis, rollupMaxSize)
+      : null;
   }
 
   @Override
@@ -108,8 +138,72 @@ public class DefaultCube implements Cube, MeteredDataset {
 
   @Override
   public void add(Collection<? extends CubeFact> facts) {
-    List<Fact> toWrite = Lists.newArrayList();
-    int dimValuesCount = 0;
+    List<Fact> toWrite = toFacts(facts);
+    int written;
+    if (rollupBuffer == null) {
+      Map<Integer, List<Fact>> resolutionFacts = new HashMap<>();
+      for (int resolution : resolutionToFactTable.keySet()) {
+        resolutionFacts.put(resolution, toWrite);
+      }
+      throwIfFailed(writeFacts(resolutionFacts));
+      written = toWrite.size() * resolutionToFactTable.size();
+    } else {
+      written = addWithRollup(toWrite);
+    }
+
+    incrementMetric("cube.cubeFact.add.request.count", 1);
+    incrementMetric("cube.cubeFact.added.count", facts.size());
+    incrementMetric("cube.tsFact.created.count", toWrite.size());
+    incrementMetric("cube.tsFact.created.dimValues.count",
+                    toWrite.stream().mapToInt(fact -> fact.getDimensionValues().size()).sum());
+    incrementMetric("cube.tsFact.added.count", written);
+  }
+
+  /**
+   * Adds the given facts to the in-memory rollup buffer only, without writing the finest resolution. This is for
+   * recovering the facts that were buffered but not yet written when the process stopped. It is a no-op if rollup
+   * is not enabled.
+   */
+  public void replayRollup(Collection<? extends CubeFact> facts) {
+    if (rollupBuffer == null) {
+      return;
+    }
+    List<Fact> toBuffer = toFacts(facts);
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      rollupBuffer.add(toBuffer, now);
+      if (rollupBuffer.shouldFlush(now)) {
+        flushRollup();
+      }
+    }
+    incrementMetric("cube.tsFact.rollup.replayed.count", toBuffer.size());
+  }
+
+  /**
+   * Writes all the facts in the rollup buffer to the resolution tables.
+   */
+  public synchronized void flushRollup() {
+    if (rollupBuffer == null || rollupBuffer.isEmpty()) {
+      return;
+    }
+    Map<Integer, List<Fact>> resolutionFacts = new HashMap<>();
+    int written = drainRollup(resolutionFacts);
+    writeRollupFacts(resolutionFacts);
+    incrementMetric("cube.tsFact.added.count", written);
+  }
+
+  /**
+   * Returns {@code true} if there are facts in the rollup buffer that are not yet written to the resolution tables.
+   */
+  public synchronized boolean hasPendingRollup() {
+    return rollupBuffer != null && !rollupBuffer.isEmpty();
+  }
+
+  /**
+   * Expands the {@link CubeFact}s into {@link Fact}s, one for each {@link Aggregation} that accepts the cube fact.
+   */
+  private List<Fact> toFacts(Collection<? extends CubeFact> facts) {
+    List<Fact> result = Lists.newArrayList();
     for (CubeFact fact : facts) {
       for (Map.Entry<String, ? extends Aggregation> aggEntry : aggregations.entrySet()) {
         Aggregation agg = aggEntry.getValue();
@@ -125,48 +219,105 @@ public class DefaultCube implements Cube, MeteredDataset {
             String dimensionValueKey =
               aggregationAlias == null ? dimensionName : aggregationAlias.getAlias(dimensionName);
             dimensionValues.add(new DimensionValue(dimensionName, fact.getDimensionValues().get(dimensionValueKey)));
-            dimValuesCount++;
           }
-          toWrite.add(new Fact(fact.getTimestamp(), dimensionValues, fact.getMeasurements()));
+          result.add(new Fact(fact.getTimestamp(), dimensionValues, fact.getMeasurements()));
         }
       }
     }
+    return result;
+  }
+
+  /**
+   * Writes the facts to the finest resolution, and buffers them for the other resolutions. The buffer is written
+   * together with the finest resolution if it needs to be flushed.
+   *
+   * @return the number of facts written to all resolution tables
+   */
+  private synchronized int addWithRollup(List<Fact> facts) {
+    long now = System.currentTimeMillis();
+    rollupBuffer.add(facts, now);
+
+    Map<Integer, List<Fact>> resolutionFacts = new HashMap<>();
+    int written = 0;
+    if (rollupBuffer.shouldFlush(now)) {
+      written = drainRollup(resolutionFacts);
+    }
+    resolutionFacts.put(finestResolution, facts);
+    writeRollupFacts(resolutionFacts);
+    return written + facts.size();
+  }
+
+  /**
+   * Drains the rollup buffer into the given map.
+   *
+   * @return the number of facts drained
+   */
+  private int drainRollup(Map<Integer, List<Fact>> resolutionFacts) {
+    long addedFacts = rollupBuffer.getAddedFacts();
+    resolutionFacts.putAll(rollupBuffer.drain());
+    int drained = resolutionFacts.values().stream().mapToInt(List::size).sum();
+    incrementMetric("cube.tsFact.rollup.flush.count", 1);
+    // Number of facts that would have been written to the coarser resolution tables without rollup
+    incrementMetric("cube.tsFact.rollup.saved.count", Math.max(0L, addedFacts - drained));
+    return drained;
+  }
+
+  /**
+   * Writes facts drained from the rollup buffer. Facts of the resolutions that failed to write are added back to
+   * the buffer, so that they are retried in the next flush.
+   */
+  private void writeRollupFacts(Map<Integer, List<Fact>> resolutionFacts) {
+    Map<Integer, ExecutionException> failures = writeFacts(resolutionFacts);
+    long now = System.currentTimeMillis();
+    for (Integer resolution : failures.keySet()) {
+      if (resolution != finestResolution) {
+        rollupBuffer.add(resolution, resolutionFacts.get(resolution), now);
+      }
+    }
+    throwIfFailed(failures);
+  }
 
+  /**
+   * Writes facts to the fact tables of each resolution in parallel.
+   *
+   * @param resolutionFacts map from resolution to the facts to write to the table of that resolution
+   * @return map from resolution to the failure of the resolutions that failed to write
+   */
+  private Map<Integer, ExecutionException> writeFacts(Map<Integer, List<Fact>> resolutionFacts) {
     Map<Integer, Future<?>> futures = new HashMap<>();
-    for (Map.Entry<Integer, FactTable> table : resolutionToFactTable.entrySet()) {
-      futures.put(table.getKey(), executorService.submit(() -> table.getValue().add(toWrite)));
+    for (Map.Entry<Integer, List<Fact>> entry : resolutionFacts.entrySet()) {
+      FactTable table = resolutionToFactTable.get(entry.getKey());
+      futures.put(entry.getKey(), executorService.submit(() -> table.add(entry.getValue())));
     }
 
-    boolean failed = false;
-    Exception failedException = null;
-    StringBuilder failedMessage = new StringBuilder("Failed to add metrics to ");
+    Map<Integer, ExecutionException> failures = new LinkedHashMap<>();
     for (Map.Entry<Integer, Future<?>> future : futures.entrySet()) {
       try {
         Uninterruptibles.getUninterruptibly(future.getValue());
       } catch (ExecutionException e) {
-        if (!failed) {
-          failed = true;
-          failedMessage.append(String.format("the %d resolution table", future.getKey()));
-        } else {
-          failedMessage.append(String.format(", the %d resolution table", future.getKey()));
-        }
-        if (failedException == null) {
-          failedException = e;
-        } else {
-          failedException.addSuppressed(e);
-        }
+        failures.put(future.getKey(), e);
       }
     }
+    return failures;
+  }
 
-    if (failed) {
-      throw new RuntimeException(failedMessage.append(".").toString(), failedException);
+  private void throwIfFailed(Map<Integer, ExecutionException> failures) {
+    if (failures.isEmpty()) {
+      return;
     }
 
-    incrementMetric("cube.cubeFact.add.request.count", 1);
-    incrementMetric("cube.cubeFact.added.count", facts.size());
-    incrementMetric("cube.tsFact.created.count", toWrite.size());
-    incrementMetric("cube.tsFact.created.dimValues.count", dimValuesCount);
-    incrementMetric("cube.tsFact.added.count", toWrite.size() * resolutionToFactTable.size());
+    Exception failedException = null;
+    StringBuilder failedMessage = new StringBuilder("Failed to add metrics to ");
+    for (Map.Entry<Integer, ExecutionException> failure : failures.entrySet()) {
+      if (failedException == null) {
+        failedMessage.append(String.format("the %d resolution table", failure.getKey()));
+        failedException = failure.getValue();
+      } else {
+        failedMessage.append(String.format(", the %d resolution table", failure.getKey()));
+        failedException.addSuppressed(failure.getValue());
+      }
+    }
+    throw new RuntimeException(failedMessage.append(".").toString(), failedException);
   }
 
   @Override
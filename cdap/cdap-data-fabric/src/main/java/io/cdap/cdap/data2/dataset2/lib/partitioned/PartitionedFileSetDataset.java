@@ -57,6 +57,7 @@ import io.cdap.cdap.api.dataset.lib.PartitionMetadata;
 import io.cdap.cdap.api.dataset.lib.PartitionOutput;
 import io.cdap.cdap.api.dataset.lib.PartitionedFileSet;
 import io.cdap.cdap.api.dataset.lib.PartitionedFileSetArguments;
+import io.cdap.cdap.api.dataset.lib.PartitionedFileSetProperties;
 import io.cdap.cdap.api.dataset.lib.Partitioning;
 import io.cdap.cdap.api.dataset.lib.Partitioning.FieldType;
 import io.cdap.cdap.api.dataset.lib.partitioned.PartitionKeyCodec;
@@ -86,6 +87,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -129,6 +131,10 @@ public class PartitionedFileSetDataset extends AbstractDataset
   private static final byte[] LAST_MODIFICATION_TIME_COL = { 'm' };
   private static final byte[] RELATIVE_PATH = { 'p' };
   private static final byte[] METADATA_PREFIX = { 'm', '.' };
+  private static final byte[] INDEX_PREFIX = { 'i', '.' };
+
+  // number of non-matching rows to skip within a scanner before seeking to the next possible match with a new scanner
+  private static final int SKIP_SCAN_MAX_SKIPPED_ROWS = 16;
 
   protected final FileSet files;
   protected final DatasetSpecification spec;
@@ -136,6 +142,8 @@ public class PartitionedFileSetDataset extends AbstractDataset
   private final boolean exploreEnabled;
   protected final Map<String, String> runtimeArguments;
   protected final Partitioning partitioning;
+  // partitioning fields with a secondary index, in the order of the partitioning
+  private final Map<String, FieldType> indexedFields;
   private final IndexedTable partitionsTable;
   private final Provider<ExploreFacade> exploreFacadeProvider;
 
@@ -164,6 +172,13 @@ public class PartitionedFileSetDataset extends AbstractDataset
     this.exploreEnabled = FileSetProperties.isExploreEnabled(spec.getProperties());
     this.runtimeArguments = arguments;
     this.partitioning = partitioning;
+    this.indexedFields = new LinkedHashMap<>();
+    Set<String> indexedFieldNames = PartitionedFileSetProperties.getIndexedFields(spec.getProperties());
+    for (Map.Entry<String, FieldType> entry : partitioning.getFields().entrySet()) {
+      if (indexedFieldNames.contains(entry.getKey())) {
+        indexedFields.put(entry.getKey(), entry.getValue());
+      }
+    }
     this.exploreFacadeProvider = exploreFacadeProvider;
     this.datasetInstanceId = new DatasetId(datasetContext.getNamespaceId(), name);
   }
@@ -356,6 +371,9 @@ public class PartitionedFileSetDataset extends AbstractDataset
     if (!appending) {
       put.add(RELATIVE_PATH, Bytes.toBytes(path));
       put.add(CREATION_TIME_COL, nowInMillis);
+      for (Map.Entry<String, FieldType> entry : indexedFields.entrySet()) {
+        put.add(getIndexColumn(entry.getKey()), FieldTypes.toBytes(key.getField(entry.getKey()), entry.getValue()));
+      }
     }
     put.add(LAST_MODIFICATION_TIME_COL, nowInMillis);
 
@@ -757,20 +775,175 @@ public class PartitionedFileSetDataset extends AbstractDataset
   // if decodeMetadata is false, null is passed as the PartitionMetadata to the PartitionConsumer,
   // for efficiency reasons, since the metadata is not always needed
   protected void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata) {
+    String indexedField = selectIndexedField(filter);
+    if (indexedField != null) {
+      getPartitionsByIndex(filter, indexedField, consumer, decodeMetadata);
+      return;
+    }
     byte[] startKey = generateStartKey(filter);
     byte[] endKey = generateStopKey(filter);
     getPartitions(filter, consumer, decodeMetadata, startKey, endKey, Long.MAX_VALUE);
   }
 
+  /**
+   * Scans the partitions table for partitions matching the filter. Fields that are not a leading prefix of the
+   * partitioning cannot narrow the start and end key of the scan. Instead, when a row does not match the filter,
+   * the next row key that may match is computed from the field encodings, and rows before it are skipped. If more
+   * than a few rows are skipped, the scan seeks to that row key with a new scanner, so that the number of rows read
+   * depends on the number of matching key ranges rather than the total number of partitions.
+   */
   private void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata,
                              @Nullable byte[] startKey, @Nullable byte[] endKey, long limit) {
     long count = 0L;
-    try (Scanner scanner = partitionsTable.scan(startKey, endKey)) {
-      while (count < limit) {
-        Row row = scanner.next();
-        if (row == null) {
-          break;
+    byte[] scanStart = startKey;
+    while (true) {
+      byte[] seekKey = null;
+      try (Scanner scanner = partitionsTable.scan(scanStart, endKey)) {
+        byte[] skipTo = null;
+        int skipped = 0;
+        while (count < limit) {
+          Row row = scanner.next();
+          if (row == null) {
+            break;
+          }
+          if (skipTo != null) {
+            if (Bytes.compareTo(row.getRow(), skipTo) < 0) {
+              if (++skipped >= SKIP_SCAN_MAX_SKIPPED_ROWS) {
+                seekKey = skipTo;
+                break;
+              }
+              continue;
+            }
+            skipTo = null;
+            skipped = 0;
+          }
+          PartitionKey key;
+          try {
+            key = parseRowKey(row.getRow(), partitioning);
+          } catch (IllegalArgumentException e) {
+            LOG.debug(String.format("Failed to parse row key for partitioned file set '%s': %s",
+                                    getName(), Bytes.toStringBinary(row.getRow())));
+            continue;
+          }
+          if (filter != null && !filter.match(key)) {
+            skipTo = nextPossibleRowKey(row.getRow(), key, filter);
+            if (skipTo == null) {
+              // no row after this one can match the filter
+              break;
+            }
+            continue;
+          }
+          byte[] pathBytes = row.get(RELATIVE_PATH);
+          if (pathBytes != null) {
+            consumer.consume(key, Bytes.toString(pathBytes), decodeMetadata ? metadataFromRow(row) : null);
+          }
+          count++;
         }
+      }
+      if (seekKey == null || (endKey != null && Bytes.compareTo(seekKey, endKey) >= 0)) {
+        break;
+      }
+      scanStart = seekKey;
+    }
+    if (count == 0) {
+      warnIfInvalidPartitionFilter(filter, partitioning);
+    }
+  }
+
+  /**
+   * Computes the smallest row key after the given one that may match the filter, based on the first partitioning
+   * field whose value does not satisfy the condition of the filter. All the row keys before the returned key share
+   * the values of the fields before that field, and have a value for that field that does not satisfy the condition.
+   *
+   * @return the row key to skip to, or {@code null} if no row key after the given one can match the filter
+   */
+  @Nullable
+  private byte[] nextPossibleRowKey(byte[] rowKey, PartitionKey key, PartitionFilter filter) {
+    // length of the row key prefix with the encoded fields before the current field
+    int prefixLength = 0;
+    boolean first = true;
+    for (Map.Entry<String, FieldType> entry : partitioning.getFields().entrySet()) {
+      String fieldName = entry.getKey();
+      FieldType fieldType = entry.getValue();
+      Comparable value = key.getField(fieldName);
+      int fieldOffset = first ? 0 : prefixLength + 1;
+      int fieldLength = FieldTypes.determineLengthInBytes(rowKey, fieldOffset, fieldType);
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      if (condition == null || condition.match(value)) {
+        prefixLength = fieldOffset + fieldLength;
+        first = false;
+        continue;
+      }
+
+      byte[] nextKey;
+      Comparable lowerValue = condition.getLower();
+      @SuppressWarnings("unchecked")
+      boolean belowLower = lowerValue != null && lowerValue.compareTo(value) > 0;
+      if (belowLower) {
+        // skip to the lower bound of this field, with the same values for the fields before
+        byte[] lower = FieldTypes.toBytes(lowerValue, fieldType);
+        nextKey = new byte[fieldOffset + lower.length];
+        System.arraycopy(rowKey, 0, nextKey, 0, fieldOffset);
+        System.arraycopy(lower, 0, nextKey, fieldOffset, lower.length);
+      } else if (first) {
+        // the value of the first field is beyond the upper bound, and so are the ones of all the following rows
+        return null;
+      } else {
+        // skip all row keys with the same values for the fields before this field, which are all followed
+        // by the \0 separator. A \1 instead of the separator is greater than all of them.
+        nextKey = new byte[prefixLength + 1];
+        System.arraycopy(rowKey, 0, nextKey, 0, prefixLength);
+        nextKey[prefixLength] = 1;
+      }
+      // guard against field encodings whose byte order does not follow the value order
+      return Bytes.compareTo(nextKey, rowKey) > 0 ? nextKey : rowKey;
+    }
+    // all partitioning fields match, so the filter must contain a field that is not in the partitioning
+    return null;
+  }
+
+  /**
+   * Selects an indexed partitioning field to list the partitions matching a filter with, if the filter has no
+   * condition on the first partitioning field, but has one on an indexed field. Fields with a single value
+   * condition are preferred.
+   */
+  @Nullable
+  private String selectIndexedField(@Nullable PartitionFilter filter) {
+    if (filter == null || indexedFields.isEmpty()
+      || filter.getCondition(partitioning.getFields().keySet().iterator().next()) != null) {
+      return null;
+    }
+    String selected = null;
+    for (String fieldName : indexedFields.keySet()) {
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      if (condition != null && condition.isSingleValue()) {
+        return fieldName;
+      }
+      if (condition != null && selected == null) {
+        selected = fieldName;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Lists the partitions matching a filter using the secondary index of a partitioning field.
+   */
+  private void getPartitionsByIndex(PartitionFilter filter, String fieldName, PartitionConsumer consumer,
+                                    boolean decodeMetadata) {
+    FieldType fieldType = indexedFields.get(fieldName);
+    PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+    byte[] column = getIndexColumn(fieldName);
+    int count = 0;
+    try (Scanner scanner = condition.isSingleValue()
+      ? partitionsTable.readByIndex(column, FieldTypes.toBytes(condition.getValue(), fieldType))
+      : partitionsTable.scanByIndex(column,
+                                    condition.getLower() == null
+                                      ? null : FieldTypes.toBytes(condition.getLower(), fieldType),
+                                    condition.getUpper() == null
+                                      ? null : FieldTypes.toBytes(condition.getUpper(), fieldType))) {
+      Row row;
+      while ((row = scanner.next()) != null) {
         PartitionKey key;
         try {
           key = parseRowKey(row.getRow(), partitioning);
@@ -779,19 +952,23 @@ public class PartitionedFileSetDataset extends AbstractDataset
                                   getName(), Bytes.toStringBinary(row.getRow())));
           continue;
         }
-        if (filter != null && !filter.match(key)) {
-          continue;
-        }
         byte[] pathBytes = row.get(RELATIVE_PATH);
-        if (pathBytes != null) {
+        if (pathBytes != null && filter.match(key)) {
           consumer.consume(key, Bytes.toString(pathBytes), decodeMetadata ? metadataFromRow(row) : null);
+          count++;
         }
-        count++;
-      }
-      if (count == 0) {
-        warnIfInvalidPartitionFilter(filter, partitioning);
       }
     }
+    if (count == 0) {
+      warnIfInvalidPartitionFilter(filter, partitioning);
+    }
+  }
+
+  /**
+   * Returns the column of the partitions table that the value of a partitioning field is indexed by.
+   */
+  static byte[] getIndexColumn(String fieldName) {
+    return Bytes.add(INDEX_PREFIX, Bytes.toBytes(fieldName));
   }
 
   private PartitionMetadata metadataFromRow(Row row) {
@@ -92,7 +92,7 @@ public class PartitionedFileSetDefinition
     // define the columns for indexing on the partitionsTable
     DatasetProperties indexedTableProperties = DatasetProperties.builder()
       .addAll(properties.getProperties())
-      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, INDEXED_COLS)
+      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, getIndexedColumns(properties.getProperties(), partitioning))
       .build();
 
     Map<String, String> pfsProperties = new HashMap<>(properties.getProperties());
@@ -140,7 +140,7 @@ public class PartitionedFileSetDefinition
     // define the columns for indexing on the partitionsTable
     DatasetProperties indexedTableProperties = DatasetProperties.builder()
       .addAll(properties.getProperties())
-      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, INDEXED_COLS)
+      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, getIndexedColumns(properties.getProperties(), newPartitioning))
       .build();
 
     // only set the default base path property if the default was set the last time it was configured,
@@ -164,6 +164,20 @@ public class PartitionedFileSetDefinition
       .build();
   }
 
+  /**
+   * Returns the columns to index in the partitions table, which are the write pointer and creation time columns,
+   * and the columns of the indexed partitioning fields.
+   */
+  private static String getIndexedColumns(Map<String, String> properties, Partitioning partitioning) {
+    StringBuilder indexedColumns = new StringBuilder(INDEXED_COLS);
+    for (String field : PartitionedFileSetProperties.getIndexedFields(properties)) {
+      Preconditions.checkArgument(partitioning.getFields().containsKey(field),
+                                  "Indexed field '%s' is not a partitioning field", field);
+      indexedColumns.append(',').append(Bytes.toString(PartitionedFileSetDataset.getIndexColumn(field)));
+    }
+    return indexedColumns.toString();
+  }
+
   @Override
   public DatasetAdmin getAdmin(DatasetContext datasetContext, DatasetSpecification spec,
                                ClassLoader classLoader) throws IOException {
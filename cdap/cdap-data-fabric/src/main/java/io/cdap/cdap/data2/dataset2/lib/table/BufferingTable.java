@@ -19,6 +19,7 @@ package io.cdap.cdap.data2.dataset2.lib.table;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.cdap.cdap.api.annotation.ReadOnly;
@@ -44,6 +45,7 @@ import org.apache.tephra.TransactionAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -69,15 +71,21 @@ import javax.annotation.Nullable;
  * <p>
  * This implementation assumes that the table has name and conflicts are resolved on row level.
  * <p>
- * NOTE: this implementation doesn't cache any data in-memory besides changes. I.e. if you do get of same data that is
- *       not in in-memory buffer twice, two times it will try to fetch it from persistent store.
- *       Given the snapshot isolation tx model, this can be improved in future implementations.
+ * Given the snapshot isolation tx model, data fetched from persistent store by gets doesn't change during a
+ * transaction. It is cached in-memory for the duration of the transaction, so that getting the same data twice only
+ * fetches it from persistent store once. The cache is enabled by setting the {@link #PROPERTY_READ_CACHE_MAX_CELLS}
+ * property, which bounds its size. It is disabled by default, since data cached is not refreshed if the table is
+ * dropped or truncated during the transaction.
+ * Scans always go to persistent store.
  * <p>
- * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
- *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ * NOTE: current implementation persists changes only at the end of transaction. To avoid OOME with large transactions,
+ *       once the estimated size of the in-memory buffer goes beyond the {@link #PROPERTY_BUFFER_SPILL_THRESHOLD}
+ *       property, the buffer is spilled to local disk as a sorted run, and reads merge the spilled runs with the
+ *       in-memory buffer. Changes spilled are persisted and undone in chunks of the same size.
  * <p>
- * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
- *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
+ * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally not efficient since it hits the persisted store
+ *       even if all needed data is in-memory buffer, unless the column range was already read in the same transaction.
+ *       See more info at method javadoc
  */
 // todo: copying passed params to write methods may be done more efficiently: no need to copy when no changes are made
 public abstract class BufferingTable extends AbstractTable implements MeteredDataset {
@@ -86,6 +94,27 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   protected static final byte[] DELETE_MARKER = new byte[0];
 
+  /**
+   * Property for the maximum number of cells fetched from persistent store to cache within a transaction.
+   * Defaults to zero, which disables the cache.
+   */
+  public static final String PROPERTY_READ_CACHE_MAX_CELLS = "read.cache.max.cells";
+
+  private static final int DEFAULT_READ_CACHE_MAX_CELLS = 0;
+
+  /**
+   * Property for the estimated size in bytes of the in-memory buffer beyond which it is spilled to local disk.
+   * Setting it to zero disables spilling.
+   */
+  public static final String PROPERTY_BUFFER_SPILL_THRESHOLD = "buffer.spill.threshold.bytes";
+
+  /**
+   * Property for the local directory to spill the in-memory buffer to. Defaults to the java.io.tmpdir directory.
+   */
+  public static final String PROPERTY_BUFFER_SPILL_DIR = "buffer.spill.dir";
+
+  private static final long DEFAULT_BUFFER_SPILL_THRESHOLD = 256L * 1024 * 1024;
+
   // name of the table
   private final String name;
   // conflict detection level
@@ -102,6 +131,23 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
 
+  // Estimated size of the in-memory buffer, and the size beyond which it is spilled, not positive if spill is disabled
+  private long buffBytes;
+  private final long spillThreshold;
+  private final File spillDir;
+
+  // Part of the buffer spilled to disk in the current transaction, older than what is in the in-memory buffer
+  @Nullable
+  private SpilledBuffer spilled;
+
+  // Keeps track of what was persisted so far from a buffer that was spilled
+  @Nullable
+  private SpilledBuffer spilledToUndo;
+
+  // Caches data fetched from persisted store in the current transaction, null if caching is disabled
+  @Nullable
+  private final PersistedReadCache readCache;
+
   // Report data ops metrics to
   private MetricsCollector metricsCollector;
 
@@ -151,6 +197,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
     this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    String readCacheMaxCells = properties.get(PROPERTY_READ_CACHE_MAX_CELLS);
+    int maxCells = readCacheMaxCells == null ? DEFAULT_READ_CACHE_MAX_CELLS : Integer.parseInt(readCacheMaxCells);
+    this.readCache = maxCells > 0 ? new PersistedReadCache(maxCells) : null;
+    String spillThreshold = properties.get(PROPERTY_BUFFER_SPILL_THRESHOLD);
+    this.spillThreshold = spillThreshold == null ? DEFAULT_BUFFER_SPILL_THRESHOLD : Long.parseLong(spillThreshold);
+    String spillDir = properties.get(PROPERTY_BUFFER_SPILL_DIR);
+    this.spillDir = new File(spillDir == null ? System.getProperty("java.io.tmpdir") : spillDir);
   }
 
   /**
@@ -262,6 +315,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // releasing resources
     buff = null;
     toUndo = null;
+    clearSpilled();
+    clearReadCache();
   }
 
   @Override
@@ -273,7 +328,11 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
     // starting with fresh buffer when tx starts
     buff.clear();
+    buffBytes = 0L;
     toUndo = null;
+    clearSpilled();
+    // data cached in a previous transaction may not be valid in the snapshot of the new transaction
+    clearReadCache();
     this.tx = tx;
   }
 
@@ -309,6 +368,10 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Collection<byte[]> getRowChanges() {
     // we resolve conflicts on row level of individual table
     List<byte[]> changes = new ArrayList<>(buff.size());
+    if (spilled != null) {
+      forEachBuffered((row, columns) -> changes.add(Bytes.add(getNameAsTxChangePrefix(), row)));
+      return changes;
+    }
     for (byte[] changedRow : buff.keySet()) {
       changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRow));
     }
@@ -318,27 +381,61 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Collection<byte[]> getColumnChanges() {
     // we resolve conflicts on row level of individual table
     List<byte[]> changes = new ArrayList<>(buff.size());
+    if (spilled != null) {
+      forEachBuffered((row, columns) -> addColumnChanges(changes, row, columns));
+      return changes;
+    }
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
-      if (rowChange.getValue() == null) {
-        // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
-        //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
-        //       will change in future, so we will have to address the issue.
-        continue;
-      }
+      addColumnChanges(changes, rowChange.getKey(), rowChange.getValue());
+    }
+    return changes;
+  }
 
-      // using length + value format to prevent conflicts like row="ab", column="cd" vs row="abc", column="d"
-      byte[] rowTxChange = Bytes.add(Bytes.toBytes(rowChange.getKey().length), rowChange.getKey());
+  private void addColumnChanges(List<byte[]> changes, byte[] row, @Nullable NavigableMap<byte[], Update> columns) {
+    if (columns == null) {
+      // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
+      //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
+      //       will change in future, so we will have to address the issue.
+      return;
+    }
 
-      for (byte[] column : rowChange.getValue().keySet()) {
-        changes.add(Bytes.add(getNameAsTxChangePrefix(), rowTxChange, column));
-      }
+    // using length + value format to prevent conflicts like row="ab", column="cd" vs row="abc", column="d"
+    byte[] rowTxChange = Bytes.add(Bytes.toBytes(row.length), row);
+
+    for (byte[] column : columns.keySet()) {
+      changes.add(Bytes.add(getNameAsTxChangePrefix(), rowTxChange, column));
+    }
+  }
+
+  /**
+   * Visits all the buffered rows, merged from what was spilled and the in-memory buffer.
+   */
+  private void forEachBuffered(SpilledBuffer.RowVisitor visitor) {
+    try {
+      spilled.forEach(null, null, buff, visitor);
+    } catch (Exception e) {
+      throw new DataSetException("Failed to read buffer spilled for table: " + getTransactionAwareName(), e);
     }
-    return changes;
   }
 
   @Override
   public boolean commitTx() throws Exception {
+    // once changes are persisted, the cache no longer reflects persisted store
+    clearReadCache();
+    if (spilled != null) {
+      // Persist the spilled runs merged with the in-memory buffer in chunks. The in-memory buffer is spilled as the
+      // last run, so that everything can be undone in chunks the same way if the transaction is rolled back.
+      spilledToUndo = spilled;
+      spilled = null;
+      spilledToUndo.spill(buff);
+      buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+      buffBytes = 0L;
+      reportBuffer(spilledToUndo.getBytes());
+      spilledToUndo.forEachChunk(Collections.emptyNavigableMap(), spillThreshold, this::persist);
+      return true;
+    }
     if (!buff.isEmpty()) {
+      reportBuffer(buffBytes);
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
       toUndo = buff;
@@ -357,17 +454,29 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
     buff.clear();
+    buffBytes = 0L;
     toUndo = null;
+    clearSpilled();
+    clearReadCache();
     tx = null;
   }
 
   @Override
   public boolean rollbackTx() throws Exception {
     buff.clear();
+    buffBytes = 0L;
+    clearReadCache();
     if (toUndo != null) {
       undo(toUndo);
       toUndo = null;
     }
+    try {
+      if (spilledToUndo != null) {
+        spilledToUndo.forEachChunk(Collections.emptyNavigableMap(), spillThreshold, this::undo);
+      }
+    } finally {
+      clearSpilled();
+    }
     tx = null;
     return true;
   }
@@ -414,13 +523,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public Row get(byte[] row, byte[] startColumn, byte[] stopColumn, int limit) {
     ensureTransactionIsStarted();
     reportRead(1);
-    // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
-
-    // NOTE: since we cannot tell the exact column set, we always have to go to persisted store.
+    // NOTE: since we cannot tell the exact column set, we always have to go to persisted store, unless the
+    //       column range was fetched before in this tx.
     //       potential improvement: do not fetch columns available in in-mem buffer (we know them at this point)
     try {
-      Map<byte[], byte[]> persistedCols = getPersisted(row, startColumn, stopColumn, limit);
+      // checking if the row was deleted inside this tx
+      NavigableMap<byte[], Update> buffCols = getBuffered(row);
+      Map<byte[], byte[]> persistedCols = getPersistedCached(row, startColumn, stopColumn, limit);
 
       // adding server cols, and then overriding with buffered values
       NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -448,7 +557,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     ensureTransactionIsStarted();
     try {
       // get persisted, then overwrite with whats buffered
-      List<Map<byte[], byte[]>> persistedRows = getPersisted(gets);
+      List<Map<byte[], byte[]>> persistedRows = getPersistedCached(gets);
       // gets and rows lists are always of the same size
       Preconditions.checkArgument(gets.size() == persistedRows.size(),
         "Invalid number of rows fetched when performing multi-get. There must be one row for each get.");
@@ -467,7 +576,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         rowColumns.putAll(persistedRow);
 
         byte[] row = get.getRow();
-        NavigableMap<byte[], Update> buffCols = buff.get(row);
+        NavigableMap<byte[], Update> buffCols = getBuffered(row);
 
         // merge what was in the buffer and what was persisted
         if (buffCols != null) {
@@ -502,9 +611,11 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
     NavigableMap<byte[], Update> colVals = buff.get(row);
     boolean newRow = false;
+    long size = 0L;
     if (colVals == null) {
       colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
       newRow = true;
+      size += SpilledBuffer.estimateSize(row);
     }
     for (int i = 0; i < columns.length; i++) {
       // NOTE: we copy passed column's and value's byte arrays to protect buffer against possible changes of these
@@ -512,12 +623,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       if (values[i] != null && values[i].length == 0) {
         warnAboutEmptyValue(columns[i]);
       }
-      colVals.put(copy(columns[i]), new PutValue(copy(values[i])));
+      size += putUpdate(colVals, copy(columns[i]), new PutValue(copy(values[i])));
     }
     if (newRow) {
       // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
       buff.put(copy(row), colVals);
     }
+    buffered(size);
   }
 
   /**
@@ -621,13 +733,17 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     ensureTransactionIsStarted();
     if (enableReadlessIncrements) {
       NavigableMap<byte[], Update> colVals = buff.get(row);
+      long size = 0L;
       if (colVals == null) {
         colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
         buff.put(row, colVals);
+        size += SpilledBuffer.estimateSize(row);
       }
       for (int i = 0; i < columns.length; i++) {
-        colVals.put(columns[i], Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
+        size += putUpdate(colVals, columns[i],
+                          Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
       }
+      buffered(size);
       reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
     } else {
       internalIncrementAndGet(row, columns, amounts);
@@ -695,9 +811,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public Scanner scan(Scan scan) {
     ensureTransactionIsStarted();
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferIterator = scanBuffer(scan);
     try {
-      return new BufferingScanner(bufferMap, scanPersisted(scan));
+      return new BufferingScanner(bufferIterator, scanPersisted(scan));
     } catch (Exception e) {
       LOG.debug("scan failed for table: " + getTransactionAwareName() +
           ", scan: " + scan.toString(), e);
@@ -705,10 +821,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
+  private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> scanBuffer(Scan scan) {
     NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
+    if (spilled != null) {
+      // stream the range merged from what was spilled and the in-memory buffer
+      try {
+        return applyFilter(spilled.iterator(startRow, stopRow, buff), scan.getFilter());
+      } catch (IOException e) {
+        throw new DataSetException("Failed to read buffer spilled for table: " + getTransactionAwareName(), e);
+      }
+    }
     if (startRow == null && stopRow == null) {
       bufferMap = buff;
     } else if (startRow == null) {
@@ -719,7 +843,23 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       bufferMap = buff.subMap(startRow, true, stopRow, false);
     }
     bufferMap = applyFilter(bufferMap, scan.getFilter());
-    return bufferMap;
+    return getBufferIterator(bufferMap);
+  }
+
+  private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> applyFilter(
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator, @Nullable Filter filter) {
+    if (filter == null) {
+      return iterator;
+    }
+
+    // todo: currently we support only FuzzyRowFilter as an experimental feature
+    if (filter instanceof FuzzyRowFilter) {
+      FuzzyRowFilter fuzzyRowFilter = (FuzzyRowFilter) filter;
+      return Iterators.filter(iterator,
+                              entry -> FuzzyRowFilter.ReturnCode.INCLUDE == fuzzyRowFilter.filterRow(entry.getKey()));
+    } else {
+      throw new DataSetException("Unknown filter type: " + filter);
+    }
   }
 
   private NavigableMap<byte[], NavigableMap<byte[], Update>> applyFilter(
@@ -746,13 +886,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = getBuffered(row);
     boolean rowDeleted = buffCols == null && buff.containsKey(row);
     if (rowDeleted) {
       return Collections.emptyMap();
     }
 
-    Map<byte[], byte[]> persisted = getPersisted(row, null);
+    Map<byte[], byte[]> persisted = getPersistedCached(row, null);
 
 
     result.putAll(persisted);
@@ -767,11 +907,11 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = getBuffered(row);
 
     // if nothing locally, return all from server
     if (buffCols == null) {
-      return getPersisted(row, columns);
+      return getPersistedCached(row, columns);
     }
 
     // otherwise try to fetch data from in-memory buffer. If not all present - fetch leftover from persisted
@@ -793,7 +933,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // fetching from server those that were not found in in-mem buffer
     if (colsToFetchFromPersisted.size() > 0) {
       Map<byte[], byte[]> persistedCols =
-        getPersisted(row, colsToFetchFromPersisted.toArray(new byte[colsToFetchFromPersisted.size()][]));
+        getPersistedCached(row, colsToFetchFromPersisted.toArray(new byte[colsToFetchFromPersisted.size()][]));
       if (persistedCols != null) {
         result.putAll(persistedCols);
       }
@@ -805,6 +945,165 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return unwrapDeletes(result);
   }
 
+  /**
+   * Fetches column->value pairs for set of columns from the read cache, or from persistent store if they are not
+   * all cached.
+   */
+  private Map<byte[], byte[]> getPersistedCached(byte[] row, @Nullable byte[][] columns) throws Exception {
+    if (readCache == null) {
+      return getPersisted(row, columns);
+    }
+    Map<byte[], byte[]> result = readCache.get(row, columns);
+    reportReadCache(result != null);
+    if (result == null) {
+      result = getPersisted(row, columns);
+      if (result != null) {
+        readCache.put(row, columns, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Fetches column->value pairs for range of columns from the read cache, or from persistent store if the range
+   * is not cached.
+   */
+  private Map<byte[], byte[]> getPersistedCached(byte[] row, byte[] startColumn, byte[] stopColumn,
+                                                 int limit) throws Exception {
+    if (readCache == null) {
+      return getPersisted(row, startColumn, stopColumn, limit);
+    }
+    Map<byte[], byte[]> result = readCache.get(row, startColumn, stopColumn, limit);
+    reportReadCache(result != null);
+    if (result == null) {
+      result = getPersisted(row, startColumn, stopColumn, limit);
+      if (result != null) {
+        readCache.put(row, startColumn, stopColumn, limit, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Fetches a list of rows from the read cache, with the ones not cached fetched from persistent store with
+   * a single call to {@link #getPersisted(List)}.
+   */
+  private List<Map<byte[], byte[]>> getPersistedCached(List<Get> gets) throws Exception {
+    if (readCache == null) {
+      return getPersisted(gets);
+    }
+
+    List<Map<byte[], byte[]>> results = new ArrayList<>(gets.size());
+    List<Get> missedGets = new ArrayList<>();
+    for (Get get : gets) {
+      Map<byte[], byte[]> result = readCache.get(get.getRow(), getColumns(get));
+      reportReadCache(result != null);
+      if (result == null) {
+        missedGets.add(get);
+      }
+      results.add(result);
+    }
+    if (missedGets.isEmpty()) {
+      return results;
+    }
+
+    List<Map<byte[], byte[]>> persistedRows = getPersisted(missedGets);
+    // gets and rows lists are always of the same size
+    Preconditions.checkArgument(missedGets.size() == persistedRows.size(),
+      "Invalid number of rows fetched when performing multi-get. There must be one row for each get.");
+    Iterator<Get> missedIter = missedGets.iterator();
+    Iterator<Map<byte[], byte[]>> persistedIter = persistedRows.iterator();
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i) == null) {
+        Get get = missedIter.next();
+        Map<byte[], byte[]> persistedRow = persistedIter.next();
+        readCache.put(get.getRow(), getColumns(get), persistedRow);
+        results.set(i, persistedRow);
+      }
+    }
+    return results;
+  }
+
+  @Nullable
+  private static byte[][] getColumns(Get get) {
+    List<byte[]> columns = get.getColumns();
+    return columns == null ? null : columns.toArray(new byte[columns.size()][]);
+  }
+
+  private void clearReadCache() {
+    if (readCache != null) {
+      readCache.clear();
+    }
+  }
+
+  /**
+   * Returns the buffered updates of a row, merged from what was spilled and the in-memory buffer.
+   */
+  @Nullable
+  private NavigableMap<byte[], Update> getBuffered(byte[] row) throws IOException {
+    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    if (spilled == null) {
+      return buffCols;
+    }
+    NavigableMap<byte[], Update> spilledCols = spilled.get(row);
+    if (spilledCols == null) {
+      return buffCols;
+    }
+    if (buffCols != null) {
+      for (Map.Entry<byte[], Update> entry : buffCols.entrySet()) {
+        spilledCols.put(entry.getKey(), Updates.mergeUpdates(spilledCols.get(entry.getKey()), entry.getValue()));
+      }
+    }
+    return spilledCols;
+  }
+
+  /**
+   * Puts an update to the buffered columns of a row, and returns the change of the estimated buffer size.
+   */
+  private static long putUpdate(NavigableMap<byte[], Update> colVals, byte[] column, Update update) {
+    Update previous = colVals.put(column, update);
+    long size = SpilledBuffer.estimateSize(column, update);
+    return previous == null ? size : size - SpilledBuffer.estimateSize(column, previous);
+  }
+
+  /**
+   * Accounts for the given estimated size added to the in-memory buffer, and spills the buffer to disk if it has
+   * grown beyond the spill threshold.
+   */
+  private void buffered(long size) {
+    buffBytes += size;
+    if (spillThreshold <= 0 || buffBytes < spillThreshold) {
+      return;
+    }
+    try {
+      if (spilled == null) {
+        spilled = new SpilledBuffer(spillDir, "buffer-" + name + "-");
+      }
+      spilled.spill(buff);
+    } catch (IOException e) {
+      throw new DataSetException("Failed to spill buffer for table: " + getTransactionAwareName(), e);
+    }
+    LOG.debug("Spilled {} bytes of buffer for table {}", buffBytes, getTransactionAwareName());
+    reportBuffer(spilled.getBytes());
+    if (metricsCollector != null) {
+      metricsCollector.increment(Constants.Metrics.Name.Dataset.BUFFER_SPILLS, 1);
+    }
+    // use a new map instead of clearing, since scanners opened before the spill may still be iterating it
+    buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    buffBytes = 0L;
+  }
+
+  private void clearSpilled() {
+    if (spilled != null) {
+      spilled.close();
+      spilled = null;
+    }
+    if (spilledToUndo != null) {
+      spilledToUndo.close();
+      spilledToUndo = null;
+    }
+  }
+
   /**
    * Applies the buffered updates on top of the map of persisted values.  The persisted map is modified in place
    * with the updated values.
@@ -929,6 +1228,19 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
+  private void reportBuffer(long bytes) {
+    if (metricsCollector != null) {
+      metricsCollector.gauge(Constants.Metrics.Name.Dataset.BUFFER_BYTES, bytes);
+    }
+  }
+
+  private void reportReadCache(boolean hit) {
+    if (metricsCollector != null) {
+      metricsCollector.increment(hit ? Constants.Metrics.Name.Dataset.READ_CACHE_HITS
+                                     : Constants.Metrics.Name.Dataset.READ_CACHE_MISSES, 1);
+    }
+  }
+
   private void reportRead(int numOps) {
     if (metricsCollector != null) {
       // todo: report amount of data being read
@@ -962,11 +1274,12 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // they get annotated
 
   @ReadOnly
-  private Iterator<byte[]> getBufferKeyIterator(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
-    final Iterator<byte[]> iterator = buffer.keySet().iterator();
-    return new AbstractIterator<byte[]>() {
+  private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> getBufferIterator(
+    NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
+    final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator = buffer.entrySet().iterator();
+    return new AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>>() {
       @Override
-      protected byte[] computeNext() {
+      protected Map.Entry<byte[], NavigableMap<byte[], Update>> computeNext() {
         return BufferingTable.this.hasNext(iterator) ? BufferingTable.this.next(iterator) : endOfData();
       }
     };
@@ -982,28 +1295,20 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return iterator.next();
   }
 
-  @ReadOnly
-  private NavigableMap<byte[], Update> getFromBuffer(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer,
-                                                     byte[] key) {
-    return buffer.get(key);
-  }
-
   /**
    * Scanner implementation that overlays buffered data on top of already persisted data.
    */
   private class BufferingScanner implements Scanner {
-    private final NavigableMap<byte[], NavigableMap<byte[], Update>> buffer;
     private final Scanner persistedScanner;
-    private final Iterator<byte[]> keyIter;
+    private final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferIter;
     private byte[] currentKey;
+    private NavigableMap<byte[], Update> currentColumns;
     private Row currentRow;
 
-    private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Scanner persistedScanner) {
-      this.buffer = buffer;
-      this.keyIter = getBufferKeyIterator(buffer);
-      if (this.keyIter.hasNext()) {
-        currentKey = keyIter.next();
-      }
+    private BufferingScanner(Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferIter,
+                             Scanner persistedScanner) {
+      this.bufferIter = bufferIter;
+      advanceBuffer();
       this.persistedScanner = persistedScanner;
       this.currentRow = this.persistedScanner.next();
     }
@@ -1035,22 +1340,28 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       } else if (order < 0) {
         // buffer row comes first or persisted scanner is empty
         Map<byte[], byte[]> persistedRow = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        mergeToPersisted(persistedRow, getFromBuffer(buffer, currentKey), null);
+        mergeToPersisted(persistedRow, currentColumns, null);
         result = new Result(copy(currentKey), persistedRow);
 
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+        advanceBuffer();
       } else {
         // if currentKey and currentRow are equal, merge and advance both
         Map<byte[], byte[]> persisted = currentRow.getColumns();
-        mergeToPersisted(persisted, getFromBuffer(buffer, currentKey), null);
+        mergeToPersisted(persisted, currentColumns, null);
         result = new Result(currentRow.getRow(), persisted);
 
         currentRow = persistedScanner.next();
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+        advanceBuffer();
       }
       return result;
     }
 
+    private void advanceBuffer() {
+      Map.Entry<byte[], NavigableMap<byte[], Update>> entry = bufferIter.hasNext() ? bufferIter.next() : null;
+      currentKey = entry == null ? null : entry.getKey();
+      currentColumns = entry == null ? null : entry.getValue();
+    }
+
     @Override
     public void close() {
       this.persistedScanner.close();
@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Caches the column values of rows read from the persisted store of a {@link BufferingTable} within a transaction.
+ * Since the persisted store is always read with the snapshot of the current transaction, and changes made
+ * by the transaction are only kept in the in-memory buffer until the transaction commits, what is read from the
+ * persisted store doesn't change for the lifetime of the transaction. The cache only contains persisted data, which
+ * the table merges with its in-memory buffer the same way it does for data fetched from the persisted store.
+ * <p>
+ * The cache is bounded by the total number of cells it keeps, which includes the columns known to be absent.
+ * Values are copied when added to and returned from the cache, so that the cache cannot be altered by clients of
+ * the table modifying returned values in place.
+ */
+@NotThreadSafe
+final class PersistedReadCache {
+
+  private final int maxCells;
+  private final NavigableMap<byte[], CachedRow> rows;
+  private int cells;
+
+  PersistedReadCache(int maxCells) {
+    this.maxCells = maxCells;
+    this.rows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  }
+
+  /**
+   * Returns the persisted values of the given columns of a row, or {@code null} if not all of them are known.
+   *
+   * @param row the row key
+   * @param columns the columns to get, or {@code null} for all columns in the row
+   */
+  @Nullable
+  NavigableMap<byte[], byte[]> get(byte[] row, @Nullable byte[][] columns) {
+    CachedRow cachedRow = rows.get(row);
+    if (cachedRow == null) {
+      return null;
+    }
+    if (columns == null) {
+      return cachedRow.getRange(null, null, 0);
+    }
+
+    NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (byte[] column : columns) {
+      byte[] value = cachedRow.values.get(column);
+      if (value != null) {
+        result.put(column, copy(value));
+      } else if (!cachedRow.absent.contains(column) && !cachedRow.isCovered(column)) {
+        return null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the persisted values of the given column range of a row, or {@code null} if the range is not known.
+   * The result is the same as what {@link BufferingTable#getPersisted(byte[], byte[], byte[], int)} returns
+   * for the same arguments.
+   *
+   * @param row the row key
+   * @param startColumn first column in the range, inclusive, or {@code null} to start from the first column
+   * @param stopColumn last column in the range, exclusive, or {@code null} to end at the last column
+   * @param limit max number of columns to return, no limit if it is not positive
+   */
+  @Nullable
+  NavigableMap<byte[], byte[]> get(byte[] row, @Nullable byte[] startColumn, @Nullable byte[] stopColumn, int limit) {
+    CachedRow cachedRow = rows.get(row);
+    return cachedRow == null ? null : cachedRow.getRange(startColumn, stopColumn, limit);
+  }
+
+  /**
+   * Adds the result of fetching columns of a row from the persisted store.
+   *
+   * @param row the row key
+   * @param columns the columns fetched, or {@code null} if all columns in the row were fetched
+   * @param values the values fetched
+   */
+  void put(byte[] row, @Nullable byte[][] columns, Map<byte[], byte[]> values) {
+    if (columns == null) {
+      put(row, null, null, 0, values);
+      return;
+    }
+
+    CachedRow cachedRow = getOrCreate(row);
+    int sizeBefore = cachedRow.size();
+    for (byte[] column : columns) {
+      byte[] value = values.get(column);
+      if (value == null) {
+        cachedRow.absent.add(copy(column));
+      } else {
+        cachedRow.values.put(copy(column), copy(value));
+      }
+    }
+    added(cachedRow.size() - sizeBefore);
+  }
+
+  /**
+   * Adds the result of fetching a column range of a row from the persisted store.
+   *
+   * @param row the row key
+   * @param startColumn first column in the range, inclusive, or {@code null} if started from the first column
+   * @param stopColumn last column in the range, exclusive, or {@code null} if ended at the last column
+   * @param limit max number of columns that were fetched, no limit if it is not positive
+   * @param values the values fetched
+   */
+  void put(byte[] row, @Nullable byte[] startColumn, @Nullable byte[] stopColumn, int limit,
+           Map<byte[], byte[]> values) {
+    CachedRow cachedRow = getOrCreate(row);
+    int sizeBefore = cachedRow.size();
+    NavigableMap<byte[], byte[]> sorted = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+      sorted.put(copy(entry.getKey()), copy(entry.getValue()));
+    }
+    cachedRow.values.putAll(sorted);
+
+    // If the limit was reached, only the range up to and including the last column returned is known
+    byte[] coveredStop = stopColumn;
+    if (limit > 0 && sorted.size() >= limit) {
+      coveredStop = Bytes.add(sorted.lastKey(), new byte[] { 0 });
+    }
+    cachedRow.ranges.add(new byte[][] { startColumn == null ? null : copy(startColumn),
+                                        coveredStop == null ? null : copy(coveredStop) });
+    added(cachedRow.size() - sizeBefore);
+  }
+
+  /**
+   * Removes everything from the cache.
+   */
+  void clear() {
+    rows.clear();
+    cells = 0;
+  }
+
+  private CachedRow getOrCreate(byte[] row) {
+    return rows.computeIfAbsent(copy(row), k -> new CachedRow());
+  }
+
+  /**
+   * Accounts for newly added cells and evicts rows if the cache has grown beyond its bound.
+   */
+  private void added(int addedCells) {
+    cells += addedCells;
+    while (cells > maxCells && !rows.isEmpty()) {
+      cells -= rows.pollFirstEntry().getValue().size();
+    }
+  }
+
+  private static byte[] copy(byte[] bytes) {
+    return Arrays.copyOf(bytes, bytes.length);
+  }
+
+  /**
+   * The known persisted data of a row.
+   */
+  private static final class CachedRow {
+    // known column values, exactly as returned by the persisted store
+    private final NavigableMap<byte[], byte[]> values = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    // columns known to not exist in the persisted store
+    private final NavigableSet<byte[]> absent = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    // column ranges, as {start inclusive, stop exclusive} with null for unbounded, that all the columns are known
+    private final List<byte[][]> ranges = new ArrayList<>();
+
+    int size() {
+      return values.size() + absent.size() + ranges.size();
+    }
+
+    boolean isCovered(byte[] column) {
+      for (byte[][] range : ranges) {
+        if ((range[0] == null || Bytes.compareTo(range[0], column) <= 0)
+          && (range[1] == null || Bytes.compareTo(column, range[1]) < 0)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Nullable
+    NavigableMap<byte[], byte[]> getRange(@Nullable byte[] startColumn, @Nullable byte[] stopColumn, int limit) {
+      for (byte[][] range : ranges) {
+        // the range must start at or before the requested start, and end after it
+        if (range[0] != null && (startColumn == null || Bytes.compareTo(range[0], startColumn) > 0)) {
+          continue;
+        }
+        if (range[1] != null && startColumn != null && Bytes.compareTo(range[1], startColumn) <= 0) {
+          continue;
+        }
+
+        boolean coversStop = range[1] == null || (stopColumn != null && Bytes.compareTo(stopColumn, range[1]) <= 0);
+        NavigableMap<byte[], byte[]> known = BufferingTable.getRange(values, startColumn,
+                                                                      coversStop ? stopColumn : range[1], 0);
+        // if the range ends before the requested stop, it still is enough if it has the number of columns requested
+        if (coversStop || (limit > 0 && known.size() >= limit)) {
+          NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+          for (Map.Entry<byte[], byte[]> entry : BufferingTable.head(known, limit).entrySet()) {
+            result.put(entry.getKey(), copy(entry.getValue()));
+          }
+          return result;
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,602 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingOutputStream;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DataSetException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Keeps the part of the in-memory buffer of a {@link BufferingTable} that was spilled to local disk. Each spill
+ * writes the buffer, which is sorted by row, as one run file. Runs are immutable once written, and a run written
+ * later overrides the updates of runs written before it, the same way a later write overrides an earlier one in the
+ * in-memory buffer. Reads merge the runs together with the current in-memory buffer, which is the most recent.
+ * <p>
+ * Each run keeps a sparse in-memory index of its row keys, so that reading a row or a range of rows only reads
+ * the part of the file that may contain them. The file of each run is kept open until the buffer is closed, and is
+ * read with positional reads, so that reads don't need to open the file again.
+ */
+@NotThreadSafe
+final class SpilledBuffer implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SpilledBuffer.class);
+
+  // one row out of every INDEX_INTERVAL rows of a run is kept in the in-memory index
+  private static final int INDEX_INTERVAL = 64;
+  private static final int IO_BUFFER_SIZE = 64 * 1024;
+  // reading a row reads at most INDEX_INTERVAL rows, hence uses a smaller buffer than scans
+  private static final int GET_BUFFER_SIZE = 8 * 1024;
+
+  // approximated per entry memory overhead of the buffer maps and update objects
+  private static final int ROW_OVERHEAD = 96;
+  private static final int CELL_OVERHEAD = 80;
+
+  private static final byte TYPE_PUT = 0;
+  private static final byte TYPE_DELETE = 1;
+  private static final byte TYPE_INCREMENT = 2;
+
+  private final File dir;
+  private final String prefix;
+  private final List<Run> runs = new ArrayList<>();
+  private long bytes;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param dir the local directory to write the run files to
+   * @param prefix prefix of the run file names
+   */
+  SpilledBuffer(File dir, String prefix) {
+    this.dir = dir;
+    // File.createTempFile requires a prefix of at least three characters
+    this.prefix = prefix.length() < 3 ? prefix + "___" : prefix;
+  }
+
+  /**
+   * Returns the approximated memory size of a buffered row without its columns.
+   */
+  static long estimateSize(byte[] row) {
+    return ROW_OVERHEAD + row.length;
+  }
+
+  /**
+   * Returns the approximated memory size of a buffered row.
+   */
+  static long estimateSize(byte[] row, Map<byte[], Update> columns) {
+    long size = estimateSize(row);
+    for (Map.Entry<byte[], Update> entry : columns.entrySet()) {
+      size += estimateSize(entry.getKey(), entry.getValue());
+    }
+    return size;
+  }
+
+  /**
+   * Returns the approximated memory size of a buffered cell.
+   */
+  static long estimateSize(byte[] column, @Nullable Update update) {
+    long size = CELL_OVERHEAD + column.length;
+    if (update instanceof PutValue) {
+      byte[] value = ((PutValue) update).getValue();
+      size += value == null ? 0 : value.length;
+    } else if (update != null) {
+      size += Bytes.SIZEOF_LONG;
+    }
+    return size;
+  }
+
+  /**
+   * Returns {@code true} if nothing was spilled.
+   */
+  boolean isEmpty() {
+    return runs.isEmpty();
+  }
+
+  /**
+   * Returns the number of bytes written to disk.
+   */
+  long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Writes the given buffer as a new run, which overrides all the runs written before.
+   */
+  void spill(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) throws IOException {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Failed to create directory " + dir + " for spilling the buffer");
+    }
+
+    File file = File.createTempFile(prefix, ".spill", dir);
+    NavigableMap<byte[], Long> index = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    byte[] lastRow = null;
+    boolean succeeded = false;
+    try {
+      CountingOutputStream counting = new CountingOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE));
+      try (DataOutputStream out = new DataOutputStream(counting)) {
+        int count = 0;
+        for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : buffer.entrySet()) {
+          if (count++ % INDEX_INTERVAL == 0) {
+            index.put(entry.getKey(), counting.getCount());
+          }
+          lastRow = entry.getKey();
+          writeRow(out, entry.getKey(), entry.getValue());
+        }
+        // end of run marker
+        out.writeInt(-1);
+      }
+      runs.add(new Run(file, FileChannel.open(file.toPath(), StandardOpenOption.READ), index, lastRow));
+      bytes += counting.getCount();
+      succeeded = true;
+    } finally {
+      if (!succeeded) {
+        delete(file);
+      }
+    }
+  }
+
+  /**
+   * Returns the updates of a row merged from all the runs, or {@code null} if the row was not spilled.
+   */
+  @Nullable
+  NavigableMap<byte[], Update> get(byte[] row) throws IOException {
+    NavigableMap<byte[], Update> result = null;
+    for (Run run : runs) {
+      if (!run.mayContain(row)) {
+        continue;
+      }
+      RunSource source = new RunSource(run, row, 0, GET_BUFFER_SIZE);
+      if (source.row != null && Bytes.equals(row, source.row)) {
+        if (result == null) {
+          result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        }
+        merge(result, source.columns);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns an {@link Iterator} over the rows of a range in order, with the updates of each row merged from all the
+   * runs and the given in-memory buffer, which overrides the runs. Rows are read from the runs as the iterator
+   * advances, so that only the rows that are being merged are in memory. The iterator throws
+   * {@link DataSetException} if it fails to read from a run.
+   *
+   * @param startRow the first row of the range, inclusive, or {@code null} to start from the first row
+   * @param stopRow the last row of the range, exclusive, or {@code null} to end at the last row
+   * @param memory the in-memory buffer
+   */
+  Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator(
+    @Nullable byte[] startRow, @Nullable byte[] stopRow,
+    NavigableMap<byte[], NavigableMap<byte[], Update>> memory) throws IOException {
+    PriorityQueue<Source> queue = new PriorityQueue<>(runs.size() + 1, SOURCE_COMPARATOR);
+    for (int i = 0; i < runs.size(); i++) {
+      addIfNotEmpty(queue, new RunSource(runs.get(i), startRow, i, IO_BUFFER_SIZE));
+    }
+    addIfNotEmpty(queue, new MemorySource(subMap(memory, startRow, stopRow), runs.size()));
+    return new MergingIterator(queue, stopRow);
+  }
+
+  /**
+   * Visits the rows of a range in order, with the updates of each row merged from all the runs and the given
+   * in-memory buffer, which overrides the runs.
+   *
+   * @param startRow the first row of the range, inclusive, or {@code null} to start from the first row
+   * @param stopRow the last row of the range, exclusive, or {@code null} to end at the last row
+   * @param memory the in-memory buffer
+   * @param visitor the visitor to call for each row
+   */
+  void forEach(@Nullable byte[] startRow, @Nullable byte[] stopRow,
+               NavigableMap<byte[], NavigableMap<byte[], Update>> memory, RowVisitor visitor) throws Exception {
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator = iterator(startRow, stopRow, memory);
+    while (iterator.hasNext()) {
+      Map.Entry<byte[], NavigableMap<byte[], Update>> entry = iterator.next();
+      visitor.visit(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Visits all the rows merged from all the runs and the given in-memory buffer in chunks, each of them
+   * with approximated memory size of at most the given size, unless it contains a single row.
+   */
+  void forEachChunk(NavigableMap<byte[], NavigableMap<byte[], Update>> memory, long maxChunkSize,
+                    ChunkVisitor visitor) throws Exception {
+    ChunkCollector collector = new ChunkCollector(maxChunkSize, visitor);
+    forEach(null, null, memory, collector);
+    collector.flush();
+  }
+
+  /**
+   * Deletes all the runs.
+   */
+  @Override
+  public void close() {
+    for (Run run : runs) {
+      run.close();
+    }
+    runs.clear();
+    bytes = 0L;
+  }
+
+  private static void writeRow(DataOutputStream out, byte[] row,
+                               NavigableMap<byte[], Update> columns) throws IOException {
+    writeBytes(out, row);
+    out.writeInt(columns.size());
+    for (Map.Entry<byte[], Update> entry : columns.entrySet()) {
+      writeBytes(out, entry.getKey());
+      Update update = entry.getValue();
+      if (update instanceof IncrementValue) {
+        out.writeByte(TYPE_INCREMENT);
+        out.writeLong(((IncrementValue) update).getValue());
+      } else {
+        byte[] value = update == null ? null : ((PutValue) update).getValue();
+        if (value == null) {
+          out.writeByte(TYPE_DELETE);
+        } else {
+          out.writeByte(TYPE_PUT);
+          writeBytes(out, value);
+        }
+      }
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static void merge(NavigableMap<byte[], Update> result, NavigableMap<byte[], Update> newer) {
+    for (Map.Entry<byte[], Update> entry : newer.entrySet()) {
+      result.put(entry.getKey(), Updates.mergeUpdates(result.get(entry.getKey()), entry.getValue()));
+    }
+  }
+
+  private static <T> NavigableMap<byte[], T> subMap(NavigableMap<byte[], T> map,
+                                                    @Nullable byte[] startRow, @Nullable byte[] stopRow) {
+    if (startRow == null && stopRow == null) {
+      return map;
+    }
+    if (startRow == null) {
+      return map.headMap(stopRow, false);
+    }
+    if (stopRow == null) {
+      return map.tailMap(startRow, true);
+    }
+    return map.subMap(startRow, true, stopRow, false);
+  }
+
+  private static void addIfNotEmpty(PriorityQueue<Source> queue, Source source) {
+    if (source.row != null) {
+      queue.add(source);
+    }
+  }
+
+  private static void delete(File file) {
+    if (!file.delete() && file.exists()) {
+      LOG.warn("Failed to delete buffer spill file {}", file);
+    }
+  }
+
+  /**
+   * Visitor of merged buffer rows.
+   */
+  interface RowVisitor {
+    void visit(byte[] row, NavigableMap<byte[], Update> columns) throws Exception;
+  }
+
+  /**
+   * Visitor of chunks of merged buffer rows.
+   */
+  interface ChunkVisitor {
+    void visit(NavigableMap<byte[], NavigableMap<byte[], Update>> chunk) throws Exception;
+  }
+
+  /**
+   * A {@link RowVisitor} that collects rows into chunks of bounded size.
+   */
+  private static final class ChunkCollector implements RowVisitor {
+    private final long maxChunkSize;
+    private final ChunkVisitor visitor;
+    private NavigableMap<byte[], NavigableMap<byte[], Update>> chunk = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    private long chunkSize;
+
+    private ChunkCollector(long maxChunkSize, ChunkVisitor visitor) {
+      this.maxChunkSize = maxChunkSize;
+      this.visitor = visitor;
+    }
+
+    @Override
+    public void visit(byte[] row, NavigableMap<byte[], Update> columns) throws Exception {
+      chunk.put(row, columns);
+      chunkSize += estimateSize(row, columns);
+      if (chunkSize >= maxChunkSize) {
+        flush();
+      }
+    }
+
+    void flush() throws Exception {
+      if (chunk.isEmpty()) {
+        return;
+      }
+      // the visitor may keep the chunk, hence always use a new map for the next one
+      NavigableMap<byte[], NavigableMap<byte[], Update>> visited = chunk;
+      chunk = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      chunkSize = 0L;
+      visitor.visit(visited);
+    }
+  }
+
+  /**
+   * A run file written by a spill.
+   */
+  private static final class Run implements Closeable {
+    private final File file;
+    private final FileChannel channel;
+    // sparse index from row to the file offset of the row
+    private final NavigableMap<byte[], Long> index;
+    private final byte[] lastRow;
+
+    private Run(File file, FileChannel channel, NavigableMap<byte[], Long> index, byte[] lastRow) {
+      this.file = file;
+      this.channel = channel;
+      this.index = index;
+      this.lastRow = lastRow;
+    }
+
+    boolean mayContain(byte[] row) {
+      return Bytes.compareTo(index.firstKey(), row) <= 0 && Bytes.compareTo(row, lastRow) <= 0;
+    }
+
+    /**
+     * Returns the offset to start reading from to find the given row.
+     */
+    long getOffset(@Nullable byte[] row) {
+      Map.Entry<byte[], Long> entry = row == null ? null : index.floorEntry(row);
+      return entry == null ? 0L : entry.getValue();
+    }
+
+    @Override
+    public void close() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOG.debug("Failed to close buffer spill file {}", file, e);
+      }
+      delete(file);
+    }
+  }
+
+  /**
+   * An {@link Iterator} that merges the rows of sorted {@link Source}s.
+   */
+  private static final class MergingIterator extends AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> {
+    private final PriorityQueue<Source> queue;
+    private final byte[] stopRow;
+    private final List<Source> current;
+
+    private MergingIterator(PriorityQueue<Source> queue, @Nullable byte[] stopRow) {
+      this.queue = queue;
+      this.stopRow = stopRow;
+      this.current = new ArrayList<>();
+    }
+
+    @Override
+    protected Map.Entry<byte[], NavigableMap<byte[], Update>> computeNext() {
+      if (queue.isEmpty()) {
+        return endOfData();
+      }
+      byte[] row = queue.peek().row;
+      if (stopRow != null && Bytes.compareTo(row, stopRow) >= 0) {
+        queue.clear();
+        return endOfData();
+      }
+      // sources of the same row are polled from the oldest to the newest
+      while (!queue.isEmpty() && Bytes.equals(row, queue.peek().row)) {
+        current.add(queue.poll());
+      }
+      NavigableMap<byte[], Update> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      try {
+        for (Source source : current) {
+          merge(columns, source.columns);
+          if (source.advance()) {
+            queue.add(source);
+          }
+        }
+      } catch (IOException e) {
+        throw new DataSetException("Failed to read buffer spill file", e);
+      } finally {
+        current.clear();
+      }
+      return Maps.immutableEntry(row, columns);
+    }
+  }
+
+  private static final Comparator<Source> SOURCE_COMPARATOR = new Comparator<Source>() {
+    @Override
+    public int compare(Source o1, Source o2) {
+      int cmp = Bytes.compareTo(o1.row, o2.row);
+      return cmp != 0 ? cmp : Integer.compare(o1.order, o2.order);
+    }
+  };
+
+  /**
+   * A sorted source of buffered rows. The current row is {@code null} when the source is exhausted.
+   */
+  private abstract static class Source {
+    // older sources have smaller order
+    final int order;
+    byte[] row;
+    NavigableMap<byte[], Update> columns;
+
+    Source(int order) {
+      this.order = order;
+    }
+
+    /**
+     * Moves to the next row, returns {@code false} if there is no more row.
+     */
+    abstract boolean advance() throws IOException;
+  }
+
+  /**
+   * A {@link Source} reading from a run file.
+   */
+  private static final class RunSource extends Source {
+    private final DataInputStream in;
+
+    /**
+     * Reads the run file from the first row that is equal to or greater than the given row.
+     */
+    RunSource(Run run, @Nullable byte[] startRow, int order, int bufferSize) throws IOException {
+      super(order);
+      this.in = new DataInputStream(new BufferedInputStream(
+        new ChannelInputStream(run.channel, run.getOffset(startRow)), bufferSize));
+      while (advance()) {
+        if (startRow == null || Bytes.compareTo(row, startRow) >= 0) {
+          break;
+        }
+      }
+    }
+
+    @Override
+    boolean advance() throws IOException {
+      int rowLength = in.readInt();
+      if (rowLength < 0) {
+        row = null;
+        columns = null;
+        return false;
+      }
+      row = new byte[rowLength];
+      in.readFully(row);
+      int size = in.readInt();
+      columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (int i = 0; i < size; i++) {
+        byte[] column = readBytes(in);
+        byte type = in.readByte();
+        switch (type) {
+          case TYPE_PUT:
+            columns.put(column, new PutValue(readBytes(in)));
+            break;
+          case TYPE_DELETE:
+            columns.put(column, new PutValue(null));
+            break;
+          case TYPE_INCREMENT:
+            columns.put(column, new IncrementValue(in.readLong()));
+            break;
+          default:
+            throw new IOException("Unknown update type " + type + " in buffer spill file");
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * An {@link InputStream} that reads a {@link FileChannel} from a given position with positional reads, which
+   * don't change the position of the channel, so that multiple streams can read the same channel.
+   */
+  private static final class ChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+
+    ChannelInputStream(FileChannel channel, long position) {
+      this.channel = channel;
+      this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+      if (n > 0) {
+        position += n;
+      }
+      return n;
+    }
+  }
+
+  /**
+   * A {@link Source} reading from the in-memory buffer.
+   */
+  private static final class MemorySource extends Source {
+    private final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator;
+
+    MemorySource(NavigableMap<byte[], NavigableMap<byte[], Update>> memory, int order) {
+      super(order);
+      this.iterator = memory.entrySet().iterator();
+      advance();
+    }
+
+    @Override
+    boolean advance() {
+      if (!iterator.hasNext()) {
+        row = null;
+        columns = null;
+        return false;
+      }
+      Map.Entry<byte[], NavigableMap<byte[], Update>> entry = iterator.next();
+      row = entry.getKey();
+      columns = entry.getValue() == null ? Collections.<byte[], Update>emptyNavigableMap() : entry.getValue();
+      return true;
+    }
+  }
+}
@@ -666,6 +666,8 @@ public class MetadataDataset extends AbstractDataset {
    * Searches entities that match the specified search query in the specified namespace and {@link NamespaceId#SYSTEM}
    * for the specified types.
    * When using default sorting, limits, cursors, and offset are ignored and all results are returned.
+   * Use {@link #scoreByDefaultIndex(SearchRequest)} to rank the results of default sorting without reading
+   * all matching entries.
    * When using custom sorting, at most offset + limit * (numCursors + 1) results are returned.
    * When using default sorting, results are returned in whatever order is determined by the underlying storage.
    * When using custom sorting, results are returned sorted according to the field and order specified.
@@ -690,10 +692,48 @@ public class MetadataDataset extends AbstractDataset {
   }
 
   private SearchResults searchByDefaultIndex(SearchRequest request) {
-    List<MetadataEntry> results = new LinkedList<>();
-    String column = request.isNamespaced() ?
+    List<MetadataEntry> results = new ArrayList<>();
+    String column = getDefaultIndexColumn(request);
+    scanDefaultIndex(request, column, row -> {
+      Optional<MetadataEntry> metadataEntry = parseRow(row, column, request.getTypes(), request.shouldShowHidden());
+      metadataEntry.ifPresent(results::add);
+    });
+
+    // cursors for the default index are determined by the caller, after scoring the results
+    return new SearchResults(results, Collections.emptyList());
+  }
+
+  /**
+   * Scores the entities that match the specified search query using the default index. The score of an entity
+   * is the number of index entries of the entity that match any of the search terms, which is the same as the
+   * number of times the entity would be returned by {@link #search(SearchRequest)} with {@link SortInfo#DEFAULT}.
+   *
+   * Unlike {@link #search(SearchRequest)}, this method does not read the metadata of the matching entries,
+   * and only keeps a single counter per matching entity.
+   *
+   * @param request the search request
+   * @return a map from each matching {@link MetadataEntity} to its score
+   */
+  public Map<MetadataEntity, Integer> scoreByDefaultIndex(SearchRequest request) {
+    Map<MetadataEntity, Integer> scores = new HashMap<>();
+    String column = getDefaultIndexColumn(request);
+    scanDefaultIndex(request, column, row -> {
+      Optional<MetadataEntity> metadataEntity = parseEntity(row, column, request.getTypes(),
+                                                            request.shouldShowHidden());
+      metadataEntity.ifPresent(entity -> scores.merge(entity, 1, Integer::sum));
+    });
+    return scores;
+  }
+
+  private String getDefaultIndexColumn(SearchRequest request) {
+    return request.isNamespaced() ?
       DEFAULT_INDEX_COLUMN.getColumn() : DEFAULT_INDEX_COLUMN.getCrossNamespaceColumn();
+  }
 
+  /**
+   * Scans the default index for all the search terms of the request, and calls the consumer with each matching row.
+   */
+  private void scanDefaultIndex(SearchRequest request, String column, Consumer<Row> consumer) {
     for (SearchTerm searchTerm : getSearchTerms(request)) {
       Scanner scanner;
       if (searchTerm.isPrefix()) {
@@ -709,17 +749,12 @@ public class MetadataDataset extends AbstractDataset {
       try {
         Row next;
         while ((next = scanner.next()) != null) {
-          Optional<MetadataEntry> metadataEntry = parseRow(next, column, request.getTypes(),
-                                                           request.shouldShowHidden());
-          metadataEntry.ifPresent(results::add);
+          consumer.accept(next);
         }
       } finally {
         scanner.close();
       }
     }
-
-    // cursors are currently not supported for default indexes
-    return new SearchResults(results, Collections.emptyList());
   }
 
   private SearchResults searchByCustomIndex(SearchRequest request) throws BadRequestException {
@@ -789,7 +824,20 @@ public class MetadataDataset extends AbstractDataset {
   // so return an Optional
   private Optional<MetadataEntry> parseRow(Row rowToProcess, String indexColumn,
                                            Set<String> entityFilter, boolean showHidden) {
-    String rowValue = rowToProcess.getString(indexColumn);
+    Optional<MetadataEntity> metadataEntity = parseEntity(rowToProcess, indexColumn, entityFilter, showHidden);
+    if (!metadataEntity.isPresent()) {
+      return Optional.empty();
+    }
+    String key = MetadataKey.extractMetadataKey(rowToProcess.getRow());
+    MetadataEntry entry = getMetadata(metadataEntity.get(), key);
+    return Optional.ofNullable(entry);
+  }
+
+  // there may not be an index value in the row, or it may for a different targetType (entityFilter),
+  // or for a hidden entity, so return an Optional
+  private Optional<MetadataEntity> parseEntity(Row rowToProcess, String indexColumn,
+                                               Set<String> entityFilter, boolean showHidden) {
+    byte[] rowValue = rowToProcess.get(indexColumn);
     if (rowValue == null) {
       return Optional.empty();
     }
@@ -813,10 +861,7 @@ public class MetadataDataset extends AbstractDataset {
     } catch (IllegalArgumentException e) {
       // ignore. For custom entities we don't really want to hide them if they start with _
     }
-
-    String key = MetadataKey.extractMetadataKey(rowKey);
-    MetadataEntry entry = getMetadata(metadataEntity, key);
-    return Optional.ofNullable(entry);
+    return Optional.of(metadataEntity);
   }
 
   /**
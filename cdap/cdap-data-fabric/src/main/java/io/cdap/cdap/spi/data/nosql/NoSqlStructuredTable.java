@@ -40,6 +40,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -74,6 +75,18 @@ public final class NoSqlStructuredTable implements StructuredTable {
     table.put(convertFieldsToBytes(fields));
   }
 
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields) throws InvalidFieldException {
+    LOG.trace("Table {}: Write multiple fields {}", schema.getTableId(), multiFields);
+    // Convert all the rows first so that no write happens if any of the rows is invalid.
+    // The puts are buffered by the underlying table and persisted together when the transaction commits.
+    List<Put> puts = new ArrayList<>(multiFields.size());
+    for (Collection<Field<?>> fields : multiFields) {
+      puts.add(convertFieldsToBytes(fields));
+    }
+    puts.forEach(table::put);
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException {
     LOG.trace("Table {}: Read with keys {}", schema.getTableId(), keys);
@@ -212,6 +225,16 @@ public final class NoSqlStructuredTable implements StructuredTable {
     table.delete(convertKeyToBytes(keys, false));
   }
 
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys) throws InvalidFieldException {
+    LOG.trace("Table {}: Delete with multiple keys {}", schema.getTableId(), multiKeys);
+    List<byte[]> rowKeys = new ArrayList<>(multiKeys.size());
+    for (Collection<Field<?>> keys : multiKeys) {
+      rowKeys.add(convertKeyToBytes(keys, false));
+    }
+    rowKeys.forEach(table::delete);
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", schema.getTableId(), keyRange);
@@ -223,6 +246,18 @@ public final class NoSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public long count(Range keyRange) throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Count with range {}", schema.getTableId(), keyRange);
+    long count = 0;
+    try (Scanner scanner = getScanner(keyRange)) {
+      while (scanner.next() != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   @Override
   public void close() throws IOException {
     table.close();
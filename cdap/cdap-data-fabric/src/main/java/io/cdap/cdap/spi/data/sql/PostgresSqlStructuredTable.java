@@ -51,6 +51,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javax.annotation.Nullable;
@@ -84,6 +85,26 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     upsertInternal(fields);
   }
 
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Write multiple fields {}", tableSchema.getTableId(), multiFields);
+    for (Collection<Field<?>> fields : multiFields) {
+      Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
+      if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
+        throw new InvalidFieldException(tableSchema.getTableId(), fields,
+                                        String.format("Given fields %s do not contain all the " +
+                                                        "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
+      }
+    }
+    try {
+      executeBatches(multiFields, fields -> getWriteSqlQuery(fields, null));
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to write to table %s with multiple fields %s",
+                                          tableSchema.getTableId().getName(), multiFields), e);
+    }
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
     return readRow(keys, null);
@@ -189,13 +210,14 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     LOG.trace("Table {}: Scan range {} with limit {}", tableSchema.getTableId(), keyRange, limit);
     fieldValidator.validatePrimaryKeys(keyRange.getBegin(), true);
     fieldValidator.validatePrimaryKeys(keyRange.getEnd(), true);
-    String scanQuery = getScanQuery(keyRange, limit);
+    String scanQuery = getScanQuery(keyRange);
 
     // We don't close the statement here because once it is closed, the result set is also closed.
     try {
       PreparedStatement statement = connection.prepareStatement(scanQuery);
       statement.setFetchSize(SCAN_FETCH_SIZE);
-      setStatementFieldByRange(keyRange, statement);
+      int index = setStatementFieldByRange(keyRange, statement, 1);
+      statement.setInt(index, limit);
       LOG.trace("SQL statement: {}", statement);
 
       ResultSet resultSet = statement.executeQuery();
@@ -256,7 +278,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
    * E.g.
    *
    * SELECT * FROM table WHERE key1 in (?,?) AND key2 in (?,?)
-   * OR ((key3 >= ?) AND (key3 <= ?)) OR ((key4 >= ?) AND (key4 <= ?)) LIMIT limit
+   * OR ((key3 >= ?) AND (key3 <= ?)) OR ((key4 >= ?) AND (key4 <= ?)) LIMIT ?
    *
    * @param keyFields a map from field name to field values that the query has to match with
    * @param ranges the list of ranges to scan
@@ -291,7 +313,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
       query.append(")");
     }
     query.append(getOrderByClause(tableSchema.getPrimaryKeys()));
-    query.append(" LIMIT ").append(limit).append(";");
+    query.append(" LIMIT ?;");
 
     PreparedStatement statement = connection.prepareStatement(query.toString());
     statement.setFetchSize(SCAN_FETCH_SIZE);
@@ -301,6 +323,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     for (Range range : ranges) {
       index = setStatementFieldByRange(range, statement, index);
     }
+    statement.setInt(index, limit);
     return statement;
   }
 
@@ -441,6 +464,21 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Delete with multiple keys {}", tableSchema.getTableId(), multiKeys);
+    for (Collection<Field<?>> keys : multiKeys) {
+      fieldValidator.validatePrimaryKeys(keys, false);
+    }
+    try {
+      executeBatches(multiKeys, this::getDeleteQuery);
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to delete the rows from table %s with multiple keys %s",
+                                          tableSchema.getTableId().getName(), multiKeys), e);
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", tableSchema.getTableId(), keyRange);
@@ -458,6 +496,24 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public long count(Range keyRange) throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Count with range {}", tableSchema.getTableId(), keyRange);
+    fieldValidator.validatePrimaryKeys(keyRange.getBegin(), true);
+    fieldValidator.validatePrimaryKeys(keyRange.getEnd(), true);
+    String sql = getCountQuery(keyRange);
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      setStatementFieldByRange(keyRange, statement);
+      LOG.trace("SQL statement: {}", statement);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? resultSet.getLong(1) : 0L;
+      }
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to count the rows from table %s with range %s",
+                                          tableSchema.getTableId().getName(), keyRange), e);
+    }
+  }
+
   @Override
   public void close() throws IOException {
     try {
@@ -483,6 +539,44 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  /**
+   * Executes the statements generated for the given collection of fields with JDBC batches, so that
+   * each batch only takes one round trip to the database. Consecutive rows that produce the same sql query
+   * are added to the same batch, hence the rows are applied in the order given.
+   *
+   * @param multiFields the collection of fields, one per row
+   * @param queryFunction the function to generate the sql query for the fields of a row
+   */
+  private void executeBatches(Collection<? extends Collection<Field<?>>> multiFields,
+                              Function<Collection<Field<?>>, String> queryFunction) throws SQLException {
+    PreparedStatement statement = null;
+    String currentQuery = null;
+    try {
+      for (Collection<Field<?>> fields : multiFields) {
+        String sqlQuery = queryFunction.apply(fields);
+        if (!sqlQuery.equals(currentQuery)) {
+          if (statement != null) {
+            statement.executeBatch();
+            statement.close();
+            statement = null;
+          }
+          statement = connection.prepareStatement(sqlQuery);
+          currentQuery = sqlQuery;
+        }
+        setFields(statement, fields, 1);
+        statement.addBatch();
+      }
+      if (statement != null) {
+        LOG.trace("SQL statement: {}", statement);
+        statement.executeBatch();
+      }
+    } finally {
+      if (statement != null) {
+        statement.close();
+      }
+    }
+  }
+
   /**
    * Read a row from the table. Null columns mean read from all columns.
    *
@@ -666,13 +760,13 @@ public class PostgresSqlStructuredTable implements StructuredTable {
   /**
    * Get the scan query for the range given. For example, if the range provides key1, key2 as the begin and end to
    * scan, both rows are inclusive, it will generate the following query:
-   * SELECT * FROM simpletable WHERE (key1,key2)>=(?,?) AND (key1,key2)<=(?,?) LIMIT 10;
+   * SELECT * FROM simpletable WHERE (key1,key2)>=(?,?) AND (key1,key2)<=(?,?) LIMIT ?;
+   * The limit is a query parameter, so that scans with different limits share the same prepared statement.
    *
    * @param range the range to scan.
-   * @param limit limit number of row
    * @return the scan query
    */
-  private String getScanQuery(Range range, int limit) {
+  private String getScanQuery(Range range) {
     StringBuilder queryString = new StringBuilder("SELECT * FROM ").append(tableSchema.getTableId().getName());
     if (!range.getBegin().isEmpty() || !range.getEnd().isEmpty()) {
       queryString.append(" WHERE ");
@@ -680,7 +774,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
 
     queryString.append(getOrderByClause(tableSchema.getPrimaryKeys()));
-    queryString.append(" LIMIT ").append(limit).append(";");
+    queryString.append(" LIMIT ?;");
     return queryString.toString();
   }
 
@@ -724,6 +818,16 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     return statement.toString();
   }
 
+  private String getCountQuery(Range range) {
+    StringBuilder query = new StringBuilder("SELECT COUNT(*) FROM ").append(tableSchema.getTableId().getName());
+
+    if (!range.getBegin().isEmpty() || !range.getEnd().isEmpty()) {
+      query.append(" WHERE ");
+      appendRange(query, range);
+    }
+    return query.append(";").toString();
+  }
+
   private String getEqualsClause(Collection<Field<?>> keys) {
     StringJoiner joiner = new StringJoiner(" AND ");
     for (Field<?> key : keys) {
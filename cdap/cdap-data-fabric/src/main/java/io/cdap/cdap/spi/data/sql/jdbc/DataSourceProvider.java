@@ -17,6 +17,7 @@
 package io.cdap.cdap.spi.data.sql.jdbc;
 
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -47,6 +48,7 @@ import javax.sql.DataSource;
  */
 public class DataSourceProvider implements Provider<DataSource> {
   private static final Logger LOG = LoggerFactory.getLogger(DataSourceProvider.class);
+  private static final String POSTGRES_STATEMENT_CACHE_QUERIES = "preparedStatementCacheQueries";
 
   private final CConfiguration cConf;
   private final SConfiguration sConf;
@@ -104,7 +106,8 @@ public class DataSourceProvider implements Provider<DataSource> {
     return this.dataSource;
   }
 
-  private Properties retrieveJDBCConnectionProperties() {
+  @VisibleForTesting
+  Properties retrieveJDBCConnectionProperties() {
     Properties properties = new Properties();
     String username = sConf.get(Constants.Dataset.DATA_STORAGE_SQL_USERNAME);
     String password = sConf.get(Constants.Dataset.DATA_STORAGE_SQL_PASSWORD);
@@ -124,6 +127,11 @@ public class DataSourceProvider implements Provider<DataSource> {
                        cConfEntry.getValue());
       }
     }
+
+    // The driver caches the queries prepared on each connection by the sql text, such that statements prepared
+    // again with the same sql switch to the same server side prepared statement after the prepare threshold.
+    properties.putIfAbsent(POSTGRES_STATEMENT_CACHE_QUERIES,
+                           cConf.get(Constants.Dataset.DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE));
     return properties;
   }
 
@@ -16,6 +16,8 @@
 
 package io.cdap.cdap.spi.metadata.dataset;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -57,6 +59,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
@@ -65,6 +68,7 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -83,9 +87,11 @@ public class SearchHelper {
 
   private static final DatasetContext SYSTEM_CONTEXT = DatasetContext.from(NamespaceId.SYSTEM.getNamespace());
 
+  // sort in descending order of score. Entities with the same score are ordered by their string representation,
+  // so that the order is stable across pages of results.
   private static final Comparator<Map.Entry<MetadataEntity, Integer>> SEARCH_RESULT_DESC_SCORE_COMPARATOR =
-    // sort in descending order
-    (o1, o2) -> o2.getValue() - o1.getValue();
+    Comparator.<Map.Entry<MetadataEntity, Integer>>comparingInt(Map.Entry::getValue).reversed()
+      .thenComparing(entry -> entry.getKey().toString());
 
   private final DatasetDefinition<MetadataDataset, DatasetAdmin> metaDatasetDefinition;
   private final Map<String, DatasetSpecification> datasetSpecs;
@@ -261,6 +267,10 @@ public class SearchHelper {
   }
 
   private MetadataSearchResponse search(Set<MetadataScope> scopes, SearchRequest request) {
+    if (SortInfo.DEFAULT.equals(request.getSortInfo())) {
+      return searchByScore(scopes, request);
+    }
+
     List<MetadataEntry> results = new LinkedList<>();
     List<String> cursors = new LinkedList<>();
     for (MetadataScope scope : scopes) {
@@ -272,14 +282,12 @@ public class SearchHelper {
     int offset = request.getOffset();
     int limit = request.getLimit();
     SortInfo sortInfo = request.getSortInfo();
-    // sort if required
-    Set<MetadataEntity> sortedEntities = getSortedEntities(results, sortInfo);
+    // remove duplicates, keeping the order of the backing storage
+    Set<MetadataEntity> sortedEntities = getSortedEntities(results);
     int total = sortedEntities.size();
 
-    // pagination is not performed at the dataset level, because:
-    // 1. scoring is needed for DEFAULT sort info. So perform it here for now.
-    // 2. Even when using custom sorting, we need to remove elements from the beginning to the offset and the cursors
-    //    at the end
+    // pagination is not performed at the dataset level, because we need to remove elements from the beginning
+    // to the offset and the cursors at the end
     // TODO: Figure out how all of this can be done server (HBase) side
     int startIndex = Math.min(request.getOffset(), sortedEntities.size());
     // Account for overflow
@@ -304,32 +312,102 @@ public class SearchHelper {
       finalResults, cursors, request.shouldShowHidden(), request.getEntityScopes());
   }
 
-  private Set<MetadataEntity> getSortedEntities(List<MetadataEntry> results, SortInfo sortInfo) {
-    // if sort order is not weighted, return entities in the order received.
-    // in this case, the backing storage is expected to return results in the expected order.
-    if (SortInfo.SortOrder.WEIGHTED != sortInfo.getSortOrder()) {
-      Set<MetadataEntity> entities = new LinkedHashSet<>(results.size());
-      for (MetadataEntry metadataEntry : results) {
-        entities.add(metadataEntry.getMetadataEntity());
+  private Set<MetadataEntity> getSortedEntities(List<MetadataEntry> results) {
+    // the backing storage is expected to return results in the expected order.
+    Set<MetadataEntity> entities = new LinkedHashSet<>(results.size());
+    for (MetadataEntry metadataEntry : results) {
+      entities.add(metadataEntry.getMetadataEntity());
+    }
+    return entities;
+  }
+
+  /**
+   * Searches with the {@link SortInfo#DEFAULT} sorting, which ranks the matching entities by their score
+   * across all the given scopes. Only the top {@code offset + limit} entities are kept while ranking, and
+   * only the metadata of the entities in the requested page is read.
+   *
+   * For this sorting, a cursor is the rank of the first entity of a page, hence the offset and the total in the
+   * response are relative to the cursor, the same as for custom sorting.
+   */
+  private MetadataSearchResponse searchByScore(Set<MetadataScope> scopes, SearchRequest request) {
+    int cursorOffset = Strings.isNullOrEmpty(request.getCursor()) ? 0 : parseCursor(request.getCursor());
+    Map<MetadataEntity, Integer> scores = new HashMap<>();
+    for (MetadataScope scope : scopes) {
+      Map<MetadataEntity, Integer> scopeScores = execute(context -> context.getDataset(scope)
+        .scoreByDefaultIndex(request));
+      scopeScores.forEach((entity, score) -> scores.merge(entity, score, Integer::sum));
+    }
+
+    int offset = request.getOffset();
+    int limit = request.getLimit();
+    // Account for overflow
+    int startIndex = (int) Math.min(Integer.MAX_VALUE, (long) cursorOffset + offset);
+    int endIndex = (int) Math.min(Integer.MAX_VALUE, (long) startIndex + limit);
+    List<MetadataEntity> topEntities = getTopEntities(scores, endIndex);
+    Set<MetadataEntity> subSortedEntities = new LinkedHashSet<>(
+      topEntities.subList(Math.min(startIndex, topEntities.size()), topEntities.size()));
+
+    // A cursor is the rank of the first entity of each of the pages following the requested one
+    List<String> cursors = new ArrayList<>();
+    for (int i = 1; i <= request.getNumCursors() && limit > 0; i++) {
+      long cursorIndex = startIndex + (long) i * limit;
+      if (cursorIndex >= scores.size()) {
+        break;
       }
-      return entities;
+      cursors.add(String.valueOf(cursorIndex));
     }
-    // if sort order is weighted, score results by weight, and return in descending order of weights
-    // Score results
-    final Map<MetadataEntity, Integer> weightedResults = new HashMap<>();
-    for (MetadataEntry metadataEntry : results) {
-      weightedResults.put(metadataEntry.getMetadataEntity(),
-                          weightedResults.getOrDefault(metadataEntry.getMetadataEntity(), 0) + 1);
+
+    // Note: since the fetch is happening in a different transaction, the metadata for entities may have been
+    // removed. It is okay not to have metadata for some results in case this happens.
+    Set<MetadataSearchResultRecord> finalResults = execute(
+      context -> addMetadataToEntities(subSortedEntities,
+                                       fetchMetadata(context.getDataset(SYSTEM), subSortedEntities),
+                                       fetchMetadata(context.getDataset(USER), subSortedEntities)));
+
+    SortInfo sortInfo = request.getSortInfo();
+    return new MetadataSearchResponse(
+      sortInfo.getSortBy() + " " + sortInfo.getSortOrder(), offset, limit, request.getNumCursors(),
+      Math.max(0, scores.size() - cursorOffset), finalResults, cursors, request.shouldShowHidden(),
+      request.getEntityScopes());
+  }
+
+  /**
+   * Returns the {@code k} entities with the highest scores, in descending order of score. This uses a bounded heap,
+   * so that only {@code k} entities are kept while ranking.
+   */
+  @VisibleForTesting
+  static List<MetadataEntity> getTopEntities(Map<MetadataEntity, Integer> scores, int k) {
+    if (k <= 0 || scores.isEmpty()) {
+      return Collections.emptyList();
+    }
+    // the head of the heap is the lowest ranked entity among the top k
+    PriorityQueue<Map.Entry<MetadataEntity, Integer>> heap =
+      new PriorityQueue<>(Math.min(k, scores.size()), SEARCH_RESULT_DESC_SCORE_COMPARATOR.reversed());
+    for (Map.Entry<MetadataEntity, Integer> entry : scores.entrySet()) {
+      if (heap.size() < k) {
+        heap.add(entry);
+      } else if (SEARCH_RESULT_DESC_SCORE_COMPARATOR.compare(entry, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(entry);
+      }
     }
+    MetadataEntity[] result = new MetadataEntity[heap.size()];
+    for (int i = result.length - 1; i >= 0; i--) {
+      result[i] = heap.poll().getKey();
+    }
+    return Arrays.asList(result);
+  }
 
-    // Sort the results by score
-    List<Map.Entry<MetadataEntity, Integer>> resultList = new ArrayList<>(weightedResults.entrySet());
-    resultList.sort(SEARCH_RESULT_DESC_SCORE_COMPARATOR);
-    Set<MetadataEntity> result = new LinkedHashSet<>(resultList.size());
-    for (Map.Entry<MetadataEntity, Integer> entry : resultList) {
-      result.add(entry.getKey());
+  private static int parseCursor(String cursor) {
+    try {
+      int offset = Integer.parseInt(cursor);
+      if (offset >= 0) {
+        return offset;
+      }
+    } catch (NumberFormatException e) {
+      // fall through to throw below
     }
-    return result;
+    throw new IllegalArgumentException(String.format("Invalid cursor '%s' for search with default sorting.", cursor));
   }
 
   private Map<MetadataEntity, MetadataDataset.Record> fetchMetadata(MetadataDataset mds,
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for {@link DefaultCube} with rollup enabled. All tests in {@link AbstractCubeTest} are run with the rollup
+ * buffer flushed on every add.
+ */
+public class RollupCubeTest extends AbstractCubeTest {
+
+  private static final int[] RESOLUTIONS = new int[] { 1, 60, Integer.MAX_VALUE };
+  private static final Map<String, Aggregation> AGGREGATIONS =
+    ImmutableMap.of("agg", new DefaultAggregation(ImmutableList.of("dim1")));
+
+  @Override
+  protected Cube getCube(String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations) {
+    return createCube("rollup-" + name, resolutions, aggregations, 0L);
+  }
+
+  @Test
+  public void testRollup() throws Exception {
+    DefaultCube cube = createCube("rollupCube", RESOLUTIONS, AGGREGATIONS, Long.MAX_VALUE);
+    Map<String, Long> metrics = new HashMap<>();
+    cube.setMetricsCollector(new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        metrics.merge(metricName, value, Long::sum);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        // no-op
+      }
+    });
+
+    writeInc(cube, "metric1", 1, 1, "a");
+    writeInc(cube, "metric1", 10, 2, "a");
+    writeInc(cube, "metric1", 59, 3, "a");
+    writeGauge(cube, "gauge1", 5, 7, "a");
+    writeGauge(cube, "gauge1", 30, 9, "a");
+
+    // Only the finest resolution is written
+    verifyCountQuery(cube, 0, 100, 1, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "a"), Collections.emptyList(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(), timeValues(1, 1, 10, 2, 59, 3))));
+    verifyCountQuery(cube, 0, 100, 60, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "a"), Collections.emptyList(), Collections.emptyList());
+    Assert.assertTrue(cube.hasPendingRollup());
+
+    // Writing a fact for the next minute closes the first bucket in the 60 resolution
+    writeInc(cube, "metric1", 61, 4, "a");
+    Assert.assertFalse(cube.hasPendingRollup());
+
+    verifyCountQuery(cube, 0, 100, 60, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "a"), Collections.emptyList(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(), timeValues(0, 6, 60, 4))));
+    verifyCountQuery(cube, 0, 100, 60, "gauge1", AggregationFunction.LATEST,
+                     ImmutableMap.of("dim1", "a"), Collections.emptyList(),
+                     ImmutableList.of(new TimeSeries("gauge1", new HashMap<>(), timeValues(0, 9))));
+
+    // Six facts would be written to the two coarser resolutions without rollup, while there are only
+    // two buckets for the 60 resolution and one for the totals resolution.
+    Assert.assertEquals(12L - 3L, (long) metrics.get("cube.tsFact.rollup.saved.count"));
+    Assert.assertEquals(6L + 3L, (long) metrics.get("cube.tsFact.added.count"));
+  }
+
+  @Test
+  public void testReplayRollup() throws Exception {
+    DefaultCube cube = createCube("replayCube", RESOLUTIONS, AGGREGATIONS, Long.MAX_VALUE);
+
+    // Replayed facts are only added to the coarser resolutions
+    cube.replayRollup(ImmutableList.of(new CubeFact(5).addDimensionValue("dim1", "a")
+                                         .addMeasurement("metric1", MeasureType.COUNTER, 3)));
+    Assert.assertTrue(cube.hasPendingRollup());
+    cube.flushRollup();
+    Assert.assertFalse(cube.hasPendingRollup());
+
+    verifyCountQuery(cube, 0, 100, 1, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "a"), Collections.emptyList(), Collections.emptyList());
+    verifyCountQuery(cube, 0, 100, 60, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "a"), Collections.emptyList(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(), timeValues(0, 3))));
+  }
+
+  private DefaultCube createCube(String name, int[] resolutions,
+                                 Map<String, ? extends Aggregation> aggregations, long maxDelayMillis) {
+    FactTableSupplier supplier = (resolution, rollTime) -> {
+      String entityTableName = "EntityTable-" + name;
+      InMemoryTableService.create(entityTableName);
+      String dataTableName = "DataTable-" + name + "-" + resolution;
+      InMemoryTableService.create(dataTableName);
+      return new FactTable(new InMemoryMetricsTable(dataTableName),
+                           new EntityTable(new InMemoryMetricsTable(entityTableName)),
+                           resolution, rollTime);
+    };
+    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.of(), maxDelayMillis, Integer.MAX_VALUE);
+  }
+}
@@ -950,30 +950,7 @@ public class PartitionedFileSetTest {
     final Set<BasicPartition> allPartitionDetails = Sets.newHashSet();
 
     // add a bunch of partitions
-    for (int s = 0; s < 4; s++) {
-      for (int i = 0; i < 4; i++) {
-        for (int l = 0; l < 4; l++) {
-          final PartitionKey key = PartitionKey.builder()
-            .addField("s", String.format("%c-%d", 'a' + s, s))
-            .addField("i", i * 100)
-            .addField("l", 15L - 10 * l)
-            .build();
-          BasicPartition basicPartition = dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset)
-            .execute(new Callable<BasicPartition>() {
-              @Override
-              public BasicPartition call() throws Exception {
-                PartitionOutput p = dataset.getPartitionOutput(key);
-                p.addPartition();
-                return new BasicPartition((PartitionedFileSetDataset) dataset,
-                                          p.getRelativePath(), p.getPartitionKey());
-              }
-            });
-          keys[s][i][l] = key;
-          paths[s][i][l] = basicPartition.getRelativePath();
-          allPartitionDetails.add(basicPartition);
-        }
-      }
-    }
+    addPartitions(dataset, keys, paths, allPartitionDetails);
 
     // validate getPartition with exact partition key
     for (int s = 0; s < 4; s++) {
@@ -1038,6 +1015,85 @@ public class PartitionedFileSetTest {
 
   }
 
+  @Test
+  @Category(SlowTests.class)
+  public void testIndexedFields() throws Exception {
+    DatasetId indexedInstance = DatasetFrameworkTestUtil.NAMESPACE_ID.dataset("indexed");
+    dsFrameworkUtil.createInstance("partitionedFileSet", indexedInstance, PartitionedFileSetProperties.builder()
+      .setPartitioning(PARTITIONING_1)
+      .setIndexedFields("i", "l")
+      .build());
+    try {
+      final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(indexedInstance);
+      final PartitionKey[][][] keys = new PartitionKey[4][4][4];
+      final Set<BasicPartition> allPartitionDetails = Sets.newHashSet();
+      addPartitions(dataset, keys, new String[4][4][4], allPartitionDetails);
+
+      // filters without a condition on the first field are answered from the index of "i" or "l"
+      List<PartitionFilter> filters = generateFilters();
+      testAllFilters(dataset, allPartitionDetails, filters);
+
+      // the index must not return dropped partitions
+      final PartitionKey toRemove = keys[2][1][3];
+      dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(
+        new TransactionExecutor.Subroutine() {
+          @Override
+          public void apply() throws Exception {
+            dataset.dropPartition(toRemove);
+          }
+        });
+      Iterables.removeIf(allPartitionDetails, new com.google.common.base.Predicate<BasicPartition>() {
+        @Override
+        public boolean apply(BasicPartition partition) {
+          return toRemove.equals(partition.getPartitionKey());
+        }
+      });
+      testAllFilters(dataset, allPartitionDetails, filters);
+    } finally {
+      dsFrameworkUtil.deleteInstance(indexedInstance);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIndexedFieldNotInPartitioning() throws Exception {
+    dsFrameworkUtil.createInstance("partitionedFileSet", DatasetFrameworkTestUtil.NAMESPACE_ID.dataset("badIndex"),
+                                   PartitionedFileSetProperties.builder()
+                                     .setPartitioning(PARTITIONING_1)
+                                     .setIndexedFields("x")
+                                     .build());
+  }
+
+  /**
+   * Adds a partition for every combination of 4 values of each of the fields of {@link #PARTITIONING_1}.
+   */
+  private void addPartitions(final PartitionedFileSet dataset, PartitionKey[][][] keys, String[][][] paths,
+                             Set<BasicPartition> allPartitionDetails) throws Exception {
+    for (int s = 0; s < 4; s++) {
+      for (int i = 0; i < 4; i++) {
+        for (int l = 0; l < 4; l++) {
+          final PartitionKey key = PartitionKey.builder()
+            .addField("s", String.format("%c-%d", 'a' + s, s))
+            .addField("i", i * 100)
+            .addField("l", 15L - 10 * l)
+            .build();
+          BasicPartition basicPartition = dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset)
+            .execute(new Callable<BasicPartition>() {
+              @Override
+              public BasicPartition call() throws Exception {
+                PartitionOutput p = dataset.getPartitionOutput(key);
+                p.addPartition();
+                return new BasicPartition((PartitionedFileSetDataset) dataset,
+                                          p.getRelativePath(), p.getPartitionKey());
+              }
+            });
+          keys[s][i][l] = key;
+          paths[s][i][l] = basicPartition.getRelativePath();
+          allPartitionDetails.add(basicPartition);
+        }
+      }
+    }
+  }
+
   private void testAllFilters(PartitionedFileSet dataset,
                               Set<BasicPartition> allPartitionDetails,
                               List<PartitionFilter> filters) throws Exception {
@@ -27,14 +27,19 @@ import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.api.dataset.table.TableProperties;
+import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.data2.dataset2.TableAssert;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -497,6 +502,194 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testReadCache() throws Exception {
+    DatasetProperties props = TableProperties.builder()
+      .setReadlessIncrementSupport(isReadlessIncrementSupported())
+      .add(BufferingTable.PROPERTY_READ_CACHE_MAX_CELLS, 10000)
+      .build();
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE, props);
+    admin.create();
+    try (BufferingTable table = getTable(CONTEXT1, MY_TABLE, props)) {
+      CountingMetricsCollector metrics = new CountingMetricsCollector();
+      table.setMetricsCollector(metrics);
+
+      // persist some data
+      //          c1    c2    c3    c4
+      // r1       1     2     3     -
+      // r2       -     3     2     1
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      table.put(R1, a(C1, C2, C3), lb(1, 2, 3));
+      table.put(R2, a(C2, C3, C4), lb(3, 2, 1));
+      txClient.canCommitOrThrow(tx1, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx1);
+      table.postTxCommit();
+
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+      metrics.clear();
+
+      // fetching the whole row caches all the columns of it
+      TableAssert.assertRow(table.get(R1), R1, a(C1, C2, C3), lb(1, 2, 3));
+      TableAssert.assertRow(table.get(R1), R1, a(C1, C2, C3), lb(1, 2, 3));
+      TableAssert.assertRow(table.get(R1, a(C2, C4)), R1, a(C2), lb(2));
+      TableAssert.assertRow(table.get(R1, C2, C4, 1), R1, a(C2), lb(2));
+      Assert.assertEquals(1, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_MISSES));
+      Assert.assertEquals(3, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_HITS));
+
+      // fetching columns caches them, including the absent ones
+      TableAssert.assertRow(table.get(R2, a(C1, C2)), R2, a(C2), lb(3));
+      TableAssert.assertRow(table.get(R2, a(C2, C1)), R2, a(C2), lb(3));
+      Assert.assertEquals(2, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_MISSES));
+      Assert.assertEquals(4, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_HITS));
+
+      // a column range with a limit only caches up to the last column returned
+      TableAssert.assertRow(table.get(R2, C2, null, 1), R2, a(C2), lb(3));
+      TableAssert.assertRow(table.get(R2, C2, C5, 1), R2, a(C2), lb(3));
+      TableAssert.assertRow(table.get(R2, C2, null, 10), R2, a(C2, C3, C4), lb(3, 2, 1));
+      TableAssert.assertRow(table.get(R2, C2, C3, 10), R2, a(C2), lb(3));
+      TableAssert.assertRow(table.get(R2, C3, C5, 10), R2, a(C3, C4), lb(2, 1));
+      Assert.assertEquals(4, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_MISSES));
+      Assert.assertEquals(7, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_HITS));
+
+      // cached data is merged with the buffered changes
+      table.put(R1, a(C1, C4), lb(10, 4));
+      table.delete(R1, a(C2));
+      TableAssert.assertRow(table.get(R1), R1, a(C1, C3, C4), lb(10, 3, 4));
+      TableAssert.assertRow(table.get(R1, C3, C5, 10), R1, a(C3, C4), lb(3, 4));
+      Assert.assertEquals(8L, table.incrementAndGet(R2, C2, 5L));
+      Assert.assertEquals(13L, table.incrementAndGet(R2, C2, 5L));
+      List<Row> rows = table.get(Lists.newArrayList(new Get(R1, C1, C2), new Get(R2, C2, C3), new Get(R3)));
+      TableAssert.assertRow(rows.get(0), R1, a(C1), lb(10));
+      TableAssert.assertRow(rows.get(1), R2, a(C2, C3), lb(13, 2));
+      Assert.assertTrue(rows.get(2).isEmpty());
+      // only r3 is not in the cache
+      Assert.assertEquals(5, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_MISSES));
+
+      // modifying returned values must not affect the cache
+      table.get(R2, a(C3)).getColumns().get(C3)[0]++;
+      TableAssert.assertRow(table.get(R2, a(C3)), R2, a(C3), lb(2));
+
+      txClient.canCommitOrThrow(tx2, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx2);
+      table.postTxCommit();
+
+      // the cache is dropped when a new transaction starts
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      metrics.clear();
+      TableAssert.assertRow(table.get(R1), R1, a(C1, C3, C4), lb(10, 3, 4));
+      TableAssert.assertRow(table.get(R2, a(C2)), R2, a(C2), lb(13));
+      Assert.assertEquals(2, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_MISSES));
+      Assert.assertEquals(0, metrics.getCount(Constants.Metrics.Name.Dataset.READ_CACHE_HITS));
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx3);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testBufferSpill() throws Exception {
+    File spillDir = Files.createTempDirectory("spill").toFile();
+    DatasetProperties props = TableProperties.builder()
+      .setReadlessIncrementSupport(isReadlessIncrementSupported())
+      .add(BufferingTable.PROPERTY_BUFFER_SPILL_THRESHOLD, 4096)
+      .add(BufferingTable.PROPERTY_BUFFER_SPILL_DIR, spillDir.getAbsolutePath())
+      .build();
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE, props);
+    admin.create();
+    try (BufferingTable table = getTable(CONTEXT1, MY_TABLE, props)) {
+      CountingMetricsCollector metrics = new CountingMetricsCollector();
+      table.setMetricsCollector(metrics);
+
+      // write enough to spill the buffer multiple times, with later writes overriding spilled ones
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      for (int i = 0; i < 200; i++) {
+        table.put(spillRow(i), a(C1, C2), lb(i, i));
+      }
+      for (int i = 0; i < 50; i++) {
+        table.put(spillRow(i), C1, Bytes.toBytes((long) -i));
+      }
+      for (int i = 50; i < 60; i++) {
+        table.delete(spillRow(i), a(C1));
+      }
+      for (int i = 0; i < 200; i += 10) {
+        table.increment(spillRow(i), C2, 100L);
+      }
+      Assert.assertTrue(metrics.getCount(Constants.Metrics.Name.Dataset.BUFFER_SPILLS) > 1);
+      Assert.assertTrue(metrics.getCount(Constants.Metrics.Name.Dataset.BUFFER_BYTES) > 0);
+
+      // reads within the transaction merge what was spilled with the in-memory buffer
+      TableAssert.assertRow(table.get(spillRow(10)), spillRow(10), a(C1, C2), lb(-10, 110));
+      TableAssert.assertRow(table.get(spillRow(55), a(C1, C2)), spillRow(55), a(C2), lb(55));
+      TableAssert.assertRow(table.get(spillRow(150), C1, null, 1), spillRow(150), a(C1), lb(150));
+      verifySpillRows(table, 45, 65);
+      Assert.assertEquals(200, table.getTxChanges().size());
+
+      txClient.canCommitOrThrow(tx1, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx1);
+      table.postTxCommit();
+      // spilled files are removed once the transaction completes
+      Assert.assertArrayEquals(new String[0], spillDir.list());
+
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+      verifySpillRows(table, 0, 200);
+
+      // changes persisted from a spilled buffer are undone on rollback
+      for (int i = 0; i < 200; i++) {
+        table.put(spillRow(i), a(C1, C2), lb(0, 0));
+      }
+      Assert.assertTrue(table.commitTx());
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx2);
+      Assert.assertArrayEquals(new String[0], spillDir.list());
+
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      verifySpillRows(table, 0, 200);
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx3);
+      table.postTxCommit();
+    } finally {
+      admin.drop();
+      Assert.assertTrue(spillDir.delete());
+    }
+  }
+
+  private static byte[] spillRow(int i) {
+    return Bytes.toBytes(String.format("r%04d", i));
+  }
+
+  /**
+   * Verifies the rows in the given range, written by {@link #testBufferSpill()}, with a scan.
+   */
+  private void verifySpillRows(BufferingTable table, int start, int stop) {
+    try (Scanner scanner = table.scan(spillRow(start), spillRow(stop))) {
+      for (int i = start; i < stop; i++) {
+        Row row = scanner.next();
+        Assert.assertNotNull(row);
+        long c2 = i % 10 == 0 ? i + 100 : i;
+        if (i < 50) {
+          TableAssert.assertRow(row, spillRow(i), a(C1, C2), lb(-i, c2));
+        } else if (i < 60) {
+          // a column deleted in the transaction is returned by scans with a null value until it is persisted
+          Assert.assertNull(row.get(C1));
+          Assert.assertEquals(c2, (long) row.getLong(C2));
+        } else {
+          TableAssert.assertRow(row, spillRow(i), a(C1, C2), lb(i, c2));
+        }
+      }
+      Assert.assertNull(scanner.next());
+    }
+  }
+
   private void verify123(BufferingTable table) throws Exception {
     byte[] row = new byte[] {1};
     byte[] col = new byte[] {2};
@@ -536,6 +729,31 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     Assert.assertNull(scan.next());
   }
 
+  /**
+   * A {@link MetricsCollector} that sums up the increments of each metric.
+   */
+  private static final class CountingMetricsCollector implements MetricsCollector {
+    private final Map<String, Long> counts = new HashMap<>();
+
+    @Override
+    public void increment(String metricName, long value) {
+      counts.merge(metricName, value, Long::sum);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      counts.put(metricName, value);
+    }
+
+    long getCount(String metricName) {
+      return counts.getOrDefault(metricName, 0L);
+    }
+
+    void clear() {
+      counts.clear();
+    }
+  }
+
   // This class looks weird, this is what we have to do to override persist method to make it throw exception in the
   // middle. NOTE: We want to test how every implementation of BufferingTable handles undoing changes in this
   // case, otherwise we would just test the method of BufferingTable directly.
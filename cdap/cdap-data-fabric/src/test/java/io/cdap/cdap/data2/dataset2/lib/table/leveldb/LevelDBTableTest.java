@@ -19,9 +19,12 @@ package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 import com.google.common.base.Preconditions;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DatasetAdmin;
 import io.cdap.cdap.api.dataset.DatasetContext;
 import io.cdap.cdap.api.dataset.DatasetProperties;
 import io.cdap.cdap.api.dataset.DatasetSpecification;
+import io.cdap.cdap.api.dataset.table.TableProperties;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.guice.ConfigModule;
@@ -29,18 +32,22 @@ import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
 import io.cdap.cdap.common.guice.NonCustomLocationUnitTestModule;
 import io.cdap.cdap.data.runtime.DataFabricLevelDBModule;
 import io.cdap.cdap.data.runtime.TransactionMetricsModule;
+import io.cdap.cdap.data2.dataset2.lib.table.BufferingTable;
 import io.cdap.cdap.data2.dataset2.lib.table.BufferingTableTest;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 import io.cdap.cdap.security.auth.context.AuthenticationContextModules;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
 import io.cdap.cdap.security.authorization.AuthorizationTestModule;
+import org.apache.tephra.Transaction;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -111,4 +118,50 @@ public class LevelDBTableTest extends BufferingTableTest<LevelDBTable> {
         PrefixedNamespaces.namespace(cConf, CONTEXT1.getNamespaceId(), tableName)));
     }
   }
+
+  /**
+   * Commits a transaction that writes more data than the max heap size, which only succeeds with the buffer being
+   * spilled to disk. It is ignored since it writes a few GB of data.
+   */
+  @Ignore
+  @Test
+  public void testCommitLargerThanHeap() throws Exception {
+    DatasetProperties props = TableProperties.builder()
+      .add(BufferingTable.PROPERTY_BUFFER_SPILL_THRESHOLD, 64 * 1024 * 1024)
+      .add(BufferingTable.PROPERTY_BUFFER_SPILL_DIR, tmpFolder.newFolder().getAbsolutePath())
+      .build();
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE, props);
+    admin.create();
+    try (LevelDBTable table = getTable(CONTEXT1, MY_TABLE, props)) {
+      byte[] column = Bytes.toBytes("c");
+      byte[] value = new byte[64 * 1024];
+      long rows = Runtime.getRuntime().maxMemory() / value.length * 5 / 4;
+
+      Transaction tx = txClient.startShort();
+      table.startTx(tx);
+      long startTime = System.nanoTime();
+      for (long i = 0; i < rows; i++) {
+        Arrays.fill(value, (byte) i);
+        table.put(Bytes.toBytes(i), column, value);
+      }
+      txClient.canCommitOrThrow(tx, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx);
+      table.postTxCommit();
+      System.out.printf("Committed %d rows of %d bytes in %d ms%n",
+                        rows, value.length, (System.nanoTime() - startTime) / 1000000);
+
+      tx = txClient.startShort();
+      table.startTx(tx);
+      for (long i = 0; i < rows; i += rows / 100) {
+        Arrays.fill(value, (byte) i);
+        Assert.assertArrayEquals(value, table.get(Bytes.toBytes(i), column));
+      }
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx);
+      table.postTxCommit();
+    } finally {
+      admin.drop();
+    }
+  }
 }
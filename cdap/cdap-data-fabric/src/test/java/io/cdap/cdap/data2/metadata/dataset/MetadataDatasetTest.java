@@ -432,6 +432,15 @@ public class MetadataDatasetTest {
       // 9 due to matches of type ns2:tag1, ns2:tags:tag1, and splitting of tag3_more
       Assert.assertEquals(9, results.size());
 
+      // scores count the matches of each entity over all search terms
+      Map<MetadataEntity, Integer> expectedScores = new HashMap<>();
+      for (MetadataEntry entry : searchByDefaultIndex("ns1", "tags:* tag2", ALL_TYPES)) {
+        expectedScores.merge(entry.getMetadataEntity(), 1, Integer::sum);
+      }
+      Assert.assertFalse(expectedScores.isEmpty());
+      Assert.assertEquals(expectedScores, scoreByDefaultIndex("ns1", "tags:* tag2", ALL_TYPES));
+      Assert.assertEquals(Collections.singletonMap(program1, 1),
+                          scoreByDefaultIndex("ns1", "tags:tag1", ImmutableSet.of(MetadataEntity.PROGRAM)));
     });
     // cleanup
     txnl.execute(() -> {
@@ -1444,4 +1453,10 @@ public class MetadataDatasetTest {
                                               0, Integer.MAX_VALUE, 1, null, false, EnumSet.allOf(EntityScope.class));
     return dataset.search(request).getResults();
   }
+
+  private Map<MetadataEntity, Integer> scoreByDefaultIndex(String namespaceId, String searchQuery, Set<String> types) {
+    SearchRequest request = new SearchRequest(new NamespaceId(namespaceId), searchQuery, types, SortInfo.DEFAULT,
+                                              0, Integer.MAX_VALUE, 1, null, false, EnumSet.allOf(EntityScope.class));
+    return dataset.scoreByDefaultIndex(request);
+  }
 }
@@ -79,6 +79,19 @@ public class DataSourceProviderTest {
     Assert.assertNotNull(loadedDriver);
   }
 
+  @Test
+  public void testStatementCacheProperty() {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setInt(Constants.Dataset.DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE, 64);
+    DataSourceProvider provider = new DataSourceProvider(cConf, SConfiguration.create(),
+                                                         new NoOpMetricsCollectionService());
+    Assert.assertEquals("64", provider.retrieveJDBCConnectionProperties().get("preparedStatementCacheQueries"));
+
+    // A driver property set explicitly takes precedence
+    cConf.set(Constants.Dataset.DATA_STORAGE_SQL_PROPERTY_PREFIX + "preparedStatementCacheQueries", "32");
+    Assert.assertEquals("32", provider.retrieveJDBCConnectionProperties().get("preparedStatementCacheQueries"));
+  }
+
   public static final class NoopDriver implements Driver {
 
     @Override
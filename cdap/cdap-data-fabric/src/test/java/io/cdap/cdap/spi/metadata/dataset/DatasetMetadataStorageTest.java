@@ -20,6 +20,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -61,12 +62,15 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static io.cdap.cdap.api.metadata.MetadataScope.SYSTEM;
 import static io.cdap.cdap.api.metadata.MetadataScope.USER;
@@ -185,6 +189,65 @@ public class DatasetMetadataStorageTest extends MetadataStorageTest {
     mds.batch(ImmutableList.of(new Drop(service1), new Drop(dataset1), new Drop(dataset2)), MutationOptions.DEFAULT);
   }
 
+  // this test is specific to the DatasetMetadataStorage, because it relies on the ranking of results by weight
+  @Test
+  public void testSearchWeightWithCursor() throws IOException {
+    MetadataStorage mds = getMetadataStorage();
+
+    NamespaceId nsId = new NamespaceId("ns1");
+    // dataset i has i + 1 tags that match the query, so that the results are ranked in reverse order
+    List<MetadataRecord> records = IntStream.range(0, 10)
+      .mapToObj(i -> new MetadataRecord(nsId.dataset("ds" + i).toMetadataEntity(),
+                                        new Metadata(USER, IntStream.rangeClosed(0, i)
+                                          .mapToObj(j -> "weight" + j).collect(Collectors.toSet()))))
+      .collect(Collectors.toList());
+    mds.batch(records.stream().map(record -> new Update(record.getEntity(), record.getMetadata()))
+                .collect(Collectors.toList()), MutationOptions.DEFAULT);
+    List<MetadataRecord> ranked = Lists.reverse(records);
+
+    // offset and limit are applied on the ranked results
+    assertInOrder(mds, SearchRequest.of("tags:weight*").addNamespace("ns1").setOffset(2).setLimit(3).build(),
+                  ranked.subList(2, 5));
+
+    // page through the results with cursors
+    SearchResponse response = assertInOrder(mds, SearchRequest.of("tags:weight*").addNamespace("ns1").setLimit(4)
+                                              .setCursorRequested(true).build(), ranked.subList(0, 4));
+    Assert.assertEquals(10, response.getTotalResults());
+    Assert.assertNotNull(response.getCursor());
+    validateCursor(response.getCursor(), 4, 4);
+    response = assertInOrder(mds, SearchRequest.of("tags:weight*").addNamespace("ns1").setCursorRequested(true)
+                               .setCursor(response.getCursor()).build(), ranked.subList(4, 8));
+    Assert.assertEquals(10, response.getTotalResults());
+    Assert.assertNotNull(response.getCursor());
+    response = assertInOrder(mds, SearchRequest.of("tags:weight*").addNamespace("ns1").setCursorRequested(true)
+                               .setCursor(response.getCursor()).build(), ranked.subList(8, 10));
+    Assert.assertNull(response.getCursor());
+
+    // clean up
+    mds.batch(records.stream().map(MetadataRecord::getEntity).map(Drop::new).collect(Collectors.toList()),
+              MutationOptions.DEFAULT);
+  }
+
+  @Test
+  public void testTopEntities() {
+    // a synthetic catalog with scores that are not in order, and many entities with the same score
+    Map<MetadataEntity, Integer> scores = new HashMap<>();
+    for (int i = 0; i < 100000; i++) {
+      scores.put(new NamespaceId("ns" + (i % 10)).dataset("ds" + i).toMetadataEntity(), (i * 7919) % 1000);
+    }
+    List<MetadataEntity> sorted = scores.entrySet().stream()
+      .sorted(Comparator.<Map.Entry<MetadataEntity, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                .thenComparing(entry -> entry.getKey().toString()))
+      .map(Map.Entry::getKey)
+      .collect(Collectors.toList());
+
+    Assert.assertEquals(sorted.subList(0, 25), SearchHelper.getTopEntities(scores, 25));
+    Assert.assertEquals(sorted.subList(0, 1000), SearchHelper.getTopEntities(scores, 1000));
+    Assert.assertEquals(sorted, SearchHelper.getTopEntities(scores, Integer.MAX_VALUE));
+    Assert.assertTrue(SearchHelper.getTopEntities(scores, 0).isEmpty());
+    Assert.assertTrue(SearchHelper.getTopEntities(Collections.emptyMap(), 10).isEmpty());
+  }
+
   // this test is specific to teh DatasetMetadataStorage, because of the specific way it tests pagination:
   // it requests offsets that are not a multiple of the page size, which is not supported in all implementations.
   @Test
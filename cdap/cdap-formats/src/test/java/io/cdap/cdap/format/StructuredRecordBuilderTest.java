@@ -22,6 +22,10 @@ import io.cdap.cdap.api.data.schema.Schema;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.SimpleDateFormat;
@@ -285,4 +289,46 @@ public class StructuredRecordBuilderTest {
     Schema schema = Schema.recordOf("test", Schema.Field.of("d", Schema.decimalOf(5, 2)));
     StructuredRecord.builder(schema).setDecimal("d", new BigDecimal(new BigInteger("12341324"), 2)).build();
   }
+
+  @Test
+  public void testPositionalAccess() {
+    Schema schema = Schema.recordOf("test", Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+
+    Assert.assertEquals(0, schema.getFieldIndex("id"));
+    Assert.assertEquals(2, schema.getFieldIndex("score"));
+    Assert.assertEquals(-1, schema.getFieldIndex("unknown"));
+
+    StructuredRecord record = StructuredRecord.builder(schema).set(0, 1).set(2, 1.5d).build();
+    Assert.assertEquals(1, (int) record.get("id"));
+    Assert.assertNull(record.get(1));
+    Assert.assertEquals(1.5d, (double) record.get("score"), 0.000001d);
+    Assert.assertNull(record.get("unknown"));
+
+    Assert.assertEquals(StructuredRecord.builder(schema).set("id", 1).set("score", 1.5d).build(), record);
+  }
+
+  @Test(expected = UnexpectedFormatException.class)
+  public void testPositionalNullCheck() {
+    Schema schema = Schema.recordOf("test", Schema.Field.of("id", Schema.of(Schema.Type.INT)));
+    StructuredRecord.builder(schema).set(0, null);
+  }
+
+  @Test
+  public void testJavaSerialization() throws Exception {
+    Schema schema = Schema.recordOf("test", Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema).set("id", 1).set("name", "test").build();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(record);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      StructuredRecord copy = (StructuredRecord) ois.readObject();
+      Assert.assertEquals(record, copy);
+      Assert.assertEquals("test", copy.get(1));
+    }
+  }
 }
@@ -21,41 +21,178 @@ import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
-import io.cdap.cdap.format.io.StructuredRecordDatumReader;
-import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.internal.io.ASMStructuredRecordDatumFactory;
+import org.apache.spark.SparkConf;
+import org.apache.spark.SparkEnv;
+import scala.Tuple2;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 /**
  * A Kryo {@link Serializer} for {@link StructuredRecord}.
+ *
+ * By default, each record is written as the schema serialized with {@link SchemaSerializer}, followed by the
+ * record data. When the schema registry mode is turned on through the {@link #SCHEMA_REGISTRY_ENABLED} Spark
+ * configuration, a record whose schema is registered in the Spark configuration (see
+ * {@link #registerSchemas(SparkConf, Iterable)}) is written with only the {@link SchemaHash} of the schema, and the
+ * reader takes the schema from the same registrations. Records of schemas that are not registered carry the schema
+ * the same way as the default mode. A flag before the schema tells the two cases apart.
+ *
+ * Every record is self-describing, since Spark may relocate the serialized bytes of individual records
+ * (e.g. sort-based shuffle reorders and concatenates them), so a record cannot depend on what was written before it
+ * in the same stream. Since the Spark configuration is shipped to every executor, it is the same for both the writer
+ * and the reader. The mode must be the same for both the writer and the reader as well.
  */
 public class StructuredRecordSerializer extends Serializer<StructuredRecord> {
 
-  private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
-  private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+  /**
+   * Spark configuration (or system property) for turning on the schema registry mode.
+   */
+  public static final String SCHEMA_REGISTRY_ENABLED = "spark.cdap.kryo.schema.registry.enabled";
+
+  /**
+   * Prefix of the Spark configurations for registering schemas. Each configuration key is the prefix followed by
+   * the {@link SchemaHash} of the schema, with the schema json as the value.
+   */
+  public static final String SCHEMA_REGISTRY_PREFIX = "spark.cdap.kryo.schema.registry.schema.";
+
+  // Maximum number of schemas to be cached in each JVM
+  private static final int MAX_CACHED_SCHEMAS = 1024;
+
+  // Generates encoder and decoder that are specialized for each record schema
+  private static final ASMStructuredRecordDatumFactory DATUM_FACTORY =
+    new ASMStructuredRecordDatumFactory(MAX_CACHED_SCHEMAS);
+
+  // Cache of parsed registered schemas by the schema json, so that each Kryo instance doesn't parse them again
+  private static final Cache<String, Schema> REGISTERED_SCHEMAS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CACHED_SCHEMAS)
+    .build();
+
+  private final boolean schemaRegistryEnabled;
+  private final Map<SchemaHash, Schema> registeredSchemas;
+
+  public StructuredRecordSerializer() {
+    this(isSchemaRegistryEnabled(), SparkEnv.get() == null
+      ? Collections.emptyList()
+      : getRegisteredSchemas(SparkEnv.get().conf()));
+  }
+
+  public StructuredRecordSerializer(boolean schemaRegistryEnabled) {
+    this(schemaRegistryEnabled, Collections.emptyList());
+  }
+
+  public StructuredRecordSerializer(boolean schemaRegistryEnabled, Collection<Schema> registeredSchemas) {
+    this.schemaRegistryEnabled = schemaRegistryEnabled;
+    this.registeredSchemas = new HashMap<>();
+    for (Schema schema : registeredSchemas) {
+      this.registeredSchemas.put(schema.getSchemaHash(), schema);
+    }
+  }
+
+  /**
+   * Registers the given schemas in the given {@link SparkConf}, so that records of those schemas are written with
+   * only the schema hash in the schema registry mode.
+   */
+  public static void registerSchemas(SparkConf sparkConf, Iterable<Schema> schemas) {
+    for (Schema schema : schemas) {
+      sparkConf.set(SCHEMA_REGISTRY_PREFIX + schema.getSchemaHash(), schema.toString());
+    }
+  }
 
   @Override
   public void write(Kryo kryo, Output output, StructuredRecord record) {
+    Schema schema = record.getSchema();
+
     // First write out the schema
-    kryo.writeObject(output, record.getSchema());
+    if (schemaRegistryEnabled) {
+      SchemaHash hash = schema.getSchemaHash();
+      boolean registered = registeredSchemas.containsKey(hash);
+      output.writeBoolean(registered);
+      if (registered) {
+        output.writeBytes(hash.toByteArray());
+      } else {
+        kryo.writeObject(output, schema);
+      }
+    } else {
+      kryo.writeObject(output, schema);
+    }
+
     // Then write out the data
     try {
-      DATUM_WRITER.encode(record, new KryoEncoder(output));
+      DATUM_FACTORY.getWriter(schema).encode(record, new KryoEncoder(output));
     } catch (IOException e) {
-      throw new KryoException("Failed to encode StructuredRecord " + record.getSchema().getRecordName(), e);
+      throw new KryoException("Failed to encode StructuredRecord " + schema.getRecordName(), e);
     }
   }
 
   @Override
   public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
     // Read the schema
-    Schema schema = kryo.readObject(input, Schema.class);
+    Schema schema = schemaRegistryEnabled && input.readBoolean()
+      ? readRegisteredSchema(input)
+      : kryo.readObject(input, Schema.class);
     try {
-      return DATUM_READER.read(new KryoDecoder(input), schema);
+      return DATUM_FACTORY.getReader(schema).read(new KryoDecoder(input), schema);
     } catch (IOException e) {
       throw new KryoException("Failed to decode StructuredRecord " + schema.getRecordName(), e);
     }
   }
+
+  /**
+   * Reads a {@link SchemaHash} and returns the registered schema of it.
+   */
+  private Schema readRegisteredSchema(Input input) {
+    SchemaHash hash = new SchemaHash(ByteBuffer.wrap(input.readBytes(16)));
+    Schema schema = registeredSchemas.get(hash);
+    if (schema == null) {
+      throw new KryoException("Schema with hash " + hash + " is not registered with " + SCHEMA_REGISTRY_PREFIX);
+    }
+    return schema;
+  }
+
+  private static boolean isSchemaRegistryEnabled() {
+    SparkEnv sparkEnv = SparkEnv.get();
+    if (sparkEnv != null) {
+      return sparkEnv.conf().getBoolean(SCHEMA_REGISTRY_ENABLED, false);
+    }
+    return Boolean.getBoolean(SCHEMA_REGISTRY_ENABLED);
+  }
+
+  /**
+   * Returns the schemas registered in the given {@link SparkConf} through
+   * {@link #registerSchemas(SparkConf, Iterable)}.
+   */
+  @VisibleForTesting
+  static Collection<Schema> getRegisteredSchemas(SparkConf sparkConf) {
+    if (!sparkConf.getBoolean(SCHEMA_REGISTRY_ENABLED, false)) {
+      return Collections.emptyList();
+    }
+    List<Schema> schemas = new ArrayList<>();
+    for (Tuple2<String, String> entry : sparkConf.getAll()) {
+      if (!entry._1().startsWith(SCHEMA_REGISTRY_PREFIX)) {
+        continue;
+      }
+      try {
+        schemas.add(REGISTERED_SCHEMAS.get(entry._2(), () -> Schema.parseJson(entry._2())));
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        throw new KryoException("Failed to parse the schema registered with " + entry._1(), e.getCause());
+      }
+    }
+    return schemas;
+  }
 }
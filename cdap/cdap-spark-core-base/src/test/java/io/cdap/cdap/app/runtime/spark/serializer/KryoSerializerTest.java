@@ -23,6 +23,8 @@ import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import org.apache.spark.SparkConf;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -232,6 +234,175 @@ public class KryoSerializerTest {
                         StructuredRecordStringConverter.toJsonString(newRecord));
   }
 
+  @Test
+  public void testStructuredRecordSchemaRegistry() throws IOException {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    Schema otherSchema = Schema.recordOf("other", Schema.Field.of("value", Schema.of(Schema.Type.LONG)));
+
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      records.add(StructuredRecord.builder(schema).set("id", i).set("name", "name" + i).build());
+      records.add(StructuredRecord.builder(otherSchema).set("value", (long) i).build());
+    }
+
+    // Only register one of the schemas. Records of the other schema carry the schema inline.
+    StructuredRecordSerializer serializer = createRegistrySerializer(schema);
+    Kryo kryo = createKryo(serializer);
+    Input input = new Input(serializeRecords(serializer, records));
+    List<StructuredRecord> newRecords = new ArrayList<>();
+    for (StructuredRecord record : records) {
+      StructuredRecord newRecord = kryo.readObject(input, StructuredRecord.class);
+      Assert.assertEquals(StructuredRecordStringConverter.toJsonString(record),
+                          StructuredRecordStringConverter.toJsonString(newRecord));
+      newRecords.add(newRecord);
+    }
+
+    // Records of the registered schema share the registered instance
+    Assert.assertEquals(schema, newRecords.get(0).getSchema());
+    Assert.assertSame(newRecords.get(0).getSchema(), newRecords.get(2).getSchema());
+    Assert.assertEquals(otherSchema, newRecords.get(1).getSchema());
+  }
+
+  @Test
+  public void testStructuredRecordSchemaRegistryRelocation() {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("id", Schema.of(Schema.Type.INT)));
+    Schema otherSchema = Schema.recordOf("other", Schema.Field.of("value", Schema.of(Schema.Type.STRING)));
+
+    // Serialize records individually with the same Output, similar to how Spark serializes records for shuffle
+    Kryo writeKryo = createKryo(createRegistrySerializer(schema));
+    Output output = new Output(1024, -1);
+    List<byte[]> serialized = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      output.clear();
+      StructuredRecord record = i % 2 == 0
+        ? StructuredRecord.builder(schema).set("id", i).build()
+        : StructuredRecord.builder(otherSchema).set("value", "value" + i).build();
+      writeKryo.writeObject(output, record);
+      serialized.add(output.toBytes());
+    }
+
+    // Concatenate the records in reverse order and read them back with a single Input
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    for (int i = serialized.size() - 1; i >= 0; i--) {
+      bos.write(serialized.get(i), 0, serialized.get(i).length);
+    }
+
+    Kryo readKryo = createKryo(createRegistrySerializer(schema));
+    Input input = new Input(bos.toByteArray());
+    for (int i = serialized.size() - 1; i >= 0; i--) {
+      StructuredRecord record = readKryo.readObject(input, StructuredRecord.class);
+      if (i % 2 == 0) {
+        Assert.assertEquals(i, (int) record.get("id"));
+      } else {
+        Assert.assertEquals("value" + i, record.get("value"));
+      }
+    }
+  }
+
+  @Test
+  public void testStructuredRecordSchemaRegistrySize() {
+    Schema schema = createSchema();
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      records.add(StructuredRecord.builder(schema)
+                    .set("boolean", true)
+                    .set("int", i)
+                    .set("long", (long) i)
+                    .set("float", 1.5f)
+                    .set("double", 2.25d)
+                    .set("string", "Hello World")
+                    .set("bytes", "Hello Bytes".getBytes(StandardCharsets.UTF_8))
+                    .set("ts", 0L)
+                    .set("enum", "a")
+                    .set("array", new int[]{1, 2, 3})
+                    .set("map", ImmutableMap.of("1", 1))
+                    .set("node", StructuredRecord.builder(schema.getField("node").getSchema()).build())
+                    .build());
+    }
+
+    int inlineSize = serializeRecords(new StructuredRecordSerializer(false), records).length;
+    int registrySize = serializeRecords(createRegistrySerializer(schema), records).length;
+    int unregisteredSize = serializeRecords(new StructuredRecordSerializer(true), records).length;
+
+    // A record of a registered schema only carries the flag and the 16 bytes schema hash instead of the schema
+    Assert.assertTrue("Registry bytes per record " + registrySize / records.size()
+                        + " should be smaller than inline bytes per record " + inlineSize / records.size(),
+                      registrySize < inlineSize);
+    // A record of an unregistered schema only has the one byte flag on top of the inline format
+    Assert.assertEquals(inlineSize + records.size(), unregisteredSize);
+  }
+
+  @Test
+  public void testStructuredRecordInlineFormat() throws IOException {
+    Schema schema = createSchema();
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("boolean", true)
+      .set("int", 10)
+      .set("long", 1L)
+      .set("float", 1.5f)
+      .set("double", 2.25d)
+      .set("string", "Hello World")
+      .set("bytes", "Hello Bytes".getBytes(StandardCharsets.UTF_8))
+      .set("ts", 0L)
+      .set("enum", "a")
+      .set("array", new int[]{1, 2, 3})
+      .set("map", ImmutableMap.of("1", 1))
+      .set("node", StructuredRecord.builder(schema.getField("node").getSchema()).build())
+      .build();
+
+    // Without the registry mode, the format is the schema written with the Schema serializer followed by the data.
+    // Reference tracking is off so that the record itself doesn't get a reference marker.
+    Kryo kryo = new Kryo();
+    kryo.setReferences(false);
+    kryo.addDefaultSerializer(Schema.class, SchemaSerializer.class);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (Output output = new Output(expected)) {
+      kryo.writeObject(output, schema);
+      new StructuredRecordDatumWriter().encode(record, new KryoEncoder(output));
+    }
+
+    kryo.addDefaultSerializer(StructuredRecord.class, new StructuredRecordSerializer(false));
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (Output output = new Output(actual)) {
+      kryo.writeObject(output, record);
+    }
+    Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+  }
+
+  /**
+   * Creates a {@link StructuredRecordSerializer} in the schema registry mode, with the given schemas registered
+   * through a {@link SparkConf}.
+   */
+  private StructuredRecordSerializer createRegistrySerializer(Schema... schemas) {
+    SparkConf sparkConf = new SparkConf(false).set(StructuredRecordSerializer.SCHEMA_REGISTRY_ENABLED, "true");
+    StructuredRecordSerializer.registerSchemas(sparkConf, Arrays.asList(schemas));
+    return new StructuredRecordSerializer(true, StructuredRecordSerializer.getRegisteredSchemas(sparkConf));
+  }
+
+  /**
+   * Creates a {@link Kryo} with the {@link Schema} and {@link StructuredRecord} serializers, same as in Spark.
+   */
+  private Kryo createKryo(StructuredRecordSerializer serializer) {
+    Kryo kryo = new Kryo();
+    kryo.addDefaultSerializer(Schema.class, SchemaSerializer.class);
+    kryo.addDefaultSerializer(StructuredRecord.class, serializer);
+    return kryo;
+  }
+
+  private byte[] serializeRecords(StructuredRecordSerializer serializer, List<StructuredRecord> records) {
+    Kryo kryo = createKryo(serializer);
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      for (StructuredRecord record : records) {
+        kryo.writeObject(output, record);
+      }
+    }
+    return bos.toByteArray();
+  }
+
   private Schema createSchema() {
     // The node schema is to test recusrive structure in the schema.
     Schema nodeSchema = Schema.recordOf(
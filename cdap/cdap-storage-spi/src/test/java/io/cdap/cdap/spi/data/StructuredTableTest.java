@@ -508,6 +508,82 @@ public abstract class StructuredTableTest {
     Assert.assertEquals(expected, scanSimpleStructuredRows(Range.all(), max));
   }
 
+  @Test
+  public void testMultiUpsertDelete() throws Exception {
+    int max = 10;
+    List<Collection<Field<?>>> expected = new ArrayList<>(max);
+    for (int i = 0; i < max; i++) {
+      expected.add(Arrays.asList(Fields.intField(KEY, i),
+                                 Fields.longField(KEY2, (long) i),
+                                 Fields.stringField(STRING_COL, VAL + i),
+                                 Fields.doubleField(DOUBLE_COL, (double) i),
+                                 Fields.floatField(FLOAT_COL, (float) i),
+                                 Fields.bytesField(BYTES_COL, Bytes.toBytes("bytes-" + i))));
+    }
+
+    // Write all rows with multiUpsert, with the last write of the same key wins
+    List<Collection<Field<?>>> writes = new ArrayList<>(expected);
+    writes.add(0, Arrays.asList(Fields.intField(KEY, 0), Fields.longField(KEY2, 0L),
+                                Fields.stringField(STRING_COL, "overwritten")));
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      table.multiUpsert(writes);
+    });
+    Assert.assertEquals(expected, scanSimpleStructuredRows(Range.all(), max));
+
+    // Delete rows 3-5 with multiDelete
+    List<Collection<Field<?>>> keys = new ArrayList<>();
+    for (int i = 3; i < 6; i++) {
+      keys.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i)));
+    }
+    expected.subList(3, 6).clear();
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      table.multiDelete(keys);
+    });
+    Assert.assertEquals(expected, scanSimpleStructuredRows(Range.all(), max));
+
+    // Empty collections are no-op
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      table.multiUpsert(Collections.emptyList());
+      table.multiDelete(Collections.emptyList());
+    });
+    Assert.assertEquals(expected, scanSimpleStructuredRows(Range.all(), max));
+
+    // Rows missing the primary keys should fail the whole multiUpsert
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      try {
+        table.multiUpsert(Arrays.asList(
+          Arrays.asList(Fields.intField(KEY, 100), Fields.longField(KEY2, 100L)),
+          Collections.singletonList(Fields.intField(KEY, 101))));
+        Assert.fail("Expected InvalidFieldException");
+      } catch (InvalidFieldException e) {
+        // Expected
+      }
+    });
+    Assert.assertEquals(expected, scanSimpleStructuredRows(Range.all(), max));
+  }
+
+  @Test
+  public void testCount() throws Exception {
+    int max = 10;
+    writeSimpleStructuredRows(max, "");
+
+    long[] counts = TransactionRunners.run(getTransactionRunner(), context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      return new long[] {
+        table.count(Range.all()),
+        table.count(Range.create(Collections.singleton(Fields.intField(KEY, 2)), Range.Bound.INCLUSIVE,
+                                 Collections.singleton(Fields.intField(KEY, 5)), Range.Bound.EXCLUSIVE)),
+        table.count(Range.singleton(Arrays.asList(Fields.intField(KEY, 4), Fields.longField(KEY2, 4L)))),
+        table.count(Range.singleton(Collections.singleton(Fields.intField(KEY, max + 1))))
+      };
+    });
+    Assert.assertArrayEquals(new long[] { max, 3, 1, 0 }, counts);
+  }
+
   @Test
   public void testIndexScan() throws Exception {
     int num = 5;
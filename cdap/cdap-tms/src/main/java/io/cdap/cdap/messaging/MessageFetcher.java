@@ -22,6 +22,9 @@ import io.cdap.cdap.messaging.data.RawMessage;
 import org.apache.tephra.Transaction;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -38,6 +41,8 @@ public abstract class MessageFetcher {
 
   // by default there is virtually no limit
   private int limit = Integer.MAX_VALUE;
+  // by default returns immediately if there is no message
+  private long waitTimeoutMillis;
 
   /**
    * Setup the message fetching starting point based on the given message id. Calling this method
@@ -96,6 +101,23 @@ public abstract class MessageFetcher {
     return this;
   }
 
+  /**
+   * Sets the maximum time to wait for messages to be published if there is no message available when fetching.
+   * By default, this is set to {@code 0}, which means fetching returns immediately.
+   * Implementations that don't support waiting may return immediately regardless of this setting.
+   *
+   * @param timeout maximum time to wait
+   * @param unit unit of the timeout
+   * @return this instance
+   */
+  public MessageFetcher setWaitTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Invalid message fetching wait timeout. Timeout must be >= 0");
+    }
+    this.waitTimeoutMillis = unit.toMillis(timeout);
+    return this;
+  }
+
   @Nullable
   protected byte[] getStartOffset() {
     return startOffset;
@@ -119,6 +141,10 @@ public abstract class MessageFetcher {
     return limit;
   }
 
+  protected long getWaitTimeoutMillis() {
+    return waitTimeoutMillis;
+  }
+
   /**
    * Returns a {@link CloseableIterator} that iterates over messages fetched from the messaging system.
    *
@@ -126,4 +152,23 @@ public abstract class MessageFetcher {
    * @throws IOException if it fails to create the iterator
    */
   public abstract CloseableIterator<RawMessage> fetch() throws TopicNotFoundException, IOException;
+
+  /**
+   * Fetches messages the same way as {@link #fetch()}, except that if it has to wait for messages to be published,
+   * it waits without blocking the calling thread. The default implementation calls {@link #fetch()} in the
+   * calling thread.
+   *
+   * @param scheduler the {@link ScheduledExecutorService} for fetching again once messages are published,
+   *                  and for timing out the wait
+   * @return a {@link CompletableFuture} that completes with the result of the fetch
+   */
+  public CompletableFuture<CloseableIterator<RawMessage>> fetchAsync(ScheduledExecutorService scheduler) {
+    CompletableFuture<CloseableIterator<RawMessage>> future = new CompletableFuture<>();
+    try {
+      future.complete(fetch());
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+    }
+    return future;
+  }
 }
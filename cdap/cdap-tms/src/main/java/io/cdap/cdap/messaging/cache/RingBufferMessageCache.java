@@ -0,0 +1,386 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.messaging.store.MessageFilter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MessageCache} backed by an append only ring buffer. It has the same limits and metrics as
+ * {@link SkipListMessageCache}, but relies more heavily on the TMS properties of single writer and ordered unique entries:
+ *
+ * - Each entry added is assigned with a monotonically increasing sequence number, which also determines the slot
+ *   in the ring buffer that the entry is stored at.
+ * - Scanning is lock free. The starting entry is located by binary search between the head and the tail sequence
+ *   numbers. Since the writer may overwrite slots of evicted entries, each slot carries the sequence number of the
+ *   entry, such that the scanner can detect concurrent eviction and retry.
+ * - The ring buffer grows when it is full and the weight limits still allow adding more entries.
+ * - Weight reduction and growing of the ring buffer share a lock, such that entries copied to a new ring buffer are
+ *   never released after they are evicted from the old one. Neither of them blocks the scanners.
+ *
+ * @param <T> type of entry stored in the cache
+ */
+public class RingBufferMessageCache<T> extends MessageCache<T> {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final Comparator<T> comparator;
+  private final Weigher<T> weigher;
+  private final MetricsContext metricsContext;
+  private final AtomicLong currentWeight;
+  private final AtomicBoolean needReduceWeight;
+  private final AtomicBoolean adding;
+  // Guards eviction and growing of the ring buffer
+  private final Object ringLock;
+
+  // Sequence number of the first entry in the cache
+  private final AtomicLong head;
+  // Sequence number of the next entry to be added. Only updated by the single writer.
+  private volatile long tail;
+  private volatile AtomicReferenceArray<Slot<T>> ring;
+  private volatile Limits limits;
+
+  /**
+   * Creates a new instance of the cache.
+   *
+   * @param comparator a {@link Comparator} for ordering cache entries
+   * @param weigher a {@link Weigher} for computing the weight of each cache entry
+   * @param limits the limits for maintaining cache weight; see {@link MessageCache} for more detail
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  public RingBufferMessageCache(Comparator<T> comparator, Weigher<T> weigher,
+                                Limits limits, MetricsContext metricsContext) {
+    this.comparator = comparator;
+    this.weigher = weigher;
+    this.metricsContext = metricsContext;
+    this.currentWeight = new AtomicLong();
+    this.needReduceWeight = new AtomicBoolean();
+    this.adding = new AtomicBoolean();
+    this.ringLock = new Object();
+    this.head = new AtomicLong();
+    this.ring = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    this.limits = limits;
+  }
+
+  @Override
+  public Comparator<T> getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public void addAll(Iterator<T> entries) {
+    if (!adding.compareAndSet(false, true)) {
+      // This is to guard against bug, otherwise this shouldn't happen
+      throw new ConcurrentModificationException(
+        "The MessageCache.addAll method shouldn't be called concurrently by multiple threads.");
+    }
+
+    try {
+      long newWeight = currentWeight.get();
+      long seq = tail;
+      Slot<T> largestSlot = seq > head.get() ? getSlot(ring, seq - 1) : null;
+
+      int entriesAdded = 0;
+      while (entries.hasNext()) {
+        T entry = entries.next();
+        Slot<T> slot = new Slot<>(seq, entry, weigher.weight(entry));
+        newWeight = currentWeight.addAndGet(slot.weight);
+        if (newWeight > limits.getHardLimit()) {
+          reduceWeight();
+          metricsContext.increment(METRICS_ADD_REDUCE_WEIGHT, 1L);
+          newWeight = currentWeight.get();
+        }
+
+        // Entries must be in strictly increasing order, and larger than everything in the cache
+        if (largestSlot != null && comparator.compare(largestSlot.entry, entry) >= 0) {
+          // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
+          // unless there is bug in the TMS system (from the caller side).
+          currentWeight.addAndGet(-1 * slot.weight);
+          clear();
+          throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
+                                               "Entry " + entry + " is smaller than or equal to " +
+                                               largestSlot.entry);
+        }
+
+        append(slot);
+        entriesAdded++;
+        largestSlot = slot;
+        seq++;
+      }
+
+      metricsContext.increment(METRICS_ADD_REQUESTS, 1L);
+      metricsContext.increment(METRICS_ENTRIES_ADDED, entriesAdded);
+      metricsContext.gauge(METRICS_WEIGHT, newWeight);
+
+      if (newWeight > limits.getHardLimit()) {
+        reduceWeight();
+        metricsContext.increment(METRICS_ADD_REDUCE_WEIGHT, 1L);
+      } else if (newWeight > limits.getReduceTrigger()) {
+        needReduceWeight.compareAndSet(false, true);
+      }
+    } finally {
+      adding.set(false);
+    }
+  }
+
+  @Override
+  public Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter) {
+    List<T> entries = new ArrayList<>();
+    T firstInCache = null;
+
+    // Retry if entries in the range being scanned are overwritten concurrently
+    boolean completed = false;
+    while (!completed) {
+      entries.clear();
+      long first = head.get();
+      long end = tail;
+      AtomicReferenceArray<Slot<T>> ring = this.ring;
+      if (first >= end) {
+        firstInCache = null;
+        break;
+      }
+
+      Slot<T> firstSlot = getSlot(ring, first);
+      long seq = search(ring, first, end, startEntry, includeStart);
+      if (firstSlot == null || seq < 0) {
+        continue;
+      }
+      firstInCache = firstSlot.entry;
+
+      completed = true;
+      for (; seq < end && entries.size() < limit; seq++) {
+        Slot<T> slot = getSlot(ring, seq);
+        if (slot == null) {
+          completed = false;
+          break;
+        }
+
+        MessageFilter.Result result = filter.apply(slot.entry);
+        if (result == MessageFilter.Result.ACCEPT) {
+          entries.add(slot.entry);
+        } else if (result == MessageFilter.Result.HOLD) {
+          // Hold means not to scan more, so just break
+          break;
+        }
+      }
+    }
+
+    metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
+
+    return new AbstractScanner<T>(entries.iterator(), firstInCache) {
+      @Override
+      void doClose() {
+        // Use compareAndSet to check if need to reduce weight. There will only be
+        // one winner to proceed with the reduce weight call.
+        if (needReduceWeight.compareAndSet(true, false)) {
+          reduceWeight();
+          metricsContext.increment(METRICS_SCAN_REDUCE_WEIGHT, 1L);
+        }
+      }
+    };
+  }
+
+  @Override
+  public void updateEntries(T startEntry, T endEntry, EntryUpdater<T> updater) {
+    long first;
+    long end;
+    long seq;
+    AtomicReferenceArray<Slot<T>> ring;
+    do {
+      first = head.get();
+      end = tail;
+      ring = this.ring;
+      seq = search(ring, first, end, startEntry, true);
+    } while (seq < 0);
+
+    Slot<T> lower = seq > first ? getSlot(ring, seq - 1) : null;
+    for (; seq < end; seq++) {
+      Slot<T> slot = getSlot(ring, seq);
+      if (slot == null) {
+        // The entry was evicted, hence no need to update
+        continue;
+      }
+      if (comparator.compare(slot.entry, endEntry) > 0) {
+        break;
+      }
+      Slot<T> higher = seq + 1 < end ? getSlot(ring, seq + 1) : null;
+
+      try {
+        updater.updateEntry(slot.entry);
+      } catch (RuntimeException e) {
+        clear();
+        throw e;
+      }
+
+      // A quick check that the ordering hasn't been altered.
+      // It doesn't cover all possible case though. This is just a quick catch for bug in the caller.
+      if ((lower != null && comparator.compare(lower.entry, slot.entry) >= 0)
+        || (higher != null && comparator.compare(higher.entry, slot.entry) <= 0)) {
+        // This shouldn't happen, unless there is bug in the caller.
+        clear();
+        throw new IllegalStateException("Entry order should not be altered after update.");
+      }
+
+      lower = slot;
+    }
+  }
+
+  @Override
+  public void resize(Limits limits) {
+    this.limits = limits;
+    reduceWeight();
+  }
+
+  @Override
+  public Limits getLimits() {
+    return limits;
+  }
+
+  @VisibleForTesting
+  @Override
+  long getCurrentWeight() {
+    return currentWeight.get();
+  }
+
+  /**
+   * Returns the current capacity of the ring buffer.
+   */
+  @VisibleForTesting
+  int getCapacity() {
+    return ring.length();
+  }
+
+  /**
+   * Appends the given {@link Slot} to the ring buffer. This method is only called by the single writer.
+   */
+  private void append(Slot<T> slot) {
+    AtomicReferenceArray<Slot<T>> ring = this.ring;
+    // Grow the ring buffer if the slot to write to still holds an entry in the cache
+    if (slot.sequence - head.get() >= ring.length()) {
+      ring = grow(ring, slot.sequence);
+    }
+    ring.set(index(ring, slot.sequence), slot);
+    tail = slot.sequence + 1;
+  }
+
+  /**
+   * Creates a new ring buffer with double the capacity and copies all entries in the cache to it.
+   * Scanners that are using the old ring buffer can still read from it, as the writer no longer writes to it.
+   */
+  private AtomicReferenceArray<Slot<T>> grow(AtomicReferenceArray<Slot<T>> ring, long end) {
+    synchronized (ringLock) {
+      AtomicReferenceArray<Slot<T>> newRing = new AtomicReferenceArray<>(ring.length() * 2);
+      for (long seq = head.get(); seq < end; seq++) {
+        newRing.set(index(newRing, seq), ring.get(index(ring, seq)));
+      }
+      this.ring = newRing;
+      return newRing;
+    }
+  }
+
+  /**
+   * Reduces the cache weight by advancing the head. Cached entries will be removed until the cache weight is smaller
+   * than the min retain weight.
+   */
+  private void reduceWeight() {
+    int entriesRemoved = 0;
+    synchronized (ringLock) {
+      AtomicReferenceArray<Slot<T>> ring = this.ring;
+      for (long first = head.get(); first < tail; first++) {
+        Slot<T> slot = getSlot(ring, first);
+        // If removing the next entry is smaller than the min weight, we are done with the reduce logic
+        if (slot == null || currentWeight.get() - slot.weight < limits.getMinRetain()) {
+          break;
+        }
+        head.set(first + 1);
+        currentWeight.addAndGet(-1 * slot.weight);
+        // Release the reference to the removed entry, unless the slot has been reused by the writer
+        ring.compareAndSet(index(ring, first), slot, null);
+        entriesRemoved++;
+      }
+    }
+    metricsContext.increment(METRICS_ENTRIES_REMOVED, entriesRemoved);
+  }
+
+  /**
+   * Searches for the smallest sequence number in the given range that has entry larger than (or equal to if
+   * {@code inclusive} is {@code true}) the given entry.
+   *
+   * @return the sequence number found, {@code end} if all entries are smaller, or {@code -1} if entries in the range
+   *         were overwritten while searching
+   */
+  private long search(AtomicReferenceArray<Slot<T>> ring, long start, long end, T entry, boolean inclusive) {
+    long low = start;
+    long high = end;
+    while (low < high) {
+      long mid = (low + high) >>> 1;
+      Slot<T> slot = getSlot(ring, mid);
+      if (slot == null) {
+        return -1L;
+      }
+      int cmp = comparator.compare(slot.entry, entry);
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the {@link Slot} for the given sequence number, or {@code null} if the entry of the given sequence number
+   * is no longer in the given ring buffer.
+   */
+  @Nullable
+  private Slot<T> getSlot(AtomicReferenceArray<Slot<T>> ring, long seq) {
+    Slot<T> slot = ring.get(index(ring, seq));
+    return slot == null || slot.sequence != seq ? null : slot;
+  }
+
+  private int index(AtomicReferenceArray<Slot<T>> ring, long seq) {
+    return (int) (seq % ring.length());
+  }
+
+  /**
+   * An immutable slot in the ring buffer that carries the entry, its weight and sequence number.
+   *
+   * @param <T> type of the entry
+   */
+  private static final class Slot<T> {
+    private final long sequence;
+    private final T entry;
+    private final int weight;
+
+    private Slot(long sequence, T entry, int weight) {
+      this.sequence = sequence;
+      this.entry = entry;
+      this.weight = weight;
+    }
+  }
+}
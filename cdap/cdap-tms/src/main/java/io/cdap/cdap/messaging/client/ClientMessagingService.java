@@ -426,7 +426,16 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, createTopicPath(topicId) + "/poll");
+      String path = createTopicPath(topicId) + "/poll";
+      long waitTimeoutMillis = getWaitTimeoutMillis();
+      if (waitTimeoutMillis > 0) {
+        path += "?waitTimeout=" + waitTimeoutMillis;
+      }
+      HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, path);
+      // The server may hold the request for the wait timeout before sending the response
+      if (waitTimeoutMillis > 0 && urlConn.getReadTimeout() > 0) {
+        urlConn.setReadTimeout((int) Math.min(Integer.MAX_VALUE, urlConn.getReadTimeout() + waitTimeoutMillis));
+      }
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
       if (compressPayload) {
         urlConn.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
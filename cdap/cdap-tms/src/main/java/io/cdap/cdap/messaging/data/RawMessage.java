@@ -16,16 +16,32 @@
 
 package io.cdap.cdap.messaging.data;
 
+import javax.annotation.Nullable;
+
 /**
  * Represents a unique message in the messaging system. It contains the message id and the payload
  */
 public class RawMessage {
   private final byte[] id;
   private final byte[] payload;
+  private final byte[] encodedHeader;
 
   public RawMessage(byte[] id, byte[] payload) {
+    this(id, payload, null);
+  }
+
+  /**
+   * Creates a message with the encoded header already available.
+   *
+   * @param id the unique id of the message
+   * @param payload the published content of the message
+   * @param encodedHeader the result of {@link #encodeHeader(byte[], int)} for the given id and payload,
+   *                      or {@code null} if it is not available
+   */
+  public RawMessage(byte[] id, byte[] payload, @Nullable byte[] encodedHeader) {
     this.id = id;
     this.payload = payload;
+    this.encodedHeader = encodedHeader;
   }
 
   /**
@@ -41,4 +57,58 @@ public class RawMessage {
   public byte[] getPayload() {
     return payload;
   }
+
+  /**
+   * Returns the Avro binary encoding of this message that precedes the payload bytes, or {@code null} if it is not
+   * available. The returned bytes followed by the payload bytes are the Avro binary encoding of this message
+   * as an element of the consume response.
+   */
+  @Nullable
+  public byte[] getEncodedHeader() {
+    return encodedHeader;
+  }
+
+  /**
+   * Encodes the header of a message, which consists of the Avro binary encoding of the {@code id} field, followed by
+   * the length of the {@code payload} field, of the message record in the consume response.
+   *
+   * @param id the message id
+   * @param payloadLength length of the message payload
+   * @return the encoded header
+   */
+  public static byte[] encodeHeader(byte[] id, int payloadLength) {
+    byte[] header = new byte[varLongSize(id.length) + id.length + varLongSize(payloadLength)];
+    int offset = writeVarLong(id.length, header, 0);
+    System.arraycopy(id, 0, header, offset, id.length);
+    writeVarLong(payloadLength, header, offset + id.length);
+    return header;
+  }
+
+  /**
+   * Returns the number of bytes needed for the Avro zig-zag variable length encoding of the given value.
+   */
+  private static int varLongSize(long value) {
+    long n = (value << 1) ^ (value >> 63);
+    int size = 1;
+    while ((n & ~0x7FL) != 0) {
+      n >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * Writes the given value with the Avro zig-zag variable length encoding.
+   *
+   * @return the offset in the buffer after the written bytes
+   */
+  private static int writeVarLong(long value, byte[] buffer, int offset) {
+    long n = (value << 1) ^ (value >> 63);
+    while ((n & ~0x7FL) != 0) {
+      buffer[offset++] = (byte) ((n & 0x7F) | 0x80);
+      n >>>= 7;
+    }
+    buffer[offset++] = (byte) n;
+    return offset;
+  }
 }
@@ -16,12 +16,16 @@
 
 package io.cdap.cdap.messaging.server;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.common.BadRequestException;
+import io.cdap.cdap.common.HttpExceptionHandler;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.ByteBuffers;
@@ -35,10 +39,12 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.AbstractHttpHandler;
 import io.cdap.http.BodyProducer;
+import io.cdap.http.HandlerContext;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
@@ -55,6 +61,7 @@ import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,10 +72,17 @@ import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
@@ -85,20 +99,53 @@ public final class FetchHandler extends AbstractHttpHandler {
     "Broken pipe"
   );
 
+  private static final String METRICS_BYTES_ZERO_COPY = "fetch.bytes.zerocopy";
+  private static final String METRICS_BYTES_ENCODED = "fetch.bytes.encoded";
+
   private final MessagingService messagingService;
+  private final MetricsCollectionService metricsCollectionService;
+  private final String instanceId;
+  private final long maxWaitTimeoutMillis;
+  private final int fetchWaitThreads;
   private int messageChunkSize;
+  private ScheduledExecutorService fetchWaitExecutor;
 
   @Inject
-  FetchHandler(CConfiguration cConf, MessagingService messagingService) {
+  FetchHandler(CConfiguration cConf, MessagingService messagingService,
+               MetricsCollectionService metricsCollectionService) {
     this.messagingService = messagingService;
+    this.metricsCollectionService = metricsCollectionService;
+    this.instanceId = cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, "0");
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.maxWaitTimeoutMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_MAX_FETCH_WAIT_MILLIS);
+    this.fetchWaitThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_FETCH_WAIT_THREADS);
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    fetchWaitExecutor = Executors.newScheduledThreadPool(
+      fetchWaitThreads, Threads.createDaemonThreadFactory("messaging-fetch-wait-%d"));
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    fetchWaitExecutor.shutdownNow();
   }
 
+  /**
+   * Fetches messages from a topic. If the {@code waitTimeout} query parameter is positive and there is no message
+   * available, the response is held until new messages are published to the topic or the given number of
+   * milliseconds elapsed, whichever comes first. The wait time is capped by the server configuration. Waiting
+   * doesn't hold the request thread; the response is sent from the fetch wait executor once messages are available.
+   */
   @POST
   @Path("poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("waitTimeout") @DefaultValue("0") long waitTimeoutMillis) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
@@ -112,9 +159,44 @@ public final class FetchHandler extends AbstractHttpHandler {
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
 
     // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    CompletableFuture<CloseableIterator<RawMessage>> future =
+      fetchMessages(datumReader.read(null, decoder), topicId, Math.min(waitTimeoutMillis, maxWaitTimeoutMillis));
+
+    // Respond in the calling thread if the fetch didn't wait, so that failures go through the handler exception path
+    if (future.isDone()) {
+      CloseableIterator<RawMessage> iterator;
+      try {
+        iterator = future.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+      sendMessages(responder, topicId, iterator);
+      return;
+    }
+
+    future.whenComplete((iterator, failure) -> {
+      if (failure != null) {
+        new HttpExceptionHandler().handle(failure, request, responder);
+        return;
+      }
+      try {
+        sendMessages(responder, topicId, iterator);
+      } catch (Throwable t) {
+        LOG.warn("Failed to send messages fetched from topic {}", topicId, t);
+      }
+    });
+  }
+
+  /**
+   * Sends the given messages as the response.
+   */
+  private void sendMessages(HttpResponder responder, TopicId topicId, CloseableIterator<RawMessage> iterator) {
     try {
-      responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
+      responder.sendContent(HttpResponseStatus.OK,
+                            new MessagesBodyProducer(iterator, messageChunkSize, createMetricsContext(topicId)),
                             new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
     } catch (Throwable t) {
       iterator.close();
@@ -123,10 +205,13 @@ public final class FetchHandler extends AbstractHttpHandler {
   }
 
   /**
-   * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
+   * Starts fetching messages based on the given fetch request.
+   *
+   * @return a {@link CompletableFuture} that completes with a {@link CloseableIterator} of {@link RawMessage}
    */
-  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest,
-                                                      TopicId topicId) throws IOException, TopicNotFoundException {
+  private CompletableFuture<CloseableIterator<RawMessage>> fetchMessages(GenericRecord fetchRequest, TopicId topicId,
+                                                                         long waitTimeoutMillis)
+    throws IOException, TopicNotFoundException, BadRequestException {
     MessageFetcher fetcher = messagingService.prepareFetch(topicId);
 
     Object startFrom = fetchRequest.get("startFrom");
@@ -153,32 +238,56 @@ public final class FetchHandler extends AbstractHttpHandler {
       fetcher.setTransaction(TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx)));
     }
 
-    return fetcher.fetch();
+    if (waitTimeoutMillis < 0) {
+      throw new BadRequestException("Wait timeout must be >= 0");
+    }
+    fetcher.setWaitTimeout(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+
+    return fetcher.fetchAsync(fetchWaitExecutor);
+  }
+
+  /**
+   * Creates a {@link MetricsContext} for emitting fetch metrics for the given topic.
+   */
+  private MetricsContext createMetricsContext(TopicId topicId) {
+    return metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.MESSAGING_SERVICE,
+      Constants.Metrics.Tag.INSTANCE_ID, instanceId,
+      Constants.Metrics.Tag.NAMESPACE, topicId.getNamespace(),
+      Constants.Metrics.Tag.TOPIC, topicId.getTopic()
+    ));
   }
 
   /**
    * A {@link BodyProducer} to encode and send back messages.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
    * all messages in memory before sending out.
+   *
+   * Messages that carry the encoded header (see {@link RawMessage#getEncodedHeader()}) are not encoded again.
+   * Instead, the header and the payload are wrapped as components of the {@link CompositeByteBuf} returned for
+   * the chunk without copying.
    */
   private static class MessagesBodyProducer extends BodyProducer {
 
     private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
-    private final ByteBuf chunk;
+    private final MetricsContext metricsContext;
+    private final ByteBuf buffer;
     private final Encoder encoder;
     private final GenericRecord messageRecord;
     private final DatumWriter<GenericRecord> messageWriter;
     private boolean arrayStarted;
     private boolean arrayEnded;
 
-    MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
+    MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize,
+                         MetricsContext metricsContext) {
       this.iterator = iterator;
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
-      this.chunk = Unpooled.buffer(messageChunkSize);
-      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
+      this.metricsContext = metricsContext;
+      this.buffer = Unpooled.buffer(messageChunkSize);
+      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(buffer), null);
 
       // These are for writing individual message (response is an array of messages)
       this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
@@ -201,7 +310,11 @@ public final class FetchHandler extends AbstractHttpHandler {
         return Unpooled.EMPTY_BUFFER;
       }
 
-      chunk.clear();
+      // The buffer is only for the encoded parts of the chunk. Since the returned chunk is a composite of
+      // copies from the buffer and wrapped pre-encoded messages, the buffer can be reused.
+      buffer.clear();
+      CompositeByteBuf chunk = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+      int zeroCopyBytes = 0;
 
       if (!arrayStarted) {
         arrayStarted = true;
@@ -225,6 +338,16 @@ public final class FetchHandler extends AbstractHttpHandler {
       for (RawMessage message : messages) {
         encoder.startItem();
 
+        byte[] encodedHeader = message.getEncodedHeader();
+        if (encodedHeader != null) {
+          // The message is already encoded. Add what's encoded so far to the chunk, followed by the message.
+          addEncoded(chunk);
+          chunk.addComponent(true, Unpooled.wrappedBuffer(encodedHeader));
+          chunk.addComponent(true, Unpooled.wrappedBuffer(message.getPayload()));
+          zeroCopyBytes += encodedHeader.length + message.getPayload().length;
+          continue;
+        }
+
         // Write individual message (array element) with DatumWrite.
         // This provides greater flexibility on schema evolution.
         // The response will likely always be an array, but the element schema can evolve.
@@ -238,13 +361,28 @@ public final class FetchHandler extends AbstractHttpHandler {
         encoder.writeArrayEnd();
       }
 
-      return chunk.copy();
+      int encodedBytes = chunk.readableBytes() - zeroCopyBytes + buffer.readableBytes();
+      addEncoded(chunk);
+
+      metricsContext.increment(METRICS_BYTES_ZERO_COPY, zeroCopyBytes);
+      metricsContext.increment(METRICS_BYTES_ENCODED, encodedBytes);
+      return chunk;
     }
 
     @Override
     public void finished() throws Exception {
       iterator.close();
-      chunk.release();
+      buffer.release();
+    }
+
+    /**
+     * Moves the bytes encoded in the buffer to the given {@link CompositeByteBuf}.
+     */
+    private void addEncoded(CompositeByteBuf chunk) {
+      if (buffer.isReadable()) {
+        chunk.addComponent(true, buffer.copy());
+        buffer.clear();
+      }
     }
 
     @Override
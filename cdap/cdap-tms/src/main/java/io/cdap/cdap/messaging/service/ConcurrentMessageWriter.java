@@ -64,6 +64,7 @@ final class ConcurrentMessageWriter implements Closeable {
 
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
+  private final Runnable persistListener;
   private final PendingStoreQueue pendingStoreQueue;
   private final AtomicBoolean writerFlag;
   private final AtomicBoolean closed;
@@ -83,8 +84,23 @@ final class ConcurrentMessageWriter implements Closeable {
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, () -> { });
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param persistListener a {@link Runnable} to call after each batch of {@link StoreRequest} is persisted
+   *                        successfully. It is called by the thread that performed the write, after releasing
+   *                        the writer flag.
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          Runnable persistListener) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
+    this.persistListener = persistListener;
     this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
@@ -143,11 +159,15 @@ final class ConcurrentMessageWriter implements Closeable {
     if (!writerFlag.compareAndSet(false, true)) {
       return false;
     }
+    boolean persisted;
     try {
-      pendingStoreQueue.persist(messagesWriter);
+      persisted = pendingStoreQueue.persist(messagesWriter);
     } finally {
       writerFlag.set(false);
     }
+    if (persisted) {
+      persistListener.run();
+    }
     return true;
   }
 
@@ -191,8 +211,10 @@ final class ConcurrentMessageWriter implements Closeable {
 
     /**
      * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
+     *
+     * @return {@code true} if there were requests in the queue and they were persisted successfully
      */
-    void persist(StoreRequestWriter<?> writer) {
+    boolean persist(StoreRequestWriter<?> writer) {
       // Capture all current events.
       // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
@@ -208,11 +230,14 @@ final class ConcurrentMessageWriter implements Closeable {
 
       metricsCollector.gauge("persist.queue.size", inflightRequests.size());
 
+      boolean hasRequests = !inflightRequests.isEmpty();
       try {
         writer.write(inflightRequests.iterator());
         completeAll(null);
+        return hasRequests;
       } catch (Throwable t) {
         completeAll(t);
+        return false;
       }
     }
 
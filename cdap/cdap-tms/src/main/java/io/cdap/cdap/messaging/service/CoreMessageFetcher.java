@@ -25,12 +25,17 @@ import io.cdap.cdap.messaging.data.RawMessage;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.messaging.store.PayloadTable;
 import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Cancellable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 
 /**
@@ -44,17 +49,94 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final PublishNotifier publishNotifier;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     PublishNotifier publishNotifier) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.publishNotifier = publishNotifier;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long waitTimeoutMillis = getWaitTimeoutMillis();
+    if (waitTimeoutMillis <= 0) {
+      return fetchAvailable();
+    }
+
+    // Fetch until there are messages or the timeout elapsed, waiting for messages to be persisted in between.
+    // The publish sequence is read before fetching, so that messages persisted after it was read always end the wait.
+    TopicId topicId = topicMetadata.getTopicId();
+    long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+    while (true) {
+      long sequence = publishNotifier.getSequence(topicId);
+      CloseableIterator<RawMessage> iterator = fetchAvailable();
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0 || iterator.hasNext()) {
+        return iterator;
+      }
+      iterator.close();
+      try {
+        publishNotifier.await(topicId, sequence, remaining, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return fetchAvailable();
+      }
+    }
+  }
+
+  @Override
+  public CompletableFuture<CloseableIterator<RawMessage>> fetchAsync(ScheduledExecutorService scheduler) {
+    CompletableFuture<CloseableIterator<RawMessage>> future = new CompletableFuture<>();
+    fetchAsync(scheduler, future, System.currentTimeMillis() + getWaitTimeoutMillis());
+    return future;
+  }
+
+  /**
+   * Fetches the messages available and completes the given future with them if there are messages or the deadline
+   * passed. Otherwise, fetches again with the given scheduler once messages are published or the deadline passed.
+   */
+  private void fetchAsync(ScheduledExecutorService scheduler,
+                          CompletableFuture<CloseableIterator<RawMessage>> future, long deadline) {
+    try {
+      // Same as the blocking fetch, the publish sequence is read before fetching
+      TopicId topicId = topicMetadata.getTopicId();
+      long sequence = publishNotifier.getSequence(topicId);
+      CloseableIterator<RawMessage> iterator = fetchAvailable();
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0 || iterator.hasNext()) {
+        future.complete(iterator);
+        return;
+      }
+      iterator.close();
+
+      // Fetch again once, on whichever comes first between the publish and the timeout
+      AtomicBoolean triggered = new AtomicBoolean();
+      Runnable fetchAgain = () -> {
+        if (triggered.compareAndSet(false, true)) {
+          scheduler.execute(() -> fetchAsync(scheduler, future, deadline));
+        }
+      };
+      ScheduledFuture<?> timeout = scheduler.schedule(fetchAgain, remaining, TimeUnit.MILLISECONDS);
+      Cancellable listener = publishNotifier.addListener(topicId, sequence, () -> {
+        timeout.cancel(false);
+        fetchAgain.run();
+      });
+      // Remove the listener if the wait timed out, otherwise it stays until the next publish to the topic
+      future.whenComplete((result, failure) -> listener.cancel());
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+    }
+  }
+
+  /**
+   * Returns a {@link CloseableIterator} of the messages currently available, without waiting.
+   */
+  private CloseableIterator<RawMessage> fetchAvailable() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
@@ -210,8 +292,12 @@ final class CoreMessageFetcher extends MessageFetcher {
               throw Throwables.propagate(e);
             }
           } else {
-            // Otherwise, the message entry is the next message
-            nextMessage = new RawMessage(createMessageId(messageEntry, null), messageEntry.getPayload());
+            // Otherwise, the message entry is the next message.
+            // Carry the encoded header if it is retained by the entry (e.g. from the MessageCache).
+            byte[] encodedHeader = messageEntry instanceof MessageTable.EncodedEntry
+              ? ((MessageTable.EncodedEntry) messageEntry).getEncodedHeader()
+              : null;
+            nextMessage = new RawMessage(createMessageId(messageEntry, null), messageEntry.getPayload(), encodedHeader);
           }
         } else {
           // If there is no more message from the message iterator as well, then no more message to fetch
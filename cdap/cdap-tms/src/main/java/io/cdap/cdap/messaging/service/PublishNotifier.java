@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Cancellable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Tracks messages being persisted to topics, so that fetches can wait for new messages instead of polling.
+ * Each topic that has been waited on has a publish sequence number, which is incremented every time messages
+ * are persisted to the topic. A fetcher reads the sequence number before fetching, and if there is no message,
+ * waits for the sequence number to change, either by blocking or with a listener.
+ */
+@ThreadSafe
+final class PublishNotifier {
+
+  private final ConcurrentMap<TopicId, Sequence> sequences = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current publish sequence number of the given topic.
+   */
+  long getSequence(TopicId topicId) {
+    return sequences.computeIfAbsent(topicId, k -> new Sequence()).get();
+  }
+
+  /**
+   * Signals that messages were persisted to the given topic.
+   */
+  void published(TopicId topicId) {
+    // Nothing to do if no fetch ever waited on the topic
+    Sequence sequence = sequences.get(topicId);
+    if (sequence != null) {
+      sequence.increment();
+    }
+  }
+
+  /**
+   * Removes the given topic, waking up all fetches waiting on it.
+   */
+  void remove(TopicId topicId) {
+    Sequence sequence = sequences.remove(topicId);
+    if (sequence != null) {
+      sequence.increment();
+    }
+  }
+
+  /**
+   * Waits for the publish sequence number of the given topic to change from the given value.
+   *
+   * @param topicId the topic to wait on
+   * @param sequence the sequence number as returned by {@link #getSequence(TopicId)} before the last fetch
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return {@code true} if there were messages persisted to the topic; {@code false} if the timeout elapsed
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  boolean await(TopicId topicId, long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+    return sequences.computeIfAbsent(topicId, k -> new Sequence()).await(sequence, unit.toNanos(timeout));
+  }
+
+  /**
+   * Adds a listener to be called once the publish sequence number of the given topic changes from the given value.
+   * The listener is called right away if it already changed. Otherwise, it is called by the thread that persisted
+   * the messages, hence it must not block.
+   *
+   * @param topicId the topic to listen on
+   * @param sequence the sequence number as returned by {@link #getSequence(TopicId)} before the last fetch
+   * @param listener the listener to call
+   * @return a {@link Cancellable} to remove the listener if it is no longer needed
+   */
+  Cancellable addListener(TopicId topicId, long sequence, Runnable listener) {
+    return sequences.computeIfAbsent(topicId, k -> new Sequence()).addListener(sequence, listener);
+  }
+
+  /**
+   * A publish sequence number of a topic, which is also the monitor for waiting on it.
+   */
+  private static final class Sequence {
+
+    private final Set<Runnable> listeners = new LinkedHashSet<>();
+    private long value;
+
+    synchronized long get() {
+      return value;
+    }
+
+    void increment() {
+      List<Runnable> toCall;
+      synchronized (this) {
+        value++;
+        notifyAll();
+        toCall = new ArrayList<>(listeners);
+        listeners.clear();
+      }
+      toCall.forEach(Runnable::run);
+    }
+
+    Cancellable addListener(long sequence, Runnable listener) {
+      synchronized (this) {
+        if (value == sequence) {
+          listeners.add(listener);
+          return () -> {
+            synchronized (this) {
+              listeners.remove(listener);
+            }
+          };
+        }
+      }
+      listener.run();
+      return () -> { };
+    }
+
+    synchronized boolean await(long sequence, long timeoutNanos) throws InterruptedException {
+      long deadline = System.nanoTime() + timeoutNanos;
+      long remaining = timeoutNanos;
+      while (value == sequence && remaining > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        remaining = deadline - System.nanoTime();
+      }
+      return value != sequence;
+    }
+  }
+}
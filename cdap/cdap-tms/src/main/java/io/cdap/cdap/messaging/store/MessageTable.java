@@ -20,6 +20,7 @@ import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.messaging.data.RawMessage;
 import io.cdap.cdap.proto.id.TopicId;
 import org.apache.tephra.Transaction;
 
@@ -84,6 +85,20 @@ public interface MessageTable extends Closeable {
     short getSequenceId();
   }
 
+  /**
+   * An {@link Entry} that retains the encoded header of the message it carries, such that the message can be
+   * sent to fetchers without being encoded again.
+   */
+  interface EncodedEntry extends Entry {
+
+    /**
+     * Returns the encoded header as produced by {@link RawMessage#encodeHeader(byte[], int)} for the message
+     * carried by this entry, or {@code null} if {@link #isPayloadReference()} returns {@code true}.
+     */
+    @Nullable
+    byte[] getEncodedHeader();
+  }
+
   /**
    * Fetches message table entries in the given topic that were publish on or after the given start time.
    *
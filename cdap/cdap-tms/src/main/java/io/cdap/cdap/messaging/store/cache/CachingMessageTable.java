@@ -28,6 +28,7 @@ import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.cache.MessageCache;
 import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.messaging.data.RawMessage;
 import io.cdap.cdap.messaging.store.MessageFilter;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.messaging.store.TransactionMessageFilter;
@@ -334,7 +335,7 @@ final class CachingMessageTable implements MessageTable {
    * altering the transaction write point for rollback purpose of messages that were published transactionally.
    */
   @VisibleForTesting
-  static final class CacheMessageTableEntry implements Entry {
+  static final class CacheMessageTableEntry implements EncodedEntry {
 
     private final boolean lookupOnly;
     private final TopicId topicId;
@@ -344,7 +345,10 @@ final class CachingMessageTable implements MessageTable {
     private final long publishTimestamp;
     private final short sequenceId;
     private long transactionWritePointer;
-    private boolean rollback;
+    // Volatile since the MessageCache may be scanned without locking while rollback happens
+    private volatile boolean rollback;
+    // Lazily computed on the first fetch. Concurrent computation is harmless as it always gives the same result.
+    private volatile byte[] encodedHeader;
 
     CacheMessageTableEntry(TopicMetadata topicMetadata, long publishTimestamp, short sequenceId) {
       this.lookupOnly = true;
@@ -426,5 +430,23 @@ final class CachingMessageTable implements MessageTable {
     public short getSequenceId() {
       return sequenceId;
     }
+
+    @Nullable
+    @Override
+    public byte[] getEncodedHeader() {
+      byte[] payload = getPayload();
+      if (payload == null) {
+        return null;
+      }
+      byte[] header = encodedHeader;
+      if (header == null) {
+        // Message stored in the message table always has payload write timestamp and payload sequence id as 0
+        byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+        MessageId.putRawId(publishTimestamp, sequenceId, 0L, (short) 0, rawId, 0);
+        header = RawMessage.encodeHeader(rawId, payload.length);
+        encodedHeader = header;
+      }
+      return header;
+    }
   }
 }
@@ -24,12 +24,15 @@ import io.cdap.cdap.messaging.store.MessageTable;
  */
 final class MessageTableEntryWeigher implements MessageCache.Weigher<MessageTable.Entry> {
 
+  private static final int ENCODED_HEADER_WEIGHT = 48;
+
   @Override
   public int weight(MessageTable.Entry entry) {
     // Some fixed overhead for the primitive and reference fields
     int weight = 40;
     byte[] payload = entry.getPayload();
-    weight += payload == null ? 0 : payload.length;
+    // Entry with payload also retains the encoded message header (message id plus two lengths) once fetched
+    weight += payload == null ? 0 : payload.length + ENCODED_HEADER_WEIGHT;
     return weight;
   }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.leveldb;
+
+import io.cdap.cdap.api.metrics.MetricsContext;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performs writes to a LevelDB {@link DB} with the configured {@link Durability}. All writes to the message
+ * and payload tables go through this class.
+ */
+final class LevelDBCommitter implements Closeable {
+
+  /**
+   * Durability of writes.
+   */
+  enum Durability {
+    /**
+     * Every write is synced to disk before returning.
+     */
+    SYNC,
+
+    /**
+     * Writes return without syncing. Data is synced to disk periodically by calling {@link #sync()}.
+     */
+    ASYNC
+  }
+
+  private static final WriteOptions SYNC_WRITE_OPTIONS = new WriteOptions().sync(true);
+  private static final WriteOptions NO_SYNC_WRITE_OPTIONS = new WriteOptions().sync(false);
+
+  // Key used for the write that forces a sync of the LevelDB log. Data keys are never empty.
+  private static final byte[] SYNC_KEY = new byte[0];
+
+  private static final String METRICS_SYNCS = "leveldb.syncs";
+  private static final String METRICS_SYNC_WRITES = "leveldb.sync.writes";
+  private static final String METRICS_SYNC_BATCH_SIZE = "leveldb.sync.batch.size";
+  private static final String METRICS_SYNC_LATENCY = "leveldb.sync.latency.us";
+
+  private final DB levelDB;
+  private final Durability durability;
+  private final MetricsContext metricsContext;
+
+  // Number of writes performed
+  private final AtomicLong writeCount = new AtomicLong();
+  // Number of writes known to be synced, guarded by this object
+  private long syncedCount;
+
+  LevelDBCommitter(DB levelDB, Durability durability, MetricsContext metricsContext) {
+    this.levelDB = levelDB;
+    this.durability = durability;
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Returns the underlying {@link DB}.
+   */
+  DB getLevelDB() {
+    return levelDB;
+  }
+
+  /**
+   * Writes the given {@link WriteBatch} to LevelDB. This method returns when the write is durable according to the
+   * {@link Durability} setting.
+   */
+  void write(WriteBatch writeBatch) throws IOException {
+    try {
+      switch (durability) {
+        case SYNC:
+          long startTime = System.nanoTime();
+          levelDB.write(writeBatch, SYNC_WRITE_OPTIONS);
+          emitSyncMetrics(1L, System.nanoTime() - startTime);
+          break;
+        case ASYNC:
+          levelDB.write(writeBatch, NO_SYNC_WRITE_OPTIONS);
+          writeCount.incrementAndGet();
+          break;
+        default:
+          // Shouldn't happen
+          throw new IllegalStateException("Unsupported durability " + durability);
+      }
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Syncs all writes performed so far to disk. This is a no-op if there is no write since the last sync.
+   */
+  synchronized void sync() throws IOException {
+    long targetCount = writeCount.get();
+    if (targetCount <= syncedCount) {
+      return;
+    }
+
+    // Sync the LevelDB log, which contains all the writes performed before this point.
+    long startTime = System.nanoTime();
+    try (WriteBatch syncBatch = levelDB.createWriteBatch()) {
+      syncBatch.delete(SYNC_KEY);
+      levelDB.write(syncBatch, SYNC_WRITE_OPTIONS);
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+    emitSyncMetrics(targetCount - syncedCount, System.nanoTime() - startTime);
+    syncedCount = targetCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    levelDB.close();
+  }
+
+  private void emitSyncMetrics(long writes, long elapsedNanos) {
+    metricsContext.increment(METRICS_SYNCS, 1L);
+    metricsContext.increment(METRICS_SYNC_WRITES, writes);
+    metricsContext.gauge(METRICS_SYNC_BATCH_SIZE, writes);
+    metricsContext.gauge(METRICS_SYNC_LATENCY, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+  }
+}
@@ -30,7 +30,6 @@ import io.cdap.cdap.proto.id.TopicId;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.WriteBatch;
-import org.iq80.leveldb.WriteOptions;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -44,7 +43,6 @@ import javax.annotation.Nullable;
  * LevelDB implementation of {@link MessageTable}.
  */
 final class LevelDBMessageTable extends AbstractMessageTable {
-  private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
   private static final String PAYLOAD_COL = "p";
   private static final String TX_COL = "t";
 
@@ -64,11 +62,13 @@ final class LevelDBMessageTable extends AbstractMessageTable {
     }
   }
 
+  private final LevelDBCommitter committer;
   private final DB levelDB;
   private final TopicMetadata topicMetadata;
 
-  LevelDBMessageTable(DB levelDB, TopicMetadata topicMetadata) {
-    this.levelDB = levelDB;
+  LevelDBMessageTable(LevelDBCommitter committer, TopicMetadata topicMetadata) {
+    this.committer = committer;
+    this.levelDB = committer.getLevelDB();
     this.topicMetadata = topicMetadata;
   }
 
@@ -119,7 +119,7 @@ final class LevelDBMessageTable extends AbstractMessageTable {
         // LevelDB doesn't make copies, and since we reuse RawMessageTableEntry object, we need to create copies.
         writeBatch.put(Arrays.copyOf(rowKey, rowKey.length), encodeValue(entry.getTxPtr(), entry.getPayload()));
       }
-      levelDB.write(writeBatch, WRITE_OPTIONS);
+      committer.write(writeBatch);
     } catch (DBException ex) {
       throw new IOException(ex);
     }
@@ -138,7 +138,7 @@ final class LevelDBMessageTable extends AbstractMessageTable {
     }
 
     try {
-      levelDB.write(writeBatch, WRITE_OPTIONS);
+      committer.write(writeBatch);
     } catch (DBException ex) {
       throw new IOException(ex);
     }
@@ -188,7 +188,7 @@ final class LevelDBMessageTable extends AbstractMessageTable {
     }
 
     try {
-      levelDB.write(writeBatch, WRITE_OPTIONS);
+      committer.write(writeBatch);
     } catch (DBException ex) {
       throw new IOException(ex);
     }
@@ -30,7 +30,6 @@ import io.cdap.cdap.proto.id.TopicId;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.WriteBatch;
-import org.iq80.leveldb.WriteOptions;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -42,12 +41,13 @@ import java.util.concurrent.TimeUnit;
  * LevelDB implementation of {@link PayloadTable}.
  */
 public class LevelDBPayloadTable extends AbstractPayloadTable {
-  private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
+  private final LevelDBCommitter committer;
   private final DB levelDB;
   private final TopicMetadata topicMetadata;
 
-  LevelDBPayloadTable(DB levelDB, TopicMetadata topicMetadata) {
-    this.levelDB = levelDB;
+  LevelDBPayloadTable(LevelDBCommitter committer, TopicMetadata topicMetadata) {
+    this.committer = committer;
+    this.levelDB = committer.getLevelDB();
     this.topicMetadata = topicMetadata;
   }
 
@@ -101,7 +101,7 @@ public class LevelDBPayloadTable extends AbstractPayloadTable {
         // LevelDB doesn't make copies, and since we reuse RawPayloadTableEntry object, we need to create copies.
         writeBatch.put(Arrays.copyOf(key, key.length), Arrays.copyOf(value, value.length));
       }
-      levelDB.write(writeBatch, WRITE_OPTIONS);
+      committer.write(writeBatch);
     } catch (DBException ex) {
       throw new IOException(ex);
     }
@@ -145,7 +145,7 @@ public class LevelDBPayloadTable extends AbstractPayloadTable {
     }
 
     try {
-      levelDB.write(writeBatch, WRITE_OPTIONS);
+      committer.write(writeBatch);
     } catch (DBException ex) {
       throw new IOException(ex);
     }
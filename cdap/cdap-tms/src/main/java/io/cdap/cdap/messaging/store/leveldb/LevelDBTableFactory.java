@@ -17,9 +17,13 @@
 package io.cdap.cdap.messaging.store.leveldb;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Closeables;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.utils.DirUtils;
@@ -43,6 +47,7 @@ import java.util.Collection;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
@@ -62,9 +67,12 @@ public final class LevelDBTableFactory implements TableFactory {
   private final String metadataTableName;
   private final String messageTableName;
   private final String payloadTableName;
-  private final ConcurrentMap<File, DB> levelDBs;
+  private final String instanceId;
+  private final LevelDBCommitter.Durability durability;
+  private final ConcurrentMap<File, LevelDBCommitter> levelDBs;
 
   private LevelDBMetadataTable metadataTable;
+  private MetricsCollectionService metricsCollectionService;
 
   @VisibleForTesting
   @Inject
@@ -84,7 +92,22 @@ public final class LevelDBTableFactory implements TableFactory {
     this.metadataTableName = cConf.get(Constants.MessagingSystem.METADATA_TABLE_NAME);
     this.messageTableName = cConf.get(Constants.MessagingSystem.MESSAGE_TABLE_NAME);
     this.payloadTableName = cConf.get(Constants.MessagingSystem.PAYLOAD_TABLE_NAME);
+    this.instanceId = cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, "0");
+    this.durability = getDurability(cConf);
     this.levelDBs = new ConcurrentHashMap<>();
+
+    if (durability == LevelDBCommitter.Durability.ASYNC) {
+      long syncInterval = cConf.getLong(Constants.MessagingSystem.LOCAL_DATA_ASYNC_SYNC_INTERVAL_MS);
+      executor.scheduleWithFixedDelay(new DataSync(), syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Optional method for setting the {@link MetricsCollectionService} for emitting LevelDB write metrics.
+   */
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   @Override
@@ -119,35 +142,74 @@ public final class LevelDBTableFactory implements TableFactory {
     if (metadataTable != null) {
       Closeables.closeQuietly(metadataTable.getLevelDB());
     }
-    Collection<DB> dbs = levelDBs.values();
-    dbs.forEach(Closeables::closeQuietly);
+    Collection<LevelDBCommitter> dbs = levelDBs.values();
+    for (LevelDBCommitter committer : dbs) {
+      // Make sure all writes are persisted before closing in the async mode
+      if (durability == LevelDBCommitter.Durability.ASYNC) {
+        try {
+          committer.sync();
+        } catch (IOException e) {
+          LOG.warn("Failed to sync messaging levelDB table", e);
+        }
+      }
+      Closeables.closeQuietly(committer);
+    }
     dbs.clear();
   }
 
   /**
-   * Returns the LevelDB {@link DB} object for the given {@link TopicMetadata}, which stores on the given file path.
+   * Returns the {@link LevelDBCommitter} for the LevelDB {@link DB} object for the given {@link TopicMetadata},
+   * which stores on the given file path.
    */
-  private DB getLevelDB(TopicMetadata topicMetadata, String tablePrefix) throws IOException {
+  private LevelDBCommitter getLevelDB(TopicMetadata topicMetadata, String tablePrefix) throws IOException {
     File dbPath = getDataDBPath(tablePrefix, topicMetadata.getTopicId(), topicMetadata.getGeneration());
 
-    DB db = levelDBs.get(dbPath);
-    if (db != null) {
-      return db;
+    LevelDBCommitter committer = levelDBs.get(dbPath);
+    if (committer != null) {
+      return committer;
     }
 
     synchronized (this) {
       // Check again to make sure no new instance was being created while this thread is acquiring the lock
-      db = levelDBs.get(dbPath);
-      if (db != null) {
-        return db;
+      committer = levelDBs.get(dbPath);
+      if (committer != null) {
+        return committer;
       }
 
-      db = LEVEL_DB_FACTORY.open(ensureDirExists(dbPath), dbOptions);
-      levelDBs.put(dbPath, db);
+      DB db = LEVEL_DB_FACTORY.open(ensureDirExists(dbPath), dbOptions);
+      committer = new LevelDBCommitter(db, durability, createMetricsContext(topicMetadata.getTopicId(), tablePrefix));
+      levelDBs.put(dbPath, committer);
     }
 
-    LOG.debug("Messaging levelDB table created at {}", dbPath);
-    return db;
+    LOG.debug("Messaging levelDB table created at {} with {} durability", dbPath, durability);
+    return committer;
+  }
+
+  /**
+   * Creates a {@link MetricsContext} for the {@link LevelDBCommitter} of the given topic and table.
+   */
+  private MetricsContext createMetricsContext(TopicId topicId, String tableName) {
+    if (metricsCollectionService == null) {
+      return new NoopMetricsContext();
+    }
+    return metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.MESSAGING_SERVICE,
+      Constants.Metrics.Tag.INSTANCE_ID, instanceId,
+      Constants.Metrics.Tag.NAMESPACE, topicId.getNamespace(),
+      Constants.Metrics.Tag.TOPIC, topicId.getTopic(),
+      Constants.Metrics.Tag.TABLE, tableName
+    ));
+  }
+
+  private static LevelDBCommitter.Durability getDurability(CConfiguration cConf) {
+    String value = cConf.get(Constants.MessagingSystem.LOCAL_DATA_DURABILITY,
+                             LevelDBCommitter.Durability.SYNC.name());
+    try {
+      return LevelDBCommitter.Durability.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid value '" + value + "' for configuration "
+                                           + Constants.MessagingSystem.LOCAL_DATA_DURABILITY, e);
+    }
   }
 
   private File getDataDBPath(String tableName, TopicId topicId, int generation) {
@@ -220,7 +282,7 @@ public final class LevelDBTableFactory implements TableFactory {
           // Prune the current generation
           // Message table
           File dataDBPath = getDataDBPath(messageTableName, metadata.getTopicId(), metadata.getGeneration());
-          DB levelDB = levelDBs.get(dataDBPath);
+          LevelDBCommitter levelDB = levelDBs.get(dataDBPath);
           if (levelDB != null && dataDBPath.exists()) {
             new LevelDBMessageTable(levelDB, metadata).pruneMessages(now);
           }
@@ -237,4 +299,21 @@ public final class LevelDBTableFactory implements TableFactory {
       }
     }
   }
+
+  /**
+   * Periodically syncs all LevelDB data to disk when the durability is {@link LevelDBCommitter.Durability#ASYNC}.
+   */
+  private class DataSync implements Runnable {
+
+    @Override
+    public void run() {
+      for (LevelDBCommitter committer : levelDBs.values()) {
+        try {
+          committer.sync();
+        } catch (IOException e) {
+          LOG.warn("Failed to sync messaging levelDB table", e);
+        }
+      }
+    }
+  }
 }
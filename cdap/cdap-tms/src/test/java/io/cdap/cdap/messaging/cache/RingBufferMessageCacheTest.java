@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import com.google.common.collect.Lists;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.messaging.store.MessageFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Unit test for {@link RingBufferMessageCache}. It runs all tests in {@link MessageCacheTest} as well.
+ */
+public class RingBufferMessageCacheTest extends MessageCacheTest {
+
+  @Override
+  protected <T> MessageCache<T> createCache(Comparator<T> comparator, MessageCache.Weigher<T> weigher,
+                                            MessageCache.Limits limits, MetricsContext metricsContext) {
+    return new RingBufferMessageCache<>(comparator, weigher, limits, metricsContext);
+  }
+
+  @Test
+  public void testGrow() {
+    RingBufferMessageCache<Integer> cache = new RingBufferMessageCache<>(Integer::compare, entry -> 1,
+                                                                         new MessageCache.Limits(5000, 8000, 10000),
+                                                                         new NoopMetricsContext());
+    int initialCapacity = cache.getCapacity();
+    List<Integer> entries = IntStream.range(0, initialCapacity * 3).boxed().collect(Collectors.toList());
+    cache.addAll(entries.iterator());
+
+    // The ring should grow, and the oldest entries should be evicted according to the limits
+    Assert.assertTrue(cache.getCapacity() > initialCapacity);
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, Integer.MAX_VALUE,
+                                                            MessageFilter.alwaysAccept())) {
+      List<Integer> expected = entries.subList(entries.size() - (int) cache.getCurrentWeight(), entries.size());
+      Assert.assertEquals(expected.get(0), scanner.getFirstInCache());
+      Assert.assertEquals(expected, Lists.newArrayList(scanner));
+    }
+
+    // Scan from the middle
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(3000, false, 10, MessageFilter.alwaysAccept())) {
+      Assert.assertEquals(IntStream.range(3001, 3011).boxed().collect(Collectors.toList()),
+                          Lists.newArrayList(scanner));
+    }
+  }
+
+  @Test
+  public void testConcurrentScan() throws Exception {
+    // A single publisher keeps adding entries and evicting the old ones, while multiple fetchers keep scanning.
+    RingBufferMessageCache<Integer> cache = new RingBufferMessageCache<>(Integer::compare, entry -> 1,
+                                                                         new MessageCache.Limits(500, 700, 1000),
+                                                                         new NoopMetricsContext());
+    int totalEntries = 200000;
+    int fetchers = 4;
+    AtomicBoolean publishing = new AtomicBoolean(true);
+    AtomicInteger scans = new AtomicInteger();
+
+    ExecutorService executor = Executors.newFixedThreadPool(fetchers + 1);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      futures.add(executor.submit(() -> {
+        try {
+          for (int i = 0; i < totalEntries; i += 10) {
+            cache.addAll(IntStream.range(i, i + 10).iterator());
+          }
+        } finally {
+          publishing.set(false);
+        }
+        return null;
+      }));
+
+      for (int i = 0; i < fetchers; i++) {
+        futures.add(executor.submit(() -> {
+          while (publishing.get()) {
+            int start = ThreadLocalRandom.current().nextInt(totalEntries);
+            try (MessageCache.Scanner<Integer> scanner = cache.scan(start, true, 100,
+                                                                    MessageFilter.alwaysAccept())) {
+              List<Integer> result = Lists.newArrayList(scanner);
+              if (result.isEmpty()) {
+                continue;
+              }
+
+              // Entries must be consecutive, starting from the start entry or the first entry in cache
+              Integer firstInCache = scanner.getFirstInCache();
+              Assert.assertNotNull(firstInCache);
+              int expected = Math.max(start, firstInCache);
+              for (int entry : result) {
+                Assert.assertEquals(expected++, entry);
+              }
+            }
+            scans.incrementAndGet();
+          }
+          return null;
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertTrue(scans.get() > 0);
+    Assert.assertTrue(cache.getCurrentWeight() <= 1000);
+  }
+}
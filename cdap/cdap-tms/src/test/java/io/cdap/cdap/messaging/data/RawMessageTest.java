@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.data;
+
+import io.cdap.cdap.messaging.Schemas;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link RawMessage}.
+ */
+public class RawMessageTest {
+
+  @Test
+  public void testEncodeHeader() throws Exception {
+    byte[] id = new byte[MessageId.RAW_ID_SIZE];
+    MessageId.putRawId(System.currentTimeMillis(), (short) 1, 0L, (short) 0, id, 0);
+
+    // Payload sizes that need different number of bytes for the length encoding
+    for (int size : new int[] { 0, 1, 63, 64, 127, 128, 8191, 8192, 1048576 }) {
+      byte[] payload = new byte[size];
+      Arrays.fill(payload, (byte) 'x');
+
+      byte[] header = RawMessage.encodeHeader(id, payload.length);
+      byte[] encoded = new byte[header.length + payload.length];
+      System.arraycopy(header, 0, encoded, 0, header.length);
+      System.arraycopy(payload, 0, encoded, header.length, payload.length);
+
+      Assert.assertArrayEquals("Mismatch encoding for payload size " + size, encodeWithAvro(id, payload), encoded);
+    }
+  }
+
+  private byte[] encodeWithAvro(byte[] id, byte[] payload) throws Exception {
+    GenericRecord record = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
+    record.put("id", ByteBuffer.wrap(id));
+    record.put("payload", ByteBuffer.wrap(payload));
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Encoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    DatumWriter<GenericRecord> writer = new GenericDatumWriter<>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
+    writer.write(record, encoder);
+    return os.toByteArray();
+  }
+}
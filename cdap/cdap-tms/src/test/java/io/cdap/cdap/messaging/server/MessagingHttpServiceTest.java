@@ -63,6 +63,10 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -462,6 +466,45 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topicId);
   }
 
+  @Test
+  public void testWaitForMessages() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testWaitForMessages");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Fetching from an empty topic should wait for the timeout before returning nothing
+    long startTime = System.currentTimeMillis();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+      .setWaitTimeout(200, TimeUnit.MILLISECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(System.currentTimeMillis() - startTime >= 200);
+
+    // A waiting fetch should return as soon as a message is published
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<RawMessage>> future = executor.submit(() -> {
+        List<RawMessage> messages = new ArrayList<>();
+        try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+          .setWaitTimeout(1, TimeUnit.HOURS).fetch()) {
+          Iterators.addAll(messages, iterator);
+        }
+        return messages;
+      });
+
+      // Give some time for the fetch to start waiting. The test still passes if it didn't.
+      TimeUnit.MILLISECONDS.sleep(200);
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("m").build());
+
+      List<RawMessage> messages = future.get(30, TimeUnit.SECONDS);
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m", Bytes.toString(messages.get(0).getPayload()));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    client.deleteTopic(topicId);
+  }
+
   @Test
   public void testPayloadTable() throws Exception {
     // This test is to verify storing transaction messages to the payload table
@@ -22,6 +22,7 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -45,7 +46,9 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 
 /**
@@ -95,6 +98,54 @@ public class ConcurrentMessageWriterTest {
     Assert.assertEquals(Arrays.asList("a", "b", "c"), payloads);
   }
 
+  @Test
+  public void testPersistListener() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("t1");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    PublishNotifier notifier = new PublishNotifier();
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                 () -> notifier.published(topicId));
+
+    // Nothing is published yet, hence waiting should time out
+    long sequence = notifier.getSequence(topicId);
+    Assert.assertFalse(notifier.await(topicId, sequence, 10, TimeUnit.MILLISECONDS));
+
+    // A fetch waiting for the topic should be woken up by the persist
+    CountDownLatch waitStarted = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> future = executor.submit(() -> {
+        waitStarted.countDown();
+        return notifier.await(topicId, sequence, 1, TimeUnit.HOURS);
+      });
+      waitStarted.await();
+      writer.persist(new TestStoreRequest(topicId, Arrays.asList("1", "2")), metadata);
+      Assert.assertTrue(future.get(30, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Waiting with the old sequence returns immediately
+    Assert.assertTrue(notifier.await(topicId, sequence, 1, TimeUnit.HOURS));
+    Assert.assertNotEquals(sequence, notifier.getSequence(topicId));
+
+    // A listener with the old sequence is called immediately
+    AtomicInteger calls = new AtomicInteger();
+    notifier.addListener(topicId, sequence, calls::incrementAndGet);
+    Assert.assertEquals(1, calls.get());
+
+    // A listener with the current sequence is called once by the next persist, unless it is cancelled
+    notifier.addListener(topicId, notifier.getSequence(topicId), calls::incrementAndGet);
+    notifier.addListener(topicId, notifier.getSequence(topicId), calls::incrementAndGet).cancel();
+    Assert.assertEquals(1, calls.get());
+    writer.persist(new TestStoreRequest(topicId, Arrays.asList("3")), metadata);
+    Assert.assertEquals(2, calls.get());
+    writer.persist(new TestStoreRequest(topicId, Arrays.asList("4")), metadata);
+    Assert.assertEquals(2, calls.get());
+  }
+
   @Test
   public void testMaxSequence() throws IOException {
     // This test the case when a single StoreRequest has more than SEQUENCE_ID_LIMIT (65536) payload.
@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.leveldb;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.impl.Iq80DBFactory;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for {@link LevelDBCommitter}.
+ */
+public class LevelDBCommitterTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSync() throws Exception {
+    CountingMetricsContext metricsContext = new CountingMetricsContext();
+    try (LevelDBCommitter committer = createCommitter(LevelDBCommitter.Durability.SYNC, metricsContext)) {
+      write(committer, 0, 10);
+      assertData(committer.getLevelDB(), 0, 10);
+      Assert.assertEquals(10L, metricsContext.getCount("leveldb.syncs"));
+      Assert.assertEquals(10L, metricsContext.getCount("leveldb.sync.writes"));
+    }
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    CountingMetricsContext metricsContext = new CountingMetricsContext();
+    try (LevelDBCommitter committer = createCommitter(LevelDBCommitter.Durability.ASYNC, metricsContext)) {
+      write(committer, 0, 10);
+      assertData(committer.getLevelDB(), 0, 10);
+      Assert.assertEquals(0L, metricsContext.getCount("leveldb.syncs"));
+
+      // A single sync should cover all writes
+      committer.sync();
+      Assert.assertEquals(1L, metricsContext.getCount("leveldb.syncs"));
+      Assert.assertEquals(10L, metricsContext.getCount("leveldb.sync.writes"));
+
+      // Sync without new writes should be a no-op
+      committer.sync();
+      Assert.assertEquals(1L, metricsContext.getCount("leveldb.syncs"));
+    }
+  }
+
+  private LevelDBCommitter createCommitter(LevelDBCommitter.Durability durability,
+                                           MetricsContext metricsContext) throws Exception {
+    DB db = Iq80DBFactory.factory.open(TEMP_FOLDER.newFolder(), new Options().createIfMissing(true));
+    return new LevelDBCommitter(db, durability, metricsContext);
+  }
+
+  private void write(LevelDBCommitter committer, int start, int count) throws Exception {
+    for (int i = start; i < start + count; i++) {
+      try (WriteBatch writeBatch = committer.getLevelDB().createWriteBatch()) {
+        writeBatch.put(Bytes.toBytes(i), Bytes.toBytes("value" + i));
+        committer.write(writeBatch);
+      }
+    }
+  }
+
+  private void assertData(DB db, int start, int count) {
+    for (int i = start; i < start + count; i++) {
+      Assert.assertEquals("value" + i, Bytes.toString(db.get(Bytes.toBytes(i))));
+    }
+  }
+
+  /**
+   * A {@link MetricsContext} that keeps the sum of increments in memory.
+   */
+  private static final class CountingMetricsContext implements MetricsContext {
+
+    private final ConcurrentMap<String, AtomicLong> counts = new ConcurrentHashMap<>();
+
+    long getCount(String metricName) {
+      AtomicLong count = counts.get(metricName);
+      return count == null ? 0L : count.get();
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return ImmutableMap.of();
+    }
+
+    @Override
+    public void increment(String metricName, long value) {
+      counts.computeIfAbsent(metricName, k -> new AtomicLong()).addAndGet(value);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      // no-op
+    }
+  }
+}
@@ -42,6 +42,31 @@ public interface MetricStore {
    */
   void add(Collection<? extends MetricValues> metricValues);
 
+  /**
+   * Returns {@code true} if there are metrics added to this store that are only aggregated in memory for some
+   * resolutions and not yet persisted.
+   */
+  default boolean hasPendingRollup() {
+    return false;
+  }
+
+  /**
+   * Adds {@link MetricValues}s only to the resolutions that are aggregated in memory. This is used to recover the
+   * metrics that were pending when the store was stopped.
+   *
+   * @param metricValues metric values that were added before, but were not persisted to all resolutions
+   */
+  default void replayRollup(Collection<? extends MetricValues> metricValues) {
+    // no-op
+  }
+
+  /**
+   * Persists the metrics that are aggregated in memory.
+   */
+  default void flushRollup() {
+    // no-op
+  }
+
   /**
    * Queries metrics data.
    * @param query query to execute
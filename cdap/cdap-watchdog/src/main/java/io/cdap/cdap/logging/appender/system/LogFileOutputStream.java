@@ -22,6 +22,7 @@ import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.io.Syncable;
 import io.cdap.cdap.logging.serialize.LoggingEvent;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import io.cdap.cdap.logging.write.LogFileIndex;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
@@ -41,25 +42,36 @@ import java.nio.ByteBuffer;
  *
  * Since there is no way to check the state of the underlying file on an exception,
  * all methods of this class assume that the file state is bad on any exception and close the file.
+ *
+ * Along with the log file, a {@link LogFileIndex} is written, with one entry per block of roughly
+ * the sync interval size, so that readers can seek to a time and skip blocks by log level.
  */
 
 class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
+  // Estimated encoded size of an event, excluding the message
+  private static final int ESTIMATED_EVENT_OVERHEAD = 128;
 
   private final Location location;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
+  private final int syncIntervalBytes;
 
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
+  private LogFileIndex.Writer indexWriter;
   private long fileSize;
+  // sync position of the start of the current index block, and the estimated number of bytes appended to it
+  private long blockStart;
+  private long blockBytes;
 
   LogFileOutputStream(Location location, String filePermissions,
                       int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
     this.location = location;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
+    this.syncIntervalBytes = syncIntervalBytes;
 
     Schema schema = serializer.getAvroSchema();
     try {
@@ -68,11 +80,16 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
       this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
       this.dataFileWriter.create(schema, outputStream);
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
+      Location indexLocation = LogFileIndex.getIndexLocation(location);
+      this.indexWriter = new LogFileIndex.Writer(
+        filePermissions.isEmpty() ? indexLocation.getOutputStream() : indexLocation.getOutputStream(filePermissions));
       this.createTime = createTime;
       this.fileSize = 0;
+      this.blockStart = dataFileWriter.sync();
     } catch (IOException e) {
       Closeables.closeQuietly(outputStream);
       Closeables.closeQuietly(dataFileWriter);
+      Closeables.closeQuietly(indexWriter);
       throw e;
     }
   }
@@ -83,17 +100,24 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
 
   void append(ILoggingEvent event) throws IOException {
     // If the event is already a LoggingEvent, we don't need to re-encode.
-    if (event instanceof LoggingEvent) {
+    if (event instanceof LoggingEvent && ((LoggingEvent) event).getEncoded() != null) {
       ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
-      if (encoded != null) {
-        // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
-        dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
-      } else {
-        dataFileWriter.append(((LoggingEvent) event).getRecord());
-      }
-      return;
+      blockBytes += encoded.remaining();
+      // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
+      dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
+    } else {
+      // Estimate the encoded size from the message, since the record is encoded inside the DataFileWriter
+      String message = event.getFormattedMessage();
+      blockBytes += ESTIMATED_EVENT_OVERHEAD + (message == null ? 0 : message.length());
+      dataFileWriter.append(event instanceof LoggingEvent
+                              ? ((LoggingEvent) event).getRecord() : serializer.toGenericRecord(event));
+    }
+    indexWriter.add(event);
+
+    // End the index block when it reaches the sync interval, which also ends the Avro block
+    if (blockBytes >= syncIntervalBytes) {
+      writeIndexBlock();
     }
-    dataFileWriter.append(serializer.toGenericRecord(event));
   }
 
   /**
@@ -114,7 +138,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
 
   @Override
   public void flush() throws IOException {
-    fileSize = dataFileWriter.sync();
+    writeIndexBlock();
   }
 
   @Override
@@ -125,15 +149,33 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
     } else {
       outputStream.flush();
     }
+    // Only write out the index entries after the blocks they describe are synced
+    indexWriter.flush();
   }
 
   @Override
   public void close() throws IOException {
     LOG.trace("Closing file {}", location);
     try {
+      writeIndexBlock();
       dataFileWriter.close();
     } finally {
-      closeable.close();
+      try {
+        indexWriter.close();
+      } finally {
+        closeable.close();
+      }
     }
   }
+
+  /**
+   * Syncs the log file, which ends the current Avro block, and writes the index entry for the events appended
+   * since the last sync.
+   */
+  private void writeIndexBlock() throws IOException {
+    fileSize = dataFileWriter.sync();
+    indexWriter.writeBlock(blockStart, fileSize);
+    blockStart = fileSize;
+    blockBytes = 0;
+  }
 }
@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.logging.filter;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 
 /**
@@ -24,6 +25,14 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 public interface Filter {
   boolean match(ILoggingEvent event);
 
+  /**
+   * Returns {@code false} if this filter cannot match any event of the given log level. This is used to skip
+   * reading blocks of events that only contain events of levels that cannot match.
+   */
+  default boolean mayMatchLevel(Level level) {
+    return true;
+  }
+
   Filter EMPTY_FILTER = new EmptyFilter();
 
   /**
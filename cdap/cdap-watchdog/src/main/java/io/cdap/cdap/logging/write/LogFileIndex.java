@@ -0,0 +1,336 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.google.common.io.ByteStreams;
+import io.cdap.cdap.common.io.Locations;
+import io.cdap.cdap.logging.filter.Filter;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A sidecar index of an Avro log file. The index contains one entry per block of log events, where a block
+ * starts and ends at Avro sync positions. Each entry has the start and end positions of the block in the log file,
+ * the min and max timestamps of the events in the block, and the number of events for each log level.
+ *
+ * The index file is append only, with fixed size entries, so that it can be read while the log file is being written.
+ */
+public final class LogFileIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LogFileIndex.class);
+
+  public static final String FILE_SUFFIX = ".idx";
+
+  private static final int VERSION = 1;
+  private static final Level[] LEVELS = { Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR };
+  private static final int HEADER_SIZE = Integer.BYTES;
+  private static final int ENTRY_SIZE = 4 * Long.BYTES + LEVELS.length * Integer.BYTES;
+
+  private final List<Block> blocks;
+  private final long[] startPositions;
+  // The running max of the block max timestamps, for binary search by time
+  private final long[] maxTimestamps;
+
+  private LogFileIndex(List<Block> blocks) {
+    this.blocks = Collections.unmodifiableList(blocks);
+    this.startPositions = new long[blocks.size()];
+    this.maxTimestamps = new long[blocks.size()];
+    long maxTimestamp = Long.MIN_VALUE;
+    for (int i = 0; i < blocks.size(); i++) {
+      startPositions[i] = blocks.get(i).getStartPosition();
+      maxTimestamp = Math.max(maxTimestamp, blocks.get(i).getMaxTimestamp());
+      maxTimestamps[i] = maxTimestamp;
+    }
+  }
+
+  /**
+   * Returns the location of the index file for the given log file.
+   *
+   * @throws IOException if failed to create the index location, or if the log file has no parent location
+   */
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    Location parent = Locations.getParent(logLocation);
+    if (parent == null) {
+      throw new IOException("Cannot create the index location for log file without parent location " + logLocation);
+    }
+    return parent.append(logLocation.getName() + FILE_SUFFIX);
+  }
+
+  /**
+   * Deletes the index file of the given log file, if it exists. Since the index is only used for reading the log file,
+   * failure to delete is logged and ignored.
+   */
+  public static void deleteIndexQuietly(Location logLocation) {
+    try {
+      Locations.deleteQuietly(getIndexLocation(logLocation));
+    } catch (IOException e) {
+      LOG.debug("Failed to delete the index of log file {}", logLocation, e);
+    }
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @param logLocation location of the log file
+   * @param logFileLength the length of the log file. Index entries for blocks beyond this length are ignored
+   * @return the {@link LogFileIndex}, or {@code null} if the log file has no index
+   * @throws IOException if failed to read the index file
+   */
+  @Nullable
+  public static LogFileIndex read(Location logLocation, long logFileLength) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+    byte[] bytes;
+    try (InputStream is = indexLocation.getInputStream()) {
+      bytes = ByteStreams.toByteArray(is);
+    }
+    if (bytes.length < HEADER_SIZE) {
+      return null;
+    }
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+    if (input.readInt() != VERSION) {
+      return null;
+    }
+    // A partially written entry at the end of the file is ignored
+    int entries = (bytes.length - HEADER_SIZE) / ENTRY_SIZE;
+    List<Block> blocks = new ArrayList<>(entries);
+    for (int i = 0; i < entries; i++) {
+      long startPosition = input.readLong();
+      long endPosition = input.readLong();
+      long minTimestamp = input.readLong();
+      long maxTimestamp = input.readLong();
+      int[] levelCounts = new int[LEVELS.length];
+      for (int j = 0; j < levelCounts.length; j++) {
+        levelCounts[j] = input.readInt();
+      }
+      // The log file content may not be visible yet for the last entries
+      if (endPosition > logFileLength) {
+        break;
+      }
+      blocks.add(new Block(startPosition, endPosition, minTimestamp, maxTimestamp, levelCounts));
+    }
+    return blocks.isEmpty() ? null : new LogFileIndex(blocks);
+  }
+
+  /**
+   * Returns all the blocks in the index, ordered by position.
+   */
+  public List<Block> getBlocks() {
+    return blocks;
+  }
+
+  /**
+   * Returns the end position of the last block in the index. Events after this position are not indexed yet.
+   */
+  public long getEndPosition() {
+    return blocks.get(blocks.size() - 1).getEndPosition();
+  }
+
+  /**
+   * Returns the index of the first block that may contain events with timestamp at or after the given time,
+   * or the number of blocks if there is no such block.
+   */
+  public int findFirstBlock(long timestamp) {
+    int low = 0;
+    int high = maxTimestamps.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (maxTimestamps[mid] < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the block that starts at the given position, or {@code null} if no block starts at that position.
+   */
+  @Nullable
+  public Block getBlock(long startPosition) {
+    int idx = Arrays.binarySearch(startPositions, startPosition);
+    return idx < 0 ? null : blocks.get(idx);
+  }
+
+  private static int getLevelIndex(Level level) {
+    switch (level.toInt()) {
+      case Level.ERROR_INT:
+        return 4;
+      case Level.WARN_INT:
+        return 3;
+      case Level.INFO_INT:
+        return 2;
+      case Level.DEBUG_INT:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Represents a block of log events in the log file.
+   */
+  public static final class Block {
+    private final long startPosition;
+    private final long endPosition;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int[] levelCounts;
+
+    private Block(long startPosition, long endPosition, long minTimestamp, long maxTimestamp, int[] levelCounts) {
+      this.startPosition = startPosition;
+      this.endPosition = endPosition;
+      this.minTimestamp = minTimestamp;
+      this.maxTimestamp = maxTimestamp;
+      this.levelCounts = levelCounts;
+    }
+
+    /**
+     * Returns the sync position in the log file that the block starts at.
+     */
+    public long getStartPosition() {
+      return startPosition;
+    }
+
+    /**
+     * Returns the sync position in the log file that the block ends at, which is the start of the next block.
+     */
+    public long getEndPosition() {
+      return endPosition;
+    }
+
+    public long getMinTimestamp() {
+      return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+      return maxTimestamp;
+    }
+
+    /**
+     * Returns {@code true} if the given filter may match any event in this block, based on the log levels of the
+     * events in the block.
+     */
+    public boolean mayMatch(Filter filter) {
+      for (int i = 0; i < LEVELS.length; i++) {
+        if (levelCounts[i] > 0 && filter.mayMatchLevel(LEVELS[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Writes the index of a log file. Events are added with {@link #add(ILoggingEvent)} after they are appended to the
+   * log file, and a block is completed with {@link #writeBlock(long, long)} after the log file is synced.
+   * Completed entries are buffered until {@link #flush()} is called. The index file is never synced on its own,
+   * since readers ignore missing entries and fall back to scanning the log file.
+   *
+   * This class is not thread safe.
+   */
+  public static final class Writer implements Closeable, Flushable {
+    private final DataOutputStream output;
+    private final int[] levelCounts;
+    private long minTimestamp;
+    private long maxTimestamp;
+    private int events;
+
+    public Writer(OutputStream outputStream) throws IOException {
+      this.output = new DataOutputStream(new BufferedOutputStream(outputStream));
+      this.levelCounts = new int[LEVELS.length];
+      this.output.writeInt(VERSION);
+      reset();
+    }
+
+    /**
+     * Adds an event to the current block.
+     */
+    public void add(ILoggingEvent event) {
+      minTimestamp = Math.min(minTimestamp, event.getTimeStamp());
+      maxTimestamp = Math.max(maxTimestamp, event.getTimeStamp());
+      levelCounts[getLevelIndex(event.getLevel())]++;
+      events++;
+    }
+
+    /**
+     * Returns {@code true} if events were added since the last block was written.
+     */
+    public boolean hasEvents() {
+      return events > 0;
+    }
+
+    /**
+     * Writes the entry for the current block, if any event was added since the last block was written.
+     *
+     * @param startPosition the sync position that the block starts at
+     * @param endPosition the sync position that the block ends at
+     */
+    public void writeBlock(long startPosition, long endPosition) throws IOException {
+      if (!hasEvents()) {
+        return;
+      }
+      output.writeLong(startPosition);
+      output.writeLong(endPosition);
+      output.writeLong(minTimestamp);
+      output.writeLong(maxTimestamp);
+      for (int count : levelCounts) {
+        output.writeInt(count);
+      }
+      reset();
+    }
+
+    @Override
+    public void flush() throws IOException {
+      output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+
+    private void reset() {
+      Arrays.fill(levelCounts, 0);
+      minTimestamp = Long.MAX_VALUE;
+      maxTimestamp = Long.MIN_VALUE;
+      events = 0;
+    }
+  }
+}
@@ -50,6 +50,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -159,6 +160,11 @@ public class LogLocation {
           return ImmutableList.of();
         }
 
+        LogFileIndex index = readIndex();
+        if (index != null) {
+          return readLogPrev(dataFileReader, index, logFilter, fromTimeMs, maxEvents);
+        }
+
         // Calculate skipLen based on fileLength
         long length = location.length();
         LOG.trace("File length {} {}", location, length);
@@ -206,6 +212,44 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads the log events before the given time using the {@link LogFileIndex} of the file. The index blocks are read
+   * backwards, skipping the blocks that only have events after the given time, or only have events with
+   * log levels that cannot match the filter.
+   */
+  private Collection<LogEvent> readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index,
+                                           Filter logFilter, long fromTimeMs, int maxEvents) throws IOException {
+    Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
+    int count = 0;
+
+    // Read the events that are not indexed yet, in case the file is still being written
+    dataFileReader.seek(index.getEndPosition());
+    List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, -1);
+    if (!logSegment.isEmpty()) {
+      logSegments.addFirst(logSegment);
+      count += logSegment.size();
+    }
+
+    List<LogFileIndex.Block> blocks = index.getBlocks();
+    for (int i = blocks.size() - 1; i >= 0 && count < maxEvents; i--) {
+      LogFileIndex.Block block = blocks.get(i);
+      if (block.getMinTimestamp() > fromTimeMs || !block.mayMatch(logFilter)) {
+        continue;
+      }
+      dataFileReader.seek(block.getStartPosition());
+      logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, block.getEndPosition());
+      if (!logSegment.isEmpty()) {
+        logSegments.addFirst(logSegment);
+        count += logSegment.size();
+      }
+      LOG.trace("Read log events {} from position {} to endPosition {}",
+                count, block.getStartPosition(), block.getEndPosition());
+    }
+
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -259,6 +303,9 @@ public class LogLocation {
     private final long maxEvents;
 
     private DataFileReader<GenericRecord> dataFileReader;
+    private LogFileIndex index;
+    // the start position of the last block that was checked against the index
+    private long checkedBlockStart = -1;
 
     private ILoggingEvent loggingEvent;
     private GenericRecord datum;
@@ -276,7 +323,16 @@ public class LogLocation {
 
       try {
         dataFileReader = createReader();
-        if (dataFileReader.hasNext()) {
+        index = readIndex();
+        if (index != null) {
+          // Seek to the first block that may have events at or after fromTimeMs. If there is no such block,
+          // seek to the end of the index, to read the events that are not indexed yet.
+          List<LogFileIndex.Block> blocks = index.getBlocks();
+          int blockIdx = index.findFirstBlock(fromTimeMs);
+          long position = blockIdx < blocks.size() ? blocks.get(blockIdx).getStartPosition() : index.getEndPosition();
+          LOG.trace("Seeking to pos {} from index", position);
+          dataFileReader.seek(position);
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
           loggingEvent.prepareForDeferredProcessing();
@@ -316,6 +372,9 @@ public class LogLocation {
       try {
         // read events from file
         while (next == null && dataFileReader.hasNext()) {
+          if (skipBlock()) {
+            continue;
+          }
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
           loggingEvent.prepareForDeferredProcessing();
 
@@ -338,6 +397,30 @@ public class LogLocation {
       }
     }
 
+    /**
+     * Skips the current block if it is the start of an index block that has no event that can match the filter.
+     *
+     * @return {@code true} if the block was skipped
+     */
+    private boolean skipBlock() throws IOException {
+      if (index == null) {
+        return false;
+      }
+      long blockStart = dataFileReader.previousSync();
+      if (blockStart == checkedBlockStart) {
+        return false;
+      }
+      checkedBlockStart = blockStart;
+      LogFileIndex.Block block = index.getBlock(blockStart);
+      if (block == null || block.mayMatch(logFilter)) {
+        return false;
+      }
+      LOG.trace("Skipping block from pos {} to {}", block.getStartPosition(), block.getEndPosition());
+      dataFileReader.seek(block.getEndPosition());
+      prevTimestamp = block.getMaxTimestamp();
+      return true;
+    }
+
     @Override
     public void close() {
       try {
@@ -371,6 +454,24 @@ public class LogLocation {
     }
   }
 
+  /**
+   * Reads the {@link LogFileIndex} of the log file. Only files written by the current log framework have an index.
+   *
+   * @return the index, or {@code null} if the index is not available
+   */
+  @Nullable
+  private LogFileIndex readIndex() {
+    if (!VERSION_1.equals(getFrameworkVersion())) {
+      return null;
+    }
+    try {
+      return LogFileIndex.read(location, location.length());
+    } catch (IOException e) {
+      READ_FAILURE_LOG.warn("Failed to read index of log file {}. Reading the log file without index.", location, e);
+      return null;
+    }
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
@@ -36,6 +36,9 @@ import org.slf4j.LoggerFactory;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -51,7 +54,8 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
   private static final long CACHE_EXPIRE_MINUTES = 1;
 
   private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  // Contexts that have metrics emitted recently. Each context holds its own emitters.
+  private final Set<MetricsContextImpl> activeContexts;
   // maximum number of milliseconds to sleep between each publish
   private final long publishIntervalInMillis;
   private final CountDownLatch shutdownLatch;
@@ -60,28 +64,13 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     // the longest sleep time will be 1 min
     this.publishIntervalInMillis = Math.min(publishIntervalInMillis, Constants.Metrics.PROCESS_INTERVAL_MILLIS);
     this.shutdownLatch = new CountDownLatch(1);
+    // The same context instance is returned for the same set of tags, so that metrics operations on the context
+    // don't need to lookup emitters by the tags. A context that is expired from this cache still works
+    // if someone is holding on to it.
     this.collectors = CacheBuilder.newBuilder()
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
       .build(createCollectorLoader());
-
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this.activeContexts = ConcurrentHashMap.newKeySet();
   }
 
   /**
@@ -128,7 +117,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
 
     LOG.trace("Start log collection for timestamp {}", timestamp);
 
-    Iterator<MetricValues> metrics = getMetrics(timestamp);
+    Iterator<MetricValues> metrics = getMetrics(currentTimeMillis);
     try {
       publish(metrics);
     } catch (Throwable t) {
@@ -171,30 +160,23 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     shutdownLatch.countDown();
   }
 
-  private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+  private Iterator<MetricValues> getMetrics(long currentTimeMillis) {
+    long timestamp = TimeUnit.MILLISECONDS.toSeconds(currentTimeMillis);
+    long expireTime = currentTimeMillis - TimeUnit.MINUTES.toMillis(CACHE_EXPIRE_MINUTES);
+    Iterator<MetricsContextImpl> iterator = activeContexts.iterator();
+
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
-          // +1 because we add extra metric about how many metric values did we emit in this context (see below)
-          List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
-          for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
-            // skip increment by 0
-            if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
-              continue;
-            }
-            metricValues.add(metricValue);
-          }
+          MetricsContextImpl context = iterator.next();
+          List<MetricValue> metricValues = context.emit(expireTime);
 
           if (metricValues.isEmpty()) {
-            // skip if there are no metric values to send
+            // skip if there are no metric values to send, and stop tracking the context if it has been idle
+            if (context.getLastActiveMillis() < expireTime) {
+              context.deactivate();
+            }
             continue;
           }
 
@@ -202,7 +184,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
 
           LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          return new MetricValues(context.getTags(), timestamp, metricValues);
         }
         return endOfData();
       }
@@ -218,22 +200,46 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     };
   }
 
+  /**
+   * The {@link MetricsContext} implementation, which holds the emitters of the metrics in the context.
+   * A context is added to the {@link #activeContexts} when a metric is first emitted to it, and is removed by the
+   * publishing thread when no metric is emitted for {@link #CACHE_EXPIRE_MINUTES}.
+   */
   private final class MetricsContextImpl implements MetricsContext {
 
     private final Map<String, String> tags;
+    private final ConcurrentMap<String, AggregatedMetricsEmitter> emitters;
+    // whether this context is in the activeContexts set
+    private volatile boolean active;
+    // the last time in milliseconds that any metric was emitted. It is only accessed by the publishing thread.
+    private long lastActiveMillis;
 
     private MetricsContextImpl(final Map<String, String> tags) {
       this.tags = ImmutableMap.copyOf(tags);
+      this.emitters = new ConcurrentHashMap<>();
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      AggregatedMetricsEmitter emitter = getEmitter(metricName);
+      long remaining = value;
+      while (!emitter.increment(remaining)) {
+        // The emitter was retired concurrently. Move what is left in it, including this increment, to a new one.
+        remaining = emitter.drain();
+        if (remaining == 0) {
+          break;
+        }
+        emitter = getEmitter(metricName);
+      }
+      activate();
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      while (!getEmitter(metricName).gauge(value)) {
+        // The emitter was retired concurrently, retry with a new one
+      }
+      activate();
     }
 
     @Override
@@ -259,5 +265,76 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       allTags.putAll(tags);
       return collectors.getUnchecked(allTags);
     }
+
+    private AggregatedMetricsEmitter getEmitter(String metricName) {
+      // Use get first as it doesn't lock
+      AggregatedMetricsEmitter emitter = emitters.get(metricName);
+      if (emitter != null && !emitter.isRetired()) {
+        return emitter;
+      }
+      // Replace a retired emitter that is not yet removed by the publishing thread
+      return emitters.compute(metricName, (name, existing) ->
+        existing == null || existing.isRetired() ? new AggregatedMetricsEmitter(name) : existing);
+    }
+
+    private void activate() {
+      if (!active) {
+        active = true;
+        activeContexts.add(this);
+      }
+    }
+
+    /**
+     * Removes this context from the active contexts. This method is only called from the publishing thread.
+     */
+    private void deactivate() {
+      activeContexts.remove(this);
+      active = false;
+      // Reactivate if there is metric emitted concurrently that might have seen the context as active
+      for (AggregatedMetricsEmitter emitter : emitters.values()) {
+        if (emitter.hasValue()) {
+          activate();
+          return;
+        }
+      }
+    }
+
+    /**
+     * Emits all the metrics in this context. Metrics that are not emitted since the given expire time
+     * are removed from this context. This method is only called from the publishing thread.
+     *
+     * @param expireTime the time in milliseconds before which metric emitters are considered as expired
+     * @return a mutable list of emitted metric values
+     */
+    private List<MetricValue> emit(long expireTime) {
+      // +1 because we add extra metric about how many metric values did we emit in this context
+      List<MetricValue> metricValues = Lists.newArrayListWithCapacity(emitters.size() + 1);
+      for (Map.Entry<String, AggregatedMetricsEmitter> entry : emitters.entrySet()) {
+        AggregatedMetricsEmitter emitter = entry.getValue();
+        MetricValue metricValue = emitter.emit();
+        // skip increment by 0
+        if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
+          if (emitter.getLastActiveMillis() < expireTime && emitter.retire()) {
+            emitters.remove(entry.getKey(), emitter);
+            // Move increments that raced with the retirement to a new emitter
+            long remaining = emitter.drain();
+            if (remaining != 0) {
+              increment(entry.getKey(), remaining);
+            }
+          }
+          continue;
+        }
+        metricValues.add(metricValue);
+      }
+
+      if (!metricValues.isEmpty()) {
+        lastActiveMillis = System.currentTimeMillis();
+      }
+      return metricValues;
+    }
+
+    private long getLastActiveMillis() {
+      return lastActiveMillis;
+    }
   }
 }
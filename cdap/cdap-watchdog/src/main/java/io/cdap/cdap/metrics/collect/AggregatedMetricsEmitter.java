@@ -22,19 +22,35 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ *
+ * Counter increments are accumulated with a {@link LongAdder}, so that concurrent increments from different threads
+ * update different cells instead of contending on a single counter. Gauge values are kept separately, since
+ * setting a value is not something a {@link LongAdder} can do atomically. Only increments are lock free. Reading and
+ * resetting the values is synchronized, so that concurrent calls don't reset the same counter value twice.
+ *
+ * An emitter that is idle can be retired, after which the owner replaces it with a new one. Callers of
+ * {@link #increment(long)} and {@link #gauge(long)} that raced with the retirement are told so, and move their value
+ * to the new emitter.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
+  // counter value accumulated since the last emit or gauge
+  private final LongAdder value;
+  // the last gauge value set
+  private final AtomicLong gaugeValue;
   // specifies if the metric type is gauge or counter
   private final AtomicBoolean gaugeUsed;
+  // the last time in milliseconds that a value was emitted. It is only accessed by the thread that calls emit.
+  private long lastActiveMillis;
+  // whether this emitter was retired and no longer accepts values
+  private volatile boolean retired;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -42,25 +58,99 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
+    this.value = new LongAdder();
+    this.gaugeValue = new AtomicLong();
     this.gaugeUsed = new AtomicBoolean(false);
+    this.lastActiveMillis = System.currentTimeMillis();
   }
 
-  void increment(long value) {
-    this.value.addAndGet(value);
+  /**
+   * Adds the given value to the counter.
+   *
+   * @return {@code true} if the value was added, or {@code false} if this emitter was retired concurrently. In the
+   *         latter case, the caller should {@link #drain() drain} this emitter and add the result to a new emitter
+   */
+  boolean increment(long value) {
+    this.value.add(value);
+    // The value is added before reading the flag. Either the retire() call sees the value, or this call sees the flag.
+    return !retired;
   }
 
-
   @Override
-  public MetricValue emit() {
-    // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
+  public synchronized MetricValue emit() {
     MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
+    long value = drain();
+    if (type == MetricType.GAUGE) {
+      // Increments after the gauge was set are added on top of the gauge value
+      value += gaugeValue.get();
+    }
+    if (type == MetricType.GAUGE || value != 0) {
+      lastActiveMillis = System.currentTimeMillis();
+    }
     return new MetricValue(name, type, value);
   }
 
-  public void gauge(long value) {
-    this.value.set(value);
+  /**
+   * Sets the gauge value.
+   *
+   * @return {@code true} if the value was set, or {@code false} if this emitter was retired, in which case the caller
+   *         should set the value on a new emitter
+   */
+  synchronized boolean gauge(long value) {
+    if (retired) {
+      return false;
+    }
+    // Increments before the gauge was set are superseded by it
+    drain();
+    this.gaugeValue.set(value);
     this.gaugeUsed.set(true);
+    return true;
+  }
+
+  /**
+   * Retires this emitter if it has no value that is not yet emitted. After this method returned {@code true}, the
+   * caller should stop using this emitter, and {@link #drain() drain} it to move increments that were added
+   * concurrently to a new emitter.
+   *
+   * @return {@code true} if this emitter is retired
+   */
+  synchronized boolean retire() {
+    if (hasValue()) {
+      return false;
+    }
+    retired = true;
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if this emitter was retired.
+   */
+  boolean isRetired() {
+    return retired;
+  }
+
+  /**
+   * Returns {@code true} if there is value that is not yet emitted.
+   */
+  boolean hasValue() {
+    return gaugeUsed.get() || value.sum() != 0;
+  }
+
+  /**
+   * Returns the last time in milliseconds that the {@link #emit()} method emitted a gauge or a non-zero counter,
+   * or the creation time if it never did.
+   */
+  long getLastActiveMillis() {
+    return lastActiveMillis;
+  }
+
+  /**
+   * Removes and returns the accumulated counter value. Unlike {@link LongAdder#sumThenReset()}, subtracting the
+   * sum read doesn't lose increments that happen concurrently with it.
+   */
+  synchronized long drain() {
+    long sum = value.sum();
+    value.add(-sum);
+    return sum;
   }
 }
@@ -51,6 +51,7 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -88,6 +89,9 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final int queueSize;
   private final BlockingDeque<MetricValues> metricsFromAllTopics;
   private final ConcurrentMap<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap;
+  // Ids of the last messages that have metrics persisted, including the metrics buffered in the MetricsWriter.
+  // An empty id means all messages in the topic need to be replayed.
+  private final ConcurrentMap<TopicIdMetaKey, byte[]> rollupMessageIds;
   private final AtomicBoolean persistingFlag;
   // maximum number of milliseconds to sleep between each run of fetching & processing new metrics, the max sleep time
   // is 1 min
@@ -150,6 +154,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.processMetricsThreads = new ArrayList<>();
     this.metricsFromAllTopics = new LinkedBlockingDeque<>(queueSize);
     this.topicProcessMetaMap = new ConcurrentHashMap<>();
+    this.rollupMessageIds = new ConcurrentHashMap<>();
     this.persistingFlag = new AtomicBoolean();
     // the max sleep time will be 1 min
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis < Constants.Metrics.PROCESS_INTERVAL_MILLIS ?
@@ -189,15 +194,33 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
 
     for (TopicId topic : metricsTopics) {
       TopicProcessMeta topicProcessMeta = null;
+      byte[] rollupMessageId = null;
       TopicIdMetaKey topicRowKey = new TopicIdMetaKey(topic);
       try {
         topicProcessMeta = metaTable.getTopicProcessMeta(topicRowKey);
+        rollupMessageId = metaTable.getRollupMessageId(topicRowKey);
       } catch (Exception e) {
         LOG.warn("Cannot retrieve last processed MessageId for topic: {}", topic, e);
       }
+      if (topicProcessMeta != null && topicProcessMeta.getMessageId() != null) {
+        if (rollupMessageId != null && !Bytes.equals(rollupMessageId, topicProcessMeta.getMessageId())) {
+          replayBufferedMetrics(topic, rollupMessageId, topicProcessMeta.getMessageId());
+        }
+        rollupMessageIds.put(topicRowKey, topicProcessMeta.getMessageId());
+      }
       processMetricsThreads.add(new ProcessMetricsThread(topicRowKey, topicProcessMeta));
     }
 
+    if (!rollupMessageIds.isEmpty()) {
+      try {
+        // Persist the replayed metrics, so that they don't need to be replayed again
+        metricsWriter.flushBufferedMetrics();
+        metaTable.saveMetricsProcessorStats(Collections.emptyMap(), rollupMessageIds);
+      } catch (Exception e) {
+        LOG.warn("Failed to persist replayed metrics.", e);
+      }
+    }
+
     if (!isRunning()) {
       return;
     }
@@ -217,7 +240,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
 
     // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
     // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
-    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
+    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap, true);
   }
 
   @Override
@@ -239,11 +262,15 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
    *                            TopicProcessMeta} which has info on messageId and processing stats
    */
   private void persistMetricsAndTopicProcessMeta(Deque<MetricValues> metricValues,
-                                                 Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+                                                 Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap,
+                                                 boolean flush) {
     try {
       if (!metricValues.isEmpty()) {
         persistMetrics(metricValues, topicProcessMetaMap);
       }
+      if (flush) {
+        metricsWriter.flushBufferedMetrics();
+      }
       persistTopicProcessMeta(topicProcessMetaMap);
     } catch (Exception e) {
       LOG.warn("Failed to persist metrics.", e);
@@ -255,13 +282,94 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       // messageIds can be empty if the current thread fetches nothing while other threads keep fetching new metrics
       // and haven't updated messageId's of the corresponding topics
       if (!messageIds.isEmpty()) {
-        metaTable.saveMetricsProcessorStats(messageIds);
+        metaTable.saveMetricsProcessorStats(messageIds, updateRollupMessageIds(messageIds));
       }
     } catch (Exception e) {
       LOG.warn("Failed to update processing stats of consumed messages.", e);
     }
   }
 
+  /**
+   * Updates the ids of the last messages that don't need to be replayed on restart. If the {@link MetricsWriter}
+   * has no buffered metrics, all the metrics up to the persisted message ids are persisted. Otherwise, the messages
+   * after the last ids will be replayed.
+   *
+   * @param messageIds a map from topic to the last persisted messageId
+   * @return a map from topic to the id of the last message that doesn't need to be replayed
+   */
+  private Map<TopicIdMetaKey, byte[]> updateRollupMessageIds(Map<TopicIdMetaKey, TopicProcessMeta> messageIds) {
+    boolean buffered = metricsWriter.hasBufferedMetrics();
+    for (Map.Entry<TopicIdMetaKey, TopicProcessMeta> entry : messageIds.entrySet()) {
+      byte[] messageId = entry.getValue().getMessageId();
+      if (messageId == null) {
+        continue;
+      }
+      if (buffered) {
+        // For topic that never had a message persisted, all messages need to be replayed
+        rollupMessageIds.putIfAbsent(entry.getKey(), Bytes.EMPTY_BYTE_ARRAY);
+      } else {
+        rollupMessageIds.put(entry.getKey(), messageId);
+      }
+    }
+    return rollupMessageIds;
+  }
+
+  /**
+   * Replays the metrics in the messages after the given start message up to the given end message, to the
+   * {@link MetricsWriter} for recovering metrics that were buffered but not persisted before the last stop.
+   *
+   * @param topicId the topic to replay
+   * @param startMessageId the id of the message to start replaying after, or an empty array to replay from the
+   *                       beginning of the topic
+   * @param endMessageId the id of the last message to replay
+   */
+  private void replayBufferedMetrics(TopicId topicId, byte[] startMessageId, byte[] endMessageId) {
+    PayloadInputStream payloadInput = new PayloadInputStream();
+    BinaryDecoder decoder = new BinaryDecoder(payloadInput);
+    byte[] lastMessageId = startMessageId;
+    long replayed = 0L;
+    boolean done = false;
+    try {
+      while (!done && !stopping) {
+        MessageFetcher fetcher = messagingService.prepareFetch(topicId);
+        fetcher.setLimit(fetcherLimit);
+        if (lastMessageId.length == 0) {
+          fetcher.setStartTime(0L);
+        } else {
+          fetcher.setStartMessage(lastMessageId, false);
+        }
+
+        List<MetricValues> metricValues = new ArrayList<>();
+        try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+          done = !iterator.hasNext();
+          while (!done && iterator.hasNext()) {
+            RawMessage input = iterator.next();
+            if (Bytes.compareTo(input.getId(), endMessageId) > 0) {
+              done = true;
+              break;
+            }
+            lastMessageId = input.getId();
+            done = Bytes.equals(lastMessageId, endMessageId);
+            try {
+              payloadInput.reset(input.getPayload());
+              metricValues.add(metricReader.read(decoder, metricSchema));
+            } catch (IOException e) {
+              LOG.warn("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
+            }
+          }
+        }
+        if (!metricValues.isEmpty()) {
+          metricsWriter.replayBufferedMetrics(metricValues);
+          replayed += metricValues.size();
+        }
+      }
+      LOG.info("Replayed {} buffered metrics from topic {}", replayed, topicId);
+    } catch (Exception e) {
+      // Don't block the processing of new metrics. The metrics not replayed will be missing in some resolutions.
+      LOG.warn("Failed to replay buffered metrics from topic {}.", topicId, e);
+    }
+  }
+
   /**
    * Persist metrics into metric store
    *
@@ -450,7 +558,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         }
         // Persist the copy of metrics and MessageId's
 
-        persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy);
+        persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy, false);
       } catch (Exception e) {
         LOG.warn("Failed to persist metrics. Will be retried in next iteration.", e);
       } finally {
@@ -41,6 +41,21 @@ public class MetricStoreMetricsWriter implements MetricsWriter {
     this.metricStore.add(metricValues);
   }
 
+  @Override
+  public boolean hasBufferedMetrics() {
+    return metricStore.hasPendingRollup();
+  }
+
+  @Override
+  public void replayBufferedMetrics(Collection<MetricValues> metricValues) {
+    metricStore.replayRollup(metricValues);
+  }
+
+  @Override
+  public void flushBufferedMetrics() {
+    metricStore.flushRollup();
+  }
+
   @Override
   public void initialize(MetricsContext metricsContext) {
     this.metricStore.setMetricsContext(metricsContext);
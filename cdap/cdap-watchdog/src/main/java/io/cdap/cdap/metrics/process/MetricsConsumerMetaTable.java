@@ -19,6 +19,7 @@ package io.cdap.cdap.metrics.process;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -29,6 +30,10 @@ import javax.annotation.Nullable;
  */
 public class MetricsConsumerMetaTable {
   private static final byte[] MESSAGE_ID_COLUMN = Bytes.toBytes("m");
+  // Id of the last message with metrics persisted to all resolutions, including metrics aggregated in memory
+  private static final byte[] ROLLUP_MESSAGE_ID_COLUMN = Bytes.toBytes("rm");
+  // Value stored for an empty rollup message id, since an empty value is treated as deleted by some tables
+  private static final byte[] ROLLUP_FROM_START = new byte[] { 0 };
 
   private static final byte[] PROCESS_COUNT = Bytes.toBytes("pct");
   private static final byte[] PROCESS_TIMESTAMP_OLDEST = Bytes.toBytes("pto");
@@ -42,6 +47,17 @@ public class MetricsConsumerMetaTable {
   }
 
   public <T extends MetricsMetaKey> void saveMetricsProcessorStats(Map<T, TopicProcessMeta> messageIds) {
+    saveMetricsProcessorStats(messageIds, Collections.emptyMap());
+  }
+
+  /**
+   * Saves the processing stats together with the ids of the last messages that are persisted to all resolutions.
+   *
+   * @param messageIds map from key to the processing stats to save
+   * @param rollupMessageIds map from key to the id of the last message that doesn't need to be replayed
+   */
+  public <T extends MetricsMetaKey> void saveMetricsProcessorStats(Map<T, TopicProcessMeta> messageIds,
+                                                                   Map<T, byte[]> rollupMessageIds) {
     SortedMap<byte[], SortedMap<byte[], byte[]>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
     for (Map.Entry<T, TopicProcessMeta> entry : messageIds.entrySet()) {
       TopicProcessMeta metaInfo = entry.getValue();
@@ -56,6 +72,10 @@ public class MetricsConsumerMetaTable {
         updates.put(entry.getKey().getKey(), columns);
       }
     }
+    for (Map.Entry<T, byte[]> entry : rollupMessageIds.entrySet()) {
+      updates.computeIfAbsent(entry.getKey().getKey(), k -> new TreeMap<>(Bytes.BYTES_COMPARATOR))
+        .put(ROLLUP_MESSAGE_ID_COLUMN, entry.getValue().length == 0 ? ROLLUP_FROM_START : entry.getValue());
+    }
     metaTable.putBytes(updates);
   }
 
@@ -79,6 +99,18 @@ public class MetricsConsumerMetaTable {
     return new TopicProcessMeta(messageId, oldestTs, latestTs, processedCount, lastProcessedTs);
   }
 
+  /**
+   * Gets the id of the last message with metrics persisted to all resolutions.
+   *
+   * @param metaKey Object form of the key to get value with.
+   * @return The message id, an empty array if no message was persisted to all resolutions,
+   *         or {@code null} if it is not found.
+   */
+  @Nullable
+  public synchronized <T extends MetricsMetaKey> byte[] getRollupMessageId(T metaKey) {
+    byte[] messageId = metaTable.get(metaKey.getKey(), ROLLUP_MESSAGE_ID_COLUMN);
+    return Bytes.equals(ROLLUP_FROM_START, messageId) ? Bytes.EMPTY_BYTE_ARRAY : messageId;
+  }
 
   private synchronized long getLong(byte[] rowKey, byte[] column) {
     byte[] result = metaTable.get(rowKey, column);
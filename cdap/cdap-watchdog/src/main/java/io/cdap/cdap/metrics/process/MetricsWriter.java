@@ -35,6 +35,33 @@ public interface MetricsWriter extends Closeable {
    */
   void write(Collection<MetricValues> metricValues);
 
+  /**
+   * Returns whether some of the metrics written by {@link #write(Collection)} are only buffered in memory.
+   * Buffered metrics are lost if the process stops, hence the messages containing them are replayed through
+   * {@link #replayBufferedMetrics(Collection)} on restart.
+   *
+   * @return {@code true} if there are buffered metrics
+   */
+  default boolean hasBufferedMetrics() {
+    return false;
+  }
+
+  /**
+   * Method to write metrics that were written before, but were still buffered when the process stopped.
+   *
+   * @param metricValues metric values to replay
+   */
+  default void replayBufferedMetrics(Collection<MetricValues> metricValues) {
+    // no-op
+  }
+
+  /**
+   * Method to write all the buffered metrics to the target endpoint
+   */
+  default void flushBufferedMetrics() {
+    // no-op
+  }
+
   /**
    * Init method to setup configurations for this MetricsWriter
    *
@@ -35,6 +35,7 @@ import io.cdap.cdap.api.metrics.MetricDataQuery;
 import io.cdap.cdap.api.metrics.MetricSearchQuery;
 import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.metrics.TagValue;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -42,6 +43,7 @@ import io.cdap.cdap.common.utils.TimeMathParser;
 import io.cdap.cdap.proto.MetricQueryRequest;
 import io.cdap.cdap.proto.MetricQueryResult;
 import io.cdap.cdap.proto.MetricTagValue;
+import io.cdap.cdap.proto.id.NamespaceId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -101,6 +103,8 @@ public class MetricsQueryHelper {
 
       .put(Constants.Metrics.Tag.PRODUCER, "producer")
       .put(Constants.Metrics.Tag.CONSUMER, "consumer")
+      .put(Constants.Metrics.Tag.TOPIC, "topic")
+      .put(Constants.Metrics.Tag.PARTITION, "partition")
 
       .put(Constants.Metrics.Tag.MAPREDUCE, "mapreduce")
       .put(Constants.Metrics.Tag.MR_TASK_TYPE, "tasktype")
@@ -129,6 +133,17 @@ public class MetricsQueryHelper {
     this.minResolution = minimumResolution < 60 ? minimumResolution : 60;
   }
 
+  /**
+   * Sets the {@link MetricsCollectionService} for emitting metrics of the metric store used for queries,
+   * such as the query cache hit and miss counts.
+   */
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    metricStore.setMetricsContext(metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS)));
+  }
+
   public List<MetricTagValue> searchTags(List<String> tags) {
     // we want to search the entire range, so startTimestamp is '0' and end Timestamp is Integer.MAX_VALUE and
     // limit is -1 , to include the entire search result.
@@ -24,7 +24,6 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
-import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
@@ -85,16 +84,19 @@ public class DefaultMetricStore implements MetricStore {
   private static final String BY_DATASET = "dataset";
   private static final String BY_PROFILE = "profile";
   private static final String BY_COMPONENT = "component";
+  private static final String BY_PARTITION = "partition";
   private static final Map<String, AggregationAlias> AGGREGATIONS_ALIAS_DIMENSIONS =
     ImmutableMap.of(BY_WORKFLOW,
                     new AggregationAlias(ImmutableMap.of(Constants.Metrics.Tag.RUN_ID,
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
-  private final Supplier<Cube> cube;
+  private final Supplier<DefaultCube> cube;
   private final Supplier<MetricsConsumerMetaTable> metaTableSupplier;
   private MetricsContext metricsContext;
   private final List<TopicId> metricsTopics;
   private final Map<Integer, Long> resolutionTTLMap;
+  @Nullable
+  private final MetricsQueryCache queryCache;
 
 
   static {
@@ -193,6 +195,14 @@ public class DefaultMetricStore implements MetricStore {
       // i.e. for components only
       ImmutableList.of(Constants.Metrics.Tag.NAMESPACE, Constants.Metrics.Tag.COMPONENT)));
 
+    // Partitions of system message subscribers, which are not distinguished by the component aggregation
+    aggs.put(BY_PARTITION, new DefaultAggregation(
+      ImmutableList.of(Constants.Metrics.Tag.NAMESPACE, Constants.Metrics.Tag.COMPONENT,
+                       Constants.Metrics.Tag.TOPIC, Constants.Metrics.Tag.CONSUMER, Constants.Metrics.Tag.PARTITION),
+      // i.e. for partitioned subscribers only
+      ImmutableList.of(Constants.Metrics.Tag.NAMESPACE, Constants.Metrics.Tag.COMPONENT,
+                       Constants.Metrics.Tag.TOPIC, Constants.Metrics.Tag.CONSUMER, Constants.Metrics.Tag.PARTITION)));
+
     AGGREGATIONS = Collections.unmodifiableMap(aggs);
   }
 
@@ -217,15 +227,26 @@ public class DefaultMetricStore implements MetricStore {
       // TODO: remove roll time from the supplier api, https://issues.cask.co/browse/CDAP-14730
       return dsFactory.getOrCreateFactTable(resolution);
     };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+    boolean rollup = cConf.getBoolean(Constants.Metrics.CUBE_ROLLUP_ENABLED);
+    long rollupMaxDelayMillis = cConf.getLong(Constants.Metrics.CUBE_ROLLUP_MAX_DELAY_MS);
+    int rollupMaxBufferSize = cConf.getInt(Constants.Metrics.CUBE_ROLLUP_MAX_BUFFER_SIZE);
+    this.cube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
-        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
+      public DefaultCube get() {
+        DefaultCube cube = rollup
+          ? new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS,
+                            rollupMaxDelayMillis, rollupMaxBufferSize)
+          : new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
         cube.setMetricsCollector(metricsContext);
         return cube;
       }
     });
 
+    long queryCacheSize = cConf.getLong(Constants.Metrics.QUERY_CACHE_MAX_DATA_POINTS);
+    this.queryCache = queryCacheSize > 0
+      ? new MetricsQueryCache(queryCacheSize, cConf.getLong(Constants.Metrics.QUERY_CACHE_SETTLE_SECONDS))
+      : null;
+
     this.metaTableSupplier = Suppliers.memoize(dsFactory::createConsumerMeta);
     int topicNumbers = cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM);
     String topicPrefix = cConf.get(Constants.Metrics.TOPIC_PREFIX);
@@ -247,6 +268,25 @@ public class DefaultMetricStore implements MetricStore {
 
   @Override
   public void add(Collection<? extends MetricValues> metricValues) {
+    cube.get().add(toCubeFacts(metricValues));
+  }
+
+  @Override
+  public boolean hasPendingRollup() {
+    return cube.get().hasPendingRollup();
+  }
+
+  @Override
+  public void replayRollup(Collection<? extends MetricValues> metricValues) {
+    cube.get().replayRollup(toCubeFacts(metricValues));
+  }
+
+  @Override
+  public void flushRollup() {
+    cube.get().flushRollup();
+  }
+
+  private List<CubeFact> toCubeFacts(Collection<? extends MetricValues> metricValues) {
     List<CubeFact> facts = Lists.newArrayListWithCapacity(metricValues.size());
     for (MetricValues metricValue : metricValues) {
       String scope = metricValue.getTags().get(Constants.Metrics.Tag.SCOPE);
@@ -263,11 +303,19 @@ public class DefaultMetricStore implements MetricStore {
         .addMeasurements(metrics);
       facts.add(fact);
     }
-    cube.get().add(facts);
+    return facts;
   }
 
   @Override
   public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+    if (queryCache == null || !MetricsQueryCache.isCacheable(query, TOTALS_RESOLUTION)) {
+      return queryCube(query);
+    }
+    return queryCache.query(query, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
+                            this::queryCube, metricsContext);
+  }
+
+  private Collection<MetricTimeSeries> queryCube(MetricDataQuery query) {
     Collection<TimeSeries> cubeResult = cube.get().query(buildCubeQuery(query));
     List<MetricTimeSeries> result = Lists.newArrayList();
     for (TimeSeries timeSeries : cubeResult) {
@@ -304,6 +352,7 @@ public class DefaultMetricStore implements MetricStore {
   @Override
   public void delete(MetricDeleteQuery query) {
     cube.get().delete(buildCubeDeleteQuery(query));
+    invalidateQueryCache();
   }
 
   @Override
@@ -374,6 +423,13 @@ public class DefaultMetricStore implements MetricStore {
     CubeDeleteQuery query = new CubeDeleteQuery(0, timestamp, resolution, Collections.emptyMap(),
                                                 Collections.emptySet(), strings -> true);
     cube.get().delete(query);
+    invalidateQueryCache();
+  }
+
+  private void invalidateQueryCache() {
+    if (queryCache != null) {
+      queryCache.invalidateAll();
+    }
   }
 
   private List<DimensionValue> toTagValues(List<io.cdap.cdap.api.metrics.TagValue> input) {
@@ -0,0 +1,291 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.store;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of metrics query results. Results are cached by the query without the time range. On a repeated query,
+ * only the time range after the cached data is queried, and merged with the cached data.
+ *
+ * Only data points older than the settle time are cached, since newer data points may still be updated by the
+ * metrics processor. A cached result is dropped after a maximum age since it was first queried, even if it keeps
+ * being extended by repeated queries, so that data points updated after the settle time eventually show up.
+ */
+final class MetricsQueryCache {
+
+  private static final String HIT_METRIC = "metrics.query.cache.hit";
+  private static final String MISS_METRIC = "metrics.query.cache.miss";
+  private static final long MAX_AGE_SECONDS = TimeUnit.MINUTES.toSeconds(10);
+
+  private final long settleSeconds;
+  private final Cache<QueryKey, CachedResult> cache;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxDataPoints maximum number of data points to cache
+   * @param settleSeconds number of seconds after which a data point is not expected to change
+   */
+  MetricsQueryCache(long maxDataPoints, long settleSeconds) {
+    this.settleSeconds = settleSeconds;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxDataPoints)
+      .weigher((QueryKey key, CachedResult value) -> value.dataPoints + 1)
+      .expireAfterWrite(MAX_AGE_SECONDS, TimeUnit.SECONDS)
+      .build();
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+  }
+
+  /**
+   * Returns {@code true} if the result of the given query can be cached. Queries with interpolation, or with
+   * aggregation over partitions of data points, cannot be computed incrementally.
+   */
+  static boolean isCacheable(MetricDataQuery query, int totalsResolution) {
+    return query.getResolution() != totalsResolution && query.getInterpolator() == null
+      && query.getAggregationOption() != AggregationOption.SUM
+      && query.getAggregationOption() != AggregationOption.LATEST;
+  }
+
+  /**
+   * Executes the given query with the help of the cached result.
+   *
+   * @param query the query to execute, which must be cacheable
+   * @param currentTimeSecs the current time in seconds
+   * @param executor function to execute a query on the metrics store
+   * @param metricsContext the {@link MetricsContext} for emitting the cache hit and miss metrics
+   * @return the query result
+   */
+  Collection<MetricTimeSeries> query(MetricDataQuery query, long currentTimeSecs,
+                                     Function<MetricDataQuery, Collection<MetricTimeSeries>> executor,
+                                     @Nullable MetricsContext metricsContext) {
+    QueryKey key = new QueryKey(query);
+    int resolution = query.getResolution();
+    // Data points before this time are settled and can be cached
+    long settledTs = Math.min(query.getEndTs() + 1, currentTimeSecs - settleSeconds) / resolution * resolution;
+
+    CachedResult cached = cache.getIfPresent(key);
+    Map<SeriesKey, List<TimeValue>> result;
+    long cacheStartTs = query.getStartTs();
+    if (cached != null && cached.startTs <= query.getStartTs() && cached.settledTs > query.getStartTs()
+      && currentTimeSecs - cached.createTimeSecs < MAX_AGE_SECONDS) {
+      hits.incrementAndGet();
+      increment(metricsContext, HIT_METRIC);
+      result = new LinkedHashMap<>();
+      add(result, cached.series);
+      if (cached.settledTs <= query.getEndTs()) {
+        add(result, executor.apply(copyQuery(query, cached.settledTs)));
+      }
+    } else {
+      misses.incrementAndGet();
+      increment(metricsContext, MISS_METRIC);
+      cached = null;
+      result = new LinkedHashMap<>();
+      add(result, executor.apply(copyQuery(query, query.getStartTs())));
+    }
+
+    // Cache the settled part of the result, only if it covers more than the existing one
+    if (settledTs > (cached == null ? cacheStartTs : cached.settledTs)) {
+      // An extended result keeps the creation time of the result it extends
+      long createTimeSecs = cached == null ? currentTimeSecs : cached.createTimeSecs;
+      cache.put(key, new CachedResult(slice(result, cacheStartTs, settledTs - 1, Integer.MAX_VALUE),
+                                      cacheStartTs, settledTs, createTimeSecs));
+    }
+    return slice(result, query.getStartTs(), query.getEndTs(), query.getLimit());
+  }
+
+  /**
+   * Invalidates all cached results.
+   */
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  @VisibleForTesting
+  long getHitCount() {
+    return hits.get();
+  }
+
+  @VisibleForTesting
+  long getMissCount() {
+    return misses.get();
+  }
+
+  private void increment(@Nullable MetricsContext metricsContext, String metricName) {
+    if (metricsContext != null) {
+      metricsContext.increment(metricName, 1L);
+    }
+  }
+
+  /**
+   * Creates a copy of the given query that starts at the given time, with no limit on the number of data points.
+   */
+  private MetricDataQuery copyQuery(MetricDataQuery query, long startTs) {
+    return new MetricDataQuery(startTs, query.getEndTs(), query.getResolution(), Integer.MAX_VALUE,
+                               query.getMetrics(), query.getSliceByTags(), query.getGroupByTags(),
+                               query.getAggregationOption(), null);
+  }
+
+  /**
+   * Appends the data points of the given time series to the result. The data points of the time series must be
+   * after the existing data points of the same series.
+   */
+  private void add(Map<SeriesKey, List<TimeValue>> result, Collection<MetricTimeSeries> series) {
+    for (MetricTimeSeries timeSeries : series) {
+      result.computeIfAbsent(new SeriesKey(timeSeries.getMetricName(), timeSeries.getTagValues()),
+                             k -> new ArrayList<>()).addAll(timeSeries.getTimeValues());
+    }
+  }
+
+  /**
+   * Returns the time series with data points within the given time range, with at most {@code limit} data points
+   * per series. Series with no data point in the range are omitted.
+   */
+  private List<MetricTimeSeries> slice(Map<SeriesKey, List<TimeValue>> result, long startTs, long endTs, int limit) {
+    List<MetricTimeSeries> series = new ArrayList<>(result.size());
+    for (Map.Entry<SeriesKey, List<TimeValue>> entry : result.entrySet()) {
+      List<TimeValue> timeValues = new ArrayList<>();
+      for (TimeValue timeValue : entry.getValue()) {
+        if (timeValues.size() >= limit || timeValue.getTimestamp() > endTs) {
+          break;
+        }
+        if (timeValue.getTimestamp() >= startTs) {
+          timeValues.add(timeValue);
+        }
+      }
+      if (!timeValues.isEmpty()) {
+        series.add(new MetricTimeSeries(entry.getKey().metricName, entry.getKey().tagValues, timeValues));
+      }
+    }
+    return series;
+  }
+
+  /**
+   * The cached result of a query, covering the time range from the start time to before the settled time.
+   */
+  private static final class CachedResult {
+    private final Collection<MetricTimeSeries> series;
+    private final long startTs;
+    private final long settledTs;
+    private final long createTimeSecs;
+    private final int dataPoints;
+
+    CachedResult(Collection<MetricTimeSeries> series, long startTs, long settledTs, long createTimeSecs) {
+      this.series = series;
+      this.startTs = startTs;
+      this.settledTs = settledTs;
+      this.createTimeSecs = createTimeSecs;
+      this.dataPoints = series.stream().mapToInt(s -> s.getTimeValues().size()).sum();
+    }
+  }
+
+  /**
+   * Key of a query, which is the query without the time range and the limit.
+   */
+  private static final class QueryKey {
+    private final int resolution;
+    private final Map<String, AggregationFunction> metrics;
+    private final Map<String, String> sliceByTags;
+    private final Set<String> groupByTags;
+    private final AggregationOption aggregationOption;
+    private final int hashCode;
+
+    QueryKey(MetricDataQuery query) {
+      this.resolution = query.getResolution();
+      this.metrics = new LinkedHashMap<>(query.getMetrics());
+      this.sliceByTags = new LinkedHashMap<>(query.getSliceByTags());
+      this.groupByTags = new HashSet<>(query.getGroupByTags());
+      this.aggregationOption = query.getAggregationOption();
+      this.hashCode = Objects.hash(resolution, metrics, sliceByTags, groupByTags, aggregationOption);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      QueryKey other = (QueryKey) o;
+      return resolution == other.resolution
+        && metrics.equals(other.metrics)
+        && sliceByTags.equals(other.sliceByTags)
+        && groupByTags.equals(other.groupByTags)
+        && aggregationOption == other.aggregationOption;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Key of a time series in a query result.
+   */
+  private static final class SeriesKey {
+    private final String metricName;
+    private final Map<String, String> tagValues;
+
+    SeriesKey(String metricName, Map<String, String> tagValues) {
+      this.metricName = metricName;
+      this.tagValues = tagValues;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey) o;
+      return metricName.equals(other.metricName) && tagValues.equals(other.tagValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(metricName, tagValues);
+    }
+  }
+}
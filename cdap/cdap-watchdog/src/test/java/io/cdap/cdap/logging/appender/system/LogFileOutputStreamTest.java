@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.appender.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.LogLevelExpression;
+import io.cdap.cdap.logging.read.LogEvent;
+import io.cdap.cdap.logging.write.LogFileIndex;
+import io.cdap.cdap.logging.write.LogLocation;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Tests for {@link LogFileOutputStream} and reading the log file it writes with the {@link LogFileIndex}.
+ */
+public class LogFileOutputStreamTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static final Filter ERROR_FILTER = new LogLevelExpression("ERROR");
+
+  @Test
+  public void testIndexedRead() throws IOException {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1000.avro");
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    // Write 1000 events with timestamps from 1000 to 1999, with an ERROR event every 100 events
+    try (LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024, 1000L, () -> { })) {
+      for (int i = 0; i < 1000; i++) {
+        LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, i % 100 == 0 ? Level.ERROR : Level.INFO,
+                                              "test message " + i, null, null);
+        event.setTimeStamp(1000L + i);
+        outputStream.append(event);
+        if (i % 300 == 0) {
+          outputStream.flush();
+        }
+      }
+    }
+
+    Location indexLocation = LogFileIndex.getIndexLocation(location);
+    LogFileIndex index = LogFileIndex.read(location, location.length());
+    Assert.assertNotNull(index);
+    Assert.assertTrue(index.getBlocks().size() > 10);
+    Assert.assertEquals(location.length(), index.getEndPosition());
+    Assert.assertEquals(0, index.findFirstBlock(0L));
+    Assert.assertEquals(index.getBlocks().size(), index.findFirstBlock(2000L));
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, 1000L, 1000L, location, "default", null);
+    List<List<Long>> indexedResults = readAll(logLocation);
+
+    Assert.assertEquals(LongStream.range(1500, 1600).boxed().collect(Collectors.toList()), indexedResults.get(0));
+    Assert.assertEquals(LongStream.range(0, 10).map(i -> 1000 + i * 100).boxed().collect(Collectors.toList()),
+                        indexedResults.get(1));
+    Assert.assertEquals(LongStream.rangeClosed(1451, 1500).boxed().collect(Collectors.toList()),
+                        indexedResults.get(2));
+    Assert.assertEquals(LongStream.of(1300, 1400, 1500).boxed().collect(Collectors.toList()), indexedResults.get(3));
+
+    // Reading without the index gives the same results
+    Assert.assertTrue(indexLocation.delete());
+    Assert.assertNull(LogFileIndex.read(location, location.length()));
+    Assert.assertEquals(indexedResults, readAll(logLocation));
+  }
+
+  private List<List<Long>> readAll(LogLocation logLocation) throws IOException {
+    List<List<Long>> results = new ArrayList<>();
+    results.add(readLog(logLocation, Filter.EMPTY_FILTER, 1500L, 1600L, 1000));
+    results.add(readLog(logLocation, ERROR_FILTER, 0L, Long.MAX_VALUE, 1000));
+    results.add(getTimestamps(logLocation.readLogPrev(Filter.EMPTY_FILTER, 1500L, 50)));
+    results.add(getTimestamps(logLocation.readLogPrev(ERROR_FILTER, 1500L, 3)));
+    return results;
+  }
+
+  private List<Long> readLog(LogLocation logLocation, Filter filter, long fromTimeMs, long toTimeMs, int maxEvents) {
+    List<LogEvent> events = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, fromTimeMs, toTimeMs, maxEvents)) {
+      iterator.forEachRemaining(events::add);
+    }
+    return getTimestamps(events);
+  }
+
+  private List<Long> getTimestamps(Collection<LogEvent> events) {
+    return events.stream().map(event -> event.getLoggingEvent().getTimeStamp()).collect(Collectors.toList());
+  }
+}
@@ -23,14 +23,21 @@ import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.test.SlowTests;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -139,6 +146,99 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testConcurrentIncrement() throws Exception {
+    BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(100L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    service.startAndWait();
+    try {
+      // Contexts are interned by tags
+      MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+      Assert.assertSame(context, service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE)));
+
+      int threads = 8;
+      int increments = 100000;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          futures.add(executor.submit(() -> {
+            barrier.await();
+            for (int j = 0; j < increments; j++) {
+              context.increment(METRIC, 1);
+            }
+            return null;
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get(30, TimeUnit.SECONDS);
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+
+      // The increments are published across multiple intervals, which are summed up for verification
+      verifyCounterMetricsValue(published, ImmutableMap.of(1, ImmutableMap.of(METRIC, (long) threads * increments)));
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testIncrementSpeed() throws Exception {
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(1000L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.size(metrics);
+      }
+    };
+
+    service.startAndWait();
+    try {
+      MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE,
+                                                                  Constants.Metrics.Tag.APP, APP));
+      int increments = 10000000;
+      // Run each twice, with the first run as warm up
+      for (int run = 0; run < 2; run++) {
+        for (int threads : new int[] { 1, 8, 32 }) {
+          ExecutorService executor = Executors.newFixedThreadPool(threads);
+          try {
+            CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+              futures.add(executor.submit(() -> {
+                barrier.await();
+                for (int j = 0; j < increments; j++) {
+                  context.increment("records.out", 1);
+                }
+                return null;
+              }));
+            }
+            barrier.await();
+            long startTime = System.nanoTime();
+            for (Future<?> future : futures) {
+              future.get();
+            }
+            long elapsed = System.nanoTime() - startTime;
+            System.out.printf("Threads: %d, time per increment: %.2f ns%n", threads, (double) elapsed / increments);
+          } finally {
+            executor.shutdownNow();
+          }
+        }
+      }
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
   private void verifyCounterMetricsValue(BlockingQueue<MetricValues> published,
                                          Map<Integer, Map<String, Long>> expected) throws InterruptedException {
     Map<Integer, Map<String, Long>> received = new HashMap<>();
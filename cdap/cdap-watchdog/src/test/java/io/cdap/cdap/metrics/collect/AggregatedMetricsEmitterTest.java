@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.collect;
+
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AggregatedMetricsEmitter}.
+ */
+public class AggregatedMetricsEmitterTest {
+
+  @Test
+  public void testGaugeAndIncrement() {
+    AggregatedMetricsEmitter emitter = new AggregatedMetricsEmitter("metric");
+    Assert.assertTrue(emitter.increment(3));
+    Assert.assertTrue(emitter.gauge(10));
+    Assert.assertTrue(emitter.increment(2));
+
+    // Increments before the gauge are superseded, increments after it are added to it
+    MetricValue value = emitter.emit();
+    Assert.assertEquals(MetricType.GAUGE, value.getType());
+    Assert.assertEquals(12L, value.getValue());
+
+    value = emitter.emit();
+    Assert.assertEquals(MetricType.COUNTER, value.getType());
+    Assert.assertEquals(0L, value.getValue());
+  }
+
+  @Test
+  public void testRetire() {
+    AggregatedMetricsEmitter emitter = new AggregatedMetricsEmitter("metric");
+    Assert.assertTrue(emitter.increment(1));
+
+    // An emitter with value not yet emitted cannot be retired
+    Assert.assertFalse(emitter.retire());
+    Assert.assertEquals(1L, emitter.emit().getValue());
+    Assert.assertTrue(emitter.retire());
+    Assert.assertTrue(emitter.isRetired());
+
+    // Values added to a retired emitter are reported back, and the increment can be drained for a new emitter
+    Assert.assertFalse(emitter.increment(5));
+    Assert.assertFalse(emitter.gauge(10));
+    Assert.assertEquals(5L, emitter.drain());
+    Assert.assertEquals(0L, emitter.drain());
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.store;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.Interpolators;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Unit tests for {@link MetricsQueryCache}.
+ */
+public class MetricsQueryCacheTest {
+
+  private static final int TOTALS_RESOLUTION = Integer.MAX_VALUE;
+
+  @Test
+  public void testIncrementalQuery() {
+    MetricsQueryCache cache = new MetricsQueryCache(10000, 10);
+    List<Long> queriedStarts = new ArrayList<>();
+    Function<MetricDataQuery, Collection<MetricTimeSeries>> executor = query -> {
+      queriedStarts.add(query.getStartTs());
+      return execute(query);
+    };
+
+    // First query is a miss
+    MetricDataQuery query = createQuery(100, 500, Integer.MAX_VALUE);
+    Assert.assertEquals(execute(query), cache.query(query, 500, executor, null));
+    Assert.assertEquals(Collections.singletonList(100L), queriedStarts);
+    Assert.assertEquals(1L, cache.getMissCount());
+
+    // A later query with a moving window only queries the time range that is not settled
+    queriedStarts.clear();
+    query = createQuery(110, 510, Integer.MAX_VALUE);
+    Assert.assertEquals(execute(query), cache.query(query, 510, executor, null));
+    Assert.assertEquals(Collections.singletonList(490L), queriedStarts);
+    Assert.assertEquals(1L, cache.getHitCount());
+
+    // Limit is applied on the merged result
+    queriedStarts.clear();
+    query = createQuery(120, 520, 5);
+    Assert.assertEquals(execute(query), cache.query(query, 520, executor, null));
+    Assert.assertEquals(Collections.singletonList(500L), queriedStarts);
+    Assert.assertEquals(2L, cache.getHitCount());
+
+    // Query that starts before the cached range is a miss
+    queriedStarts.clear();
+    query = createQuery(50, 520, Integer.MAX_VALUE);
+    Assert.assertEquals(execute(query), cache.query(query, 520, executor, null));
+    Assert.assertEquals(Collections.singletonList(50L), queriedStarts);
+    Assert.assertEquals(2L, cache.getMissCount());
+
+    // Query is a miss after invalidation
+    cache.invalidateAll();
+    query = createQuery(60, 530, Integer.MAX_VALUE);
+    Assert.assertEquals(execute(query), cache.query(query, 530, executor, null));
+    Assert.assertEquals(3L, cache.getMissCount());
+  }
+
+  @Test
+  public void testMaxAge() {
+    MetricsQueryCache cache = new MetricsQueryCache(10000, 10);
+    List<Long> queriedStarts = new ArrayList<>();
+    Function<MetricDataQuery, Collection<MetricTimeSeries>> executor = query -> {
+      queriedStarts.add(query.getStartTs());
+      return execute(query);
+    };
+
+    // Keep extending the cached result with a moving window
+    long now = 1000;
+    for (int i = 0; i < 60; i++, now += 10) {
+      MetricDataQuery query = createQuery(now - 500, now, Integer.MAX_VALUE);
+      Assert.assertEquals(execute(query), cache.query(query, now, executor, null));
+    }
+    Assert.assertEquals(1L, cache.getMissCount());
+    Assert.assertEquals(59L, cache.getHitCount());
+
+    // Once the result first cached gets too old, the whole time range is queried again
+    queriedStarts.clear();
+    MetricDataQuery query = createQuery(now - 500, now, Integer.MAX_VALUE);
+    Assert.assertEquals(execute(query), cache.query(query, now, executor, null));
+    Assert.assertEquals(Collections.singletonList(now - 500), queriedStarts);
+    Assert.assertEquals(2L, cache.getMissCount());
+  }
+
+  @Test
+  public void testCacheable() {
+    Assert.assertTrue(MetricsQueryCache.isCacheable(createQuery(0, 100, 10), TOTALS_RESOLUTION));
+    Assert.assertFalse(MetricsQueryCache.isCacheable(
+      new MetricDataQuery(0, 100, TOTALS_RESOLUTION, "m1", AggregationFunction.SUM,
+                          Collections.emptyMap(), Collections.emptyList()), TOTALS_RESOLUTION));
+    Assert.assertFalse(MetricsQueryCache.isCacheable(
+      new MetricDataQuery(0, 100, 1, 10, ImmutableMap.of("m1", AggregationFunction.SUM),
+                          Collections.emptyMap(), Collections.emptyList(), new Interpolators.Step()),
+      TOTALS_RESOLUTION));
+    Assert.assertFalse(MetricsQueryCache.isCacheable(
+      new MetricDataQuery(0, 100, 1, 10, ImmutableMap.of("m1", AggregationFunction.SUM),
+                          Collections.emptyMap(), Collections.emptyList(), AggregationOption.SUM, null),
+      TOTALS_RESOLUTION));
+  }
+
+  private MetricDataQuery createQuery(long startTs, long endTs, int limit) {
+    return new MetricDataQuery(startTs, endTs, 1, limit, ImmutableMap.of("m1", AggregationFunction.SUM),
+                               ImmutableMap.of("ns", "default"), ImmutableList.of("app"), null);
+  }
+
+  /**
+   * Executes the query on two time series, with one data point per second for the even seconds.
+   */
+  private Collection<MetricTimeSeries> execute(MetricDataQuery query) {
+    List<MetricTimeSeries> result = new ArrayList<>();
+    for (String app : new String[] { "app1", "app2" }) {
+      List<TimeValue> timeValues = LongStream.rangeClosed(query.getStartTs(), query.getEndTs())
+        .filter(ts -> ts % 2 == 0)
+        .limit(query.getLimit())
+        .mapToObj(ts -> new TimeValue(ts, ts))
+        .collect(Collectors.toList());
+      if (!timeValues.isEmpty()) {
+        result.add(new MetricTimeSeries("m1", ImmutableMap.of("app", app), timeValues));
+      }
+    }
+    return result;
+  }
+}